@@ -38,6 +38,10 @@ public interface FeaturesService {
 
     String UPDATEABLE_URIS = "mvn:.*SNAPSHOT|(?!mvn:).*";
 
+    int DEFAULT_DOWNLOAD_THREADS = 8;
+
+    long DEFAULT_REPOSITORY_LOAD_TIMEOUT = 300000;
+
     enum Option {
         NoFailOnFeatureNotFound,
         NoAutoRefreshManagedBundles,
@@ -0,0 +1,446 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.features.internal.download.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.apache.karaf.features.internal.util.JsonReader;
+import org.apache.karaf.features.internal.util.JsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent, content-addressed store of downloaded artifacts.
+ *
+ * Each artifact is stored once under its SHA-256 digest, along with a small
+ * json file holding its CRC32 and its manifest headers, so that the manifest
+ * of a given content is only parsed once.  Locations which are not expected
+ * to change (i.e. not matching the given updateable pattern) are indexed so
+ * that they are not downloaded again, even across restarts.
+ *
+ * The index is an append only log, compacted when loaded or evicted.
+ * Artifacts which have not been used for a given time, or the least recently
+ * used ones when the cache exceeds a given size, are removed by {@link #evict()}.
+ */
+public class ArtifactCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactCache.class);
+
+    public static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+    public static final long DEFAULT_MAX_AGE = TimeUnit.DAYS.toMillis(30);
+
+    private static final String INDEX_FILE = "index.log";
+    private static final String ARTIFACT_SUFFIX = ".jar";
+    private static final String METADATA_SUFFIX = ".json";
+    // the last use of an artifact is recorded on its file with this precision
+    private static final long TOUCH_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    private final File directory;
+    private final Pattern updateable;
+    private final long maxSize;
+    private final long maxAge;
+
+    /**
+     * Location to digest index for immutable locations.
+     * Synchronized on itself.
+     */
+    private final Map<String, String> index = new HashMap<>();
+
+    /**
+     * Memoized entries, keyed by digest.
+     */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public ArtifactCache(File directory, String updateable) {
+        this(directory, updateable, DEFAULT_MAX_SIZE, DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * @param maxSize the size in bytes above which the least recently used artifacts are evicted, 0 for no limit
+     * @param maxAge the time in milliseconds after which unused artifacts are evicted, 0 for no limit
+     */
+    public ArtifactCache(File directory, String updateable, long maxSize, long maxAge) {
+        this.directory = directory;
+        this.updateable = Pattern.compile(updateable);
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+        loadIndex();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Retrieve the cached artifact for the given location, downloading
+     * it if the location is unknown or may have changed.
+     */
+    public Entry get(String location) throws IOException {
+        boolean immutable = !updateable.matcher(location).matches();
+        if (immutable) {
+            String digest;
+            synchronized (index) {
+                digest = index.get(location);
+            }
+            if (digest != null) {
+                Entry entry = getEntry(digest);
+                if (entry != null) {
+                    touch(entry.getFile());
+                    return entry;
+                }
+            }
+        }
+        Entry entry = download(location);
+        touch(entry.getFile());
+        if (immutable) {
+            synchronized (index) {
+                if (!entry.getDigest().equals(index.put(location, entry.getDigest()))) {
+                    appendIndex(location, entry.getDigest());
+                }
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Remove the artifacts which have not been used for the maximum age, then the least
+     * recently used ones until the cache fits in its maximum size.
+     * This must not be called while a deployment is using the cache.
+     */
+    public void evict() {
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(ARTIFACT_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        final Map<File, Long> lastUsed = new HashMap<>();
+        for (File file : files) {
+            lastUsed.put(file, file.lastModified());
+        }
+        // most recently used first
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(lastUsed.get(f2), lastUsed.get(f1));
+            }
+        });
+        long now = System.currentTimeMillis();
+        long size = 0;
+        Set<String> evicted = new HashSet<>();
+        for (File file : files) {
+            long length = file.length();
+            if ((maxAge > 0 && now - lastUsed.get(file) > maxAge) || (maxSize > 0 && size + length > maxSize)) {
+                String digest = file.getName().substring(0, file.getName().length() - ARTIFACT_SUFFIX.length());
+                entries.remove(digest);
+                File metadata = new File(directory, digest + METADATA_SUFFIX);
+                if (!metadata.delete() && metadata.exists() || !file.delete()) {
+                    LOGGER.debug("Unable to delete cached artifact {}", file);
+                }
+                evicted.add(digest);
+            } else {
+                size += length;
+            }
+        }
+        if (!evicted.isEmpty()) {
+            LOGGER.debug("Evicted {} artifacts from the cache", evicted.size());
+            synchronized (index) {
+                for (Iterator<String> it = index.values().iterator(); it.hasNext();) {
+                    if (evicted.contains(it.next())) {
+                        it.remove();
+                    }
+                }
+                saveIndex();
+            }
+        }
+    }
+
+    private static void touch(File file) {
+        long now = System.currentTimeMillis();
+        if (now - file.lastModified() > TOUCH_INTERVAL && !file.setLastModified(now)) {
+            LOGGER.debug("Unable to update the last modification time of {}", file);
+        }
+    }
+
+    private Entry download(String location) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        MessageDigest md = getMessageDigest();
+        CRC32 crc = new CRC32();
+        File tmp = File.createTempFile("download-", ".tmp", directory);
+        try {
+            try (
+                    InputStream is = new URL(location).openStream();
+                    OutputStream os = new FileOutputStream(tmp)
+            ) {
+                byte[] buffer = new byte[8192];
+                int l;
+                while ((l = is.read(buffer)) > 0) {
+                    md.update(buffer, 0, l);
+                    crc.update(buffer, 0, l);
+                    os.write(buffer, 0, l);
+                }
+            }
+            String digest = toHex(md.digest());
+            Entry entry = getEntry(digest);
+            if (entry == null) {
+                File file = new File(directory, digest + ARTIFACT_SUFFIX);
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                entry = new Entry(digest, file, crc.getValue(), readManifest(file));
+                saveMetadata(entry);
+                Entry prev = entries.putIfAbsent(digest, entry);
+                if (prev != null) {
+                    entry = prev;
+                }
+            }
+            return entry;
+        } finally {
+            if (tmp.exists() && !tmp.delete()) {
+                LOGGER.debug("Unable to delete temporary file {}", tmp);
+            }
+        }
+    }
+
+    /**
+     * Look for an already stored content, either in memory or on disk.
+     */
+    @SuppressWarnings("unchecked")
+    private Entry getEntry(String digest) {
+        Entry entry = entries.get(digest);
+        if (entry != null) {
+            return entry;
+        }
+        File file = new File(directory, digest + ARTIFACT_SUFFIX);
+        File metadata = new File(directory, digest + METADATA_SUFFIX);
+        if (!file.isFile() || !metadata.isFile()) {
+            return null;
+        }
+        try (
+                InputStream is = new FileInputStream(metadata)
+        ) {
+            Map<String, Object> json = (Map<String, Object>) JsonReader.read(is);
+            long crc = Long.parseLong(json.get("crc").toString());
+            Map<String, String> headers = null;
+            if (json.get("headers") != null) {
+                headers = new HashMap<>();
+                for (Map.Entry<String, Object> e : ((Map<String, Object>) json.get("headers")).entrySet()) {
+                    headers.put(e.getKey(), e.getValue().toString());
+                }
+            }
+            entry = new Entry(digest, file, crc, headers);
+        } catch (Exception e) {
+            LOGGER.debug("Unable to read cached metadata for " + digest, e);
+            return null;
+        }
+        Entry prev = entries.putIfAbsent(digest, entry);
+        return prev != null ? prev : entry;
+    }
+
+    private void saveMetadata(Entry entry) throws IOException {
+        Map<String, Object> json = new HashMap<>();
+        json.put("crc", Long.toString(entry.getCrc()));
+        json.put("headers", entry.headers);
+        File metadata = new File(directory, entry.getDigest() + METADATA_SUFFIX);
+        File tmp = new File(directory, entry.getDigest() + METADATA_SUFFIX + ".tmp");
+        try (
+                OutputStream os = new FileOutputStream(tmp)
+        ) {
+            JsonWriter.write(os, json);
+        }
+        Files.move(tmp.toPath(), metadata.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Map<String, String> readManifest(File file) {
+        try (
+                JarFile jar = new JarFile(file, false)
+        ) {
+            Manifest manifest = jar.getManifest();
+            if (manifest == null) {
+                return null;
+            }
+            Attributes attributes = manifest.getMainAttributes();
+            Map<String, String> headers = new HashMap<>();
+            for (Map.Entry attr : attributes.entrySet()) {
+                headers.put(attr.getKey().toString(), attr.getValue().toString());
+            }
+            return headers;
+        } catch (IOException e) {
+            // Not a jar
+            return null;
+        }
+    }
+
+    /**
+     * Read the index log, made of lines holding a digest and a location, the last line
+     * of a location winning.  The log is compacted if it holds too many stale lines.
+     */
+    private void loadIndex() {
+        File file = new File(directory, INDEX_FILE);
+        if (!file.isFile()) {
+            return;
+        }
+        int lines = 0;
+        try (
+                BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))
+        ) {
+            synchronized (index) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int idx = line.indexOf(' ');
+                    if (idx > 0) {
+                        index.put(line.substring(idx + 1), line.substring(0, idx));
+                        lines++;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Error loading artifact cache index, ignoring it", e);
+        }
+        synchronized (index) {
+            if (lines > 2 * index.size()) {
+                saveIndex();
+            }
+        }
+    }
+
+    // Synchronized on index
+    private void appendIndex(String location, String digest) {
+        try (
+                Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, INDEX_FILE), true), StandardCharsets.UTF_8)
+        ) {
+            writer.write(digest + " " + location + "\n");
+        } catch (IOException e) {
+            LOGGER.warn("Error saving artifact cache index", e);
+        }
+    }
+
+    // Synchronized on index
+    private void saveIndex() {
+        File file = new File(directory, INDEX_FILE);
+        File tmp = new File(directory, INDEX_FILE + ".tmp");
+        try {
+            try (
+                    Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)
+            ) {
+                for (Map.Entry<String, String> entry : index.entrySet()) {
+                    writer.write(entry.getValue() + " " + entry.getKey() + "\n");
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Error saving artifact cache index", e);
+        }
+    }
+
+    private static MessageDigest getMessageDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0x0F, 16));
+            sb.append(Character.forDigit(b & 0x0F, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A stored artifact.
+     */
+    public static class Entry {
+        private final String digest;
+        private final File file;
+        private final long crc;
+        private final Map<String, String> headers;
+
+        Entry(String digest, File file, long crc, Map<String, String> headers) {
+            this.digest = digest;
+            this.file = file;
+            this.crc = crc;
+            this.headers = headers != null ? Collections.unmodifiableMap(headers) : null;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        /**
+         * The manifest main attributes or <code>null</code> if the
+         * artifact does not contain any manifest.
+         */
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        public InputStream open() throws IOException {
+            return Channels.newInputStream(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.features.internal.download.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import org.apache.karaf.features.internal.download.StreamProvider;
+
+/**
+ * A {@link StreamProvider} backed by an {@link ArtifactCache}.
+ * The artifact is fetched at most once per provider instance, and all
+ * subsequent accesses are served from the cached file.
+ */
+public class CachedStreamProvider implements StreamProvider {
+
+    private final ArtifactCache cache;
+    private final String location;
+    private volatile ArtifactCache.Entry entry;
+
+    public CachedStreamProvider(ArtifactCache cache, String location) {
+        this.cache = cache;
+        this.location = location;
+    }
+
+    public ArtifactCache.Entry getEntry() throws IOException {
+        if (entry == null) {
+            synchronized (this) {
+                if (entry == null) {
+                    entry = cache.get(location);
+                }
+            }
+        }
+        return entry;
+    }
+
+    public long getCrc() throws IOException {
+        return getEntry().getCrc();
+    }
+
+    @Override
+    public InputStream open() throws IOException {
+        return getEntry().open();
+    }
+
+    @Override
+    public Map<String, String> getMetadata() throws IOException {
+        Map<String, String> headers = getEntry().getHeaders();
+        if (headers == null) {
+            throw new IllegalArgumentException("Resource " + location + " does not contain a manifest");
+        }
+        return headers;
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.features.internal.download.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.karaf.features.internal.download.DownloadCallback;
+import org.apache.karaf.features.internal.download.DownloadManager;
+import org.apache.karaf.features.internal.download.Downloader;
+import org.apache.karaf.features.internal.download.StreamProvider;
+import org.apache.karaf.features.internal.download.simple.SimpleDownloader;
+import org.apache.karaf.features.internal.util.MultiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link DownloadManager} dispatching downloads to an executor so that
+ * artifacts are fetched concurrently.
+ *
+ * A single {@link StreamProvider} is created per location and shared by all
+ * downloaders created by this manager, so that concurrent requests for the
+ * same location only hit the remote repository once.  Callbacks are invoked
+ * on the executor threads and must be thread safe.
+ */
+public class DownloadManagerImpl implements DownloadManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadManagerImpl.class);
+
+    private final Executor executor;
+
+    private final ArtifactCache cache;
+
+    private final ConcurrentMap<String, DownloadTask> tasks = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, StreamProvider> providers = new ConcurrentHashMap<>();
+
+    public DownloadManagerImpl(Executor executor) {
+        this(executor, null);
+    }
+
+    public DownloadManagerImpl(Executor executor, ArtifactCache cache) {
+        this.executor = executor;
+        this.cache = cache;
+    }
+
+    @Override
+    public Downloader createDownloader() {
+        return new DownloaderImpl();
+    }
+
+    @Override
+    public Map<String, StreamProvider> getProviders() {
+        return providers;
+    }
+
+    /**
+     * Time spent fetching each artifact, in milliseconds, keyed by location.
+     * Only locations which have been fully fetched are reported.
+     */
+    public Map<String, Long> getDownloadTimes() {
+        Map<String, Long> times = new HashMap<>();
+        for (DownloadTask task : tasks.values()) {
+            long time = task.getTime();
+            if (time >= 0) {
+                times.put(task.location, time);
+            }
+        }
+        return Collections.unmodifiableMap(times);
+    }
+
+    protected StreamProvider createProvider(String location) throws MalformedURLException {
+        if (cache != null) {
+            // Validate the location eagerly
+            new URL(location);
+            return new CachedStreamProvider(cache, location);
+        }
+        return new SimpleDownloader.UrlProvider(new URL(location));
+    }
+
+    private DownloadTask getTask(String location) throws MalformedURLException {
+        DownloadTask task = tasks.get(location);
+        if (task == null) {
+            task = new DownloadTask(location, createProvider(location));
+            DownloadTask prev = tasks.putIfAbsent(location, task);
+            if (prev != null) {
+                task = prev;
+            } else {
+                providers.put(location, task.provider);
+            }
+        }
+        return task;
+    }
+
+    /**
+     * Wraps the real provider and records the time spent in the first
+     * successful metadata retrieval, which is when the artifact is fetched.
+     * Concurrent callers block on the provider until the fetch is done.
+     */
+    static class DownloadTask implements StreamProvider {
+        final String location;
+        final StreamProvider provider;
+        private volatile long time = -1;
+
+        DownloadTask(String location, StreamProvider provider) {
+            this.location = location;
+            this.provider = provider;
+        }
+
+        long getTime() {
+            return time;
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            return provider.open();
+        }
+
+        @Override
+        public Map<String, String> getMetadata() throws IOException {
+            if (time >= 0) {
+                return provider.getMetadata();
+            }
+            synchronized (this) {
+                if (time >= 0) {
+                    return provider.getMetadata();
+                }
+                long t0 = System.nanoTime();
+                Map<String, String> metadata = provider.getMetadata();
+                time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+                LOGGER.debug("Downloaded {} in {} ms", location, time);
+                return metadata;
+            }
+        }
+    }
+
+    class DownloaderImpl implements Downloader {
+
+        private final Object lock = new Object();
+        private final List<Exception> exceptions = new ArrayList<>();
+        private int pending;
+
+        @Override
+        public void await() throws InterruptedException, MultiException {
+            synchronized (lock) {
+                while (pending > 0) {
+                    lock.wait();
+                }
+                if (!exceptions.isEmpty()) {
+                    MultiException.throwIf("Error downloading artifacts", new ArrayList<>(exceptions));
+                }
+            }
+        }
+
+        @Override
+        public void download(final String location, final DownloadCallback downloadCallback) throws MalformedURLException {
+            final DownloadTask task = getTask(location);
+            synchronized (lock) {
+                pending++;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (downloadCallback != null) {
+                                downloadCallback.downloaded(task);
+                            } else {
+                                // Pre-fetch the artifact
+                                task.getMetadata();
+                            }
+                        } catch (Exception e) {
+                            if (downloadCallback != null) {
+                                addException(e);
+                            } else {
+                                // Not a failure yet, the artifact may not be
+                                // a bundle, let the consumer report errors
+                                LOGGER.debug("Unable to pre-fetch " + location, e);
+                            }
+                        } finally {
+                            done();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                addException(e);
+                done();
+            }
+        }
+
+        private void addException(Exception e) {
+            synchronized (lock) {
+                exceptions.add(e);
+            }
+        }
+
+        private void done() {
+            synchronized (lock) {
+                if (--pending == 0) {
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+}
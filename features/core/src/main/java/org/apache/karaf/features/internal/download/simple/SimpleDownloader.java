@@ -75,11 +75,11 @@ public class SimpleDownloader implements DownloadManager, Downloader {
         return providers;
     }
 
-    static class UrlProvider implements StreamProvider {
+    public static class UrlProvider implements StreamProvider {
         private final URL url;
         private volatile Map<String, String> metadata;
 
-        UrlProvider(URL url) {
+        public UrlProvider(URL url) {
             this.url = url;
         }
 
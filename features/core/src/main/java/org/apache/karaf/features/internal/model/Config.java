@@ -17,6 +17,7 @@
 package org.apache.karaf.features.internal.model;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.io.StringReader;
 import java.util.Enumeration;
 import java.util.Properties;
@@ -53,7 +54,9 @@ import org.apache.karaf.features.ConfigInfo;
  */
 @XmlAccessorType(XmlAccessType.FIELD)
 @XmlType(name = "config", propOrder = {"value"})
-public class Config implements ConfigInfo{
+public class Config implements ConfigInfo, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     @XmlValue
     protected String value;
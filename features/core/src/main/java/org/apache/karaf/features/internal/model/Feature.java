@@ -77,6 +77,8 @@ import org.apache.felix.utils.version.VersionCleaner;
         })
 public class Feature extends Content implements org.apache.karaf.features.Feature {
 
+    private static final long serialVersionUID = 1L;
+
     public static final String VERSION_SEPARATOR = "/";
     public static final String DEFAULT_VERSION = "0.0.0";
 
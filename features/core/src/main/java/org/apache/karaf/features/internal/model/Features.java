@@ -16,6 +16,7 @@
  */
 package org.apache.karaf.features.internal.model;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -54,7 +55,9 @@ import javax.xml.bind.annotation.XmlType;
 @XmlRootElement(name = "features")
 @XmlAccessorType(XmlAccessType.FIELD)
 @XmlType(name = "features", propOrder = {"repository", "feature"})
-public class Features {
+public class Features implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     @XmlSchemaType(name = "anyURI")
     protected List<String> repository;
@@ -28,17 +28,20 @@ import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.felix.resolver.ResolverImpl;
 import org.apache.felix.utils.properties.Properties;
 import org.apache.karaf.features.FeaturesListener;
 import org.apache.karaf.features.FeaturesService;
+import org.apache.karaf.features.internal.download.impl.ArtifactCache;
 import org.apache.karaf.features.internal.management.FeaturesServiceMBeanImpl;
 import org.apache.karaf.features.internal.repository.AggregateRepository;
 import org.apache.karaf.features.internal.repository.JsonRepository;
 import org.apache.karaf.features.internal.repository.XmlRepository;
 import org.apache.karaf.features.internal.resolver.Slf4jResolverLog;
 import org.apache.karaf.features.internal.service.BootFeaturesInstaller;
+import org.apache.karaf.features.internal.service.DescriptorCache;
 import org.apache.karaf.features.internal.service.EventAdminListener;
 import org.apache.karaf.features.internal.service.FeatureConfigInstaller;
 import org.apache.karaf.features.internal.service.FeatureFinder;
@@ -82,6 +85,8 @@ public class Activator extends BaseActivator {
     public static final String FEATURES_SERVICE_CONFIG_FILE = "org.apache.karaf.features.cfg";
 
     private static final String STATE_FILE = "state.json";
+    private static final String ARTIFACT_CACHE_DIR = "artifacts";
+    private static final String DESCRIPTOR_CACHE_DIR = "descriptors";
 
     private ServiceTracker<FeaturesListener, FeaturesListener> featuresListenerTracker;
     private FeaturesServiceImpl featuresService;
@@ -175,6 +180,23 @@ public class Activator extends BaseActivator {
         String featureResolutionRange = getString("featureResolutionRange", FeaturesService.DEFAULT_FEATURE_RESOLUTION_RANGE);
         String bundleUpdateRange = getString("bundleUpdateRange", FeaturesService.DEFAULT_BUNDLE_UPDATE_RANGE);
         String updateSnapshots = getString("updateSnapshots", FeaturesService.DEFAULT_UPDATE_SNAPSHOTS);
+        int downloadThreads = getInt("downloadThreads", FeaturesService.DEFAULT_DOWNLOAD_THREADS);
+        // without karaf.data the caches are only enabled with an explicit directory
+        String karafData = System.getProperty("karaf.data");
+        String artifactCacheDir = getString("artifactCache", karafData != null ? new File(karafData, ARTIFACT_CACHE_DIR).getPath() : "");
+        int bundleStartThreads = getInt("bundleStartThreads", 1);
+        ArtifactCache artifactCache = null;
+        if (!artifactCacheDir.trim().isEmpty()) {
+            long artifactCacheMaxSize = getLong("artifactCacheMaxSize", ArtifactCache.DEFAULT_MAX_SIZE / (1024 * 1024));
+            long artifactCacheMaxAge = getLong("artifactCacheMaxAge", TimeUnit.MILLISECONDS.toDays(ArtifactCache.DEFAULT_MAX_AGE));
+            artifactCache = new ArtifactCache(new File(artifactCacheDir.trim()), FeaturesService.UPDATEABLE_URIS,
+                    artifactCacheMaxSize * 1024 * 1024, TimeUnit.DAYS.toMillis(artifactCacheMaxAge));
+            artifactCache.evict();
+        }
+        String descriptorCacheDir = getString("descriptorCache", karafData != null ? new File(karafData, DESCRIPTOR_CACHE_DIR).getPath() : "");
+        DescriptorCache descriptorCache = descriptorCacheDir.trim().isEmpty()
+                ? null : new DescriptorCache(new File(descriptorCacheDir.trim()));
+        long repositoryLoadTimeout = getLong("repositoryLoadTimeout", FeaturesService.DEFAULT_REPOSITORY_LOAD_TIMEOUT);
         StateStorage stateStorage = new StateStorage() {
             @Override
             protected InputStream getInputStream() throws IOException {
@@ -210,7 +232,12 @@ public class Activator extends BaseActivator {
                 featureResolutionRange,
                 bundleUpdateRange,
                 updateSnapshots,
-                globalRepository);
+                globalRepository,
+                downloadThreads,
+                artifactCache,
+                bundleStartThreads,
+                descriptorCache,
+                repositoryLoadTimeout);
         register(FeaturesService.class, featuresService);
 
         featuresListenerTracker = new ServiceTracker<>(
@@ -29,6 +29,7 @@ import java.util.regex.Pattern;
 
 import org.apache.karaf.features.BootFinished;
 import org.apache.karaf.features.FeaturesService;
+import org.apache.karaf.util.startup.StartupTrace;
 import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,6 +64,7 @@ public class BootFeaturesInstaller {
      */
     public void start() {
         if (featuresService.isBootDone()) {
+            StartupTrace.stop();
             publishBootFinished();
             return;
         }
@@ -79,6 +81,7 @@ public class BootFeaturesInstaller {
 
     protected void installBootFeatures() {
         try {
+            StartupTrace.Span span = StartupTrace.begin("features", "Add boot features repositories");
             for (String repo : repositories.split(",")) {
                 repo = repo.trim();
                 if (!repo.isEmpty()) {
@@ -89,13 +92,18 @@ public class BootFeaturesInstaller {
                     }
                 }
             }
+            span.end();
 
             List<Set<String>> stagedFeatures = parseBootFeatures(features);
             for (Set<String> features : stagedFeatures) {
+                span = StartupTrace.begin("features", "Install boot features " + features);
                 featuresService.installFeatures(features, EnumSet.of(FeaturesService.Option.NoFailOnFeatureNotFound));
+                span.end();
             }
+            StartupTrace.instant("features", "Boot features installed");
             featuresService.bootDone();
             publishBootFinished();
+            StartupTrace.stop();
         } catch (Exception e) {
             // Special handling in case the bundle has been refreshed.
             // In such a case, simply exits without logging any exception
@@ -109,6 +117,7 @@ public class BootFeaturesInstaller {
                 }
             }
             LOGGER.error("Error installing boot features", e);
+            StartupTrace.stop();
         }
     }
 
@@ -16,12 +16,16 @@
  */
 package org.apache.karaf.features.internal.service;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -32,6 +36,15 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.felix.utils.version.VersionRange;
 import org.apache.felix.utils.version.VersionTable;
@@ -41,12 +54,14 @@ import org.apache.karaf.features.FeatureEvent;
 import org.apache.karaf.features.FeaturesService;
 import org.apache.karaf.features.internal.download.DownloadManager;
 import org.apache.karaf.features.internal.download.StreamProvider;
+import org.apache.karaf.features.internal.download.impl.CachedStreamProvider;
 import org.apache.karaf.features.internal.region.SubsystemResolver;
 import org.apache.karaf.features.internal.util.ChecksumUtils;
 import org.apache.karaf.features.internal.util.Macro;
 import org.apache.karaf.features.internal.util.MapUtils;
 import org.apache.karaf.features.internal.util.MultiException;
 import org.apache.karaf.util.collections.CopyOnWriteArrayIdentityList;
+import org.apache.karaf.util.startup.StartupTrace;
 import org.eclipse.equinox.region.Region;
 import org.eclipse.equinox.region.RegionDigraph;
 import org.osgi.framework.Bundle;
@@ -147,6 +162,7 @@ public class Deployer {
         String bundleUpdateRange;
         String updateSnaphots;
         Repository globalRepository;
+        int bundleStartThreads;
 
         Map<String, Set<String>> requirements;
         Map<String, Map<String, FeaturesService.RequestedState>> stateChanges;
@@ -167,12 +183,34 @@ public class Deployer {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Deployer.class);
 
+    /**
+     * Maximum number of bundles prepared ahead of their installation,
+     * which bounds the memory used to buffer their content.
+     */
+    static final int MAX_PREPARED_BUNDLES = 8;
+
     private final DownloadManager manager;
     private final DeployCallback callback;
+    private final RepeatResolutionCache repeatResolutionCache;
+    private final Executor executor;
 
     public Deployer(DownloadManager manager, DeployCallback callback) {
+        this(manager, callback, null, null);
+    }
+
+    /**
+     * @param manager               the download manager
+     * @param callback              the callback performing the actual framework operations
+     * @param repeatResolutionCache an optional cache to reuse the previous resolution
+     *                              when its inputs did not change
+     * @param executor              an optional executor used to prepare bundles concurrently
+     *                              before they are installed or updated
+     */
+    public Deployer(DownloadManager manager, DeployCallback callback, RepeatResolutionCache repeatResolutionCache, Executor executor) {
         this.manager = manager;
         this.callback = callback;
+        this.repeatResolutionCache = repeatResolutionCache;
+        this.executor = executor;
     }
 
     /**
@@ -199,60 +237,25 @@ public class Deployer {
                 map(dstate.bundles));
 
         // Resolve
-        SubsystemResolver resolver = new SubsystemResolver(manager);
-        resolver.prepare(
+        Map<String, Set<BundleRevision>> unmanagedRevisions = apply(unmanagedBundles, adapt(BundleRevision.class));
+        RepeatResolutionCache.Key resolutionKey = new RepeatResolutionCache.Key(
                 dstate.features.values(),
                 request.requirements,
-                apply(unmanagedBundles, adapt(BundleRevision.class))
-        );
-        Set<String> prereqs = resolver.collectPrerequisites();
-        if (!prereqs.isEmpty()) {
-            for (Iterator<String> iterator = prereqs.iterator(); iterator.hasNext(); ) {
-                String prereq = iterator.next();
-                String[] parts = prereq.split("/");
-                VersionRange range;
-                if (parts[1].equals("0.0.0")) {
-                    range = VersionRange.ANY_VERSION;
-                } else if (!parts[1].startsWith("[") && !parts[1].startsWith("(")) {
-                    range = new VersionRange(Macro.transform(request.featureResolutionRange, parts[1]));
-                } else {
-                    range = new VersionRange(parts[1]);
-                }
-                boolean found = false;
-                for (Set<String> featureSet : dstate.state.installedFeatures.values()) {
-                    for (String feature : featureSet) {
-                        String[] p = feature.split("/");
-                        found = parts[0].equals(p[0]) && range.contains(VersionTable.getVersion(p[1]));
-                        if (found) break;
-                    }
-                    if (found) break;
-                }
-                if (found) {
-                    iterator.remove();
-                }
-            }
-        }
-        if (!prereqs.isEmpty()) {
-            DeploymentRequest newRequest = new DeploymentRequest();
-            newRequest.bundleUpdateRange = request.bundleUpdateRange;
-            newRequest.featureResolutionRange = request.featureResolutionRange;
-            newRequest.globalRepository = request.globalRepository;
-            newRequest.options = request.options;
-            newRequest.overrides = request.overrides;
-            newRequest.requirements = copy(dstate.state.requirements);
-            for (String prereq : prereqs) {
-                addToMapSet(newRequest.requirements, ROOT_REGION, prereq);
-            }
-            newRequest.stateChanges = Collections.emptyMap();
-            newRequest.updateSnaphots = request.updateSnaphots;
-            deploy(dstate, newRequest);
-            throw new PartialDeploymentException(prereqs);
-        }
-
-        resolver.resolve(
+                unmanagedRevisions,
                 request.overrides,
                 request.featureResolutionRange,
                 request.globalRepository);
+        SubsystemResolver resolver = repeatResolutionCache != null ? repeatResolutionCache.get(resolutionKey) : null;
+        if (resolver != null) {
+            LOGGER.debug("Reusing previous resolution result");
+        } else {
+            StartupTrace.Span span = StartupTrace.begin("deployer", "Resolve");
+            resolver = resolve(dstate, request, unmanagedRevisions);
+            span.end();
+            if (repeatResolutionCache != null) {
+                repeatResolutionCache.put(resolutionKey, resolver, request.updateSnaphots);
+            }
+        }
 
         Map<String, StreamProvider> providers = resolver.getProviders();
         Map<String, Set<Resource>> featuresPerRegion = resolver.getFeaturesPerRegions();
@@ -511,9 +514,24 @@ public class Deployer {
         // Perform bundle operations
         //
 
+        //
+        // Start preparing bundles to install or update
+        // This is done concurrently with the following steps, and
+        // only the actual framework operations are serialized
+        // Bundles are prepared in the order they will be used
+        //
+        BundlePreparation preparation = new BundlePreparation(providers);
+        for (Deployer.RegionDeployment regionDeployment : deployment.regions.values()) {
+            preparation.prepare(regionDeployment.toUpdate.values());
+        }
+        for (Deployer.RegionDeployment regionDeployment : deployment.regions.values()) {
+            preparation.prepare(regionDeployment.toInstall);
+        }
+
         //
         // Stop bundles by chunks
         //
+        StartupTrace.Span span = StartupTrace.begin("deployer", "Stop, uninstall, update and install bundles");
         for (Deployer.RegionDeployment regionDeployment : deployment.regions.values()) {
             toStop.addAll(regionDeployment.toUpdate.keySet());
             toStop.addAll(regionDeployment.toDelete);
@@ -614,11 +632,14 @@ public class Deployer {
                     Resource resource = entry.getValue();
                     String uri = getUri(resource);
                     print("  " + uri, verbose);
+                    PreparedBundle prepared = preparation.get(resource);
+                    long t0 = System.nanoTime();
                     try (
-                            InputStream is = getBundleInputStream(resource, providers)
+                            InputStream is = prepared.open()
                     ) {
                         callback.updateBundle(bundle, is);
                     }
+                    preparation.installed(t0);
                     toStart.add(bundle);
                 }
             }
@@ -648,14 +669,16 @@ public class Deployer {
                 for (Resource resource : regionDeployment.toInstall) {
                     String uri = getUri(resource);
                     print("  " + uri, verbose);
+                    PreparedBundle prepared = preparation.get(resource);
+                    long t0 = System.nanoTime();
                     Bundle bundle;
-                    long crc;
                     try (
-                            ChecksumUtils.CRCInputStream is = new ChecksumUtils.CRCInputStream(getBundleInputStream(resource, providers))
+                            InputStream is = prepared.open()
                     ) {
                         bundle = callback.installBundle(name, uri, is);
-                        crc = is.getCRC();
                     }
+                    preparation.installed(t0);
+                    long crc = prepared.crc;
                     addToMapSet(managedBundles, name, bundle.getBundleId());
                     deployment.resToBnd.put(resource, bundle);
                     // save a checksum of installed snapshot bundle
@@ -684,6 +707,10 @@ public class Deployer {
             }
         }
 
+        preparation.logSummary();
+
+        span.end();
+
         //
         // Update and save state
         //
@@ -699,10 +726,12 @@ public class Deployer {
         // Install configurations
         //
         if (!newFeatures.isEmpty()) {
+            span = StartupTrace.begin("deployer", "Install configurations");
             Set<Feature> set = apply(flatten(newFeatures), map(dstate.features));
             for (Feature feature : set) {
                 callback.installFeatureConfigs(feature);
             }
+            span.end();
         }
 
         // TODO: remove this hack, but it avoids loading the class after the bundle is refreshed
@@ -710,6 +739,7 @@ public class Deployer {
         RequirementSort.sort(Collections.<Resource>emptyList());
 
         if (!noRefresh) {
+            span = StartupTrace.begin("deployer", "Refresh bundles");
             toStop = new HashSet<>();
             toStop.addAll(toRefresh);
             removeFragmentsAndBundlesInState(toStop, UNINSTALLED | RESOLVED | STOPPING);
@@ -735,13 +765,16 @@ public class Deployer {
                     callback.refreshPackages(toRefresh);
                 }
             }
+            span.end();
         }
 
         // Resolve bundles
+        span = StartupTrace.begin("deployer", "Resolve bundles");
         toResolve.addAll(toStart);
         toResolve.addAll(toRefresh);
         removeFragmentsAndBundlesInState(toResolve, UNINSTALLED);
         callback.resolveBundles(toResolve);
+        span.end();
 
         // Compute bundles to start
         removeFragmentsAndBundlesInState(toStart, UNINSTALLED | ACTIVE | STARTING);
@@ -749,16 +782,34 @@ public class Deployer {
             // Compute correct start order
             List<Exception> exceptions = new ArrayList<>();
             print("Starting bundles:", verbose);
-            while (!toStart.isEmpty()) {
-                List<Bundle> bs = getBundlesToStart(toStart, dstate.serviceBundle);
-                for (Bundle bundle : bs) {
-                    print("  " + bundle.getSymbolicName() + " / " + bundle.getVersion(), verbose);
-                    try {
-                        callback.startBundle(bundle);
-                    } catch (BundleException e) {
-                        exceptions.add(e);
+            ExecutorService startExecutor = request.bundleStartThreads > 1
+                    ? Executors.newFixedThreadPool(request.bundleStartThreads) : null;
+            span = StartupTrace.begin("deployer", "Start bundles");
+            try {
+                while (!toStart.isEmpty()) {
+                    List<Bundle> bs = getBundlesToStart(toStart, dstate.serviceBundle);
+                    if (startExecutor != null) {
+                        // Start independent bundles concurrently, level by level
+                        for (List<Bundle> level : getDependencyLevels(bs)) {
+                            startBundles(level, startExecutor, exceptions, verbose);
+                        }
+                        toStart.removeAll(bs);
+                    } else {
+                        for (Bundle bundle : bs) {
+                            print("  " + bundle.getSymbolicName() + " / " + bundle.getVersion(), verbose);
+                            try {
+                                callback.startBundle(bundle);
+                            } catch (BundleException e) {
+                                exceptions.add(e);
+                            }
+                            toStart.remove(bundle);
+                        }
                     }
-                    toStart.remove(bundle);
+                }
+            } finally {
+                span.end();
+                if (startExecutor != null) {
+                    startExecutor.shutdown();
                 }
             }
             if (!exceptions.isEmpty()) {
@@ -980,18 +1031,14 @@ public class Deployer {
                                 deployment.toUpdate.put(bundle, resource);
                             } else if (UPDATE_SNAPSHOTS_CRC.equalsIgnoreCase(request.updateSnaphots)) {
                                 // if the checksum are different
-                                try (
-                                        InputStream is = getBundleInputStream(resource, resolver.getProviders())
-                                ) {
-                                    long newCrc = ChecksumUtils.checksum(is);
-                                    long oldCrc = dstate.state.bundleChecksums.containsKey(bundle.getBundleId())
-                                                    ? dstate.state.bundleChecksums.get(bundle.getBundleId()) : 0L;
-                                    if (newCrc != oldCrc) {
-                                        LOGGER.debug("New snapshot available for " + bundle.getLocation());
-                                        deployment.toUpdate.put(bundle, resource);
-                                    }
-                                    result.bundleChecksums.put(bundle.getBundleId(), newCrc);
+                                long newCrc = getBundleChecksum(resource, resolver.getProviders());
+                                long oldCrc = dstate.state.bundleChecksums.containsKey(bundle.getBundleId())
+                                                ? dstate.state.bundleChecksums.get(bundle.getBundleId()) : 0L;
+                                if (newCrc != oldCrc) {
+                                    LOGGER.debug("New snapshot available for " + bundle.getLocation());
+                                    deployment.toUpdate.put(bundle, resource);
                                 }
+                                result.bundleChecksums.put(bundle.getBundleId(), newCrc);
                             }
                         }
                         // We're done for this resource
@@ -1068,6 +1115,80 @@ public class Deployer {
         return uri.matches(UPDATEABLE_URIS);
     }
 
+    /**
+     * Start the given bundles concurrently and wait for all of them.
+     * {@link BundleException}s are collected, other exceptions are rethrown
+     * once all bundles have been processed.
+     */
+    private void startBundles(List<Bundle> bundles, ExecutorService executor, final List<Exception> exceptions, boolean verbose) throws Exception {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (final Bundle bundle : bundles) {
+            print("  " + bundle.getSymbolicName() + " / " + bundle.getVersion(), verbose);
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        callback.startBundle(bundle);
+                    } catch (BundleException e) {
+                        synchronized (exceptions) {
+                            exceptions.add(e);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        Exception failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Throwable t = e.getCause();
+                if (t instanceof Error) {
+                    throw (Error) t;
+                } else if (failure == null) {
+                    failure = t instanceof Exception ? (Exception) t : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Group the given bundles, which are expected to be sorted by
+     * dependencies, into levels so that bundles in a given level only
+     * depend on bundles from previous levels, according to the
+     * current framework wiring.  Bundles in a level can thus be
+     * started concurrently.
+     */
+    protected List<List<Bundle>> getDependencyLevels(List<Bundle> bundles) {
+        Map<Bundle, Integer> levels = new HashMap<>();
+        List<List<Bundle>> result = new ArrayList<>();
+        for (Bundle bundle : bundles) {
+            int level = 0;
+            BundleWiring wiring = bundle.adapt(BundleWiring.class);
+            if (wiring != null) {
+                for (BundleWire wire : wiring.getRequiredWires(null)) {
+                    Bundle provider = wire.getProvider().getBundle();
+                    // Bundles are sorted, so dependencies have already been
+                    // assigned a level, unless there is a cycle
+                    Integer providerLevel = provider != bundle ? levels.get(provider) : null;
+                    if (providerLevel != null) {
+                        level = Math.max(level, providerLevel + 1);
+                    }
+                }
+            }
+            levels.put(bundle, level);
+            while (result.size() <= level) {
+                result.add(new ArrayList<Bundle>());
+            }
+            result.get(level).add(bundle);
+        }
+        return result;
+    }
+
     protected List<Bundle> getBundlesToStart(Collection<Bundle> bundles, Bundle serviceBundle) {
         // Restart the features service last, regardless of any other consideration
         // so that we don't end up with the service trying to do stuff before we're done
@@ -1171,6 +1292,204 @@ public class Deployer {
         return nb;
     }
 
+    private SubsystemResolver resolve(DeploymentState dstate,
+                                      DeploymentRequest request,
+                                      Map<String, Set<BundleRevision>> unmanagedRevisions) throws Exception {
+        SubsystemResolver resolver = new SubsystemResolver(manager);
+        resolver.prepare(
+                dstate.features.values(),
+                request.requirements,
+                unmanagedRevisions
+        );
+        Set<String> prereqs = resolver.collectPrerequisites();
+        if (!prereqs.isEmpty()) {
+            for (Iterator<String> iterator = prereqs.iterator(); iterator.hasNext(); ) {
+                String prereq = iterator.next();
+                String[] parts = prereq.split("/");
+                VersionRange range;
+                if (parts[1].equals("0.0.0")) {
+                    range = VersionRange.ANY_VERSION;
+                } else if (!parts[1].startsWith("[") && !parts[1].startsWith("(")) {
+                    range = new VersionRange(Macro.transform(request.featureResolutionRange, parts[1]));
+                } else {
+                    range = new VersionRange(parts[1]);
+                }
+                boolean found = false;
+                for (Set<String> featureSet : dstate.state.installedFeatures.values()) {
+                    for (String feature : featureSet) {
+                        String[] p = feature.split("/");
+                        found = parts[0].equals(p[0]) && range.contains(VersionTable.getVersion(p[1]));
+                        if (found) break;
+                    }
+                    if (found) break;
+                }
+                if (found) {
+                    iterator.remove();
+                }
+            }
+        }
+        if (!prereqs.isEmpty()) {
+            DeploymentRequest newRequest = new DeploymentRequest();
+            newRequest.bundleUpdateRange = request.bundleUpdateRange;
+            newRequest.featureResolutionRange = request.featureResolutionRange;
+            newRequest.globalRepository = request.globalRepository;
+            newRequest.options = request.options;
+            newRequest.overrides = request.overrides;
+            newRequest.requirements = copy(dstate.state.requirements);
+            for (String prereq : prereqs) {
+                addToMapSet(newRequest.requirements, ROOT_REGION, prereq);
+            }
+            newRequest.stateChanges = Collections.emptyMap();
+            newRequest.updateSnaphots = request.updateSnaphots;
+            newRequest.bundleStartThreads = request.bundleStartThreads;
+            deploy(dstate, newRequest);
+            throw new PartialDeploymentException(prereqs);
+        }
+
+        resolver.resolve(
+                request.overrides,
+                request.featureResolutionRange,
+                request.globalRepository);
+        return resolver;
+    }
+
+    /**
+     * A bundle ready to be installed: its content has been fetched
+     * and its checksum computed.
+     */
+    static class PreparedBundle {
+        final StreamProvider provider;
+        final byte[] data;
+        final long crc;
+
+        PreparedBundle(StreamProvider provider, byte[] data, long crc) {
+            this.provider = provider;
+            this.data = data;
+            this.crc = crc;
+        }
+
+        InputStream open() throws IOException {
+            return data != null ? new ByteArrayInputStream(data) : provider.open();
+        }
+    }
+
+    /**
+     * Fetches bundles and computes their checksums on the executor, if any,
+     * while keeping track of the time spent in each stage.
+     * At most {@link #MAX_PREPARED_BUNDLES} bundles are prepared ahead
+     * of their use, and a prepared bundle is released once used.
+     */
+    class BundlePreparation {
+        private final Map<String, StreamProvider> providers;
+        private final Map<Resource, FutureTask<PreparedBundle>> tasks = new HashMap<>();
+        private final Deque<FutureTask<PreparedBundle>> pending = new ArrayDeque<>();
+        private final AtomicLong prepareTime = new AtomicLong();
+        private int inFlight;
+        private int count;
+        private final long start = System.nanoTime();
+        private long waitTime;
+        private long installTime;
+
+        BundlePreparation(Map<String, StreamProvider> providers) {
+            this.providers = providers;
+        }
+
+        void prepare(Collection<Resource> resources) {
+            for (final Resource resource : resources) {
+                if (tasks.containsKey(resource)) {
+                    continue;
+                }
+                FutureTask<PreparedBundle> task = new FutureTask<>(new Callable<PreparedBundle>() {
+                    @Override
+                    public PreparedBundle call() throws Exception {
+                        long t0 = System.nanoTime();
+                        try {
+                            return prepareBundle(resource, providers);
+                        } finally {
+                            prepareTime.addAndGet(System.nanoTime() - t0);
+                        }
+                    }
+                });
+                tasks.put(resource, task);
+                count++;
+                if (executor != null) {
+                    pending.add(task);
+                }
+            }
+            submit();
+        }
+
+        private void submit() {
+            while (inFlight < MAX_PREPARED_BUNDLES && !pending.isEmpty()) {
+                executor.execute(pending.poll());
+                inFlight++;
+            }
+        }
+
+        PreparedBundle get(Resource resource) throws Exception {
+            FutureTask<PreparedBundle> task = tasks.remove(resource);
+            if (task == null) {
+                prepare(Collections.singleton(resource));
+                task = tasks.remove(resource);
+            }
+            boolean submitted = executor != null && !pending.remove(task);
+            long t0 = System.nanoTime();
+            try {
+                // Run in the calling thread if not already started
+                task.run();
+                return task.get();
+            } catch (ExecutionException e) {
+                Throwable t = e.getCause();
+                if (t instanceof Exception) {
+                    throw (Exception) t;
+                } else if (t instanceof Error) {
+                    throw (Error) t;
+                }
+                throw e;
+            } finally {
+                waitTime += System.nanoTime() - t0;
+                if (submitted) {
+                    inFlight--;
+                    submit();
+                }
+            }
+        }
+
+        void installed(long t0) {
+            installTime += System.nanoTime() - t0;
+        }
+
+        void logSummary() {
+            if (count > 0 && LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Prepared and installed {} bundles in {} ms: preparation {} ms cumulated ({} ms waited), framework operations {} ms",
+                        count,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                        TimeUnit.NANOSECONDS.toMillis(prepareTime.get()),
+                        TimeUnit.NANOSECONDS.toMillis(waitTime),
+                        TimeUnit.NANOSECONDS.toMillis(installTime));
+            }
+        }
+    }
+
+    protected PreparedBundle prepareBundle(Resource resource, Map<String, StreamProvider> providers) throws IOException {
+        StreamProvider provider = providers.get(getUri(resource));
+        if (provider instanceof CachedStreamProvider) {
+            // The artifact is stored locally along with its checksum
+            return new PreparedBundle(provider, null, ((CachedStreamProvider) provider).getCrc());
+        }
+        try (
+                ChecksumUtils.CRCInputStream is = new ChecksumUtils.CRCInputStream(getBundleInputStream(resource, providers))
+        ) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int l;
+            while ((l = is.read(buffer)) > 0) {
+                baos.write(buffer, 0, l);
+            }
+            return new PreparedBundle(provider, baos.toByteArray(), is.getCRC());
+        }
+    }
+
     protected InputStream getBundleInputStream(Resource resource, Map<String, StreamProvider> providers) throws IOException {
         String uri = getUri(resource);
         if (uri == null) {
@@ -1183,4 +1502,18 @@ public class Deployer {
         return provider.open();
     }
 
+    protected long getBundleChecksum(Resource resource, Map<String, StreamProvider> providers) throws IOException {
+        String uri = getUri(resource);
+        StreamProvider provider = providers.get(uri);
+        if (provider instanceof CachedStreamProvider) {
+            // The checksum has been computed when the artifact was cached
+            return ((CachedStreamProvider) provider).getCrc();
+        }
+        try (
+                InputStream is = getBundleInputStream(resource, providers)
+        ) {
+            return ChecksumUtils.checksum(is);
+        }
+    }
+
 }
@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.features.internal.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.karaf.features.internal.model.Feature;
+import org.apache.karaf.features.internal.model.Features;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent cache of parsed features repository descriptors.
+ *
+ * Each descriptor is stored in a binary file named after its uri, holding the
+ * SHA-256 digest of the xml content it has been parsed from, the repository name
+ * and references, and the serialized features.  A cached descriptor is only used
+ * if the digest of the xml still matches, in which case the xml does not need
+ * to be parsed again.  Features are only deserialized when first accessed, and
+ * only the features model classes and the basic java types they use can be
+ * deserialized.
+ */
+public class DescriptorCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DescriptorCache.class);
+
+    private static final int MAGIC = 0x4b464443;
+    private static final int FORMAT_VERSION = 1;
+    private static final String MODEL_PACKAGE = Feature.class.getPackage().getName();
+    private static final String SUFFIX = ".bin";
+
+    private final File directory;
+
+    public DescriptorCache(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Compute the digest of a descriptor content.
+     */
+    public static byte[] digest(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Retrieve the cached descriptor for the given uri, or <code>null</code>
+     * if there is none matching the given digest.  If validation is required,
+     * only descriptors validated when first parsed are returned.
+     */
+    public Entry get(URI uri, byte[] digest, boolean validate) {
+        File file = getFile(uri);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (
+                DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))
+        ) {
+            if (dis.readInt() != MAGIC || dis.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            if (!uri.toString().equals(dis.readUTF())) {
+                return null;
+            }
+            byte[] stored = new byte[dis.readUnsignedShort()];
+            dis.readFully(stored);
+            if (!MessageDigest.isEqual(stored, digest)) {
+                return null;
+            }
+            boolean validated = dis.readBoolean();
+            if (validate && !validated) {
+                return null;
+            }
+            String name = dis.readBoolean() ? dis.readUTF() : null;
+            int nb = dis.readInt();
+            List<String> repositories = new ArrayList<>(nb);
+            for (int i = 0; i < nb; i++) {
+                repositories.add(dis.readUTF());
+            }
+            byte[] data = new byte[dis.readInt()];
+            dis.readFully(data);
+            return new Entry(name, repositories, data);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to read cached descriptor for " + uri, e);
+            return null;
+        }
+    }
+
+    /**
+     * Store the parsed descriptor for the given uri.
+     * Errors are logged and otherwise ignored.
+     */
+    public void put(URI uri, byte[] digest, boolean validated, Features features) {
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create directory " + directory);
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (
+                    ObjectOutputStream oos = new ObjectOutputStream(baos)
+            ) {
+                oos.writeObject(new ArrayList<>(features.getFeature()));
+            }
+            File file = getFile(uri);
+            File tmp = new File(directory, file.getName() + ".tmp");
+            try (
+                    DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))
+            ) {
+                dos.writeInt(MAGIC);
+                dos.writeInt(FORMAT_VERSION);
+                dos.writeUTF(uri.toString());
+                dos.writeShort(digest.length);
+                dos.write(digest);
+                dos.writeBoolean(validated);
+                dos.writeBoolean(features.getName() != null);
+                if (features.getName() != null) {
+                    dos.writeUTF(features.getName());
+                }
+                dos.writeInt(features.getRepository().size());
+                for (String repository : features.getRepository()) {
+                    dos.writeUTF(repository);
+                }
+                dos.writeInt(baos.size());
+                baos.writeTo(dos);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to cache descriptor for " + uri, e);
+        }
+    }
+
+    private File getFile(URI uri) {
+        byte[] bytes = digest(uri.toString().getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0x0F, 16));
+            sb.append(Character.forDigit(b & 0x0F, 16));
+        }
+        return new File(directory, sb.append(SUFFIX).toString());
+    }
+
+    /**
+     * A cached descriptor.
+     */
+    public static class Entry {
+        private final String name;
+        private final List<String> repositories;
+        private byte[] data;
+        private List<Feature> features;
+
+        Entry(String name, List<String> repositories, byte[] data) {
+            this.name = name;
+            this.repositories = Collections.unmodifiableList(repositories);
+            this.data = data;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getRepositories() {
+            return repositories;
+        }
+
+        @SuppressWarnings("unchecked")
+        public synchronized List<Feature> getFeatures() throws IOException {
+            if (features == null) {
+                try (
+                        InputStream is = new ByteArrayInputStream(data);
+                        ObjectInputStream ois = new ModelInputStream(is)
+                ) {
+                    features = (List<Feature>) ois.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+                data = null;
+            }
+            return features;
+        }
+    }
+
+    /**
+     * Resolve classes against this bundle rather than relying on the caller class loader.
+     * Only the features model classes, java.lang and java.util classes and primitive
+     * arrays are accepted, so that a tampered cache file can not instantiate other classes.
+     */
+    static class ModelInputStream extends ObjectInputStream {
+        ModelInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        static boolean isAllowed(String name) {
+            if (name.startsWith("[")) {
+                // Primitive arrays, such as [B
+                return name.length() == 2;
+            }
+            int idx = name.lastIndexOf('.');
+            String pkg = idx > 0 ? name.substring(0, idx) : "";
+            return pkg.equals(MODEL_PACKAGE) || pkg.equals("java.lang") || pkg.equals("java.util");
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "Class not allowed in a cached descriptor");
+            }
+            try {
+                return Class.forName(desc.getName(), false, DescriptorCache.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+            throw new InvalidClassException("Proxy classes are not allowed in a cached descriptor");
+        }
+    }
+
+}
@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.features.internal.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.felix.utils.version.VersionRange;
+import org.apache.felix.utils.version.VersionTable;
+import org.apache.karaf.features.BundleInfo;
+import org.apache.karaf.features.Capability;
+import org.apache.karaf.features.Feature;
+import org.osgi.framework.Version;
+
+/**
+ * An index of the features provided by a set of repositories.
+ *
+ * The index is maintained incrementally when repositories are added or
+ * removed and allows looking up features by name and version range,
+ * by bundle location or by capability namespace.
+ * All methods are thread safe.
+ */
+public class FeatureRegistry {
+
+    /**
+     * Features provided by each repository, keyed by repository uri.
+     * Insertion ordered, so that later repositories win on duplicates.
+     */
+    private final Map<String, Feature[]> repositories = new LinkedHashMap<>();
+
+    /**
+     * Features sorted by version, for each name.  Different version strings
+     * may denote the same version (1.0 and 1.0.0), in which case the last
+     * indexed feature wins.
+     */
+    private final Map<String, NavigableMap<Version, List<Feature>>> byName = new HashMap<>();
+    private final Map<String, Map<String, Feature>> byNameAndVersion = new HashMap<>();
+    private final Map<String, Set<Feature>> byBundle = new HashMap<>();
+    private final Map<String, Set<Feature>> byCapability = new HashMap<>();
+
+    /**
+     * Immutable snapshot of byNameAndVersion, computed lazily.
+     */
+    private Map<String, Map<String, Feature>> snapshot;
+
+    public synchronized boolean hasRepository(String uri) {
+        return repositories.containsKey(uri);
+    }
+
+    public synchronized Set<String> getRepositories() {
+        return new HashSet<>(repositories.keySet());
+    }
+
+    public synchronized void addRepository(String uri, Feature[] features) {
+        if (repositories.containsKey(uri)) {
+            removeRepository(uri);
+        }
+        repositories.put(uri, features);
+        for (Feature feature : features) {
+            index(feature);
+        }
+        snapshot = null;
+    }
+
+    public synchronized void removeRepository(String uri) {
+        Feature[] features = repositories.remove(uri);
+        if (features == null) {
+            return;
+        }
+        Set<String> names = new HashSet<>();
+        for (Feature feature : features) {
+            unindex(feature);
+            names.add(feature.getName());
+        }
+        // Restore features with the same name and version
+        // provided by other repositories
+        for (Feature[] fs : repositories.values()) {
+            for (Feature feature : fs) {
+                if (names.contains(feature.getName())) {
+                    Map<String, Feature> versions = byNameAndVersion.get(feature.getName());
+                    if (versions == null || !versions.containsKey(feature.getVersion())) {
+                        index(feature);
+                    }
+                }
+            }
+        }
+        snapshot = null;
+    }
+
+    public synchronized void clear() {
+        repositories.clear();
+        byName.clear();
+        byNameAndVersion.clear();
+        byBundle.clear();
+        byCapability.clear();
+        snapshot = null;
+    }
+
+    /**
+     * All features, keyed by name then version.
+     * The returned map is an immutable snapshot.
+     */
+    public synchronized Map<String, Map<String, Feature>> getFeatures() {
+        if (snapshot == null) {
+            Map<String, Map<String, Feature>> map = new HashMap<>();
+            for (Map.Entry<String, Map<String, Feature>> entry : byNameAndVersion.entrySet()) {
+                map.put(entry.getKey(), Collections.unmodifiableMap(new HashMap<>(entry.getValue())));
+            }
+            snapshot = Collections.unmodifiableMap(map);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Look for a feature by name and version.
+     * If the version is empty, the highest version is returned.  Otherwise,
+     * the feature with the exact given version is returned, or the highest
+     * feature with an equivalent version.
+     */
+    public synchronized Feature getFeature(String name, String version) {
+        if (version != null) {
+            version = version.trim();
+            if (version.equals(org.apache.karaf.features.internal.model.Feature.DEFAULT_VERSION)) {
+                version = "";
+            }
+        } else {
+            version = "";
+        }
+        NavigableMap<Version, List<Feature>> versions = byName.get(name);
+        if (versions == null || versions.isEmpty()) {
+            return null;
+        }
+        if (version.isEmpty()) {
+            return last(versions.lastEntry().getValue());
+        }
+        Feature feature = byNameAndVersion.get(name).get(version);
+        if (feature == null) {
+            feature = getFeature(name, new VersionRange(version, true, true));
+        }
+        return feature;
+    }
+
+    /**
+     * Retrieve the highest version of the named feature within the given range.
+     */
+    public synchronized Feature getFeature(String name, VersionRange range) {
+        NavigableMap<Version, List<Feature>> versions = byName.get(name);
+        if (versions == null || versions.isEmpty()) {
+            return null;
+        }
+        NavigableMap<Version, List<Feature>> candidates;
+        if (range.getCeiling() != null) {
+            if (range.getFloor().compareTo(range.getCeiling()) > 0) {
+                return null;
+            }
+            candidates = versions.subMap(range.getFloor(), true, range.getCeiling(), true);
+        } else {
+            candidates = versions.tailMap(range.getFloor(), true);
+        }
+        for (Map.Entry<Version, List<Feature>> entry : candidates.descendingMap().entrySet()) {
+            if (range.contains(entry.getKey())) {
+                return last(entry.getValue());
+            }
+        }
+        return null;
+    }
+
+    public synchronized Set<Feature> getFeaturesForBundle(String location) {
+        Set<Feature> features = byBundle.get(location);
+        return features != null ? new HashSet<>(features) : Collections.<Feature>emptySet();
+    }
+
+    public synchronized Set<Feature> getFeaturesWithCapability(String namespace) {
+        Set<Feature> features = byCapability.get(namespace);
+        return features != null ? new HashSet<>(features) : Collections.<Feature>emptySet();
+    }
+
+    private void index(Feature feature) {
+        Map<String, Feature> versions = byNameAndVersion.get(feature.getName());
+        if (versions == null) {
+            versions = new HashMap<>();
+            byNameAndVersion.put(feature.getName(), versions);
+        }
+        Feature previous = versions.put(feature.getVersion(), feature);
+        NavigableMap<Version, List<Feature>> sorted = byName.get(feature.getName());
+        if (sorted == null) {
+            sorted = new TreeMap<>();
+            byName.put(feature.getName(), sorted);
+        }
+        Version version = VersionTable.getVersion(feature.getVersion());
+        List<Feature> features = sorted.get(version);
+        if (features == null) {
+            features = new ArrayList<>(1);
+            sorted.put(version, features);
+        }
+        if (previous != null) {
+            removeSame(features, previous);
+            unindexLocations(previous);
+        }
+        features.add(feature);
+        for (BundleInfo bundle : feature.getBundles()) {
+            addToIndex(byBundle, bundle.getLocation(), feature);
+        }
+        for (Capability capability : feature.getCapabilities()) {
+            addToIndex(byCapability, getNamespace(capability), feature);
+        }
+    }
+
+    private void unindex(Feature feature) {
+        Map<String, Feature> versions = byNameAndVersion.get(feature.getName());
+        if (versions == null || versions.get(feature.getVersion()) != feature) {
+            // Shadowed by another repository
+            return;
+        }
+        versions.remove(feature.getVersion());
+        if (versions.isEmpty()) {
+            byNameAndVersion.remove(feature.getName());
+        }
+        NavigableMap<Version, List<Feature>> sorted = byName.get(feature.getName());
+        Version version = VersionTable.getVersion(feature.getVersion());
+        List<Feature> features = sorted.get(version);
+        removeSame(features, feature);
+        if (features.isEmpty()) {
+            sorted.remove(version);
+        }
+        if (sorted.isEmpty()) {
+            byName.remove(feature.getName());
+        }
+        unindexLocations(feature);
+    }
+
+    private void unindexLocations(Feature feature) {
+        for (BundleInfo bundle : feature.getBundles()) {
+            removeFromIndex(byBundle, bundle.getLocation(), feature);
+        }
+        for (Capability capability : feature.getCapabilities()) {
+            removeFromIndex(byCapability, getNamespace(capability), feature);
+        }
+    }
+
+    private static Feature last(List<Feature> features) {
+        return features.get(features.size() - 1);
+    }
+
+    private static void removeSame(List<Feature> features, Feature feature) {
+        for (Iterator<Feature> iterator = features.iterator(); iterator.hasNext();) {
+            if (iterator.next() == feature) {
+                iterator.remove();
+                return;
+            }
+        }
+    }
+
+    private static String getNamespace(Capability capability) {
+        String value = capability.getValue().trim();
+        int idx = value.indexOf(';');
+        return idx >= 0 ? value.substring(0, idx).trim() : value;
+    }
+
+    private static void addToIndex(Map<String, Set<Feature>> index, String key, Feature feature) {
+        Set<Feature> features = index.get(key);
+        if (features == null) {
+            features = new HashSet<>();
+            index.put(key, features);
+        }
+        features.add(feature);
+    }
+
+    private static void removeFromIndex(Map<String, Set<Feature>> index, String key, Feature feature) {
+        Set<Feature> features = index.get(key);
+        if (features != null) {
+            features.remove(feature);
+            if (features.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+}
@@ -37,18 +37,24 @@ import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.felix.utils.version.VersionCleaner;
 import org.apache.felix.utils.version.VersionRange;
-import org.apache.felix.utils.version.VersionTable;
 import org.apache.karaf.features.Feature;
 import org.apache.karaf.features.FeatureEvent;
 import org.apache.karaf.features.FeaturesListener;
 import org.apache.karaf.features.FeaturesService;
 import org.apache.karaf.features.Repository;
 import org.apache.karaf.features.RepositoryEvent;
+import org.apache.karaf.features.internal.download.DownloadManager;
+import org.apache.karaf.features.internal.download.impl.ArtifactCache;
+import org.apache.karaf.features.internal.download.impl.DownloadManagerImpl;
 import org.apache.karaf.features.internal.download.simple.SimpleDownloader;
 import org.apache.karaf.features.internal.util.JsonReader;
 import org.apache.karaf.features.internal.util.JsonWriter;
@@ -62,7 +68,6 @@ import org.osgi.framework.BundleException;
 import org.osgi.framework.FrameworkEvent;
 import org.osgi.framework.FrameworkListener;
 import org.osgi.framework.InvalidSyntaxException;
-import org.osgi.framework.Version;
 import org.osgi.framework.startlevel.BundleStartLevel;
 import org.osgi.framework.startlevel.FrameworkStartLevel;
 import org.osgi.framework.wiring.FrameworkWiring;
@@ -129,13 +134,56 @@ public class FeaturesServiceImpl implements FeaturesService, Deployer.DeployCall
      */
     private final org.osgi.service.repository.Repository globalRepository;
 
+    /**
+     * Number of threads used to download artifacts concurrently.
+     * A value of zero or less disables concurrent downloads.
+     */
+    private final int downloadThreads;
+
+    /**
+     * Optional local cache for downloaded artifacts
+     */
+    private final ArtifactCache artifactCache;
+
+    /**
+     * Number of threads used to start bundles with no dependencies
+     * between each others concurrently.
+     * A value of one or less starts bundles sequentially.
+     */
+    private final int bundleStartThreads;
+
+    /**
+     * Optional cache of parsed repository descriptors
+     */
+    private final DescriptorCache descriptorCache;
+
+    /**
+     * Maximum time in milliseconds to load a single repository, or 0 for no timeout
+     */
+    private final long repositoryLoadTimeout;
+
     private final List<FeaturesListener> listeners = new CopyOnWriteArrayIdentityList<>();
 
     // Synchronized on lock
     private final Object lock = new Object();
     private final State state = new State();
     private final Map<String, Repository> repositoryCache = new HashMap<>();
-    private Map<String, Map<String, Feature>> featureCache;
+    /**
+     * Index of the features from all loaded repositories,
+     * updated whenever a repository is added or removed
+     */
+    private final FeatureRegistry featureRegistry = new FeatureRegistry();
+    private boolean repositoriesLoaded;
+    /**
+     * Executor used to load repositories, created when first needed
+     * and shared by all loads; its threads die when idle
+     */
+    private ThreadPoolExecutor repositoryExecutor;
+
+    /**
+     * Last resolution, reused when a deployment does not change the resolution inputs
+     */
+    private final RepeatResolutionCache repeatResolutionCache = new RepeatResolutionCache();
 
 
     public FeaturesServiceImpl(Bundle bundle,
@@ -149,7 +197,12 @@ public class FeaturesServiceImpl implements FeaturesService, Deployer.DeployCall
                                String featureResolutionRange,
                                String bundleUpdateRange,
                                String updateSnaphots,
-                               org.osgi.service.repository.Repository globalRepository) {
+                               org.osgi.service.repository.Repository globalRepository,
+                               int downloadThreads,
+                               ArtifactCache artifactCache,
+                               int bundleStartThreads,
+                               DescriptorCache descriptorCache,
+                               long repositoryLoadTimeout) {
         this.bundle = bundle;
         this.systemBundleContext = systemBundleContext;
         this.storage = storage;
@@ -162,6 +215,11 @@ public class FeaturesServiceImpl implements FeaturesService, Deployer.DeployCall
         this.bundleUpdateRange = bundleUpdateRange;
         this.updateSnaphots = updateSnaphots;
         this.globalRepository = globalRepository;
+        this.downloadThreads = downloadThreads;
+        this.artifactCache = artifactCache;
+        this.bundleStartThreads = bundleStartThreads;
+        this.descriptorCache = descriptorCache;
+        this.repositoryLoadTimeout = repositoryLoadTimeout;
         loadState();
         checkResolve();
 
@@ -273,7 +331,7 @@ public class FeaturesServiceImpl implements FeaturesService, Deployer.DeployCall
                 installedFeatures.putAll(copy(state.installedFeatures));
             }
             for (String uri : repositories) {
-                Repository repository = new RepositoryImpl(URI.create(uri));
+                Repository repository = new RepositoryImpl(URI.create(uri), descriptorCache);
                 listener.repositoryEvent(new RepositoryEvent(repository, RepositoryEvent.EventType.RepositoryAdded, true));
             }
             for (Map.Entry<String, Set<String>> entry : installedFeatures.entrySet()) {
@@ -329,7 +387,7 @@ public class FeaturesServiceImpl implements FeaturesService, Deployer.DeployCall
     //
 
     public Repository loadRepository(URI uri) throws Exception {
-        RepositoryImpl repo = new RepositoryImpl(uri);
+        RepositoryImpl repo = new RepositoryImpl(uri, descriptorCache);
         repo.load(true);
         return repo;
     }
@@ -352,9 +410,10 @@ public class FeaturesServiceImpl implements FeaturesService, Deployer.DeployCall
         }
         Repository repository = loadRepository(uri);
         synchronized (lock) {
-            // Clean cache
+            // Update cache
             repositoryCache.put(uri.toString(), repository);
-            featureCache = null;
+            featureRegistry.addRepository(uri.toString(), repository.getFeatures());
+            repositoriesLoaded = false;
             // Add repo
             if (!state.repositories.add(uri.toString())) {
                 return;
@@ -379,12 +438,14 @@ public class FeaturesServiceImpl implements FeaturesService, Deployer.DeployCall
                 return;
             }
             // Clean cache
-            featureCache = null;
+            repositoriesLoaded = false;
             repo = repositoryCache.get(uri.toString());
             List<String> toRemove = new ArrayList<>();
             toRemove.add(uri.toString());
             while (!toRemove.isEmpty()) {
-                Repository rep = repositoryCache.remove(toRemove.remove(0));
+                String r = toRemove.remove(0);
+                Repository rep = repositoryCache.remove(r);
+                featureRegistry.removeRepository(r);
                 if (rep != null) {
                     for (URI u : rep.getRepositories()) {
                         toRemove.add(u.toString());
@@ -394,7 +455,7 @@ public class FeaturesServiceImpl implements FeaturesService, Deployer.DeployCall
             saveState();
         }
         if (repo == null) {
-            repo = new RepositoryImpl(uri);
+            repo = new RepositoryImpl(uri, descriptorCache);
         }
         callListeners(new RepositoryEvent(repo, RepositoryEvent.EventType.RepositoryRemoved, false));
     }
@@ -456,39 +517,7 @@ public class FeaturesServiceImpl implements FeaturesService, Deployer.DeployCall
     }
 
     public Feature getFeature(String name, String version) throws Exception {
-        Map<String, Feature> versions = getFeatures().get(name);
-        return getFeatureMatching(versions, version);
-    }
-
-    protected Feature getFeatureMatching(Map<String, Feature> versions, String version) {
-        if (version != null) {
-            version = version.trim();
-            if (version.equals(org.apache.karaf.features.internal.model.Feature.DEFAULT_VERSION)) {
-                version = "";
-            }
-        } else {
-            version = "";
-        }
-        if (versions == null || versions.isEmpty()) {
-            return null;
-        } else {
-            Feature feature = version.isEmpty() ? null : versions.get(version);
-            if (feature == null) {
-                // Compute version range. If an version has been given, assume exact range
-                VersionRange versionRange = version.isEmpty()
-                        ? new VersionRange(Version.emptyVersion)
-                        : new VersionRange(version, true, true);
-                Version latest = Version.emptyVersion;
-                for (String available : versions.keySet()) {
-                    Version availableVersion = VersionTable.getVersion(available);
-                    if (availableVersion.compareTo(latest) >= 0 && versionRange.contains(availableVersion)) {
-                        feature = versions.get(available);
-                        latest = availableVersion;
-                    }
-                }
-            }
-            return feature;
-        }
+        return getFeatureRegistry().getFeature(name, version);
     }
 
     public Feature[] listFeatures() throws Exception {
@@ -502,59 +531,81 @@ public class FeaturesServiceImpl implements FeaturesService, Deployer.DeployCall
     }
 
     protected Map<String, Map<String, Feature>> getFeatures() throws Exception {
+        return getFeatureRegistry().getFeatures();
+    }
+
+    /**
+     * Make sure all repositories and their referenced repositories
+     * are loaded and indexed, and return the features registry.
+     */
+    protected FeatureRegistry getFeatureRegistry() throws Exception {
         List<String> uris;
         synchronized (lock) {
-            if (featureCache != null) {
-                return featureCache;
+            if (repositoriesLoaded) {
+                return featureRegistry;
             }
             uris = new ArrayList<>(state.repositories);
         }
-        //the outer map's key is feature name, the inner map's key is feature version
-        Map<String, Map<String, Feature>> map = new HashMap<>();
-        // Two phase load:
-        // * first load dependent repositories
-        List<String> toLoad = new ArrayList<>(uris);
-        while (!toLoad.isEmpty()) {
-            String uri = toLoad.remove(0);
-            Repository repo;
-            synchronized (lock) {
-                repo = repositoryCache.get(uri);
-            }
-            if (repo == null) {
-                RepositoryImpl rep = new RepositoryImpl(URI.create(uri));
-                rep.load();
-                repo = rep;
+        RepositoryLoader loader = new RepositoryLoader(getRepositoryExecutor(), repositoryLoadTimeout) {
+            @Override
+            protected Repository loadRepository(String uri) throws Exception {
+                Repository repo;
                 synchronized (lock) {
-                    repositoryCache.put(uri, repo);
+                    repo = repositoryCache.get(uri);
                 }
+                if (repo == null) {
+                    RepositoryImpl rep = new RepositoryImpl(URI.create(uri), descriptorCache, repositoryLoadTimeout);
+                    rep.load();
+                    repo = rep;
+                }
+                // Make sure features are available before indexing them
+                repo.getFeatures();
+                return repo;
             }
-            for (URI u : repo.getRepositories()) {
-                toLoad.add(u.toString());
-            }
-        }
-        List<Repository> repos;
-        synchronized (lock) {
-            repos = new ArrayList<>(repositoryCache.values());
-        }
-        // * then load all features
-        for (Repository repo : repos) {
-            for (Feature f : repo.getFeatures()) {
-                if (map.get(f.getName()) == null) {
-                    Map<String, Feature> versionMap = new HashMap<>();
-                    versionMap.put(f.getVersion(), f);
-                    map.put(f.getName(), versionMap);
-                } else {
-                    map.get(f.getName()).put(f.getVersion(), f);
+
+            @Override
+            protected void repositoryLoaded(String uri, Repository repo) {
+                // Only repositories loaded in time are cached and indexed
+                synchronized (lock) {
+                    // Keep the repository cached by a concurrent call, if any
+                    Repository cached = repositoryCache.get(uri);
+                    if (cached != null) {
+                        repo = cached;
+                    } else {
+                        repositoryCache.put(uri, repo);
+                    }
+                    if (!featureRegistry.hasRepository(uri)) {
+                        try {
+                            featureRegistry.addRepository(uri, repo.getFeatures());
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
                 }
             }
-        }
+        };
+        loader.load(uris);
         synchronized (lock) {
             if (uris.size() == state.repositories.size()
                     && state.repositories.containsAll(uris)) {
-                featureCache = map;
+                repositoriesLoaded = true;
             }
         }
-        return map;
+        return featureRegistry;
+    }
+
+    private ExecutorService getRepositoryExecutor() {
+        if (downloadThreads <= 0) {
+            return null;
+        }
+        synchronized (lock) {
+            if (repositoryExecutor == null) {
+                repositoryExecutor = new ThreadPoolExecutor(downloadThreads, downloadThreads,
+                        60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+                repositoryExecutor.allowCoreThreadTimeOut(true);
+            }
+            return repositoryExecutor;
+        }
     }
 
     //
@@ -689,12 +740,12 @@ public class FeaturesServiceImpl implements FeaturesService, Deployer.DeployCall
             region = ROOT_REGION;
         }
         List<String> featuresToAdd = new ArrayList<>();
-        Map<String, Map<String, Feature>> featuresMap = getFeatures();
+        FeatureRegistry registry = getFeatureRegistry();
         for (String feature : features) {
             feature = normalize(feature);
             String name = feature.substring(0, feature.indexOf("/"));
             String version = feature.substring(feature.indexOf("/") + 1);
-            Feature f = getFeatureMatching(featuresMap.get(name), version);
+            Feature f = registry.getFeature(name, version);
             if (f == null) {
                 if (!options.contains(Option.NoFailOnFeatureNotFound)) {
                     throw new IllegalArgumentException("No matching features for " + feature);
@@ -928,6 +979,7 @@ public class FeaturesServiceImpl implements FeaturesService, Deployer.DeployCall
         request.bundleUpdateRange = bundleUpdateRange;
         request.featureResolutionRange = featureResolutionRange;
         request.globalRepository = globalRepository;
+        request.bundleStartThreads = bundleStartThreads;
         request.overrides = Overrides.loadOverrides(overrides);
         request.requirements = requirements;
         request.stateChanges = stateChanges;
@@ -944,20 +996,63 @@ public class FeaturesServiceImpl implements FeaturesService, Deployer.DeployCall
     ) throws Exception {
 
         Set<String> prereqs = new HashSet<>();
-        while (true) {
-            try {
-                Deployer.DeploymentState dstate = getDeploymentState(state);
-                Deployer.DeploymentRequest request = getDeploymentRequest(requirements, stateChanges, options);
-                new Deployer(new SimpleDownloader(), this).deploy(dstate, request);
-                break;
-            } catch (Deployer.PartialDeploymentException e) {
-                if (!prereqs.containsAll(e.getMissing())) {
-                    prereqs.addAll(e.getMissing());
-                    state = copyState();
-                } else {
-                    throw new Exception("Deployment aborted due to loop in missing prerequisites: " + e.getMissing());
+        ExecutorService executor = downloadThreads > 0 ? Executors.newFixedThreadPool(downloadThreads) : null;
+        try {
+            while (true) {
+                try {
+                    Deployer.DeploymentState dstate = getDeploymentState(state);
+                    Deployer.DeploymentRequest request = getDeploymentRequest(requirements, stateChanges, options);
+                    DownloadManager manager = createDownloadManager(executor);
+                    try {
+                        new Deployer(manager, this, repeatResolutionCache, executor).deploy(dstate, request);
+                    } finally {
+                        logDownloadTimes(manager);
+                    }
+                    break;
+                } catch (Deployer.PartialDeploymentException e) {
+                    if (!prereqs.containsAll(e.getMissing())) {
+                        prereqs.addAll(e.getMissing());
+                        state = copyState();
+                    } else {
+                        throw new Exception("Deployment aborted due to loop in missing prerequisites: " + e.getMissing());
+                    }
+                }
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            if (artifactCache != null) {
+                artifactCache.evict();
+            }
+        }
+    }
+
+    protected DownloadManager createDownloadManager(Executor executor) {
+        if (executor != null) {
+            return new DownloadManagerImpl(executor, artifactCache);
+        } else if (artifactCache != null) {
+            // Download sequentially in the calling thread
+            return new DownloadManagerImpl(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
                 }
+            }, artifactCache);
+        } else {
+            return new SimpleDownloader();
+        }
+    }
+
+    private void logDownloadTimes(DownloadManager manager) {
+        if (manager instanceof DownloadManagerImpl && LOGGER.isDebugEnabled()) {
+            Map<String, Long> times = ((DownloadManagerImpl) manager).getDownloadTimes();
+            long total = 0;
+            for (Map.Entry<String, Long> entry : new TreeMap<>(times).entrySet()) {
+                LOGGER.debug("  {}: {} ms", entry.getKey(), entry.getValue());
+                total += entry.getValue();
             }
+            LOGGER.debug("Downloaded {} artifacts ({} ms cumulated)", times.size(), total);
         }
     }
 
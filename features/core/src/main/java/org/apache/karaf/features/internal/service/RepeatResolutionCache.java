@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.features.internal.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.karaf.features.Feature;
+import org.apache.karaf.features.internal.region.SubsystemResolver;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.resource.Resource;
+
+import static org.apache.karaf.features.FeaturesService.UPDATEABLE_URIS;
+import static org.apache.karaf.features.FeaturesService.UPDATE_SNAPSHOTS_NONE;
+import static org.apache.karaf.features.internal.resolver.ResourceUtils.getUri;
+import static org.apache.karaf.features.internal.util.MapUtils.copy;
+import static org.apache.karaf.features.internal.util.MapUtils.copyMapSet;
+
+/**
+ * Keeps the last {@link SubsystemResolver} computed by the {@link Deployer}
+ * so that a repeated resolution with exactly the same inputs is skipped,
+ * which is the case when only the features state changes, when a feature
+ * is installed again or when a deployment is restarted after installing
+ * prerequisites.
+ *
+ * This is not an incremental resolver: no part of the previous wiring is
+ * reused when the inputs differ, and any change in the requirements,
+ * available features, unmanaged bundles, overrides or resolution parameters
+ * leads to a full resolution.  Features are compared by identity, so that
+ * reloading a repository always invalidates the cached resolution.
+ */
+public class RepeatResolutionCache {
+
+    private static final Pattern UPDATEABLE = Pattern.compile(UPDATEABLE_URIS);
+
+    private Key key;
+    private SubsystemResolver resolver;
+
+    public synchronized SubsystemResolver get(Key key) {
+        if (this.key != null && this.key.equals(key)) {
+            return resolver;
+        }
+        return null;
+    }
+
+    /**
+     * Store the given resolution, unless it contains updateable bundles
+     * which need to be downloaded again to check for changes.
+     */
+    public synchronized void put(Key key, SubsystemResolver resolver, String updateSnapshots) {
+        if (!UPDATE_SNAPSHOTS_NONE.equalsIgnoreCase(updateSnapshots)) {
+            for (Resource resource : resolver.getBundles().keySet()) {
+                String uri = getUri(resource);
+                if (uri != null && UPDATEABLE.matcher(uri).matches()) {
+                    clear();
+                    return;
+                }
+            }
+        }
+        this.key = key;
+        this.resolver = resolver;
+    }
+
+    public synchronized void clear() {
+        this.key = null;
+        this.resolver = null;
+    }
+
+    public static class Key {
+        private final Set<Feature> features;
+        private final Map<String, Set<String>> requirements;
+        private final Map<String, Set<BundleRevision>> system;
+        private final Set<String> overrides;
+        private final String featureResolutionRange;
+        private final Object globalRepository;
+
+        public Key(Collection<Feature> features,
+                   Map<String, Set<String>> requirements,
+                   Map<String, Set<BundleRevision>> system,
+                   Set<String> overrides,
+                   String featureResolutionRange,
+                   Object globalRepository) {
+            this.features = Collections.newSetFromMap(new IdentityHashMap<Feature, Boolean>());
+            this.features.addAll(features);
+            this.requirements = copy(requirements);
+            this.system = copyMapSet(system);
+            this.overrides = overrides;
+            this.featureResolutionRange = featureResolutionRange;
+            this.globalRepository = globalRepository;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return features.equals(key.features)
+                    && requirements.equals(key.requirements)
+                    && system.equals(key.system)
+                    && (overrides != null ? overrides.equals(key.overrides) : key.overrides == null)
+                    && (featureResolutionRange != null ? featureResolutionRange.equals(key.featureResolutionRange) : key.featureResolutionRange == null)
+                    && globalRepository == key.globalRepository;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = features.hashCode();
+            result = 31 * result + requirements.hashCode();
+            result = 31 * result + system.hashCode();
+            return result;
+        }
+    }
+
+}
@@ -16,26 +16,51 @@
  */
 package org.apache.karaf.features.internal.service;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.net.URI;
+import java.net.URLConnection;
+import java.util.List;
 
 import org.apache.karaf.features.Repository;
+import org.apache.karaf.features.internal.model.Feature;
 import org.apache.karaf.features.internal.model.Features;
 import org.apache.karaf.features.internal.model.JaxbUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The repository implementation.
  */
 public class RepositoryImpl implements Repository {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryImpl.class);
+
     private final URI uri;
+    private final DescriptorCache cache;
+    private final long timeout;
     private Features features;
+    private DescriptorCache.Entry cached;
 
     public RepositoryImpl(URI uri) {
+        this(uri, null);
+    }
+
+    public RepositoryImpl(URI uri, DescriptorCache cache) {
+        this(uri, cache, 0);
+    }
+
+    /**
+     * @param timeout the connect and read timeout in milliseconds, or 0 for no timeout
+     */
+    public RepositoryImpl(URI uri, DescriptorCache cache, long timeout) {
         this.uri = uri;
+        this.cache = cache;
+        this.timeout = timeout;
     }
 
     public URI getURI() {
@@ -44,14 +69,15 @@ public class RepositoryImpl implements Repository {
 
     public String getName() throws IOException {
         load();
-        return features.getName();
+        return cached != null ? cached.getName() : features.getName();
     }
 
     public URI[] getRepositories() throws IOException {
         load();
-        URI[] result = new URI[features.getRepository().size()];
-        for (int i = 0; i < features.getRepository().size(); i++) {
-            String uri = features.getRepository().get(i);
+        List<String> repositories = cached != null ? cached.getRepositories() : features.getRepository();
+        URI[] result = new URI[repositories.size()];
+        for (int i = 0; i < repositories.size(); i++) {
+            String uri = repositories.get(i);
             uri = uri.trim();
             result[i] = URI.create(uri);
         }
@@ -60,7 +86,22 @@ public class RepositoryImpl implements Repository {
 
     public org.apache.karaf.features.Feature[] getFeatures() throws IOException {
         load();
-        return features.getFeature().toArray(new org.apache.karaf.features.Feature[features.getFeature().size()]);
+        List<Feature> list;
+        if (cached != null) {
+            try {
+                list = cached.getFeatures();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to load cached features for " + uri + ", parsing the repository", e);
+                synchronized (this) {
+                    cached = null;
+                    load(false, false);
+                }
+                list = features.getFeature();
+            }
+        } else {
+            list = features.getFeature();
+        }
+        return list.toArray(new org.apache.karaf.features.Feature[list.size()]);
     }
 
 
@@ -69,17 +110,51 @@ public class RepositoryImpl implements Repository {
     }
 
     public void load(boolean validate) throws IOException {
-        if (features == null) {
+        load(validate, true);
+    }
+
+    private synchronized void load(boolean validate, boolean useCache) throws IOException {
+        if (features == null && cached == null) {
             try (
-                    InputStream inputStream = new InterruptibleInputStream(uri.toURL().openStream())
+                    InputStream inputStream = new InterruptibleInputStream(openStream())
             ) {
-                features = JaxbUtil.unmarshal(uri.toASCIIString(), inputStream, validate);
+                if (cache != null && useCache) {
+                    byte[] data = readFully(inputStream);
+                    byte[] digest = DescriptorCache.digest(data);
+                    cached = cache.get(uri, digest, validate);
+                    if (cached == null) {
+                        features = JaxbUtil.unmarshal(uri.toASCIIString(), new ByteArrayInputStream(data), validate);
+                        cache.put(uri, digest, validate, features);
+                    }
+                } else {
+                    features = JaxbUtil.unmarshal(uri.toASCIIString(), inputStream, validate);
+                }
             } catch (Exception e) {
                 throw (IOException) new IOException(e.getMessage() + " : " + uri).initCause(e);
             }
         }
     }
 
+    private InputStream openStream() throws IOException {
+        URLConnection connection = uri.toURL().openConnection();
+        if (timeout > 0) {
+            int t = (int) Math.min(timeout, Integer.MAX_VALUE);
+            connection.setConnectTimeout(t);
+            connection.setReadTimeout(t);
+        }
+        return connection.getInputStream();
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int l;
+        while ((l = is.read(buffer)) > 0) {
+            baos.write(buffer, 0, l);
+        }
+        return baos.toByteArray();
+    }
+
     static class InterruptibleInputStream extends FilterInputStream {
         InterruptibleInputStream(InputStream in) {
             super(in);
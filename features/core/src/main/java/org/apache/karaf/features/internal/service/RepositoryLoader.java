@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.features.internal.service;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.karaf.features.Repository;
+import org.apache.karaf.features.internal.util.MultiException;
+
+/**
+ * Load a graph of features repositories, following the references
+ * between repositories.
+ *
+ * When an executor is given, repositories are loaded concurrently as soon
+ * as they are discovered, else they are loaded sequentially.  Each uri is
+ * loaded at most once, which also breaks cycles between repositories.
+ * Repositories taking longer than the given timeout to load are cancelled,
+ * in which case their result is discarded even if it arrives later; without
+ * an executor, repositories are then loaded one at a time by a shared pool
+ * of daemon threads so that the calling thread can give up on them.
+ * Loads which are given up on keep their thread until they complete, so
+ * {@link #loadRepository(String)} should also honor the timeout, e.g. with
+ * connect and read timeouts.  All errors are collected and reported at the end.
+ */
+public abstract class RepositoryLoader {
+
+    // Loads are sequential, so a single thread is reused unless a load has been
+    // given up on; idle threads are released so that nothing is kept when the
+    // bundle is stopped
+    private static final ExecutorService TIMEOUT_EXECUTOR = new ThreadPoolExecutor(
+            0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "RepositoryLoader-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final ExecutorService executor;
+    private final long timeout;
+
+    private final Object lock = new Object();
+    private final Set<String> seen = new HashSet<>();
+    private final LinkedList<String> queue = new LinkedList<>();
+    private final Map<String, Long> started = new HashMap<>();
+    private final Map<String, Future<?>> futures = new HashMap<>();
+    private final Set<String> running = new HashSet<>();
+    private final Map<String, Repository> repositories = new HashMap<>();
+    private final List<Exception> exceptions = new ArrayList<>();
+    private int pending;
+
+    /**
+     * @param executor the executor to use, or <code>null</code> to load repositories sequentially
+     * @param timeout the maximum time in milliseconds to load a single repository, or 0 for no timeout
+     */
+    public RepositoryLoader(ExecutorService executor, long timeout) {
+        this.executor = executor;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Load the given repositories and all repositories they reference.
+     *
+     * @return the loaded repositories keyed by uri
+     */
+    public Map<String, Repository> load(Collection<String> uris) throws Exception {
+        for (String uri : uris) {
+            submit(uri);
+        }
+        while (true) {
+            String next;
+            synchronized (lock) {
+                while (pending > 0 && queue.isEmpty()) {
+                    long wait = checkTimeouts();
+                    if (pending > 0) {
+                        lock.wait(wait);
+                    }
+                }
+                if (pending == 0) {
+                    break;
+                }
+                next = queue.removeFirst();
+            }
+            if (timeout > 0) {
+                runWithTimeout(next);
+            } else {
+                run(next);
+            }
+        }
+        synchronized (lock) {
+            MultiException.throwIf("Error loading features repositories", new ArrayList<>(exceptions));
+            return new HashMap<>(repositories);
+        }
+    }
+
+    /**
+     * Load a single repository.
+     */
+    protected abstract Repository loadRepository(String uri) throws Exception;
+
+    /**
+     * Called when a repository has been loaded in time, before its references
+     * are followed.  Results of repositories which have been cancelled are never
+     * reported.  This method is called while holding an internal lock.
+     */
+    protected void repositoryLoaded(String uri, Repository repository) {
+    }
+
+    private void submit(final String uri) {
+        synchronized (lock) {
+            if (!seen.add(uri)) {
+                return;
+            }
+            pending++;
+            running.add(uri);
+            if (executor == null) {
+                queue.add(uri);
+                lock.notifyAll();
+                return;
+            }
+            try {
+                futures.put(uri, executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        RepositoryLoader.this.run(uri);
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                exceptions.add(e);
+                done(uri);
+            }
+        }
+    }
+
+    /**
+     * Load a repository in the shared pool and wait for it,
+     * cancelling it if it takes too long.
+     */
+    private void runWithTimeout(final String uri) throws InterruptedException {
+        synchronized (lock) {
+            futures.put(uri, TIMEOUT_EXECUTOR.submit(new Runnable() {
+                @Override
+                public void run() {
+                    RepositoryLoader.this.run(uri);
+                }
+            }));
+            while (running.contains(uri)) {
+                long wait = checkTimeouts();
+                if (running.contains(uri)) {
+                    lock.wait(wait);
+                }
+            }
+        }
+    }
+
+    private void run(String uri) {
+        synchronized (lock) {
+            if (!running.contains(uri)) {
+                return;
+            }
+            started.put(uri, System.nanoTime());
+            // Wake up the waiting thread so that it tracks the timeout
+            lock.notifyAll();
+        }
+        try {
+            Repository repository = loadRepository(uri);
+            URI[] references = repository.getRepositories();
+            synchronized (lock) {
+                if (!running.contains(uri)) {
+                    return;
+                }
+                repositories.put(uri, repository);
+                repositoryLoaded(uri, repository);
+            }
+            for (URI reference : references) {
+                submit(reference.toString());
+            }
+        } catch (Exception e) {
+            synchronized (lock) {
+                if (running.contains(uri)) {
+                    exceptions.add(e);
+                }
+            }
+        } finally {
+            synchronized (lock) {
+                done(uri);
+            }
+        }
+    }
+
+    // Synchronized on lock
+    private void done(String uri) {
+        if (running.remove(uri)) {
+            started.remove(uri);
+            futures.remove(uri);
+            pending--;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Cancel the repositories which are taking too long to load.
+     * Synchronized on lock.
+     *
+     * @return the time to wait until the next timeout, or 0 to wait indefinitely
+     */
+    private long checkTimeouts() {
+        if (timeout <= 0 || started.isEmpty()) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long next = Long.MAX_VALUE;
+        for (Map.Entry<String, Long> entry : new ArrayList<>(started.entrySet())) {
+            String uri = entry.getKey();
+            long remaining = timeout - TimeUnit.NANOSECONDS.toMillis(now - entry.getValue());
+            if (remaining <= 0) {
+                Future<?> future = futures.get(uri);
+                if (future != null) {
+                    future.cancel(true);
+                }
+                exceptions.add(new TimeoutException("Timeout loading repository " + uri + " after " + timeout + " ms"));
+                done(uri);
+            } else {
+                next = Math.min(next, remaining);
+            }
+        }
+        return next == Long.MAX_VALUE ? 0 : next;
+    }
+
+}
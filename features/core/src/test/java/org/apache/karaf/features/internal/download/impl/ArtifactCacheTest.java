@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.features.internal.download.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.apache.karaf.features.internal.util.ChecksumUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ArtifactCacheTest {
+
+    @Test
+    public void testCacheAndReload() throws Exception {
+        File dir = Files.createTempDirectory("artifacts").toFile();
+        File jar = createJar(dir, "test");
+        String location = jar.toURI().toString();
+        File cacheDir = new File(dir, "cache");
+
+        ArtifactCache cache = new ArtifactCache(cacheDir, "(?!file:).*");
+        ArtifactCache.Entry entry = cache.get(location);
+        assertEquals("test", entry.getHeaders().get("Bundle-SymbolicName"));
+        try (
+                InputStream is = entry.open()
+        ) {
+            assertEquals(ChecksumUtils.checksum(is), entry.getCrc());
+        }
+        assertSame(entry, cache.get(location));
+
+        // Immutable locations are not downloaded again after a restart
+        assertTrue(jar.delete());
+        ArtifactCache reloaded = new ArtifactCache(cacheDir, "(?!file:).*");
+        ArtifactCache.Entry entry2 = reloaded.get(location);
+        assertNotSame(entry, entry2);
+        assertEquals(entry.getDigest(), entry2.getDigest());
+        assertEquals(entry.getCrc(), entry2.getCrc());
+        assertEquals(entry.getHeaders(), entry2.getHeaders());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        File dir = Files.createTempDirectory("artifacts").toFile();
+        String location1 = createJar(dir, "test1").toURI().toString();
+        String location2 = createJar(dir, "test2").toURI().toString();
+        File cacheDir = new File(dir, "cache");
+
+        ArtifactCache cache = new ArtifactCache(cacheDir, "(?!file:).*", 0, TimeUnit.DAYS.toMillis(1));
+        ArtifactCache.Entry entry1 = cache.get(location1);
+        ArtifactCache.Entry entry2 = cache.get(location2);
+        cache.evict();
+        assertTrue(entry1.getFile().isFile());
+        assertTrue(entry2.getFile().isFile());
+
+        // Artifacts unused for longer than the maximum age are removed, as well as their index entry
+        assertTrue(entry1.getFile().setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)));
+        cache.evict();
+        assertFalse(entry1.getFile().exists());
+        assertTrue(entry2.getFile().isFile());
+        assertNotSame(entry1, cache.get(location1));
+
+        // The least recently used artifacts are removed above the maximum size
+        long size = entry2.getFile().length();
+        assertTrue(entry2.getFile().setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2)));
+        ArtifactCache bounded = new ArtifactCache(cacheDir, "(?!file:).*", size, 0);
+        bounded.evict();
+        assertFalse(entry2.getFile().exists());
+        assertEquals(1, cacheDir.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".jar");
+            }
+        }).length);
+    }
+
+    private File createJar(File dir, String name) throws IOException {
+        File jar = new File(dir, name + ".jar");
+        Manifest man = new Manifest();
+        man.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        man.getMainAttributes().putValue("Bundle-SymbolicName", name);
+        try (
+                JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar), man)
+        ) {
+            jos.flush();
+        }
+        return jar;
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.features.internal.download.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.karaf.features.internal.download.DownloadCallback;
+import org.apache.karaf.features.internal.download.Downloader;
+import org.apache.karaf.features.internal.download.StreamProvider;
+import org.apache.karaf.features.internal.util.MultiException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class DownloadManagerImplTest {
+
+    @Test
+    public void testConcurrentDownloads() throws Exception {
+        final AtomicInteger fetches = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            DownloadManagerImpl manager = new DownloadManagerImpl(executor) {
+                @Override
+                protected StreamProvider createProvider(String location) throws MalformedURLException {
+                    return new TestProvider(fetches);
+                }
+            };
+            final Map<String, Map<String, String>> results = new ConcurrentHashMap<>();
+            Downloader downloader = manager.createDownloader();
+            for (int i = 0; i < 20; i++) {
+                final String location = "loc" + (i % 5);
+                downloader.download(location, new DownloadCallback() {
+                    @Override
+                    public void downloaded(StreamProvider provider) throws Exception {
+                        results.put(location, provider.getMetadata());
+                    }
+                });
+            }
+            downloader.await();
+            assertEquals(5, results.size());
+            assertEquals(5, fetches.get());
+            assertEquals(5, manager.getProviders().size());
+            assertEquals(5, manager.getDownloadTimes().size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testErrorsReportedOnAwait() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            DownloadManagerImpl manager = new DownloadManagerImpl(executor) {
+                @Override
+                protected StreamProvider createProvider(String location) throws MalformedURLException {
+                    return new TestProvider(new AtomicInteger());
+                }
+            };
+            Downloader downloader = manager.createDownloader();
+            downloader.download("loc", new DownloadCallback() {
+                @Override
+                public void downloaded(StreamProvider provider) throws Exception {
+                    Thread.sleep(100);
+                    throw new IOException("failure");
+                }
+            });
+            try {
+                downloader.await();
+                fail("Expected a MultiException");
+            } catch (MultiException e) {
+                assertEquals(1, e.getCauses().length);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static class TestProvider implements StreamProvider {
+        private final AtomicInteger fetches;
+        private Map<String, String> metadata;
+
+        TestProvider(AtomicInteger fetches) {
+            this.fetches = fetches;
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public synchronized Map<String, String> getMetadata() throws IOException {
+            if (metadata == null) {
+                fetches.incrementAndGet();
+                metadata = Collections.singletonMap("Bundle-SymbolicName", "test");
+            }
+            return metadata;
+        }
+    }
+}
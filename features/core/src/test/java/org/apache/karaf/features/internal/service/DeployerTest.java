@@ -19,18 +19,25 @@ package org.apache.karaf.features.internal.service;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.jar.Manifest;
 
 import org.apache.felix.utils.version.VersionRange;
 import org.apache.karaf.features.Feature;
 import org.apache.karaf.features.FeatureEvent;
 import org.apache.karaf.features.FeaturesService;
+import org.apache.karaf.features.internal.download.StreamProvider;
+import org.apache.karaf.features.internal.resolver.ResourceImpl;
 import org.apache.karaf.features.internal.support.TestBundle;
 import org.apache.karaf.features.internal.support.TestDownloadManager;
 import org.easymock.EasyMock;
@@ -39,11 +46,16 @@ import org.easymock.IArgumentMatcher;
 import org.junit.Test;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleException;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.resource.Resource;
 
 import static org.apache.karaf.features.FeaturesService.*;
 import static org.apache.karaf.features.internal.util.MapUtils.addToMapSet;
 import static org.easymock.EasyMock.anyInt;
 import static org.easymock.EasyMock.anyObject;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 public class DeployerTest {
@@ -377,6 +389,104 @@ public class DeployerTest {
         EasyMock.verify(callback);
     }
 
+    @Test
+    public void testBundlePreparationIsBounded() throws Exception {
+        final List<Resource> prepared = new ArrayList<>();
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        Deployer deployer = new Deployer(null, null, null, direct) {
+            @Override
+            protected PreparedBundle prepareBundle(Resource resource, Map<String, StreamProvider> providers) {
+                prepared.add(resource);
+                return new PreparedBundle(null, new byte[0], 0);
+            }
+        };
+        List<Resource> resources = new ArrayList<>();
+        for (int i = 0; i < Deployer.MAX_PREPARED_BUNDLES * 2; i++) {
+            resources.add(new ResourceImpl());
+        }
+
+        Deployer.BundlePreparation preparation = deployer.new BundlePreparation(Collections.<String, StreamProvider>emptyMap());
+        preparation.prepare(resources);
+        assertEquals(resources.subList(0, Deployer.MAX_PREPARED_BUNDLES), prepared);
+
+        // Using a bundle lets the next one be prepared
+        preparation.get(resources.get(0));
+        assertEquals(resources.subList(0, Deployer.MAX_PREPARED_BUNDLES + 1), prepared);
+
+        // A bundle not prepared yet is prepared when used
+        Resource last = resources.get(resources.size() - 1);
+        preparation.get(last);
+        assertEquals(Deployer.MAX_PREPARED_BUNDLES + 2, prepared.size());
+        assertEquals(last, prepared.get(prepared.size() - 1));
+
+        for (Resource resource : resources.subList(1, resources.size() - 1)) {
+            preparation.get(resource);
+        }
+        assertEquals(resources.size(), prepared.size());
+        assertEquals(new HashSet<>(resources), new HashSet<>(prepared));
+    }
+
+    @Test
+    public void testDependencyLevels() throws Exception {
+        List<Object> mocks = new ArrayList<>();
+        Bundle a = EasyMock.createMock(Bundle.class);
+        Bundle b = EasyMock.createMock(Bundle.class);
+        Bundle c = EasyMock.createMock(Bundle.class);
+        Bundle d = EasyMock.createMock(Bundle.class);
+        Bundle e = EasyMock.createMock(Bundle.class);
+        Bundle f = EasyMock.createMock(Bundle.class);
+        Bundle g = EasyMock.createMock(Bundle.class);
+        expectWires(mocks, a);
+        expectWires(mocks, b, a);
+        expectWires(mocks, d);
+        expectWires(mocks, c, a, b);
+        // wired to itself
+        expectWires(mocks, e, e, d);
+        // f and g are wired to each other
+        expectWires(mocks, f, g);
+        expectWires(mocks, g, f, c);
+        EasyMock.replay(a, b, c, d, e, f, g);
+        EasyMock.replay(mocks.toArray());
+
+        Deployer deployer = new Deployer(null, null);
+        List<List<Bundle>> levels = deployer.getDependencyLevels(Arrays.asList(a, b, d, c, e, f, g));
+
+        assertEquals(Arrays.asList(
+                        Arrays.asList(a, d, f),
+                        Arrays.asList(b, e),
+                        Arrays.asList(c),
+                        Arrays.asList(g)),
+                levels);
+        // bundles without wiring are at the first level
+        Bundle h = EasyMock.createMock(Bundle.class);
+        EasyMock.expect(h.adapt(BundleWiring.class)).andReturn(null);
+        EasyMock.replay(h);
+        assertEquals(Collections.singletonList(Arrays.asList(a, h)),
+                deployer.getDependencyLevels(Arrays.asList(a, h)));
+    }
+
+    private static void expectWires(List<Object> mocks, Bundle bundle, Bundle... providers) {
+        List<BundleWire> wires = new ArrayList<>();
+        for (Bundle provider : providers) {
+            BundleRevision revision = EasyMock.createMock(BundleRevision.class);
+            EasyMock.expect(revision.getBundle()).andReturn(provider).anyTimes();
+            BundleWire wire = EasyMock.createMock(BundleWire.class);
+            EasyMock.expect(wire.getProvider()).andReturn(revision).anyTimes();
+            wires.add(wire);
+            mocks.add(revision);
+            mocks.add(wire);
+        }
+        BundleWiring wiring = EasyMock.createMock(BundleWiring.class);
+        EasyMock.expect(wiring.getRequiredWires(null)).andReturn(wires).anyTimes();
+        EasyMock.expect(bundle.adapt(BundleWiring.class)).andReturn(wiring).anyTimes();
+        mocks.add(wiring);
+    }
+
     private TestBundle createTestBundle(long bundleId, int state, String dir, String name) throws IOException, BundleException {
         URL loc = getClass().getResource(dir + "/" + name + ".mf");
         Manifest man = new Manifest(loc.openStream());
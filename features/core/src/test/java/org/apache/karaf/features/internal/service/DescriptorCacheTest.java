@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.features.internal.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.karaf.features.Feature;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DescriptorCacheTest {
+
+    @Test
+    public void testCachedRepository() throws Exception {
+        File dir = Files.createTempDirectory("descriptors").toFile();
+        File xml = new File(dir, "repo.xml");
+        try (InputStream is = getClass().getResourceAsStream("/org/apache/karaf/features/repo2.xml")) {
+            Files.copy(is, xml.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        URI uri = xml.toURI();
+        DescriptorCache cache = new DescriptorCache(new File(dir, "cache"));
+
+        RepositoryImpl parsed = new RepositoryImpl(uri, cache);
+        parsed.load(true);
+        byte[] checksum = checksum(xml);
+        assertNotNull(cache.get(uri, checksum, true));
+        assertNull(cache.get(uri, DescriptorCache.digest(new byte[0]), false));
+
+        RepositoryImpl cached = new RepositoryImpl(uri, cache);
+        assertEquals(parsed.getName(), cached.getName());
+        assertEquals(1, cached.getRepositories().length);
+        assertEquals(URI.create("urn:r1"), cached.getRepositories()[0]);
+        Feature[] expected = parsed.getFeatures();
+        Feature[] actual = cached.getFeatures();
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getId(), actual[i].getId());
+            assertEquals(expected[i].getBundles().size(), actual[i].getBundles().size());
+            assertEquals(expected[i].getConfigurations().size(), actual[i].getConfigurations().size());
+            assertEquals(expected[i].getConfigurationFiles().size(), actual[i].getConfigurationFiles().size());
+        }
+
+        // Changing the xml invalidates the cached descriptor
+        Files.write(xml.toPath(), "\n".getBytes(), StandardOpenOption.APPEND);
+        assertNull(cache.get(uri, checksum(xml), false));
+        assertEquals(3, new RepositoryImpl(uri, cache).getFeatures().length);
+        assertNotNull(cache.get(uri, checksum(xml), false));
+    }
+
+    @Test
+    public void testOnlyModelClassesAreDeserialized() throws Exception {
+        List<Object> model = new ArrayList<>();
+        org.apache.karaf.features.internal.model.Feature feature = new org.apache.karaf.features.internal.model.Feature("f1", "1.0.0");
+        org.apache.karaf.features.internal.model.Bundle bundle = new org.apache.karaf.features.internal.model.Bundle();
+        bundle.setLocation("mvn:org/b1/1.0");
+        bundle.setStartLevel(20);
+        feature.getBundle().add(bundle);
+        model.add(feature);
+        model.add(new byte[] { 1, 2 });
+        List<?> result = (List<?>) deserialize(model);
+        assertEquals(2, result.size());
+        assertEquals("f1/1.0.0", ((Feature) result.get(0)).getId());
+        assertEquals("mvn:org/b1/1.0", ((Feature) result.get(0)).getBundles().get(0).getLocation());
+
+        try {
+            deserialize(new ArrayList<>(Arrays.asList(new File("foo"))));
+            fail("Expected an InvalidClassException");
+        } catch (InvalidClassException e) {
+            // expected
+        }
+
+        assertTrue(DescriptorCache.ModelInputStream.isAllowed("java.lang.Integer"));
+        assertTrue(DescriptorCache.ModelInputStream.isAllowed("[B"));
+        assertFalse(DescriptorCache.ModelInputStream.isAllowed("[Ljava.io.File;"));
+        assertFalse(DescriptorCache.ModelInputStream.isAllowed("java.util.concurrent.ConcurrentHashMap"));
+        assertFalse(DescriptorCache.ModelInputStream.isAllowed("java.lang.invoke.SerializedLambda"));
+        assertFalse(DescriptorCache.ModelInputStream.isAllowed("org.apache.commons.collections.functors.InvokerTransformer"));
+    }
+
+    private static Object deserialize(Object object) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(object);
+        }
+        try (ObjectInputStream ois = new DescriptorCache.ModelInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            return ois.readObject();
+        }
+    }
+
+    private static byte[] checksum(File file) throws Exception {
+        return DescriptorCache.digest(Files.readAllBytes(file.toPath()));
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.features.internal.service;
+
+import org.apache.felix.utils.version.VersionRange;
+import org.apache.karaf.features.Feature;
+import org.apache.karaf.features.internal.model.Bundle;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FeatureRegistryTest {
+
+    @Test
+    public void testLookupByVersion() {
+        Feature f1 = feature("transaction", "1.0.0");
+        Feature f2 = feature("transaction", "1.2.0");
+        Feature f3 = feature("transaction", "2.0.0");
+        FeatureRegistry registry = new FeatureRegistry();
+        registry.addRepository("repo1", new Feature[] { f1, f2 });
+        registry.addRepository("repo2", new Feature[] { f3 });
+
+        assertSame(f3, registry.getFeature("transaction", (String) null));
+        assertSame(f3, registry.getFeature("transaction", org.apache.karaf.features.internal.model.Feature.DEFAULT_VERSION));
+        assertSame(f2, registry.getFeature("transaction", "1.2.0"));
+        assertSame(f1, registry.getFeature("transaction", " 1.0 "));
+        assertSame(f2, registry.getFeature("transaction", new VersionRange("[1,2)")));
+        assertSame(f3, registry.getFeature("transaction", new VersionRange("1.1")));
+        assertNull(registry.getFeature("transaction", new VersionRange("[3,4)")));
+        assertNull(registry.getFeature("activemq", (String) null));
+        assertEquals(3, registry.getFeatures().get("transaction").size());
+    }
+
+    @Test
+    public void testRemoveRepository() {
+        Feature f1 = feature("transaction", "1.0.0", "mvn:org/tx/1.0");
+        Feature f2 = feature("transaction", "2.0.0", "mvn:org/tx/2.0");
+        FeatureRegistry registry = new FeatureRegistry();
+        registry.addRepository("repo1", new Feature[] { f1 });
+        registry.addRepository("repo2", new Feature[] { f2 });
+        assertSame(f1, registry.getFeaturesForBundle("mvn:org/tx/1.0").iterator().next());
+
+        registry.removeRepository("repo2");
+        assertSame(f1, registry.getFeature("transaction", (String) null));
+        assertTrue(registry.getFeaturesForBundle("mvn:org/tx/2.0").isEmpty());
+        assertEquals(1, registry.getFeatures().get("transaction").size());
+
+        registry.removeRepository("repo1");
+        assertNull(registry.getFeature("transaction", (String) null));
+        assertTrue(registry.getFeatures().isEmpty());
+        assertTrue(registry.getFeaturesForBundle("mvn:org/tx/1.0").isEmpty());
+    }
+
+    @Test
+    public void testShadowedFeatureIsRestored() {
+        Feature f1 = feature("transaction", "1.0.0");
+        Feature f2 = feature("transaction", "1.0.0");
+        FeatureRegistry registry = new FeatureRegistry();
+        registry.addRepository("repo1", new Feature[] { f1 });
+        registry.addRepository("repo2", new Feature[] { f2 });
+        assertSame(f2, registry.getFeature("transaction", "1.0.0"));
+
+        registry.removeRepository("repo2");
+        assertSame(f1, registry.getFeature("transaction", "1.0.0"));
+    }
+
+    @Test
+    public void testEquivalentVersions() {
+        Feature f1 = feature("transaction", "1.0", "mvn:org/tx/1.0");
+        Feature f2 = feature("transaction", "1.0.0", "mvn:org/tx/1.0.0");
+        FeatureRegistry registry = new FeatureRegistry();
+        registry.addRepository("repo1", new Feature[] { f1 });
+        registry.addRepository("repo2", new Feature[] { f2 });
+
+        assertSame(f1, registry.getFeature("transaction", "1.0"));
+        assertSame(f2, registry.getFeature("transaction", "1.0.0"));
+        assertSame(f2, registry.getFeature("transaction", (String) null));
+        assertSame(f2, registry.getFeature("transaction", new VersionRange("[1,2)")));
+        assertEquals(2, registry.getFeatures().get("transaction").size());
+
+        registry.removeRepository("repo2");
+        assertSame(f1, registry.getFeature("transaction", (String) null));
+        assertSame(f1, registry.getFeature("transaction", "1.0.0"));
+        assertSame(f1, registry.getFeature("transaction", new VersionRange("[1,2)")));
+        assertSame(f1, registry.getFeaturesForBundle("mvn:org/tx/1.0").iterator().next());
+
+        registry.addRepository("repo2", new Feature[] { f2 });
+        registry.removeRepository("repo1");
+        assertSame(f2, registry.getFeature("transaction", "1.0"));
+        assertEquals(1, registry.getFeatures().get("transaction").size());
+    }
+
+    private static Feature feature(String name, String version, String... bundles) {
+        org.apache.karaf.features.internal.model.Feature feature = new org.apache.karaf.features.internal.model.Feature(name, version);
+        for (String location : bundles) {
+            Bundle bundle = new Bundle();
+            bundle.setLocation(location);
+            feature.getBundle().add(bundle);
+        }
+        return feature;
+    }
+
+}
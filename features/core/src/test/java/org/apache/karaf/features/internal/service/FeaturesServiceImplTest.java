@@ -49,9 +49,9 @@ public class FeaturesServiceImplTest extends TestBase {
     public void testGetFeature() throws Exception {
         Feature transactionFeature = feature("transaction", "1.0.0");
         final Map<String, Map<String, Feature>> features = features(transactionFeature);
-        final FeaturesServiceImpl impl = new FeaturesServiceImpl(null, null, new Storage(), null, null, null, null, "", null, null, null, null) {
-            protected Map<String,Map<String,Feature>> getFeatures() throws Exception {
-                return features;
+        final FeaturesServiceImpl impl = new FeaturesServiceImpl(null, null, new Storage(), null, null, null, null, "", null, null, null, null, 0, null, 1, null, 0) {
+            protected FeatureRegistry getFeatureRegistry() throws Exception {
+                return registry(features);
             }
         };
         assertNotNull(impl.getFeature("transaction", org.apache.karaf.features.internal.model.Feature.DEFAULT_VERSION));
@@ -60,9 +60,9 @@ public class FeaturesServiceImplTest extends TestBase {
     
     @Test
     public void testGetFeatureStripVersion() throws Exception {
-        final FeaturesServiceImpl impl = new FeaturesServiceImpl(null, null, new Storage(), null, null, null, null, "", null, null, null, null) {
-            protected Map<String,Map<String,Feature>> getFeatures() throws Exception {
-                return features(feature("transaction", "1.0.0"));
+        final FeaturesServiceImpl impl = new FeaturesServiceImpl(null, null, new Storage(), null, null, null, null, "", null, null, null, null, 0, null, 1, null, 0) {
+            protected FeatureRegistry getFeatureRegistry() throws Exception {
+                return registry(features(feature("transaction", "1.0.0")));
             }
         };
         Feature feature = impl.getFeature("transaction", "  1.0.0  ");
@@ -72,9 +72,9 @@ public class FeaturesServiceImplTest extends TestBase {
     
     @Test
     public void testGetFeatureNotAvailable() throws Exception {
-        final FeaturesServiceImpl impl = new FeaturesServiceImpl(null, null, new Storage(), null, null, null, null, "", null, null, null, null) {
-            protected Map<String,Map<String,Feature>> getFeatures() throws Exception {
-                return features(feature("transaction", "1.0.0"));
+        final FeaturesServiceImpl impl = new FeaturesServiceImpl(null, null, new Storage(), null, null, null, null, "", null, null, null, null, 0, null, 1, null, 0) {
+            protected FeatureRegistry getFeatureRegistry() throws Exception {
+                return registry(features(feature("transaction", "1.0.0")));
             }
         };
         assertNull(impl.getFeature("activemq", org.apache.karaf.features.internal.model.Feature.DEFAULT_VERSION));
@@ -86,9 +86,9 @@ public class FeaturesServiceImplTest extends TestBase {
                 feature("transaction", "1.0.0"),
                 feature("transaction", "2.0.0")
         );
-        final FeaturesServiceImpl impl = new FeaturesServiceImpl(null, null, new Storage(), null, null, null, null, "", null, null, null, null) {
-            protected Map<String,Map<String,Feature>> getFeatures() throws Exception {
-                return features;
+        final FeaturesServiceImpl impl = new FeaturesServiceImpl(null, null, new Storage(), null, null, null, null, "", null, null, null, null, 0, null, 1, null, 0) {
+            protected FeatureRegistry getFeatureRegistry() throws Exception {
+                return registry(features);
             }
         };
         assertNotNull(impl.getFeature("transaction", org.apache.karaf.features.internal.model.Feature.DEFAULT_VERSION));
@@ -154,6 +154,16 @@ public class FeaturesServiceImplTest extends TestBase {
     }
     */
 
+    static FeatureRegistry registry(Map<String, Map<String, Feature>> features) {
+        FeatureRegistry registry = new FeatureRegistry();
+        for (Map<String, Feature> versions : features.values()) {
+            for (Feature feature : versions.values()) {
+                registry.addRepository("repo:" + feature.getId(), new Feature[] { feature });
+            }
+        }
+        return registry;
+    }
+
     static class Storage extends StateStorage {
         @Override
         protected InputStream getInputStream() throws IOException {
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.features.internal.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.karaf.features.Feature;
+import org.apache.karaf.features.internal.region.SubsystemResolver;
+import org.apache.karaf.features.internal.resolver.CapabilityImpl;
+import org.apache.karaf.features.internal.resolver.ResourceImpl;
+import org.junit.Test;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.resource.Resource;
+
+import static org.apache.karaf.features.FeaturesService.DEFAULT_FEATURE_RESOLUTION_RANGE;
+import static org.apache.karaf.features.FeaturesService.ROOT_REGION;
+import static org.apache.karaf.features.FeaturesService.UPDATE_SNAPSHOTS_CRC;
+import static org.apache.karaf.features.FeaturesService.UPDATE_SNAPSHOTS_NONE;
+import static org.apache.karaf.features.internal.util.MapUtils.addToMapSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.osgi.service.repository.ContentNamespace.CAPABILITY_URL_ATTRIBUTE;
+import static org.osgi.service.repository.ContentNamespace.CONTENT_NAMESPACE;
+
+public class RepeatResolutionCacheTest {
+
+    private final Feature f1 = new org.apache.karaf.features.internal.model.Feature("f1", "1.0.0");
+    private final Feature f2 = new org.apache.karaf.features.internal.model.Feature("f2", "1.0.0");
+
+    @Test
+    public void testKeyEquality() {
+        RepeatResolutionCache.Key key = key(Arrays.asList(f1, f2), requirements("f1"), null);
+
+        assertEquals(key, key(Arrays.asList(f2, f1), requirements("f1"), null));
+        assertEquals(key.hashCode(), key(Arrays.asList(f2, f1), requirements("f1"), null).hashCode());
+
+        assertFalse(key.equals(key(Arrays.asList(f1), requirements("f1"), null)));
+        assertFalse(key.equals(key(Arrays.asList(f1, f2), requirements("f2"), null)));
+        assertFalse(key.equals(key(Arrays.asList(f1, f2), requirements("f1"), Collections.singleton("mvn:foo/bar/1.0"))));
+        assertFalse(key.equals(new RepeatResolutionCache.Key(Arrays.asList(f1, f2), requirements("f1"),
+                new HashMap<String, Set<BundleRevision>>(), null, "[====,====]", null)));
+        assertFalse(key.equals(new RepeatResolutionCache.Key(Arrays.asList(f1, f2), requirements("f1"),
+                new HashMap<String, Set<BundleRevision>>(), null, DEFAULT_FEATURE_RESOLUTION_RANGE, new Object())));
+    }
+
+    @Test
+    public void testFeaturesAreComparedByIdentity() {
+        // A reloaded repository gives equal but distinct features
+        Feature f1bis = new org.apache.karaf.features.internal.model.Feature("f1", "1.0.0");
+        assertEquals(f1, f1bis);
+        assertFalse(key(Arrays.asList(f1, f2), requirements("f1"), null)
+                .equals(key(Arrays.asList(f1bis, f2), requirements("f1"), null)));
+    }
+
+    @Test
+    public void testKeyIsNotAffectedByLaterChanges() {
+        Map<String, Set<String>> requirements = requirements("f1");
+        RepeatResolutionCache.Key key = key(Arrays.asList(f1, f2), requirements, null);
+        addToMapSet(requirements, ROOT_REGION, "feature:f2/0");
+        assertEquals(key, key(Arrays.asList(f1, f2), requirements("f1"), null));
+    }
+
+    @Test
+    public void testGetPutAndClear() {
+        RepeatResolutionCache cache = new RepeatResolutionCache();
+        RepeatResolutionCache.Key key = key(Arrays.asList(f1, f2), requirements("f1"), null);
+        SubsystemResolver resolver = new SubsystemResolver(null);
+
+        assertNull(cache.get(key));
+        cache.put(key, resolver, UPDATE_SNAPSHOTS_NONE);
+        assertSame(resolver, cache.get(key));
+        assertSame(resolver, cache.get(key(Arrays.asList(f1, f2), requirements("f1"), null)));
+
+        // Only the last resolution is kept
+        RepeatResolutionCache.Key other = key(Arrays.asList(f1, f2), requirements("f2"), null);
+        assertNull(cache.get(other));
+        SubsystemResolver resolver2 = new SubsystemResolver(null);
+        cache.put(other, resolver2, UPDATE_SNAPSHOTS_NONE);
+        assertSame(resolver2, cache.get(other));
+        assertNull(cache.get(key));
+
+        cache.clear();
+        assertNull(cache.get(other));
+    }
+
+    @Test
+    public void testUpdateableBundlesAreNotCached() {
+        RepeatResolutionCache cache = new RepeatResolutionCache();
+        RepeatResolutionCache.Key key = key(Arrays.asList(f1, f2), requirements("f1"), null);
+        cache.put(key, new SubsystemResolver(null), UPDATE_SNAPSHOTS_NONE);
+
+        SubsystemResolver snapshot = resolverWithBundle("mvn:foo/bar/1.0-SNAPSHOT");
+        cache.put(key, snapshot, UPDATE_SNAPSHOTS_CRC);
+        assertNull(cache.get(key));
+
+        // unless snapshots are not checked
+        cache.put(key, snapshot, UPDATE_SNAPSHOTS_NONE);
+        assertSame(snapshot, cache.get(key));
+
+        SubsystemResolver release = resolverWithBundle("mvn:foo/bar/1.0");
+        cache.put(key, release, UPDATE_SNAPSHOTS_CRC);
+        assertSame(release, cache.get(key));
+    }
+
+    private static RepeatResolutionCache.Key key(java.util.Collection<Feature> features,
+                                           Map<String, Set<String>> requirements,
+                                           Set<String> overrides) {
+        return new RepeatResolutionCache.Key(features, requirements, new HashMap<String, Set<BundleRevision>>(),
+                overrides, DEFAULT_FEATURE_RESOLUTION_RANGE, null);
+    }
+
+    private static Map<String, Set<String>> requirements(String feature) {
+        Map<String, Set<String>> requirements = new HashMap<>();
+        addToMapSet(requirements, ROOT_REGION, "feature:" + feature + "/0");
+        return requirements;
+    }
+
+    private static SubsystemResolver resolverWithBundle(String uri) {
+        ResourceImpl resource = new ResourceImpl();
+        Map<String, Object> attrs = new HashMap<>();
+        attrs.put(CAPABILITY_URL_ATTRIBUTE, uri);
+        resource.addCapability(new CapabilityImpl(resource, CONTENT_NAMESPACE,
+                Collections.<String, String>emptyMap(), attrs));
+        final Map<Resource, String> bundles = Collections.<Resource, String>singletonMap(resource, ROOT_REGION);
+        return new SubsystemResolver(null) {
+            @Override
+            public Map<Resource, String> getBundles() {
+                return bundles;
+            }
+        };
+    }
+
+}
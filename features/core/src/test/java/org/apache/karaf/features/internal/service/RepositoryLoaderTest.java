@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.features.internal.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.karaf.features.Feature;
+import org.apache.karaf.features.Repository;
+import org.apache.karaf.features.internal.util.MultiException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RepositoryLoaderTest {
+
+    @Test
+    public void testLoadGraphWithCycle() throws Exception {
+        final Map<String, String[]> graph = new HashMap<>();
+        graph.put("r1", new String[] { "r2", "r3" });
+        graph.put("r2", new String[] { "r3", "r4" });
+        graph.put("r3", new String[] { "r1" });
+        graph.put("r4", new String[0]);
+        final ConcurrentMap<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+        for (String uri : graph.keySet()) {
+            loads.put(uri, new AtomicInteger());
+        }
+        for (ExecutorService executor : Arrays.asList(null, Executors.newFixedThreadPool(4))) {
+            try {
+                RepositoryLoader loader = new RepositoryLoader(executor, 0) {
+                    @Override
+                    protected Repository loadRepository(String uri) throws Exception {
+                        loads.get(uri).incrementAndGet();
+                        return new TestRepository(uri, graph.get(uri));
+                    }
+                };
+                Map<String, Repository> repositories = loader.load(Arrays.asList("r1", "r2"));
+                assertEquals(graph.keySet(), repositories.keySet());
+            } finally {
+                if (executor != null) {
+                    executor.shutdownNow();
+                }
+            }
+        }
+        for (AtomicInteger count : loads.values()) {
+            assertEquals(2, count.get());
+        }
+    }
+
+    @Test
+    public void testErrorsAndTimeouts() throws Exception {
+        for (ExecutorService executor : Arrays.asList(null, Executors.newFixedThreadPool(4))) {
+            final CountDownLatch latch = new CountDownLatch(1);
+            final CountDownLatch returned = new CountDownLatch(1);
+            final Set<String> loaded = Collections.synchronizedSet(new HashSet<String>());
+            try {
+                RepositoryLoader loader = new RepositoryLoader(executor, 200) {
+                    @Override
+                    protected Repository loadRepository(String uri) throws Exception {
+                        switch (uri) {
+                        case "root":
+                            return new TestRepository(uri, new String[] { "broken", "slow", "ok" });
+                        case "broken":
+                            throw new IOException("broken");
+                        case "slow":
+                            // Ignore the interruption to return a late result
+                            while (true) {
+                                try {
+                                    latch.await();
+                                    break;
+                                } catch (InterruptedException e) {
+                                    // continue
+                                }
+                            }
+                            returned.countDown();
+                            return new TestRepository(uri, new String[] { "late" });
+                        default:
+                            return new TestRepository(uri, new String[0]);
+                        }
+                    }
+
+                    @Override
+                    protected void repositoryLoaded(String uri, Repository repository) {
+                        loaded.add(uri);
+                    }
+                };
+                try {
+                    loader.load(Arrays.asList("root"));
+                    fail("Expected an exception");
+                } catch (MultiException e) {
+                    assertEquals(2, e.getCauses().length);
+                    HashSet<String> messages = new HashSet<>();
+                    for (Throwable ex : e.getCauses()) {
+                        messages.add(ex.getMessage());
+                    }
+                    assertTrue(messages.contains("broken"));
+                    assertTrue(messages.contains("Timeout loading repository slow after 200 ms"));
+                }
+                assertEquals(new HashSet<>(Arrays.asList("root", "ok")), loaded);
+
+                // The late result is discarded
+                latch.countDown();
+                assertTrue(returned.await(5, TimeUnit.SECONDS));
+                Thread.sleep(100);
+                assertEquals(new HashSet<>(Arrays.asList("root", "ok")), loaded);
+            } finally {
+                latch.countDown();
+                if (executor != null) {
+                    executor.shutdownNow();
+                }
+            }
+        }
+    }
+
+    static class TestRepository implements Repository {
+        private final URI uri;
+        private final URI[] repositories;
+
+        TestRepository(String uri, String[] repositories) {
+            this.uri = URI.create(uri);
+            this.repositories = new URI[repositories.length];
+            for (int i = 0; i < repositories.length; i++) {
+                this.repositories[i] = URI.create(repositories[i]);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return uri.toString();
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        public URI[] getRepositories() {
+            return repositories;
+        }
+
+        @Override
+        public Feature[] getFeatures() {
+            return new Feature[0];
+        }
+    }
+
+}
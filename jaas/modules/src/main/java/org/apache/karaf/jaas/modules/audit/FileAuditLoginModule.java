@@ -14,15 +14,6 @@
  */
 package org.apache.karaf.jaas.modules.audit;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.Map;
 
 import javax.security.auth.Subject;
@@ -31,42 +22,42 @@ import javax.security.auth.callback.CallbackHandler;
 public class FileAuditLoginModule extends AbstractAuditLoginModule {
 
     public static final String LOG_FILE_OPTION = "file";
+    public static final String MAX_SIZE_OPTION = "file.max.size";
+    public static final String MAX_AGE_OPTION = "file.max.age";
+    public static final String MAX_FILES_OPTION = "file.max.files";
 
-    private final static DateFormat DATE_FORMAT = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss");
-    private String logFile;
+    private FileAuditWriter writer;
 
     public void initialize(Subject subject, CallbackHandler callbackHandler,
                            Map sharedState, Map options) {
         super.initialize(subject, callbackHandler, sharedState, options);
-        logFile = (String) options.get(LOG_FILE_OPTION);
+        String logFile = (String) options.get(LOG_FILE_OPTION);
+        if (logFile != null) {
+            writer = FileAuditWriter.getWriter(logFile);
+            writer.setMaxSize(getLong(options, MAX_SIZE_OPTION, 0));
+            writer.setMaxAge(getLong(options, MAX_AGE_OPTION, 0));
+            writer.setMaxFiles((int) getLong(options, MAX_FILES_OPTION, FileAuditWriter.DEFAULT_MAX_FILES));
+        }
+    }
+
+    private static long getLong(Map options, String key, long def) {
+        Object value = options.get(key);
+        return value != null ? Long.parseLong(value.toString().trim()) : def;
     }
 
-    protected synchronized void audit(Action action, String username) {
-        Date date = new Date();
-        try {
-            File file = new File(logFile);
-            file.getParentFile().mkdirs();
-            FileOutputStream out = new FileOutputStream(file, true);
-            FileChannel channel = out.getChannel();
-            FileLock lock = channel.lock(0, Long.MAX_VALUE, false);
-            PrintWriter writer = new PrintWriter(out, false);
-            String actionStr;
-            switch (action) {
-            case ATTEMPT: actionStr = "Authentication attempt"; break;
-            case SUCCESS: actionStr = "Authentication succeeded"; break;
-            case FAILURE: actionStr = "Authentication failed"; break;
-            case LOGOUT: actionStr = "Explicit logout"; break;
-            default: actionStr = action.toString(); break;
-            }
-            writer.println(DATE_FORMAT.format(date) + " - " + actionStr + " - " + username);
-            writer.flush();
-            writer.close();
-            if (lock.isValid()) {
-                lock.release();
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to write to authentication log file", e);
+    protected void audit(Action action, String username) {
+        if (writer == null) {
+            throw new IllegalStateException("No authentication log file configured");
+        }
+        String actionStr;
+        switch (action) {
+        case ATTEMPT: actionStr = "Authentication attempt"; break;
+        case SUCCESS: actionStr = "Authentication succeeded"; break;
+        case FAILURE: actionStr = "Authentication failed"; break;
+        case LOGOUT: actionStr = "Explicit logout"; break;
+        default: actionStr = action.toString(); break;
         }
+        writer.write(actionStr + " - " + username);
     }
 
 }
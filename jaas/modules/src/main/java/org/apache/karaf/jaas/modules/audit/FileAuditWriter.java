@@ -0,0 +1,318 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.jaas.modules.audit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write audit records to a file from a background thread.
+ *
+ * Records are put in a bounded queue and written in batches by a single thread, to a
+ * channel which is kept open between batches, so that logins do not wait for the disk.
+ * Callers block when the queue is full, as audit records must not be lost.  Records which
+ * could not be written are kept and written again with the next batch, or after a delay.
+ * Writers are shared by all the audit modules writing to the same file.
+ */
+public class FileAuditWriter implements Runnable {
+
+    public static final int QUEUE_SIZE = 4096;
+    public static final int DEFAULT_MAX_FILES = 10;
+    public static final long RETRY_DELAY = 1000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileAuditWriter.class);
+
+    private static final ConcurrentMap<String, FileAuditWriter> WRITERS = new ConcurrentHashMap<>();
+
+    private static final Record CLOSE = new Record(0, null);
+
+    private final File file;
+    private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>(QUEUE_SIZE);
+    private final DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss");
+    private final String lineSeparator = System.getProperty("line.separator");
+    private final Thread thread;
+
+    private volatile long maxSize;
+    private volatile long maxAge;
+    private volatile int maxFiles = DEFAULT_MAX_FILES;
+    private volatile boolean closed;
+
+    // records which could not be written yet
+    private final List<Record> pending = new ArrayList<>();
+    private FileChannel channel;
+    private long fileStart;
+    private boolean errorLogged;
+
+    /**
+     * Return the writer for the given file, starting it if needed.
+     */
+    public static FileAuditWriter getWriter(String file) {
+        String key = new File(file).getAbsolutePath();
+        FileAuditWriter writer = WRITERS.get(key);
+        if (writer == null) {
+            FileAuditWriter newWriter = new FileAuditWriter(new File(key));
+            writer = WRITERS.putIfAbsent(key, newWriter);
+            if (writer == null) {
+                writer = newWriter;
+                writer.thread.start();
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Write all the queued records and stop the writers.
+     */
+    public static void closeAll() {
+        for (String key : new ArrayList<>(WRITERS.keySet())) {
+            FileAuditWriter writer = WRITERS.remove(key);
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    FileAuditWriter(File file) {
+        this.file = file;
+        this.thread = new Thread(this, "Karaf JAAS audit writer: " + file.getName());
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Rotate the file once it reaches the given size in bytes, 0 to disable.
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Rotate the file once it is older than the given number of milliseconds, 0 to disable.
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Number of rotated files to keep, named after the file with a .1, .2, ... suffix.
+     */
+    public void setMaxFiles(int maxFiles) {
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    public void write(String message) {
+        Record record = new Record(System.currentTimeMillis(), message);
+        if (!closed) {
+            try {
+                queue.put(record);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (!queue.offer(record)) {
+                    writeBatch(singleton(record));
+                }
+            }
+            if (!closed) {
+                return;
+            }
+        } else {
+            queue.offer(record);
+        }
+        // the writer thread may already be gone
+        List<Record> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        writeBatch(batch);
+    }
+
+    /**
+     * Write the queued records and stop the writer thread.
+     */
+    public void close() {
+        closed = true;
+        try {
+            // the queue may stay full if the records can not be written
+            if (queue.offer(CLOSE, 10, TimeUnit.SECONDS)) {
+                thread.join(10000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void run() {
+        List<Record> batch = new ArrayList<>();
+        try {
+            while (true) {
+                // stop taking records while too many are waiting to be written, so that callers block
+                int room = QUEUE_SIZE - getPendingCount();
+                if (room > 0) {
+                    Record record = room < QUEUE_SIZE
+                            ? queue.poll(RETRY_DELAY, TimeUnit.MILLISECONDS) : queue.take();
+                    if (record != null) {
+                        batch.add(record);
+                        queue.drainTo(batch, room - 1);
+                    }
+                } else {
+                    Thread.sleep(RETRY_DELAY);
+                }
+                boolean stop = batch.remove(CLOSE);
+                boolean written = writeBatch(batch);
+                batch.clear();
+                if (stop || (closed && !written && room <= 0)) {
+                    if (!written) {
+                        LOGGER.error("Unable to write " + getPendingCount() + " records to authentication log file " + file);
+                    }
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            // exit
+        } finally {
+            synchronized (this) {
+                closeChannel();
+            }
+        }
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Write the records which could not be written so far followed by the given ones.
+     * The records are kept for a later attempt if they can not be written.
+     */
+    private synchronized boolean writeBatch(List<Record> batch) {
+        batch.remove(CLOSE);
+        pending.addAll(batch);
+        if (pending.isEmpty()) {
+            return true;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Record record : pending) {
+            sb.append(dateFormat.format(new Date(record.timestamp)))
+                    .append(" - ").append(record.message).append(lineSeparator);
+        }
+        try {
+            if (channel == null) {
+                open();
+            }
+            if (needsRotation()) {
+                closeChannel();
+                rotate();
+                open();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes());
+            // other processes may be writing to the same file
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, false);
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } finally {
+                if (lock.isValid()) {
+                    lock.release();
+                }
+            }
+            pending.clear();
+            errorLogged = false;
+        } catch (IOException e) {
+            closeChannel();
+            if (!errorLogged) {
+                errorLogged = true;
+                LOGGER.warn("Unable to write to authentication log file " + file + ", will retry", e);
+            } else {
+                LOGGER.debug("Unable to write to authentication log file " + file, e);
+            }
+        }
+        if (closed && !thread.isAlive()) {
+            closeChannel();
+        }
+        return pending.isEmpty();
+    }
+
+    private boolean needsRotation() throws IOException {
+        return (maxSize > 0 && channel.size() >= maxSize)
+                || (maxAge > 0 && System.currentTimeMillis() - fileStart >= maxAge);
+    }
+
+    private void open() throws IOException {
+        file.getParentFile().mkdirs();
+        fileStart = file.exists()
+                ? Files.readAttributes(file.toPath(), BasicFileAttributes.class).creationTime().toMillis()
+                : System.currentTimeMillis();
+        channel = new FileOutputStream(file, true).getChannel();
+    }
+
+    private void rotate() throws IOException {
+        File oldest = new File(file.getPath() + "." + maxFiles);
+        if (oldest.exists() && !oldest.delete()) {
+            throw new IOException("Unable to delete " + oldest);
+        }
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            File f = new File(file.getPath() + "." + i);
+            if (f.exists() && !f.renameTo(new File(file.getPath() + "." + (i + 1)))) {
+                throw new IOException("Unable to rename " + f);
+            }
+        }
+        if (!file.renameTo(new File(file.getPath() + ".1"))) {
+            throw new IOException("Unable to rename " + file);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            channel = null;
+        }
+    }
+
+    private static List<Record> singleton(Record record) {
+        List<Record> list = new ArrayList<>();
+        list.add(record);
+        return list;
+    }
+
+    static class Record {
+        final long timestamp;
+        final String message;
+
+        Record(long timestamp, String message) {
+            this.timestamp = timestamp;
+            this.message = message;
+        }
+    }
+
+}
@@ -21,7 +21,10 @@ import java.util.Map;
 import org.apache.karaf.jaas.config.JaasRealm;
 import org.apache.karaf.jaas.modules.BackingEngineFactory;
 import org.apache.karaf.jaas.modules.EncryptionService;
+import org.apache.karaf.jaas.modules.audit.FileAuditWriter;
 import org.apache.karaf.jaas.modules.encryption.BasicEncryptionService;
+import org.apache.karaf.jaas.modules.jdbc.JDBCCache;
+import org.apache.karaf.jaas.modules.jdbc.JDBCUtils;
 import org.apache.karaf.jaas.modules.ldap.LDAPCache;
 import org.apache.karaf.jaas.modules.properties.AutoEncryptionSupport;
 import org.apache.karaf.jaas.modules.properties.PropertiesBackingEngineFactory;
@@ -81,6 +84,9 @@ public class Activator extends BaseActivator implements ManagedService {
         }
         super.doStop();
         LDAPCache.clear();
+        JDBCCache.clear();
+        JDBCUtils.clear();
+        FileAuditWriter.closeAll();
     }
 
     @Override
@@ -41,6 +41,7 @@ public class JDBCBackingEngine implements BackingEngine {
 
     private DataSource dataSource;
     private EncryptionSupport encryptionSupport;
+    private JDBCCache cache;
 
     private String addUserStatement = "INSERT INTO USERS VALUES(?,?)";
     private String addRoleStatement = "INSERT INTO ROLES VALUES(?,?)";
@@ -258,6 +259,9 @@ public class JDBCBackingEngine implements BackingEngine {
 
     protected void rawUpdate(Connection connection, String query, String... params) throws SQLException {
         int rows = JDBCUtils.rawUpdate(connection, query, params);
+        if (cache != null) {
+            cache.invalidate();
+        }
         if (logger.isDebugEnabled()) {
             logger.debug(String.format("Executing [%s], params=%s. %d rows affected.", query, Arrays.toString(params), rows));
         }
@@ -323,4 +327,11 @@ public class JDBCBackingEngine implements BackingEngine {
         this.selectRolesQuery = selectRolesQuery;
     }
 
+    /**
+     * The cache of the authentications, invalidated when the users or roles are modified.
+     */
+    public void setCache(JDBCCache cache) {
+        this.cache = cache;
+    }
+
 }
@@ -50,6 +50,7 @@ public class JDBCBackingEngineFactory implements BackingEngineFactory {
             DataSource dataSource = JDBCUtils.createDatasource(bundleContext, datasourceURL);
             EncryptionSupport encryptionSupport = new EncryptionSupport(options);
             instance = new JDBCBackingEngine(dataSource, encryptionSupport);
+            instance.setCache(JDBCCache.getCache(options));
             if(addUserStatement != null) {
                 instance.setAddUserStatement(addUserStatement);
             }
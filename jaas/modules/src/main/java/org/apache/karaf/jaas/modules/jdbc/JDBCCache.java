@@ -0,0 +1,194 @@
+/*
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.jaas.modules.jdbc;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.security.auth.login.LoginException;
+
+/**
+ * Cache of the outcome of the authentications against a JDBC realm.
+ *
+ * Both the successful and the failed authentications are cached, for a short time,
+ * so that a burst of logins does not hit the database each time.  The failures are kept apart,
+ * so that many failed attempts, such as a brute force, do not evict the successes.  Entries are keyed
+ * by a salted digest of the user name and password, the passwords are never kept.
+ * The cache is disabled unless a time to live is configured.
+ * Caches are shared by the login modules and backing engines using the same datasource and queries,
+ * as they are not given the same options: the proxy login module removes its own options.
+ */
+public class JDBCCache {
+
+    public static final String CACHE_TIME_TO_LIVE = "cache.timeToLive";
+    public static final String CACHE_SIZE = "cache.size";
+    public static final int DEFAULT_SIZE = 1000;
+
+    private static final ConcurrentMap<List<Object>, JDBCCache> CACHES = new ConcurrentHashMap<>();
+
+    public static void clear() {
+        CACHES.clear();
+    }
+
+    /**
+     * Returns the cache for the given realm options, or <code>null</code> if caching is disabled.
+     */
+    public static JDBCCache getCache(Map<String, ?> options) {
+        if (!options.containsKey(CACHE_TIME_TO_LIVE)
+                || Integer.parseInt(options.get(CACHE_TIME_TO_LIVE).toString().trim()) <= 0) {
+            return null;
+        }
+        List<Object> key = getKey(options);
+        JDBCCache cache = CACHES.get(key);
+        if (cache == null) {
+            CACHES.putIfAbsent(key, new JDBCCache(options));
+            cache = CACHES.get(key);
+        }
+        return cache;
+    }
+
+    private static List<Object> getKey(Map<String, ?> options) {
+        return Arrays.<Object>asList(
+                options.get(JDBCUtils.DATASOURCE),
+                options.get(JDBCLoginModule.PASSWORD_QUERY),
+                options.get(JDBCLoginModule.ROLE_QUERY),
+                options.get(JDBCLoginModule.CREDENTIALS_QUERY),
+                options.get(CACHE_TIME_TO_LIVE),
+                options.get(CACHE_SIZE));
+    }
+
+    private final long timeToLive;
+    private final Map<String, Entry> successes;
+    private final Map<String, Entry> failures;
+    private final byte[] salt = new byte[16];
+
+    public JDBCCache(Map<String, ?> options) {
+        timeToLive = Integer.parseInt(options.get(CACHE_TIME_TO_LIVE).toString().trim()) * 1000L;
+        int size = options.containsKey(CACHE_SIZE)
+                ? Integer.parseInt(options.get(CACHE_SIZE).toString().trim()) : DEFAULT_SIZE;
+        successes = createEntries(size);
+        failures = createEntries(size);
+        new SecureRandom().nextBytes(salt);
+    }
+
+    /**
+     * Returns the principals of a cached successful authentication, <code>null</code> if none is cached,
+     * or throws the exception of a cached failed authentication.
+     */
+    public Set<Principal> get(String user, String password) throws LoginException {
+        String key = getKey(user, password);
+        Entry entry;
+        synchronized (this) {
+            entry = get(successes, key);
+            if (entry == null) {
+                entry = get(failures, key);
+            }
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (entry.failure != null) {
+            throw new LoginException(entry.failure);
+        }
+        return entry.principals;
+    }
+
+    public void putSuccess(String user, String password, Set<Principal> principals) {
+        put(successes, user, password, new Entry(System.currentTimeMillis() + timeToLive,
+                Collections.unmodifiableSet(new HashSet<>(principals)), null));
+    }
+
+    public void putFailure(String user, String password, String failure) {
+        put(failures, user, password, new Entry(System.currentTimeMillis() + timeToLive, null, failure));
+    }
+
+    /**
+     * Discard all the cached authentications, when the users or roles are modified.
+     */
+    public synchronized void invalidate() {
+        successes.clear();
+        failures.clear();
+    }
+
+    private void put(Map<String, Entry> entries, String user, String password, Entry entry) {
+        String key = getKey(user, password);
+        synchronized (this) {
+            // a new outcome replaces the other one
+            successes.remove(key);
+            failures.remove(key);
+            entries.put(key, entry);
+        }
+    }
+
+    private Entry get(Map<String, Entry> entries, String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiration - System.currentTimeMillis() <= 0) {
+            entries.remove(key);
+            entry = null;
+        }
+        return entry;
+    }
+
+    private static Map<String, Entry> createEntries(final int size) {
+        return new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    private String getKey(String user, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            digest.update(user.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(password.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0x0f, 16)).append(Character.forDigit(b & 0x0f, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static class Entry {
+        final long expiration;
+        final Set<Principal> principals;
+        final String failure;
+
+        Entry(long expiration, Set<Principal> principals, String failure) {
+            this.expiration = expiration;
+            this.principals = principals;
+            this.failure = failure;
+        }
+    }
+
+}
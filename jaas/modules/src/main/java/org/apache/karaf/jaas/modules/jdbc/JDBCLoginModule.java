@@ -35,9 +35,11 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class JDBCLoginModule extends AbstractKarafLoginModule {
 
@@ -46,6 +48,7 @@ public class JDBCLoginModule extends AbstractKarafLoginModule {
     public static final String PASSWORD_QUERY = "query.password";
     public static final String USER_QUERY = "query.user";
     public static final String ROLE_QUERY = "query.role";
+    public static final String CREDENTIALS_QUERY = "query.credentials";
     public static final String INSERT_USER_STATEMENT = "insert.user";
     public static final String INSERT_ROLE_STATEMENT = "insert.role";
     public static final String DELETE_ROLE_STATEMENT = "delete.role";
@@ -55,6 +58,11 @@ public class JDBCLoginModule extends AbstractKarafLoginModule {
     private String datasourceURL;
     protected String passwordQuery = "SELECT PASSWORD FROM USERS WHERE USERNAME=?";
     protected String roleQuery = "SELECT ROLE FROM ROLES WHERE USERNAME=?";
+    /**
+     * Optional query returning both the password and the roles of the user, one role per row,
+     * such as <code>SELECT U.PASSWORD, R.ROLE FROM USERS U LEFT JOIN ROLES R ON U.USERNAME=R.USERNAME WHERE U.USERNAME=?</code>
+     */
+    protected String credentialsQuery;
 
     public void initialize(Subject subject, CallbackHandler callbackHandler, Map<String, ?> sharedState, Map<String, ?> options) {
         super.initialize(subject, callbackHandler, options);
@@ -70,6 +78,9 @@ public class JDBCLoginModule extends AbstractKarafLoginModule {
         if (options.containsKey(ROLE_QUERY)) {
             roleQuery = (String) options.get(ROLE_QUERY);
         }
+        if (options.containsKey(CREDENTIALS_QUERY)) {
+            credentialsQuery = (String) options.get(CREDENTIALS_QUERY);
+        }
     }
 
     public boolean login() throws LoginException {
@@ -95,41 +106,82 @@ public class JDBCLoginModule extends AbstractKarafLoginModule {
         String password = new String(tmpPassword);
         principals = new HashSet<>();
 
+        JDBCCache cache = JDBCCache.getCache(options);
+        if (cache != null) {
+            Set<Principal> cached = cache.get(user, password);
+            if (cached != null) {
+                principals.addAll(cached);
+                return true;
+            }
+        }
+
+        String failure = null;
+        DataSource datasource = null;
         try {
-            DataSource datasource = JDBCUtils.createDatasource(bundleContext, datasourceURL);
+            datasource = JDBCUtils.createDatasource(bundleContext, datasourceURL);
             try (Connection connection = datasource.getConnection()) {
-                List<String> passwords = JDBCUtils.rawSelect(connection, passwordQuery, user);
+                List<String> passwords = new ArrayList<>();
+                List<String> roles = new ArrayList<>();
+                if (credentialsQuery != null) {
+                    for (String[] row : JDBCUtils.rawSelect(connection, credentialsQuery, 2, user)) {
+                        if (passwords.isEmpty()) {
+                            passwords.add(row[0]);
+                        }
+                        if (row[1] != null) {
+                            roles.add(row[1]);
+                        }
+                    }
+                } else {
+                    passwords = JDBCUtils.rawSelect(connection, passwordQuery, user);
+                }
                 if (passwords.isEmpty()) {
                     if (!this.detailedLoginExcepion) {
-                        throw new LoginException("login failed");
+                        failure = "login failed";
                     } else {
-                        throw new LoginException("User " + user + " does not exist");
+                        failure = "User " + user + " does not exist";
                     }
-                }
-                if (!checkPassword(password, passwords.get(0))) {
+                } else if (!checkPassword(password, passwords.get(0))) {
                     if (!this.detailedLoginExcepion) {
-                        throw new LoginException("login failed");
+                        failure = "login failed";
                     } else {
-                        throw new LoginException("Password for " + user + " does not match");
+                        failure = "Password for " + user + " does not match";
                     }
-                }
-                principals.add(new UserPrincipal(user));
-
-                List<String> roles = JDBCUtils.rawSelect(connection, roleQuery, user);
-                for (String role : roles) {
-                    if (role.startsWith(BackingEngine.GROUP_PREFIX)) {
-                        principals.add(new GroupPrincipal(role.substring(BackingEngine.GROUP_PREFIX.length())));
-                        for (String r : JDBCUtils.rawSelect(connection, roleQuery, role)) {
-                            principals.add(new RolePrincipal(r));
+                } else {
+                    principals.add(new UserPrincipal(user));
+
+                    if (credentialsQuery == null) {
+                        roles = JDBCUtils.rawSelect(connection, roleQuery, user);
+                    }
+                    for (String role : roles) {
+                        if (role.startsWith(BackingEngine.GROUP_PREFIX)) {
+                            principals.add(new GroupPrincipal(role.substring(BackingEngine.GROUP_PREFIX.length())));
+                            for (String r : JDBCUtils.rawSelect(connection, roleQuery, role)) {
+                                principals.add(new RolePrincipal(r));
+                            }
+                        } else {
+                            principals.add(new RolePrincipal(role));
                         }
-                    } else {
-                        principals.add(new RolePrincipal(role));
                     }
                 }
             }
         } catch (Exception ex) {
+            if (datasource != null && JDBCUtils.isServiceUnavailable(ex)) {
+                // the datasource will be looked up again on the next login
+                JDBCUtils.invalidateDatasource(datasource);
+            }
             throw new LoginException("Error has occurred while retrieving credentials from database:" + ex.getMessage());
         }
+        if (failure != null) {
+            principals.clear();
+            failure = "Error has occurred while retrieving credentials from database:" + failure;
+            if (cache != null) {
+                cache.putFailure(user, password, failure);
+            }
+            throw new LoginException(failure);
+        }
+        if (cache != null) {
+            cache.putSuccess(user, password, principals);
+        }
         return true;
     }
 
@@ -21,11 +21,17 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceReference;
+import org.osgi.framework.SynchronousBundleListener;
 
 import javax.naming.InitialContext;
 import javax.sql.DataSource;
@@ -36,19 +42,98 @@ public final class JDBCUtils {
     public static final String JNDI = "jndi:";
     public static final String OSGI = "osgi:";
 
+    // keyed on the service reference of osgi datasources, on the url of the jndi ones
+    private static final ConcurrentMap<Object, CachedDatasource> DATASOURCES = new ConcurrentHashMap<>();
+
     private JDBCUtils() {
 
     }
 
     /**
      * Looks up a datasource from the url. The datasource can be passed either as jndi name or bundles ldap filter.
+     * The datasource is looked up once per service or jndi name, until its service is unregistered,
+     * the bundle that got it stops, or it is invalidated.
      */
     public static DataSource createDatasource(BundleContext bc, String url) throws Exception {
+        String trimmed = (url != null) ? url.trim() : null;
+        ServiceReference ref = null;
+        Object key = trimmed;
+        if (trimmed != null && trimmed.startsWith(OSGI)) {
+            ref = getServiceReference(bc, trimmed.substring(OSGI.length()));
+            key = ref;
+        }
+        CachedDatasource cached = (key != null) ? DATASOURCES.get(key) : null;
+        if (cached == null) {
+            cached = doCreateCachedDatasource(key, bc, ref, url);
+            CachedDatasource existing = DATASOURCES.putIfAbsent(key, cached);
+            if (existing != null) {
+                cached.release();
+                cached = existing;
+            } else if (!cached.valid) {
+                // unregistered while being cached
+                DATASOURCES.remove(key, cached);
+            }
+        }
+        return cached.dataSource;
+    }
+
+    /**
+     * Discards the given cached datasource, after it failed because the service behind it is unavailable.
+     */
+    public static void invalidateDatasource(DataSource dataSource) {
+        for (CachedDatasource cached : DATASOURCES.values()) {
+            if (cached.dataSource == dataSource && DATASOURCES.remove(cached.key, cached)) {
+                cached.release();
+            }
+        }
+    }
+
+    /**
+     * Checks if the failure is caused by the service behind a datasource proxy being unavailable,
+     * as reported by the blueprint or spring dm proxies.
+     */
+    public static boolean isServiceUnavailable(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if ("ServiceUnavailableException".equals(t.getClass().getSimpleName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Releases all the cached datasources.
+     */
+    public static void clear() {
+        for (Object key : new ArrayList<>(DATASOURCES.keySet())) {
+            CachedDatasource cached = DATASOURCES.remove(key);
+            if (cached != null) {
+                cached.release();
+            }
+        }
+    }
+
+    private static CachedDatasource doCreateCachedDatasource(Object key, BundleContext bc, ServiceReference ref, String url) throws Exception {
+        if (ref != null) {
+            // listen before getting the service, so that an unregistration is not missed
+            CachedDatasource cached = new CachedDatasource(key, bc, ref);
+            bc.addServiceListener(cached, "(" + Constants.SERVICE_ID + "=" + ref.getProperty(Constants.SERVICE_ID) + ")");
+            bc.addBundleListener(cached);
+            Object ds = bc.getService(ref);
+            if (ds == null) {
+                cached.release();
+                throw new Exception("Unable to create datasource for " + url);
+            }
+            cached.dataSource = DataSource.class.cast(ds);
+            return cached;
+        }
         Object ds = doCreateDatasource(bc, url);
         if (ds == null) {
             throw new Exception("Unable to create datasource for " + url);
         }
-        return DataSource.class.cast(ds);
+        CachedDatasource cached = new CachedDatasource(key, null, null);
+        cached.dataSource = DataSource.class.cast(ds);
+        return cached;
     }
 
     protected static Object doCreateDatasource(BundleContext bc, String url) throws Exception {
@@ -64,30 +149,33 @@ public final class JDBCUtils {
                 ic.close();
             }
         } else if (url.startsWith(OSGI)) {
-            String osgiFilter = url.substring(OSGI.length());
-            String clazz = null;
-            String filter = null;
-            String[] tokens = osgiFilter.split("/", 2);
-            if (tokens.length > 0) {
-                clazz = tokens[0];
-            }
-            if (tokens.length > 1) {
-                filter = tokens[1];
-            }
-            ServiceReference[] references = bc.getServiceReferences(clazz, filter);
-            if (references != null) {
-                ServiceReference ref = references[0];
-                Object ds = bc.getService(ref);
-                bc.ungetService(ref);
-                return ds;
-            } else {
-                throw new Exception("Unable to find service reference for datasource: " + clazz + "/" + filter);
-            }
+            ServiceReference ref = getServiceReference(bc, url.substring(OSGI.length()));
+            Object ds = bc.getService(ref);
+            bc.ungetService(ref);
+            return ds;
         } else {
             throw new Exception("Illegal datasource url format " + url);
         }
     }
 
+    private static ServiceReference getServiceReference(BundleContext bc, String osgiFilter) throws Exception {
+        String clazz = null;
+        String filter = null;
+        String[] tokens = osgiFilter.split("/", 2);
+        if (tokens.length > 0) {
+            clazz = tokens[0];
+        }
+        if (tokens.length > 1) {
+            filter = tokens[1];
+        }
+        ServiceReference[] references = bc.getServiceReferences(clazz, filter);
+        if (references != null) {
+            return references[0];
+        } else {
+            throw new Exception("Unable to find service reference for datasource: " + clazz + "/" + filter);
+        }
+    }
+
     protected static int rawUpdate(DataSource dataSource, String query, String... params) throws SQLException {
         try (Connection connection = dataSource.getConnection()) {
             try (PreparedStatement statement = connection.prepareStatement(query)) {
@@ -133,4 +221,80 @@ public final class JDBCUtils {
         return results;
     }
 
+    /**
+     * Returns the rows of the given query, with the values of the given number of columns.
+     */
+    protected static List<String[]> rawSelect(Connection connection, String query, int columns, String... params) throws SQLException {
+        List<String[]> results = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            for (int i = 0; i < params.length; i++) {
+                statement.setString(i + 1, params[i]);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String[] row = new String[columns];
+                    for (int i = 0; i < columns; i++) {
+                        row[i] = resultSet.getString(i + 1);
+                    }
+                    results.add(row);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * A datasource looked up once, the osgi ones are held until their service goes away
+     * or the bundle that got them stops, so that its context is not retained.
+     */
+    static class CachedDatasource implements ServiceListener, SynchronousBundleListener {
+        final Object key;
+        final BundleContext bc;
+        final ServiceReference ref;
+        volatile DataSource dataSource;
+        volatile boolean valid = true;
+
+        CachedDatasource(Object key, BundleContext bc, ServiceReference ref) {
+            this.key = key;
+            this.bc = bc;
+            this.ref = ref;
+        }
+
+        @Override
+        public void serviceChanged(ServiceEvent event) {
+            if (event.getType() == ServiceEvent.UNREGISTERING) {
+                discard();
+            }
+        }
+
+        @Override
+        public void bundleChanged(BundleEvent event) {
+            if (event.getType() == BundleEvent.STOPPING && event.getBundle() == bc.getBundle()) {
+                discard();
+            }
+        }
+
+        private void discard() {
+            DATASOURCES.remove(key, this);
+            release();
+        }
+
+        synchronized void release() {
+            if (valid) {
+                valid = false;
+                if (bc != null) {
+                    try {
+                        bc.removeServiceListener(this);
+                        bc.removeBundleListener(this);
+                        if (dataSource != null) {
+                            bc.ungetService(ref);
+                        }
+                    } catch (IllegalStateException e) {
+                        // the bundle context is no longer valid
+                    }
+                }
+            }
+        }
+    }
+
 }
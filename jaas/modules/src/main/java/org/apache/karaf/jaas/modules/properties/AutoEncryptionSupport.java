@@ -140,6 +140,7 @@ public class AutoEncryptionSupport implements Runnable {
         }
         if (changed) {
             users.save();
+            PropertiesUsers.invalidate();
         }
     }
 
@@ -94,6 +94,7 @@ public class PropertiesBackingEngine implements BackingEngine {
 
         try {
             users.save();
+            PropertiesUsers.invalidate();
         } catch (Exception ex) {
             LOGGER.error("Cannot update users file,", ex);
         }
@@ -110,6 +111,7 @@ public class PropertiesBackingEngine implements BackingEngine {
 
         try {
             users.save();
+            PropertiesUsers.invalidate();
         } catch (Exception ex) {
             LOGGER.error("Cannot remove users file,", ex);
         }
@@ -176,6 +178,7 @@ public class PropertiesBackingEngine implements BackingEngine {
         }
         try {
             users.save();
+            PropertiesUsers.invalidate();
         } catch (Exception ex) {
             LOGGER.error("Cannot update users file,", ex);
         }
@@ -206,6 +209,7 @@ public class PropertiesBackingEngine implements BackingEngine {
 
         try {
             users.save();
+            PropertiesUsers.invalidate();
         } catch (Exception ex) {
             LOGGER.error("Cannot update users file,", ex);
         }
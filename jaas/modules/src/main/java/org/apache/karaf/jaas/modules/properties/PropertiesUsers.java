@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.karaf.jaas.modules.properties;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.felix.utils.properties.Properties;
+import org.apache.karaf.jaas.boot.principal.GroupPrincipal;
+import org.apache.karaf.jaas.boot.principal.RolePrincipal;
+import org.apache.karaf.jaas.boot.principal.UserPrincipal;
+
+/**
+ * An immutable snapshot of a users properties file.
+ *
+ * Snapshots are shared between the login modules and only built again when the
+ * size or the modification time of the file change, or when the file is modified
+ * through a {@link PropertiesBackingEngine}.  The principals of each user, including
+ * the roles of its groups, are computed when the snapshot is built.
+ */
+public final class PropertiesUsers {
+
+    private static final ConcurrentMap<String, PropertiesUsers> SNAPSHOTS = new ConcurrentHashMap<String, PropertiesUsers>();
+    // Incremented on invalidation, so that snapshots read before are not used anymore
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    private final long generation;
+    private final long lastModified;
+    private final long length;
+    private final Map<String, User> users;
+
+    /**
+     * Return the current snapshot of the given file.
+     */
+    public static PropertiesUsers get(File file) throws IOException {
+        String key = file.getAbsolutePath();
+        // Read the generation and the file attributes first so that a concurrent change is detected next time
+        long generation = GENERATION.get();
+        long lastModified = file.lastModified();
+        long length = file.length();
+        PropertiesUsers snapshot = SNAPSHOTS.get(key);
+        if (snapshot != null && snapshot.generation == generation
+                && snapshot.lastModified == lastModified && snapshot.length == length) {
+            return snapshot;
+        }
+        PropertiesUsers fresh = new PropertiesUsers(new Properties(file), generation, lastModified, length);
+        // Do not overwrite a snapshot stored concurrently, which may be more recent
+        if (snapshot == null) {
+            SNAPSHOTS.putIfAbsent(key, fresh);
+        } else {
+            SNAPSHOTS.replace(key, snapshot, fresh);
+        }
+        return fresh;
+    }
+
+    /**
+     * Discard all the snapshots, the files being read again on next use.
+     */
+    public static void invalidate() {
+        GENERATION.incrementAndGet();
+        SNAPSHOTS.clear();
+    }
+
+    private PropertiesUsers(Properties properties, long generation, long lastModified, long length) {
+        this.generation = generation;
+        this.lastModified = lastModified;
+        this.length = length;
+        Map<String, User> users = new HashMap<String, User>();
+        for (String name : properties.keySet()) {
+            String[] infos = properties.get(name).split(",");
+            Set<Principal> principals = new HashSet<Principal>();
+            principals.add(new UserPrincipal(name));
+            for (int i = 1; i < infos.length; i++) {
+                String info = infos[i].trim();
+                if (info.startsWith(PropertiesBackingEngine.GROUP_PREFIX)) {
+                    // it's a group reference
+                    principals.add(new GroupPrincipal(info.substring(PropertiesBackingEngine.GROUP_PREFIX.length())));
+                    String groupInfo = properties.get(info);
+                    if (groupInfo != null) {
+                        String[] roles = groupInfo.split(",");
+                        for (int j = 1; j < roles.length; j++) {
+                            principals.add(new RolePrincipal(roles[j].trim()));
+                        }
+                    }
+                } else {
+                    // it's an user reference
+                    principals.add(new RolePrincipal(info));
+                }
+            }
+            users.put(name, new User(infos[0], Collections.unmodifiableSet(principals)));
+        }
+        this.users = Collections.unmodifiableMap(users);
+    }
+
+    /**
+     * Return the given user, or <code>null</code> if it does not exist.
+     */
+    public User getUser(String name) {
+        return name != null ? users.get(name) : null;
+    }
+
+    public static final class User {
+
+        private final String credential;
+        private final Set<Principal> principals;
+
+        User(String credential, Set<Principal> principals) {
+            this.credential = credential;
+            this.principals = principals;
+        }
+
+        /**
+         * The password or public key, stored in the first position
+         */
+        public String getCredential() {
+            return credential;
+        }
+
+        /**
+         * The user, group and role principals of the user
+         */
+        public Set<Principal> getPrincipals() {
+            return principals;
+        }
+
+    }
+
+}
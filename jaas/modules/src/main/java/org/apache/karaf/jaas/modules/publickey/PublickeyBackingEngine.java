@@ -25,6 +25,7 @@ import org.apache.karaf.jaas.boot.principal.RolePrincipal;
 import org.apache.karaf.jaas.boot.principal.UserPrincipal;
 import org.apache.karaf.jaas.modules.BackingEngine;
 import org.apache.karaf.jaas.modules.encryption.EncryptionSupport;
+import org.apache.karaf.jaas.modules.properties.PropertiesUsers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -80,6 +81,7 @@ public class PublickeyBackingEngine implements BackingEngine {
 
         try {
             users.save();
+            PropertiesUsers.invalidate();
         } catch (Exception ex) {
             LOGGER.error("Cannot update users file,", ex);
         }
@@ -96,6 +98,7 @@ public class PublickeyBackingEngine implements BackingEngine {
 
         try {
             users.save();
+            PropertiesUsers.invalidate();
         } catch (Exception ex) {
             LOGGER.error("Cannot remove users file,", ex);
         }
@@ -162,6 +165,7 @@ public class PublickeyBackingEngine implements BackingEngine {
         }
         try {
             users.save();
+            PropertiesUsers.invalidate();
         } catch (Exception ex) {
             LOGGER.error("Cannot update users file,", ex);
         }
@@ -192,6 +196,7 @@ public class PublickeyBackingEngine implements BackingEngine {
 
         try {
             users.save();
+            PropertiesUsers.invalidate();
         } catch (Exception ex) {
             LOGGER.error("Cannot update users file,", ex);
         }
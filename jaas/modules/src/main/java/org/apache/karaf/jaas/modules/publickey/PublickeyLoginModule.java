@@ -35,11 +35,7 @@ import javax.security.auth.callback.UnsupportedCallbackException;
 import javax.security.auth.login.FailedLoginException;
 import javax.security.auth.login.LoginException;
 
-import org.apache.felix.utils.properties.Properties;
-import org.apache.karaf.jaas.modules.properties.PropertiesBackingEngine;
-import org.apache.karaf.jaas.boot.principal.GroupPrincipal;
-import org.apache.karaf.jaas.boot.principal.RolePrincipal;
-import org.apache.karaf.jaas.boot.principal.UserPrincipal;
+import org.apache.karaf.jaas.modules.properties.PropertiesUsers;
 import org.apache.karaf.jaas.modules.AbstractKarafLoginModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,9 +60,9 @@ public class PublickeyLoginModule extends AbstractKarafLoginModule {
 
     public boolean login() throws LoginException {
         File f = new File(usersFile);
-        Properties users;
+        PropertiesUsers users;
         try {
-            users = new Properties(f);
+            users = PropertiesUsers.get(f);
         } catch (IOException ioe) {
             throw new LoginException("Unable to load user properties file " + f);
         }
@@ -91,13 +87,7 @@ public class PublickeyLoginModule extends AbstractKarafLoginModule {
         }
 
         // user infos container read from the users properties file
-        String userInfos = null;
-
-        try {
-            userInfos = (String) users.get(user);
-        } catch (NullPointerException e) {
-            //error handled in the next statement
-        }
+        PropertiesUsers.User userInfos = users.getUser(user);
         if (userInfos == null) {
             if (!this.detailedLoginExcepion) {
                 throw new FailedLoginException("login failed");
@@ -107,8 +97,7 @@ public class PublickeyLoginModule extends AbstractKarafLoginModule {
         }
 
         // the password is in the first position
-        String[] infos = userInfos.split(",");
-        String storedKey = infos[0];
+        String storedKey = userInfos.getCredential();
 
         // check the provided password
         if (!getString(key).equals(storedKey)) {
@@ -119,26 +108,7 @@ public class PublickeyLoginModule extends AbstractKarafLoginModule {
             }
         }
 
-        principals = new HashSet<Principal>();
-        principals.add(new UserPrincipal(user));
-        for (int i = 1; i < infos.length; i++) {
-            if (infos[i].trim().startsWith(PropertiesBackingEngine.GROUP_PREFIX)) {
-                // it's a group reference
-                principals.add(new GroupPrincipal(infos[i].trim().substring(PropertiesBackingEngine.GROUP_PREFIX.length())));
-                String groupInfo = (String) users.get(infos[i].trim());
-                if (groupInfo != null) {
-                    String[] roles = groupInfo.split(",");
-                    for (int j = 1; j < roles.length; j++) {
-                        principals.add(new RolePrincipal(roles[j].trim()));
-                    }
-                }
-            } else {
-                // it's an user reference
-                principals.add(new RolePrincipal(infos[i].trim()));
-            }
-        }
-
-        users.clear();
+        principals = new HashSet<Principal>(userInfos.getPrincipals());
 
         if (debug) {
             LOG.debug("Successfully logged in " + user);
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.jaas.modules.audit;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class FileAuditWriterTest {
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        File dir = createTempDir();
+        try {
+            File file = new File(dir, "security/audit.log");
+            final FileAuditWriter writer = FileAuditWriter.getWriter(file.getPath());
+            Assert.assertSame(writer, FileAuditWriter.getWriter(file.getPath()));
+
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i = 0; i < 8; i++) {
+                final int id = i;
+                threads.add(new Thread() {
+                    public void run() {
+                        for (int j = 0; j < 1000; j++) {
+                            writer.write("Authentication attempt - user" + id);
+                        }
+                    }
+                });
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            // All the queued records are written when closing
+            FileAuditWriter.closeAll();
+
+            List<String> lines = readLines(file);
+            Assert.assertEquals(8000, lines.size());
+            for (String line : lines) {
+                Assert.assertTrue(line, line.matches("\\d\\d/\\d\\d/\\d{4} \\d\\d:\\d\\d:\\d\\d - Authentication attempt - user\\d"));
+            }
+
+            // A new writer is started after closing
+            Assert.assertNotSame(writer, FileAuditWriter.getWriter(file.getPath()));
+            FileAuditWriter.closeAll();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testRotation() throws Exception {
+        File dir = createTempDir();
+        try {
+            File file = new File(dir, "audit.log");
+            FileAuditWriter writer = FileAuditWriter.getWriter(file.getPath());
+            writer.setMaxSize(1);
+            writer.setMaxFiles(2);
+            for (int i = 0; i < 4; i++) {
+                writer.write("Explicit logout - user" + i);
+                // wait for each record to be written in its own batch
+                long end = System.currentTimeMillis() + 5000;
+                while (!file.exists() || readLines(file).isEmpty()
+                        || !readLines(file).get(0).endsWith("user" + i)) {
+                    Assert.assertTrue(System.currentTimeMillis() < end);
+                    Thread.sleep(10);
+                }
+            }
+            FileAuditWriter.closeAll();
+
+            Assert.assertTrue(readLines(file).get(0).endsWith("user3"));
+            Assert.assertTrue(readLines(new File(dir, "audit.log.1")).get(0).endsWith("user2"));
+            Assert.assertTrue(readLines(new File(dir, "audit.log.2")).get(0).endsWith("user1"));
+            Assert.assertFalse(new File(dir, "audit.log.3").exists());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testFailedRecordsAreRetried() throws Exception {
+        File dir = createTempDir();
+        try {
+            // a file where the log directory should be
+            File parent = new File(dir, "security");
+            Assert.assertTrue(parent.createNewFile());
+            File file = new File(parent, "audit.log");
+            FileAuditWriter writer = FileAuditWriter.getWriter(file.getPath());
+            writer.write("Authentication attempt - user0");
+            writer.write("Authentication attempt - user1");
+            long end = System.currentTimeMillis() + 5000;
+            while (writer.getPendingCount() < 2) {
+                Assert.assertTrue(System.currentTimeMillis() < end);
+                Thread.sleep(10);
+            }
+
+            // the records are written again after a delay
+            Assert.assertTrue(parent.delete());
+            end = System.currentTimeMillis() + 5000;
+            while (!file.exists() || readLines(file).size() < 2) {
+                Assert.assertTrue(System.currentTimeMillis() < end);
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(0, writer.getPendingCount());
+            writer.write("Authentication attempt - user2");
+            FileAuditWriter.closeAll();
+
+            List<String> lines = readLines(file);
+            Assert.assertEquals(3, lines.size());
+            for (int i = 0; i < 3; i++) {
+                Assert.assertTrue(lines.get(i), lines.get(i).endsWith("user" + i));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private static File createTempDir() throws IOException {
+        File dir = File.createTempFile("audit", ".tmp");
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -28,16 +28,25 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.NameCallback;
 import javax.security.auth.callback.PasswordCallback;
 import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.security.auth.login.LoginException;
 import javax.sql.DataSource;
 
 import org.apache.derby.jdbc.EmbeddedDataSource40;
+import org.apache.karaf.jaas.boot.ProxyLoginModule;
 import org.apache.karaf.jaas.boot.principal.GroupPrincipal;
 import org.apache.karaf.jaas.boot.principal.RolePrincipal;
 import org.apache.karaf.jaas.boot.principal.UserPrincipal;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceReference;
 
 import static org.easymock.EasyMock.expect;
@@ -49,6 +58,9 @@ public class JdbcLoginModuleTest {
 
     private EmbeddedDataSource40 dataSource;
     private Map<String, Object> options;
+    private Bundle bundle;
+    private BundleListener bundleListener;
+    private int lookups;
 
     @Before
     public void setUp() throws Exception {
@@ -93,17 +105,47 @@ public class JdbcLoginModuleTest {
         // Mocks
         BundleContext context = EasyMock.createMock(BundleContext.class);
         ServiceReference reference = EasyMock.createMock(ServiceReference.class);
+        bundle = EasyMock.createMock(Bundle.class);
 
         // Create options
         options = new HashMap<>();
         options.put(JDBCUtils.DATASOURCE, "osgi:" + DataSource.class.getName());
         options.put(BundleContext.class.getName(), context);
 
-        expect(context.getServiceReferences(DataSource.class.getName(), null)).andReturn(new ServiceReference[] { reference });
-        expect(context.getService(reference)).andReturn(dataSource);
-        expect(context.ungetService(reference)).andReturn(true);
+        // The datasource is looked up once and held until its service goes away or the bundle stops
+        expect(reference.getProperty(Constants.SERVICE_ID)).andReturn(1L).anyTimes();
+        expect(context.getServiceReferences(DataSource.class.getName(), null)).andReturn(new ServiceReference[] { reference }).anyTimes();
+        expect(context.getBundle()).andReturn(bundle).anyTimes();
+        context.addServiceListener(EasyMock.anyObject(ServiceListener.class), EasyMock.eq("(service.id=1)"));
+        EasyMock.expectLastCall().anyTimes();
+        context.addBundleListener(EasyMock.anyObject(BundleListener.class));
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                bundleListener = (BundleListener) EasyMock.getCurrentArguments()[0];
+                return null;
+            }
+        }).anyTimes();
+        expect(context.getService(reference)).andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                lookups++;
+                return dataSource;
+            }
+        }).anyTimes();
+        context.removeServiceListener(EasyMock.anyObject(ServiceListener.class));
+        EasyMock.expectLastCall().anyTimes();
+        context.removeBundleListener(EasyMock.anyObject(BundleListener.class));
+        EasyMock.expectLastCall().anyTimes();
+        expect(context.ungetService(reference)).andReturn(true).anyTimes();
+
+        EasyMock.replay(context, reference, bundle);
+    }
 
-        EasyMock.replay(context);
+    @After
+    public void tearDown() {
+        JDBCUtils.clear();
+        JDBCCache.clear();
     }
 
     @Test
@@ -148,6 +190,133 @@ public class JdbcLoginModuleTest {
         assertTrue(subject.getPrincipals().contains(new RolePrincipal("role2")));
     }
 
+    @Test
+    public void testLoginModuleWithCredentialsQuery() throws Exception {
+        JDBCBackingEngine engine = new JDBCBackingEngine(dataSource);
+        engine.addGroupRole("group1", "role2");
+        engine.addUser("abc", "xyz");
+        engine.addRole("abc", "role1");
+        engine.addGroup("abc", "group1");
+        engine.addUser("def", "uvw");
+
+        options.put(JDBCLoginModule.CREDENTIALS_QUERY,
+                "SELECT U.PASSWORD, R.ROLE FROM USERS U LEFT JOIN ROLES R ON U.USERNAME = R.USERNAME WHERE U.USERNAME = ?");
+
+        Subject subject = new Subject();
+        JDBCLoginModule module = new JDBCLoginModule();
+        module.initialize(subject, getCallbackHandler("abc", "xyz"), null, options);
+        module.login();
+        module.commit();
+
+        assertTrue(subject.getPrincipals().contains(new UserPrincipal("abc")));
+        assertTrue(subject.getPrincipals().contains(new GroupPrincipal("group1")));
+        assertTrue(subject.getPrincipals().contains(new RolePrincipal("role1")));
+        assertTrue(subject.getPrincipals().contains(new RolePrincipal("role2")));
+
+        subject = new Subject();
+        module = new JDBCLoginModule();
+        module.initialize(subject, getCallbackHandler("def", "uvw"), null, options);
+        module.login();
+        module.commit();
+
+        assertTrue(subject.getPrincipals().contains(new UserPrincipal("def")));
+        assertTrue(subject.getPrincipals(RolePrincipal.class).isEmpty());
+
+        assertFalse(login("def", "xyz"));
+        assertFalse(login("ghi", "xyz"));
+    }
+
+    @Test
+    public void testLoginModuleWithCache() throws Exception {
+        options.put(JDBCCache.CACHE_TIME_TO_LIVE, "60");
+        JDBCBackingEngine engine = new JDBCBackingEngine(dataSource);
+        engine.addUser("abc", "xyz");
+        engine.addRole("abc", "role1");
+
+        assertTrue(login("abc", "xyz"));
+        assertFalse(login("def", "uvw"));
+
+        // Changes made behind the realm are only seen once the cached authentications expire
+        engine.deleteUser("abc");
+        engine.addUser("def", "uvw");
+        assertTrue(login("abc", "xyz"));
+        assertFalse(login("abc", "uvw"));
+        assertFalse(login("def", "uvw"));
+
+        // Changes made through the backing engine discard them
+        engine.setCache(JDBCCache.getCache(options));
+        engine.addRole("def", "role2");
+        assertFalse(login("abc", "xyz"));
+        assertTrue(login("def", "uvw"));
+    }
+
+    @Test
+    public void testBackingEngineFactoryWithCache() throws Exception {
+        options.put(JDBCCache.CACHE_TIME_TO_LIVE, "60");
+        // The engine is given the options of the realm, the login module gets them without the proxy ones
+        Map<String, Object> realmOptions = new HashMap<>(options);
+        realmOptions.put(ProxyLoginModule.PROPERTY_MODULE, JDBCLoginModule.class.getName());
+        realmOptions.put(ProxyLoginModule.PROPERTY_BUNDLE, "1");
+        JDBCBackingEngine engine = (JDBCBackingEngine) new JDBCBackingEngineFactory().build(realmOptions);
+        engine.addUser("abc", "xyz");
+        engine.addRole("abc", "role1");
+
+        assertTrue(login("abc", "xyz"));
+        engine.deleteUser("abc");
+        assertFalse(login("abc", "xyz"));
+    }
+
+    @Test
+    public void testCacheKeepsSuccessesOnFailures() throws Exception {
+        options.put(JDBCCache.CACHE_TIME_TO_LIVE, "60");
+        options.put(JDBCCache.CACHE_SIZE, "2");
+        JDBCBackingEngine engine = new JDBCBackingEngine(dataSource);
+        engine.addUser("abc", "xyz");
+
+        assertTrue(login("abc", "xyz"));
+        for (int i = 0; i < 5; i++) {
+            assertFalse(login("abc", "pwd" + i));
+        }
+        engine.deleteUser("abc");
+        assertTrue(login("abc", "xyz"));
+    }
+
+    @Test
+    public void testDatasourceKeptOnQueryFailure() throws Exception {
+        JDBCBackingEngine engine = new JDBCBackingEngine(dataSource);
+        engine.addUser("abc", "xyz");
+
+        assertTrue(login("abc", "xyz"));
+        options.put(JDBCLoginModule.CREDENTIALS_QUERY, "SELECT PASSWORD, ROLE FROM MISSING WHERE USERNAME = ?");
+        assertFalse(login("abc", "xyz"));
+        options.remove(JDBCLoginModule.CREDENTIALS_QUERY);
+        assertTrue(login("abc", "xyz"));
+        assertEquals(1, lookups);
+    }
+
+    @Test
+    public void testDatasourceReleasedWhenBundleStops() throws Exception {
+        JDBCBackingEngine engine = new JDBCBackingEngine(dataSource);
+        engine.addUser("abc", "xyz");
+
+        assertTrue(login("abc", "xyz"));
+        assertTrue(login("abc", "xyz"));
+        assertEquals(1, lookups);
+        bundleListener.bundleChanged(new BundleEvent(BundleEvent.STOPPING, bundle));
+        assertTrue(login("abc", "xyz"));
+        assertEquals(2, lookups);
+    }
+
+    private boolean login(String user, String password) throws Exception {
+        JDBCLoginModule module = new JDBCLoginModule();
+        module.initialize(new Subject(), getCallbackHandler(user, password), null, options);
+        try {
+            return module.login();
+        } catch (LoginException e) {
+            return false;
+        }
+    }
+
     @Test
     public void testEngine() throws Exception {
         JDBCBackingEngine engine = new JDBCBackingEngine(dataSource);
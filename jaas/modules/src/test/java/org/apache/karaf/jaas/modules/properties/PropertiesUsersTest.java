@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.jaas.modules.properties;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import junit.framework.Assert;
+
+import org.apache.felix.utils.properties.Properties;
+import org.apache.karaf.jaas.boot.principal.GroupPrincipal;
+import org.apache.karaf.jaas.boot.principal.RolePrincipal;
+import org.apache.karaf.jaas.boot.principal.UserPrincipal;
+import org.junit.Test;
+
+public class PropertiesUsersTest {
+
+    @Test
+    public void testSnapshot() throws Exception {
+        File f = File.createTempFile(getClass().getName(), ".tmp");
+        try {
+            PropertiesBackingEngine pbe = new PropertiesBackingEngine(new Properties(f));
+            pbe.addUser("abc", "xyz");
+            pbe.addRole("abc", "myrole");
+            pbe.addGroup("abc", "group1");
+            pbe.addGroupRole("group1", "r1");
+
+            PropertiesUsers users = PropertiesUsers.get(f);
+            Assert.assertTrue(users == PropertiesUsers.get(f));
+            PropertiesUsers.invalidate();
+            Assert.assertTrue(users != PropertiesUsers.get(f));
+            users = PropertiesUsers.get(f);
+            Assert.assertNull(users.getUser("pqr"));
+            PropertiesUsers.User user = users.getUser("abc");
+            Assert.assertEquals("xyz", user.getCredential());
+            Assert.assertEquals(new HashSet<Object>(Arrays.asList(new UserPrincipal("abc"), new RolePrincipal("myrole"),
+                    new GroupPrincipal("group1"), new RolePrincipal("r1"))), user.getPrincipals());
+
+            // Changes done through the backing engine are seen immediately
+            pbe.addUser("abc", "uvw");
+            Assert.assertEquals("uvw", PropertiesUsers.get(f).getUser("abc").getCredential());
+        } finally {
+            if (!f.delete()) {
+                Assert.fail("Could not delete temporary file: " + f);
+            }
+        }
+    }
+
+}
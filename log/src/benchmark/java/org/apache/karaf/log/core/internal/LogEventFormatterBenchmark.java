@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.log.core.internal;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.karaf.log.core.internal.layout.PatternConverter;
+import org.apache.karaf.log.core.internal.layout.PatternParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ops4j.pax.logging.spi.PaxLevel;
+import org.ops4j.pax.logging.spi.PaxLocationInfo;
+import org.ops4j.pax.logging.spi.PaxLoggingEvent;
+
+/**
+ * Formatting of a batch of events, as done by log:display, comparing the
+ * former per event parsing of the pattern with the cached and batch formatting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LogEventFormatterBenchmark {
+
+    @Param({ "100", "1000" })
+    public int size;
+
+    private LogEventFormatterImpl formatter;
+    private List<PaxLoggingEvent> events;
+    private PrintStream out;
+
+    @Setup
+    public void setUp() {
+        formatter = new LogEventFormatterImpl();
+        formatter.setPattern("%d{ISO8601} | %-5.5p | %-16.16t | %-32.32c{1} | %X{bundle.id} - %X{bundle.name} - %m%n");
+        events = new ArrayList<PaxLoggingEvent>();
+        for (int i = 0; i < size; i++) {
+            events.add(new Event("org.apache.karaf.log.Logger" + (i % 10), "Message number " + i));
+        }
+        out = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    @Benchmark
+    public void parsePerEvent(Blackhole bh) {
+        for (PaxLoggingEvent event : events) {
+            StringBuilder sb = new StringBuilder();
+            for (PatternConverter pc = new PatternParser(formatter.getPattern()).parse(); pc != null; pc = pc.next) {
+                pc.format(sb, event);
+            }
+            bh.consume(sb.toString());
+        }
+    }
+
+    @Benchmark
+    public void formatPerEvent(Blackhole bh) {
+        for (PaxLoggingEvent event : events) {
+            bh.consume(formatter.format(event, null, true));
+        }
+    }
+
+    @Benchmark
+    public void formatBatch() {
+        formatter.format(events, null, true, out);
+    }
+
+    static class Event implements PaxLoggingEvent {
+        private final String logger;
+        private final String message;
+        private final long timestamp = System.currentTimeMillis();
+
+        Event(String logger, String message) {
+            this.logger = logger;
+            this.message = message;
+        }
+
+        public PaxLocationInfo getLocationInformation() {
+            return null;
+        }
+
+        public PaxLevel getLevel() {
+            return Level.INFO;
+        }
+
+        public String getLoggerName() {
+            return logger;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public String getRenderedMessage() {
+            return message;
+        }
+
+        public String getThreadName() {
+            return "pool-1-thread-1";
+        }
+
+        public String[] getThrowableStrRep() {
+            return null;
+        }
+
+        public boolean locationInformationExists() {
+            return false;
+        }
+
+        public long getTimeStamp() {
+            return timestamp;
+        }
+
+        public String getFQNOfLoggerClass() {
+            return null;
+        }
+
+        public Map getProperties() {
+            return Collections.singletonMap("bundle.id", "42");
+        }
+    }
+
+    static class Level implements PaxLevel {
+        static final Level INFO = new Level();
+
+        public boolean isGreaterOrEqual(PaxLevel r) {
+            return toInt() >= r.toInt();
+        }
+
+        public int toInt() {
+            return 20000;
+        }
+
+        public int getSyslogEquivalent() {
+            return 6;
+        }
+
+        @Override
+        public String toString() {
+            return "INFO";
+        }
+    }
+
+}
@@ -17,15 +17,22 @@
 package org.apache.karaf.log.command;
 
 import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
+import org.apache.karaf.log.core.Level;
 import org.apache.karaf.log.core.LogEventFormatter;
+import org.apache.karaf.log.core.LogQuery;
 import org.apache.karaf.log.core.LogService;
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Argument;
 import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Completion;
 import org.apache.karaf.shell.api.action.Option;
 import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.apache.karaf.shell.support.completers.StringsCompleter;
 import org.ops4j.pax.logging.spi.PaxLoggingEvent;
 
 /**
@@ -35,7 +42,7 @@ import org.ops4j.pax.logging.spi.PaxLoggingEvent;
 @Service
 public class DisplayLog implements Action {
 
-    @Option(name = "-n", aliases = {}, description="Number of entries to display", required = false, multiValued = false)
+    @Option(name = "-n", aliases = {}, description="Number of entries to display, the most recent ones matching the other criteria", required = false, multiValued = false)
     int entries;
 
     @Option(name = "-p", aliases = {}, description="Pattern for formatting the output", required = false, multiValued = false)
@@ -44,6 +51,22 @@ public class DisplayLog implements Action {
     @Option(name = "--no-color", description="Disable syntax coloring of log events", required = false, multiValued = false)
     boolean noColor;
 
+    @Option(name = "-l", aliases = { "--level" }, description = "Minimum level of the entries to display (TRACE, DEBUG, INFO, WARN, ERROR)", required = false, multiValued = false)
+    @Completion(value = StringsCompleter.class, values = { "TRACE", "DEBUG", "INFO", "WARN", "ERROR" })
+    String level;
+
+    @Option(name = "--regex", description = "Interpret the logger name as a regular expression", required = false, multiValued = false)
+    boolean regex;
+
+    @Option(name = "--since", description = "Only display entries logged during the given period, for example 30s, 10m, 2h or 1d", required = false, multiValued = false)
+    String since;
+
+    @Option(name = "--mdc", description = "Only display entries with the given MDC key, or key=value", required = false, multiValued = true)
+    List<String> mdc;
+
+    @Option(name = "-r", aliases = { "--reverse" }, description = "Display the newest entries first", required = false, multiValued = false)
+    boolean reverse;
+
     @Argument(index = 0, name = "logger", description = "The name of the logger. This can be ROOT, ALL, or the name of a logger specified in the org.ops4j.pax.logger.cfg file.", required = false, multiValued = false)
     String logger;
 
@@ -53,31 +76,93 @@ public class DisplayLog implements Action {
     @Reference
     LogEventFormatter formatter;
 
+    private LogQuery query;
+
     @Override
     public Object execute() throws Exception {
         
         final PrintStream out = System.out;
 
-        Iterable<PaxLoggingEvent> le = logService.getEvents(entries == 0 ? Integer.MAX_VALUE : entries);
-        for (PaxLoggingEvent event : le) {
-            printEvent(out, event);
-        }
+        Iterable<PaxLoggingEvent> le = getEvents();
+        printEvents(out, le);
         out.println();
         return null;
     }
-        
+
+    /**
+     * Build the query matching the command options.
+     */
+    protected LogQuery getQuery() {
+        if (query == null) {
+            LogQuery q = new LogQuery();
+            if (entries > 0) {
+                q.setLimit(entries);
+            }
+            if (level != null) {
+                q.setLevel(Level.valueOf(level.toUpperCase()));
+            }
+            if (logger != null) {
+                q.setLoggerPattern(regex ? Pattern.compile(logger) : Pattern.compile(Pattern.quote(logger)));
+            }
+            if (since != null) {
+                q.setFrom(System.currentTimeMillis() - parseDuration(since));
+            }
+            if (mdc != null) {
+                for (String m : mdc) {
+                    int idx = m.indexOf('=');
+                    if (idx > 0) {
+                        q.addMdc(m.substring(0, idx), m.substring(idx + 1));
+                    } else {
+                        q.addMdc(m, null);
+                    }
+                }
+            }
+            q.setReverse(reverse);
+            query = q;
+        }
+        return query;
+    }
+
+    /**
+     * Select the events matching the command options.
+     */
+    protected Iterable<PaxLoggingEvent> getEvents() {
+        return logService.getEvents(getQuery());
+    }
+
+    static long parseDuration(String duration) {
+        duration = duration.trim().toLowerCase();
+        TimeUnit unit = TimeUnit.SECONDS;
+        if (duration.endsWith("s")) {
+            duration = duration.substring(0, duration.length() - 1);
+        } else if (duration.endsWith("m")) {
+            unit = TimeUnit.MINUTES;
+            duration = duration.substring(0, duration.length() - 1);
+        } else if (duration.endsWith("h")) {
+            unit = TimeUnit.HOURS;
+            duration = duration.substring(0, duration.length() - 1);
+        } else if (duration.endsWith("d")) {
+            unit = TimeUnit.DAYS;
+            duration = duration.substring(0, duration.length() - 1);
+        }
+        try {
+            return unit.toMillis(Long.parseLong(duration.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid duration: " + duration);
+        }
+    }
+
     protected boolean checkIfFromRequestedLog(PaxLoggingEvent event) {
-    	return (event.getLoggerName().lastIndexOf(logger)>=0) ? true : false;
+        return getQuery().matches(event);
+    }
+
+    protected void printEvents(PrintStream out, Iterable<PaxLoggingEvent> events) {
+        formatter.format(events, overridenPattern, noColor, out);
     }
 
     protected void printEvent(final PrintStream out, PaxLoggingEvent event) {
-        if ((logger != null) && 
-            (event != null)&&
-            (checkIfFromRequestedLog(event))) {
-                out.append(formatter.format(event, overridenPattern, noColor));
-            }
-            else if ((event != null)&&(logger == null)){
-                out.append(formatter.format(event, overridenPattern, noColor));
+        if ((event != null) && (checkIfFromRequestedLog(event))) {
+            out.append(formatter.format(event, overridenPattern, noColor));
         }
     }
 }
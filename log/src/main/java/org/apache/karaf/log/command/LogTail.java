@@ -18,10 +18,10 @@ package org.apache.karaf.log.command;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import org.apache.karaf.log.core.LogService;
 import org.apache.karaf.shell.api.action.Command;
@@ -35,6 +35,8 @@ import org.ops4j.pax.logging.spi.PaxLoggingEvent;
 @Service
 public class LogTail extends DisplayLog {
 
+    private static final int QUEUE_SIZE = 1024;
+
     @Reference
     Session session;
 
@@ -97,17 +99,14 @@ public class LogTail extends DisplayLog {
         boolean doDisplay = true;
 
         public void run() {
-            Iterable<PaxLoggingEvent> le = logService.getEvents(entries == 0 ? Integer.MAX_VALUE : entries);
-            for (PaxLoggingEvent event : le) {
-                if (event != null) {
-                    printEvent(out, event);
-                }
-            }
-            // Tail
-            final BlockingQueue<PaxLoggingEvent> queue = new LinkedBlockingQueue<PaxLoggingEvent>();
+            // Display the oldest entries first
+            reverse = false;
+            printEvents(out, getEvents());
+            // Tail, dropping events if the console can not keep up
+            final BlockingQueue<PaxLoggingEvent> queue = new ArrayBlockingQueue<PaxLoggingEvent>(QUEUE_SIZE);
             PaxAppender appender = new PaxAppender() {
                 public void doAppend(PaxLoggingEvent event) {
-                        queue.add(event);
+                        queue.offer(event);
                 }
             };
             try {
@@ -16,10 +16,18 @@
  */
 package org.apache.karaf.log.core;
 
+import java.io.PrintStream;
+
 import org.ops4j.pax.logging.spi.PaxLoggingEvent;
 
 public interface LogEventFormatter {
 
     public abstract String format(PaxLoggingEvent event, String overridenPattern, boolean noColor);
 
+    /**
+     * Format all the given events, writing them to the given stream.
+     * The pattern is parsed once for all the events, and null events are ignored.
+     */
+    public abstract void format(Iterable<PaxLoggingEvent> events, String overridenPattern, boolean noColor, PrintStream out);
+
 }
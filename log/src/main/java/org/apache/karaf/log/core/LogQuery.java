@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.log.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.ops4j.pax.logging.spi.PaxLoggingEvent;
+
+/**
+ * Criteria used to select log events from the log service.
+ * All criteria are optional and combined.
+ */
+public class LogQuery {
+
+    private Level level;
+    private String loggerPrefix;
+    private Pattern loggerPattern;
+    private long from = Long.MIN_VALUE;
+    private long to = Long.MAX_VALUE;
+    private final Map<String, String> mdc = new HashMap<String, String>();
+    private int limit = Integer.MAX_VALUE;
+    private boolean reverse;
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Only select events with the given level or above.
+     */
+    public LogQuery setLevel(Level level) {
+        this.level = level;
+        return this;
+    }
+
+    public String getLoggerPrefix() {
+        return loggerPrefix;
+    }
+
+    /**
+     * Only select events whose logger name starts with the given prefix.
+     */
+    public LogQuery setLoggerPrefix(String loggerPrefix) {
+        this.loggerPrefix = loggerPrefix;
+        return this;
+    }
+
+    public Pattern getLoggerPattern() {
+        return loggerPattern;
+    }
+
+    /**
+     * Only select events whose logger name contains a match for the given pattern.
+     */
+    public LogQuery setLoggerPattern(Pattern loggerPattern) {
+        this.loggerPattern = loggerPattern;
+        return this;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    /**
+     * Only select events logged at or after the given time, in milliseconds.
+     */
+    public LogQuery setFrom(long from) {
+        this.from = from;
+        return this;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    /**
+     * Only select events logged at or before the given time, in milliseconds.
+     */
+    public LogQuery setTo(long to) {
+        this.to = to;
+        return this;
+    }
+
+    public Map<String, String> getMdc() {
+        return mdc;
+    }
+
+    /**
+     * Only select events having the given MDC key.
+     * If the value is not <code>null</code>, the MDC value must be equal to it.
+     */
+    public LogQuery addMdc(String key, String value) {
+        this.mdc.put(key, value);
+        return this;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Select at most the given number of events, the most recent ones.
+     */
+    public LogQuery setLimit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public boolean isReverse() {
+        return reverse;
+    }
+
+    /**
+     * Return the events from the newest to the oldest.
+     */
+    public LogQuery setReverse(boolean reverse) {
+        this.reverse = reverse;
+        return this;
+    }
+
+    /**
+     * Check if the given event matches the criteria of this query,
+     * regardless of the limit.
+     */
+    public boolean matches(PaxLoggingEvent event) {
+        if (event.getTimeStamp() < from || event.getTimeStamp() > to) {
+            return false;
+        }
+        if (level != null && getRank(event) < level.ordinal()) {
+            return false;
+        }
+        String logger = event.getLoggerName();
+        if (loggerPrefix != null && (logger == null || !logger.startsWith(loggerPrefix))) {
+            return false;
+        }
+        if (loggerPattern != null && (logger == null || !loggerPattern.matcher(logger).find())) {
+            return false;
+        }
+        if (!mdc.isEmpty()) {
+            Map properties = event.getProperties();
+            for (Map.Entry<String, String> entry : mdc.entrySet()) {
+                Object value = properties != null ? properties.get(entry.getKey()) : null;
+                if (value == null || (entry.getValue() != null && !entry.getValue().equals(value.toString()))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int getRank(PaxLoggingEvent event) {
+        if (event.getLevel() == null) {
+            return Integer.MAX_VALUE;
+        }
+        String name = event.getLevel().toString().toUpperCase();
+        if ("FATAL".equals(name)) {
+            return Level.ERROR.ordinal() + 1;
+        }
+        try {
+            return Level.valueOf(name).ordinal();
+        } catch (IllegalArgumentException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+}
@@ -32,6 +32,11 @@ public interface LogService {
     void clearEvents();
     Iterable<PaxLoggingEvent> getEvents();
     Iterable<PaxLoggingEvent> getEvents(int maxNum);
+    /**
+     * Select the events matching the given query.
+     * The returned events are read lazily from the log buffer.
+     */
+    Iterable<PaxLoggingEvent> getEvents(LogQuery query);
     PaxLoggingEvent getLastException(String logger);
     void addAppender(PaxAppender appender);
     void removeAppender(PaxAppender appender);
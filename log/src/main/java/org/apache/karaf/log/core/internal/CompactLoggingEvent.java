@@ -0,0 +1,423 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.log.core.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.ops4j.pax.logging.spi.PaxLevel;
+import org.ops4j.pax.logging.spi.PaxLocationInfo;
+import org.ops4j.pax.logging.spi.PaxLoggingEvent;
+
+/**
+ * A memory efficient copy of a {@link PaxLoggingEvent}.
+ *
+ * Logger, thread and class names are shared through a {@link Dictionary},
+ * the message, MDC properties and location information are encoded in a
+ * single byte array, MDC keys being stored as dictionary ids, and the
+ * throwable representation is kept deflated.  Ids, lengths and counts are
+ * written as variable length integers.  Everything is decoded when
+ * read, the decoded form being kept until the next garbage collection so
+ * that formatting an event decodes it only once.
+ */
+public class CompactLoggingEvent implements PaxLoggingEvent {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int HAS_MESSAGE = 0x01;
+    private static final int HAS_LOCATION = 0x02;
+
+    private final long timeStamp;
+    private final PaxLevel level;
+    private final String loggerName;
+    private final String threadName;
+    private final String fqnOfLoggerClass;
+    private final Dictionary dictionary;
+    private final byte[] data;
+    private final byte[] throwable;
+    private volatile WeakReference<Decoded> decoded;
+
+    public CompactLoggingEvent(PaxLoggingEvent event, Dictionary dictionary) {
+        this.dictionary = dictionary;
+        this.timeStamp = event.getTimeStamp();
+        this.level = dictionary.level(event.getLevel());
+        this.loggerName = dictionary.intern(event.getLoggerName());
+        this.threadName = dictionary.intern(event.getThreadName());
+        this.fqnOfLoggerClass = dictionary.intern(event.getFQNOfLoggerClass());
+        try {
+            this.data = encode(event, dictionary);
+            this.throwable = encodeThrowable(event.getThrowableStrRep());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to encode log event", e);
+        }
+    }
+
+    public long getTimeStamp() {
+        return timeStamp;
+    }
+
+    public PaxLevel getLevel() {
+        return level;
+    }
+
+    public String getLoggerName() {
+        return loggerName;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public String getFQNOfLoggerClass() {
+        return fqnOfLoggerClass;
+    }
+
+    public String getMessage() {
+        return decoded().message;
+    }
+
+    public String getRenderedMessage() {
+        return decoded().renderedMessage;
+    }
+
+    public boolean locationInformationExists() {
+        return decoded().location != null;
+    }
+
+    public PaxLocationInfo getLocationInformation() {
+        return decoded().location;
+    }
+
+    public Map getProperties() {
+        return decoded().properties;
+    }
+
+    public String[] getThrowableStrRep() {
+        if (throwable == null) {
+            return null;
+        }
+        try {
+            DataInputStream dis = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(throwable)));
+            String[] lines = new String[readVarInt(dis)];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = readString(dis);
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to decode log event", e);
+        }
+    }
+
+    private static byte[] encode(PaxLoggingEvent event, Dictionary dictionary) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(128);
+        DataOutputStream dos = new DataOutputStream(baos);
+        String rendered = event.getRenderedMessage();
+        String message = event.getMessage();
+        boolean hasMessage = message != null && !message.equals(rendered);
+        boolean hasLocation = event.locationInformationExists() && event.getLocationInformation() != null;
+        dos.writeByte((hasMessage ? HAS_MESSAGE : 0) | (hasLocation ? HAS_LOCATION : 0));
+        writeString(dos, rendered);
+        if (hasMessage) {
+            writeString(dos, message);
+        }
+        if (hasLocation) {
+            PaxLocationInfo location = event.getLocationInformation();
+            writeId(dos, dictionary, location.getClassName());
+            writeId(dos, dictionary, location.getFileName());
+            writeString(dos, location.getMethodName());
+            writeString(dos, location.getLineNumber());
+        }
+        Map<?, ?> properties = event.getProperties();
+        if (properties == null) {
+            writeVarInt(dos, -1);
+        } else {
+            writeVarInt(dos, properties.size());
+            for (Map.Entry<?, ?> entry : properties.entrySet()) {
+                writeId(dos, dictionary, String.valueOf(entry.getKey()));
+                writeString(dos, entry.getValue() != null ? entry.getValue().toString() : null);
+            }
+        }
+        dos.flush();
+        return baos.toByteArray();
+    }
+
+    private static byte[] encodeThrowable(String[] lines) throws IOException {
+        if (lines == null) {
+            return null;
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(new DeflaterOutputStream(baos));
+        writeVarInt(dos, lines.length);
+        for (String line : lines) {
+            writeString(dos, line);
+        }
+        dos.close();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Return the decoded form of this event, decoding it if it has been collected.
+     */
+    Decoded decoded() {
+        WeakReference<Decoded> ref = decoded;
+        Decoded d = ref != null ? ref.get() : null;
+        if (d == null) {
+            d = decode();
+            decoded = new WeakReference<Decoded>(d);
+        }
+        return d;
+    }
+
+    private Decoded decode() {
+        try {
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
+            Decoded decoded = new Decoded();
+            int flags = dis.readByte();
+            decoded.renderedMessage = readString(dis);
+            decoded.message = (flags & HAS_MESSAGE) != 0 ? readString(dis) : decoded.renderedMessage;
+            if ((flags & HAS_LOCATION) != 0) {
+                String className = readId(dis, dictionary);
+                String fileName = readId(dis, dictionary);
+                String methodName = readString(dis);
+                String lineNumber = readString(dis);
+                decoded.location = new Location(className, fileName, methodName, lineNumber);
+            }
+            int nb = readVarInt(dis);
+            if (nb >= 0) {
+                Map<String, String> properties = new HashMap<String, String>();
+                for (int i = 0; i < nb; i++) {
+                    String key = readId(dis, dictionary);
+                    properties.put(key, readString(dis));
+                }
+                decoded.properties = properties;
+            }
+            return decoded;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to decode log event", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream dos, String str) throws IOException {
+        if (str == null) {
+            writeVarInt(dos, -1);
+        } else {
+            byte[] bytes = str.getBytes(UTF8);
+            writeVarInt(dos, bytes.length);
+            dos.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream dis) throws IOException {
+        int len = readVarInt(dis);
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        dis.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static void writeId(DataOutputStream dos, Dictionary dictionary, String str) throws IOException {
+        int id = dictionary.id(str);
+        writeVarInt(dos, id);
+        if (id == Dictionary.NOT_FOUND) {
+            writeString(dos, str);
+        }
+    }
+
+    private static String readId(DataInputStream dis, Dictionary dictionary) throws IOException {
+        int id = readVarInt(dis);
+        return id == Dictionary.NOT_FOUND ? readString(dis) : dictionary.get(id);
+    }
+
+    /**
+     * Write a value greater or equal to -1, so that null markers also fit in one byte.
+     */
+    static void writeVarInt(DataOutputStream dos, int value) throws IOException {
+        int v = value + 1;
+        while ((v & ~0x7F) != 0) {
+            dos.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        dos.writeByte(v);
+    }
+
+    static int readVarInt(DataInputStream dis) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = dis.readByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v - 1;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    static class Decoded {
+        String message;
+        String renderedMessage;
+        PaxLocationInfo location;
+        Map<String, String> properties;
+    }
+
+    static class Location implements PaxLocationInfo {
+        private final String className;
+        private final String fileName;
+        private final String methodName;
+        private final String lineNumber;
+
+        Location(String className, String fileName, String methodName, String lineNumber) {
+            this.className = className;
+            this.fileName = fileName;
+            this.methodName = methodName;
+            this.lineNumber = lineNumber;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+
+        public String getLineNumber() {
+            return lineNumber;
+        }
+    }
+
+    /**
+     * Strings shared between compact events.
+     * The identifiers referenced by the encoded events are bounded: once full,
+     * new strings are stored inline in the events, so that unusual values can
+     * not make it grow indefinitely.  Logger and thread names are only shared,
+     * and are dropped when too many of them have been seen, as thread names
+     * often contain a counter.
+     */
+    public static class Dictionary {
+
+        public static final int DEFAULT_MAX_SIZE = 8192;
+
+        static final int NOT_FOUND = -1;
+
+        private final int maxSize;
+        private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+        // Strings are only added, under the lock, and published by the size
+        private final AtomicReferenceArray<String> strings;
+        private volatile int size;
+        private final ConcurrentMap<String, String> names = new ConcurrentHashMap<String, String>();
+        private final ConcurrentMap<String, PaxLevel> levels = new ConcurrentHashMap<String, PaxLevel>();
+
+        public Dictionary() {
+            this(DEFAULT_MAX_SIZE);
+        }
+
+        public Dictionary(int maxSize) {
+            this.maxSize = maxSize;
+            this.strings = new AtomicReferenceArray<String>(maxSize);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Return the id of the given string, or {@link #NOT_FOUND} if the dictionary is full.
+         */
+        int id(String str) {
+            if (str == null) {
+                return NOT_FOUND;
+            }
+            Integer id = ids.get(str);
+            if (id == null) {
+                synchronized (this) {
+                    id = ids.get(str);
+                    if (id == null) {
+                        if (size >= maxSize) {
+                            return NOT_FOUND;
+                        }
+                        id = size;
+                        strings.set(id, str);
+                        size = id + 1;
+                        ids.put(str, id);
+                    }
+                }
+            }
+            return id;
+        }
+
+        String get(int id) {
+            return strings.get(id);
+        }
+
+        /**
+         * Return the shared instance of the given name.
+         */
+        String intern(String str) {
+            if (str == null) {
+                return null;
+            }
+            String shared = names.get(str);
+            if (shared == null) {
+                if (names.size() >= maxSize) {
+                    names.clear();
+                }
+                shared = names.putIfAbsent(str, str);
+                if (shared == null) {
+                    shared = str;
+                }
+            }
+            return shared;
+        }
+
+        int namesSize() {
+            return names.size();
+        }
+
+        /**
+         * Levels are shared by name, as pax-logging creates a new one for each event.
+         */
+        PaxLevel level(PaxLevel level) {
+            if (level == null) {
+                return null;
+            }
+            String name = level.toString();
+            PaxLevel shared = levels.putIfAbsent(name, level);
+            return shared != null ? shared : level;
+        }
+    }
+
+}
@@ -16,6 +16,10 @@
  */
 package org.apache.karaf.log.core.internal;
 
+import java.io.PrintStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.karaf.log.core.LogEventFormatter;
 import org.apache.karaf.log.core.internal.layout.PatternConverter;
 import org.apache.karaf.log.core.internal.layout.PatternParser;
@@ -42,6 +46,14 @@ public class LogEventFormatterImpl implements LogEventFormatter {
     private static final char SECOND_ESC_CHAR = '[';
     private static final char COMMAND_CHAR = 'm';
 
+    private static final int MAX_CACHED_PATTERNS = 32;
+    private static final int MAX_BUFFER_CAPACITY = 64 * 1024;
+
+    /**
+     * Compiled converter chains, keyed by pattern
+     */
+    private final ConcurrentMap<String, CompiledPattern> patterns = new ConcurrentHashMap<String, CompiledPattern>();
+
     public String getPattern() {
         return pattern;
     }
@@ -103,10 +115,31 @@ public class LogEventFormatterImpl implements LogEventFormatter {
      */
     @Override
     public String format(PaxLoggingEvent event, String overridenPattern, boolean noColor) {
-        final PatternConverter cnv = new PatternParser(overridenPattern != null ? overridenPattern : pattern).parse();
+        CompiledPattern compiled = getCompiledPattern(overridenPattern != null ? overridenPattern : pattern);
+        // Converters are not thread safe
+        synchronized (compiled) {
+            StringBuilder sb = compiled.getBuffer();
+            format(sb, compiled.converter, event, noColor);
+            return sb.toString();
+        }
+    }
+
+    @Override
+    public void format(Iterable<PaxLoggingEvent> events, String overridenPattern, boolean noColor, PrintStream out) {
+        // Use a private converter chain to avoid holding a lock while writing
+        PatternConverter cnv = new PatternParser(overridenPattern != null ? overridenPattern : pattern).parse();
+        StringBuilder sb = new StringBuilder();
+        for (PaxLoggingEvent event : events) {
+            if (event != null) {
+                sb.setLength(0);
+                format(sb, cnv, event, noColor);
+                out.append(sb);
+            }
+        }
+    }
+
+    private void format(StringBuilder sb, PatternConverter cnv, PaxLoggingEvent event, boolean noColor) {
         String color = getColor(event, noColor);
-        StringBuffer sb = new StringBuffer();
-        sb.setLength(0);
         if (color != null) {
             sb.append(FIRST_ESC_CHAR);
             sb.append(SECOND_ESC_CHAR);
@@ -127,7 +160,21 @@ public class LogEventFormatterImpl implements LogEventFormatter {
             sb.append("0");
             sb.append(COMMAND_CHAR);
         }
-        return sb.toString();
+    }
+
+    private CompiledPattern getCompiledPattern(String pattern) {
+        CompiledPattern compiled = patterns.get(pattern);
+        if (compiled == null) {
+            if (patterns.size() >= MAX_CACHED_PATTERNS) {
+                patterns.clear();
+            }
+            compiled = new CompiledPattern(new PatternParser(pattern).parse());
+            CompiledPattern prev = patterns.putIfAbsent(pattern, compiled);
+            if (prev != null) {
+                compiled = prev;
+            }
+        }
+        return compiled;
     }
 
     private String getColor(PaxLoggingEvent event, boolean noColor) {
@@ -154,4 +201,26 @@ public class LogEventFormatterImpl implements LogEventFormatter {
         return color;
     }
 
+    /**
+     * A parsed pattern along with a reusable buffer.
+     * Access must be synchronized on the instance.
+     */
+    static class CompiledPattern {
+        final PatternConverter converter;
+        private StringBuilder buffer = new StringBuilder();
+
+        CompiledPattern(PatternConverter converter) {
+            this.converter = converter;
+        }
+
+        StringBuilder getBuffer() {
+            if (buffer.capacity() > MAX_BUFFER_CAPACITY) {
+                buffer = new StringBuilder();
+            } else {
+                buffer.setLength(0);
+            }
+            return buffer;
+        }
+    }
+
 }
@@ -23,6 +23,7 @@ import java.util.Map;
 import java.util.TreeMap;
 
 import org.apache.karaf.log.core.Level;
+import org.apache.karaf.log.core.LogQuery;
 import org.apache.karaf.log.core.LogService;
 import org.ops4j.pax.logging.spi.PaxAppender;
 import org.ops4j.pax.logging.spi.PaxLoggingEvent;
@@ -217,26 +218,22 @@ public class LogServiceImpl implements LogService {
         events.clear();
     }
     
+    @Override
+    public Iterable<PaxLoggingEvent> getEvents(LogQuery query) {
+        return events.getElements(query);
+    }
+
     @Override
     public PaxLoggingEvent getLastException(String logger) {
-        PaxLoggingEvent throwableEvent = null;
-        Iterable<PaxLoggingEvent> le = getEvents();
-        for (PaxLoggingEvent event : le) {
-            // if this is an exception, and the log is the same as the requested log,
-            // then save this exception and continue iterating from oldest to newest
+        // Iterate from the newest to the oldest event
+        LogQuery query = new LogQuery().setReverse(true);
+        for (PaxLoggingEvent event : getEvents(query)) {
             if ((event.getThrowableStrRep() != null)
-                    &&(logger != null)
-                    &&(checkIfFromRequestedLog(event, logger))) {
-                throwableEvent = event;
-              // Do not break, as we iterate from the oldest to the newest event
-            } else if ((event.getThrowableStrRep() != null)&&(logger == null)) {
-                // now check if there has been no log passed in, and if this is an exception
-                // then save this exception and continue iterating from oldest to newest
-                throwableEvent = event;             
+                    && (logger == null || checkIfFromRequestedLog(event, logger))) {
+                return event;
             }
         }
-
-        return throwableEvent;
+        return null;
     }
 
     @Override
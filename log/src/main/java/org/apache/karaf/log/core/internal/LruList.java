@@ -19,106 +19,312 @@
 package org.apache.karaf.log.core.internal;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import org.apache.karaf.log.core.LogQuery;
 import org.ops4j.pax.logging.spi.PaxAppender;
 import org.ops4j.pax.logging.spi.PaxLoggingEvent;
 
 /**
- * A list that only keep the last N elements added
+ * A list that only keep the last N elements added.
+ *
+ * Events are stored in a lock-free ring buffer: each producer claims a
+ * sequence number and stores its event along with this sequence in the
+ * matching slot, so that logging threads never block each others.  A slot
+ * only moves forward: when two producers wrap onto the same slot, the event
+ * with the highest sequence wins.  Readers copy the slots holding the
+ * expected sequence, skipping slots which have been overwritten.
+ *
+ * Appenders are notified asynchronously, each one through a bounded queue
+ * consumed by a dedicated thread.  When an appender can not keep up, events
+ * are dropped for this appender only, so that a slow consumer never blocks
+ * the logging threads.
+ *
+ * In compact mode, the events are kept as {@link CompactLoggingEvent}s,
+ * which trades some cpu when reading the history for a much smaller heap usage.
  */
 public class LruList implements PaxAppender {
 
-    private PaxLoggingEvent[] elements;
-    private transient int start = 0;
-    private transient int end = 0;
-    private transient boolean full = false;
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
     private final int maxElements;
-    private final List<PaxAppender> appenders;
+    private final int queueSize;
+    private final CompactLoggingEvent.Dictionary dictionary;
+    private final AtomicReferenceArray<Slot> elements;
+    /**
+     * Next sequence to claim
+     */
+    private final AtomicLong sequence = new AtomicLong();
+    /**
+     * First sequence still visible, moved forward on clear
+     */
+    private final AtomicLong first = new AtomicLong();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
 
     public LruList(int size) {
+        this(size, DEFAULT_QUEUE_SIZE);
+    }
+
+    public LruList(int size, int queueSize) {
+        this(size, queueSize, false);
+    }
+
+    public LruList(int size, int queueSize, boolean compact) {
         if (size <= 0) {
             throw new IllegalArgumentException("The size must be greater than 0");
         }
-        elements = new PaxLoggingEvent[size];
-        maxElements = elements.length;
-        appenders = new ArrayList<PaxAppender>();
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("The queue size must be greater than 0");
+        }
+        this.maxElements = size;
+        this.queueSize = queueSize;
+        this.dictionary = compact ? new CompactLoggingEvent.Dictionary() : null;
+        this.elements = new AtomicReferenceArray<Slot>(size);
     }
 
-    public synchronized int size() {
-        int size = 0;
-        if (end < start) {
-            size = maxElements - start + end;
-        } else if (end == start) {
-            size = (full ? maxElements : 0);
-        } else {
-            size = end - start;
-        }
-        return size;
+    public int size() {
+        long end = sequence.get();
+        long start = Math.max(first.get(), end - maxElements);
+        return (int) Math.max(0, end - start);
     }
 
-    public synchronized void clear() {
-        start = 0;
-        end = 0;
-        elements = new PaxLoggingEvent[maxElements];
+    public void clear() {
+        first.set(sequence.get());
     }
 
-    public synchronized void add(PaxLoggingEvent element) {
+    public void add(PaxLoggingEvent element) {
         if (null == element) {
              throw new NullPointerException("Attempted to add null object to buffer");
         }
-        if (size() == maxElements) {
-            Object e = elements[start];
-            if (null != e) {
-                elements[start++] = null;
-                if (start >= maxElements) {
-                    start = 0;
-                }
-                full = false;
+        PaxLoggingEvent stored = dictionary != null ? new CompactLoggingEvent(element, dictionary) : element;
+        long seq = sequence.getAndIncrement();
+        int index = (int) (seq % maxElements);
+        Slot slot = new Slot(seq, stored);
+        while (true) {
+            Slot current = elements.get(index);
+            if (current != null && current.seq > seq) {
+                // Already overwritten by a more recent event
+                break;
+            }
+            if (elements.compareAndSet(index, current, slot)) {
+                break;
             }
         }
-        elements[end++] = element;
-        if (end >= maxElements) {
-            end = 0;
-        }
-        if (end == start) {
-            full = true;
+        for (Listener listener : listeners) {
+            listener.offer(element);
         }
-        for (PaxAppender appender : appenders) {
-            try {
-                appender.doAppend(element);
-            } catch (Throwable t) {
-                // Ignore
+    }
+
+    public Iterable<PaxLoggingEvent> getElements() {
+        return getElements(maxElements);
+    }
+
+    public Iterable<PaxLoggingEvent> getElements(int nb) {
+        long end = sequence.get();
+        long start = Math.max(first.get(), end - Math.min(Math.max(0, nb), maxElements));
+        List<PaxLoggingEvent> result = new ArrayList<PaxLoggingEvent>((int) Math.max(0, end - start));
+        for (long seq = start; seq < end; seq++) {
+            PaxLoggingEvent event = get(seq);
+            if (event != null) {
+                result.add(event);
             }
         }
+        return result;
+    }
+
+    /**
+     * Select the events matching the given query.
+     * The buffer is walked lazily when iterating, without copying it,
+     * so events logged after the iteration started are not returned.
+     */
+    public Iterable<PaxLoggingEvent> getElements(final LogQuery query) {
+        return new Iterable<PaxLoggingEvent>() {
+            @Override
+            public Iterator<PaxLoggingEvent> iterator() {
+                long end = sequence.get();
+                long start = Math.max(first.get(), end - maxElements);
+                if (query.isReverse()) {
+                    return new QueryIterator(query, end - 1, start - 1, -1);
+                }
+                // Find the oldest event to return, so that only
+                // the last matching events are returned
+                if (query.getLimit() < end - start) {
+                    int nb = 0;
+                    for (long seq = end - 1; seq >= start; seq--) {
+                        PaxLoggingEvent event = get(seq);
+                        if (event != null && query.matches(event) && ++nb >= query.getLimit()) {
+                            start = seq;
+                            break;
+                        }
+                    }
+                }
+                return new QueryIterator(query, start, end, 1);
+            }
+        };
+    }
+
+    /**
+     * Retrieve the event with the given sequence, or <code>null</code>
+     * if it has been overwritten or is not written yet.
+     */
+    private PaxLoggingEvent get(long seq) {
+        Slot slot = elements.get((int) (seq % maxElements));
+        return slot != null && slot.seq == seq ? slot.event : null;
     }
 
-    public synchronized Iterable<PaxLoggingEvent> getElements() {
-        return getElements(size());
+    public void addAppender(PaxAppender appender) {
+        Listener listener = new Listener(appender, queueSize);
+        listeners.add(listener);
+        listener.start();
     }
 
-    public synchronized Iterable<PaxLoggingEvent> getElements(int nb) {
-        int s = size();
-        nb = Math.min(Math.max(0, nb), s);
-        PaxLoggingEvent[] e = new PaxLoggingEvent[nb];
-        for (int i = 0; i < nb; i++) {
-            e[i] = elements[(i + s - nb + start) % maxElements];
+    public void removeAppender(PaxAppender appender) {
+        for (Listener listener : listeners) {
+            if (listener.appender == appender) {
+                listeners.remove(listener);
+                listener.close();
+            }
         }
-        return Arrays.asList(e);
     }
 
-    public synchronized void addAppender(PaxAppender appender) {
-        this.appenders.add(appender);
+    /**
+     * Number of events dropped for the given appender because it could not keep up.
+     */
+    public long getDropped(PaxAppender appender) {
+        for (Listener listener : listeners) {
+            if (listener.appender == appender) {
+                return listener.dropped.get();
+            }
+        }
+        return 0;
     }
 
-    public synchronized void removeAppender(PaxAppender appender) {
-        this.appenders.remove(appender);
+    /**
+     * Stop notifying all appenders.
+     */
+    public void close() {
+        for (Listener listener : listeners) {
+            listeners.remove(listener);
+            listener.close();
+        }
     }
-    
+
     public void doAppend(PaxLoggingEvent event) {
         event.getProperties(); // ensure MDC properties are copied
         add(event);
     }
 
+    /**
+     * An event along with its sequence, so that both are updated atomically.
+     */
+    static class Slot {
+        final long seq;
+        final PaxLoggingEvent event;
+
+        Slot(long seq, PaxLoggingEvent event) {
+            this.seq = seq;
+            this.event = event;
+        }
+    }
+
+    class QueryIterator implements Iterator<PaxLoggingEvent> {
+        private final LogQuery query;
+        private final long stop;
+        private final int step;
+        private long seq;
+        private int remaining;
+        private PaxLoggingEvent next;
+
+        QueryIterator(LogQuery query, long seq, long stop, int step) {
+            this.query = query;
+            this.seq = seq;
+            this.stop = stop;
+            this.step = step;
+            this.remaining = query.getLimit();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && remaining > 0 && seq != stop) {
+                PaxLoggingEvent event = get(seq);
+                seq += step;
+                if (event != null && query.matches(event)) {
+                    next = event;
+                    remaining--;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public PaxLoggingEvent next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            PaxLoggingEvent event = next;
+            next = null;
+            return event;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Deliver events to an appender from a dedicated thread.
+     */
+    static class Listener implements Runnable {
+        final PaxAppender appender;
+        final BlockingQueue<PaxLoggingEvent> queue;
+        final AtomicLong dropped = new AtomicLong();
+        final Thread thread;
+        volatile boolean running = true;
+
+        Listener(PaxAppender appender, int queueSize) {
+            this.appender = appender;
+            this.queue = new ArrayBlockingQueue<PaxLoggingEvent>(queueSize);
+            this.thread = new Thread(this, "Karaf log appender " + appender);
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void offer(PaxLoggingEvent event) {
+            if (!queue.offer(event)) {
+                dropped.incrementAndGet();
+            }
+        }
+
+        void close() {
+            running = false;
+            thread.interrupt();
+        }
+
+        public void run() {
+            try {
+                while (running) {
+                    PaxLoggingEvent event = queue.take();
+                    try {
+                        appender.doAppend(event);
+                    } catch (Throwable t) {
+                        // Ignore
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Closed
+            }
+        }
+    }
+
 }
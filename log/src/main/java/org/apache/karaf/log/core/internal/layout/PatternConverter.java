@@ -56,7 +56,7 @@ public abstract class PatternConverter {
      A template method for formatting in a converter specific way.
    */
   public
-  void format(StringBuffer sbuf, PaxLoggingEvent e) {
+  void format(StringBuilder sbuf, PaxLoggingEvent e) {
     String s = convert(e);
 
     if(s == null) {
@@ -91,7 +91,7 @@ public abstract class PatternConverter {
      Fast space padding method.
   */
   public
-  void spacePad(StringBuffer sbuf, int length) {
+  void spacePad(StringBuilder sbuf, int length) {
     while(length >= 32) {
       sbuf.append(SPACES[5]);
       length -= 32;
@@ -405,7 +405,7 @@ public class PatternParser {
 
     public
     final
-    void format(StringBuffer sbuf, LoggingEvent event) {
+    void format(StringBuilder sbuf, PaxLoggingEvent event) {
       sbuf.append(literal);
     }
 
@@ -530,7 +530,7 @@ public class PatternParser {
     public
     String convert(PaxLoggingEvent event) {
         if (key == null) {
-            StringBuffer buf = new StringBuffer("{");
+            StringBuilder buf = new StringBuilder("{");
             Map properties = event.getProperties();
             if (properties.size() > 0) {
               Object[] keys = properties.keySet().toArray();
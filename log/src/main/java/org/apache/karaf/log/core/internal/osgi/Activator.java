@@ -40,6 +40,8 @@ import org.osgi.service.cm.ManagedService;
 @Managed("org.apache.karaf.log")
 public class Activator extends BaseActivator implements ManagedService {
 
+    private LruList events;
+
     protected void doStart() throws Exception {
         ConfigurationAdmin configurationAdmin = getTrackedService(ConfigurationAdmin.class);
         if (configurationAdmin == null) {
@@ -47,6 +49,7 @@ public class Activator extends BaseActivator implements ManagedService {
         }
 
         int size = getInt("size", 500);
+        boolean compact = getBoolean("compact", false);
         String pattern = getString("pattern", "%d{ABSOLUTE} | %-5.5p | %-16.16t | %-32.32c{1} | %-32.32C %4L | %m%n");
         String fatalColor = getString("fatalColor", "31");
         String errorColor = getString("errorColor", "31");
@@ -55,7 +58,7 @@ public class Activator extends BaseActivator implements ManagedService {
         String debugColor = getString("debugColor", "39");
         String traceColor = getString("traceColor", "39");
 
-        LruList events = new LruList(size);
+        events = new LruList(size, LruList.DEFAULT_QUEUE_SIZE, compact);
         Hashtable<String, Object> props = new Hashtable<String, Object>();
         props.put("org.ops4j.pax.logging.appender.name", "VmLogAppender");
         register(PaxAppender.class, events, props);
@@ -77,4 +80,13 @@ public class Activator extends BaseActivator implements ManagedService {
         registerMBean(securityMBean, "type=log");
     }
 
+    @Override
+    protected void doStop() {
+        super.doStop();
+        if (events != null) {
+            events.close();
+            events = null;
+        }
+    }
+
 }
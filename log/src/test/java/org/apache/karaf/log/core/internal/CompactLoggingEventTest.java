@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.log.core.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.ops4j.pax.logging.spi.PaxLocationInfo;
+import org.ops4j.pax.logging.spi.PaxLoggingEvent;
+
+/**
+ * Test cases for {@link CompactLoggingEvent}
+ */
+public class CompactLoggingEventTest extends TestCase {
+
+    public void testRoundTrip() {
+        Map<String, String> mdc = new HashMap<String, String>();
+        mdc.put("bundle.id", "12");
+        mdc.put("bundle.name", "org.apache.karaf.log.core");
+        PaxLocationInfo location = EasyMock.createNiceMock(PaxLocationInfo.class);
+        EasyMock.expect(location.getClassName()).andReturn("org.foo.Bar").anyTimes();
+        EasyMock.expect(location.getFileName()).andReturn("Bar.java").anyTimes();
+        EasyMock.expect(location.getMethodName()).andReturn("run").anyTimes();
+        EasyMock.expect(location.getLineNumber()).andReturn("42").anyTimes();
+        EasyMock.replay(location);
+        PaxLoggingEvent event = EasyMock.createNiceMock(PaxLoggingEvent.class);
+        EasyMock.expect(event.getTimeStamp()).andReturn(1234L).anyTimes();
+        EasyMock.expect(event.getLoggerName()).andReturn("org.foo.Bar").anyTimes();
+        EasyMock.expect(event.getThreadName()).andReturn("main").anyTimes();
+        EasyMock.expect(event.getRenderedMessage()).andReturn("Hello world").anyTimes();
+        EasyMock.expect(event.getMessage()).andReturn("Hello {}").anyTimes();
+        EasyMock.expect(event.locationInformationExists()).andReturn(true).anyTimes();
+        EasyMock.expect(event.getLocationInformation()).andReturn(location).anyTimes();
+        EasyMock.expect(event.getProperties()).andReturn(mdc).anyTimes();
+        EasyMock.expect(event.getThrowableStrRep()).andReturn(new String[] { "java.lang.Exception: boom", "\tat org.foo.Bar.run(Bar.java:42)" }).anyTimes();
+        EasyMock.replay(event);
+
+        CompactLoggingEvent.Dictionary dictionary = new CompactLoggingEvent.Dictionary();
+        CompactLoggingEvent compact = new CompactLoggingEvent(event, dictionary);
+        assertEquals(1234L, compact.getTimeStamp());
+        assertEquals("org.foo.Bar", compact.getLoggerName());
+        assertEquals("main", compact.getThreadName());
+        assertEquals("Hello world", compact.getRenderedMessage());
+        assertEquals("Hello {}", compact.getMessage());
+        assertTrue(compact.locationInformationExists());
+        assertEquals("org.foo.Bar", compact.getLocationInformation().getClassName());
+        assertEquals("Bar.java", compact.getLocationInformation().getFileName());
+        assertEquals("run", compact.getLocationInformation().getMethodName());
+        assertEquals("42", compact.getLocationInformation().getLineNumber());
+        assertEquals(mdc, compact.getProperties());
+        assertEquals(Arrays.asList(event.getThrowableStrRep()), Arrays.asList(compact.getThrowableStrRep()));
+
+        // Names are shared between events
+        CompactLoggingEvent other = new CompactLoggingEvent(event, dictionary);
+        assertSame(compact.getLoggerName(), other.getLoggerName());
+        assertSame(compact.getThreadName(), other.getThreadName());
+        assertEquals(4, dictionary.size());
+        assertEquals(2, dictionary.namesSize());
+    }
+
+    public void testDecodedOnce() {
+        PaxLoggingEvent event = EasyMock.createNiceMock(PaxLoggingEvent.class);
+        EasyMock.expect(event.getRenderedMessage()).andReturn("Hello").anyTimes();
+        EasyMock.expect(event.getProperties()).andReturn(mdc("key", "value")).anyTimes();
+        EasyMock.replay(event);
+
+        CompactLoggingEvent compact = new CompactLoggingEvent(event, new CompactLoggingEvent.Dictionary());
+        CompactLoggingEvent.Decoded decoded = compact.decoded();
+        assertSame(decoded, compact.decoded());
+        assertSame(decoded.properties, compact.getProperties());
+        assertSame(decoded.renderedMessage, compact.getRenderedMessage());
+    }
+
+    public void testNamesAreDropped() {
+        CompactLoggingEvent.Dictionary dictionary = new CompactLoggingEvent.Dictionary(16);
+        for (int i = 0; i < 1000; i++) {
+            PaxLoggingEvent event = EasyMock.createNiceMock(PaxLoggingEvent.class);
+            EasyMock.expect(event.getThreadName()).andReturn("pool-1-thread-" + i).anyTimes();
+            EasyMock.expect(event.getProperties()).andReturn(mdc("key", "value")).anyTimes();
+            EasyMock.replay(event);
+            CompactLoggingEvent compact = new CompactLoggingEvent(event, dictionary);
+            assertEquals("pool-1-thread-" + i, compact.getThreadName());
+            assertTrue(dictionary.namesSize() <= 16);
+        }
+        // Thread names do not use the identifiers needed by the MDC keys
+        assertEquals(1, dictionary.size());
+    }
+
+    public void testFullDictionary() {
+        PaxLoggingEvent event = EasyMock.createNiceMock(PaxLoggingEvent.class);
+        EasyMock.expect(event.getLoggerName()).andReturn("org.foo.Bar").anyTimes();
+        EasyMock.expect(event.getRenderedMessage()).andReturn("Hello").anyTimes();
+        EasyMock.expect(event.getProperties()).andReturn(mdc("key", "value")).anyTimes();
+        EasyMock.replay(event);
+
+        CompactLoggingEvent.Dictionary dictionary = new CompactLoggingEvent.Dictionary(0);
+        CompactLoggingEvent compact = new CompactLoggingEvent(event, dictionary);
+        assertEquals("org.foo.Bar", compact.getLoggerName());
+        assertEquals("Hello", compact.getRenderedMessage());
+        assertEquals(mdc("key", "value"), compact.getProperties());
+        assertNull(compact.getThrowableStrRep());
+        assertFalse(compact.locationInformationExists());
+        assertEquals(0, dictionary.size());
+    }
+
+    public void testVarInt() throws IOException {
+        int[] values = { -1, 0, 126, 127, 16382, 16383, Integer.MAX_VALUE - 1 };
+        int[] lengths = { 1, 1, 1, 2, 2, 3, 5 };
+        for (int i = 0; i < values.length; i++) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            CompactLoggingEvent.writeVarInt(new DataOutputStream(baos), values[i]);
+            assertEquals(lengths[i], baos.size());
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+            assertEquals(values[i], CompactLoggingEvent.readVarInt(dis));
+        }
+    }
+
+    private static Map<String, String> mdc(String key, String value) {
+        Map<String, String> mdc = new HashMap<String, String>();
+        mdc.put(key, value);
+        return mdc;
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.log.core.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import org.apache.karaf.log.core.LogQuery;
+import org.easymock.EasyMock;
+import org.ops4j.pax.logging.spi.PaxAppender;
+import org.ops4j.pax.logging.spi.PaxLoggingEvent;
+
+/**
+ * Test cases for {@link LruList}
+ */
+public class LruListTest extends TestCase {
+
+    public void testKeepLastElements() {
+        LruList list = new LruList(3);
+        assertEquals(0, list.size());
+        List<PaxLoggingEvent> events = events(5);
+        for (PaxLoggingEvent event : events) {
+            list.add(event);
+        }
+        assertEquals(3, list.size());
+        assertEquals(events.subList(2, 5), toList(list.getElements()));
+        assertEquals(events.subList(3, 5), toList(list.getElements(2)));
+
+        list.clear();
+        assertEquals(0, list.size());
+        assertTrue(toList(list.getElements()).isEmpty());
+        list.add(events.get(0));
+        assertEquals(events.subList(0, 1), toList(list.getElements()));
+    }
+
+    public void testConcurrentProducers() throws Exception {
+        final LruList list = new LruList(1000);
+        final List<PaxLoggingEvent> events = events(100);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread() {
+                public void run() {
+                    for (int j = 0; j < 100; j++) {
+                        list.add(events.get(j));
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(800, list.size());
+        assertEquals(800, toList(list.getElements()).size());
+    }
+
+    public void testProducersWrappingOntoTheSameSlot() throws Exception {
+        final List<PaxLoggingEvent> events = events(8);
+        for (int round = 0; round < 20; round++) {
+            final LruList list = new LruList(2);
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i = 0; i < 8; i++) {
+                final PaxLoggingEvent event = events.get(i);
+                threads.add(new Thread() {
+                    public void run() {
+                        for (int j = 0; j < 1000; j++) {
+                            list.add(event);
+                        }
+                    }
+                });
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            // Each slot holds the event with the most recent sequence
+            assertEquals(2, list.size());
+            assertEquals(2, toList(list.getElements()).size());
+        }
+    }
+
+    public void testSlowAppenderDoesNotBlockProducers() throws Exception {
+        LruList list = new LruList(10, 2);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<PaxLoggingEvent> received = new ArrayList<PaxLoggingEvent>();
+        PaxAppender appender = new PaxAppender() {
+            public void doAppend(PaxLoggingEvent event) {
+                synchronized (received) {
+                    received.add(event);
+                }
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        list.addAppender(appender);
+        List<PaxLoggingEvent> events = events(10);
+        list.add(events.get(0));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 10; i++) {
+            list.add(events.get(i));
+        }
+        assertEquals(10, list.size());
+        // One event being delivered, two queued, the others dropped
+        assertEquals(7, list.getDropped(appender));
+        release.countDown();
+        list.removeAppender(appender);
+        assertEquals(0, list.getDropped(appender));
+    }
+
+    public void testQuery() {
+        LruList list = new LruList(10);
+        PaxLoggingEvent e0 = event("org.foo.a", 0);
+        PaxLoggingEvent e1 = event("org.bar.b", 1);
+        PaxLoggingEvent e2 = event("org.foo.c", 2);
+        PaxLoggingEvent e3 = event("org.bar.d", 3);
+        for (PaxLoggingEvent event : Arrays.asList(e0, e1, e2, e3)) {
+            list.add(event);
+        }
+        assertEquals(Arrays.asList(e0, e2), toList(list.getElements(new LogQuery().setLoggerPrefix("org.foo"))));
+        assertEquals(Arrays.asList(e2), toList(list.getElements(new LogQuery().setLoggerPrefix("org.foo").setLimit(1))));
+        assertEquals(Arrays.asList(e2, e0), toList(list.getElements(new LogQuery().setLoggerPrefix("org.foo").setReverse(true))));
+        assertEquals(Arrays.asList(e3, e1), toList(list.getElements(new LogQuery().setLoggerPattern(Pattern.compile("bar")).setReverse(true))));
+        assertEquals(Arrays.asList(e1, e2), toList(list.getElements(new LogQuery().setFrom(1).setTo(2))));
+        assertEquals(Arrays.asList(e2, e3), toList(list.getElements(new LogQuery().setLimit(2))));
+    }
+
+    private static PaxLoggingEvent event(String logger, long timestamp) {
+        PaxLoggingEvent event = EasyMock.createNiceMock(PaxLoggingEvent.class);
+        EasyMock.expect(event.getLoggerName()).andReturn(logger).anyTimes();
+        EasyMock.expect(event.getTimeStamp()).andReturn(timestamp).anyTimes();
+        EasyMock.replay(event);
+        return event;
+    }
+
+    private static List<PaxLoggingEvent> events(int nb) {
+        List<PaxLoggingEvent> events = new ArrayList<PaxLoggingEvent>();
+        for (int i = 0; i < nb; i++) {
+            events.add(EasyMock.createMock(PaxLoggingEvent.class));
+        }
+        return events;
+    }
+
+    private static List<PaxLoggingEvent> toList(Iterable<PaxLoggingEvent> iterable) {
+        List<PaxLoggingEvent> list = new ArrayList<PaxLoggingEvent>();
+        for (PaxLoggingEvent event : iterable) {
+            list.add(event);
+        }
+        return list;
+    }
+
+}
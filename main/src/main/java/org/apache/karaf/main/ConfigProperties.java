@@ -131,6 +131,11 @@ public class ConfigProperties {
     
     private static final String KARAF_DELAY_CONSOLE = "karaf.delay.console";
 
+    /**
+     * If a timeline of the startup should be recorded in the data directory
+     */
+    private static final String KARAF_STARTUP_TRACE = "karaf.startup.trace";
+
     private static final String DEFAULT_SHUTDOWN_COMMAND = "SHUTDOWN";
 
     private static final String PROPERTY_LOCK_CLASS_DEFAULT = SimpleFileLock.class.getName();
@@ -171,6 +176,7 @@ public class ConfigProperties {
     String shutdownCommand;
     String startupMessage;
     boolean delayConsoleStart;
+    boolean startupTrace;
     
     public ConfigProperties() throws Exception {
         this.karafHome = Utils.getKarafHome(ConfigProperties.class, PROP_KARAF_HOME, ENV_KARAF_HOME);
@@ -238,6 +244,7 @@ public class ConfigProperties {
         this.startupMessage = props.getProperty(KARAF_STARTUP_MESSAGE, "Apache Karaf starting up. Press Enter to open the shell now...");
         this.delayConsoleStart = Boolean.parseBoolean(props.getProperty(KARAF_DELAY_CONSOLE, "false"));
         System.setProperty(KARAF_DELAY_CONSOLE, new Boolean(this.delayConsoleStart).toString());
+        this.startupTrace = Boolean.parseBoolean(props.getProperty(KARAF_STARTUP_TRACE, "false"));
 
         if (shutdownCommand == null || shutdownCommand.isEmpty()) {
             shutdownCommand = UUID.randomUUID().toString();
@@ -19,9 +19,12 @@
 package org.apache.karaf.main;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -31,21 +34,33 @@ import java.net.URLClassLoader;
 import java.security.Provider;
 import java.security.Security;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import org.apache.felix.utils.properties.Properties;
 
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.management.ObjectName;
+
 import org.apache.karaf.info.ServerInfo;
 import org.apache.karaf.main.lock.Lock;
 import org.apache.karaf.main.lock.LockCallBack;
+import org.apache.karaf.main.lock.LockStatistics;
 import org.apache.karaf.main.lock.NoLock;
+import org.apache.karaf.main.lock.WaitableLock;
 import org.apache.karaf.main.util.ArtifactResolver;
 import org.apache.karaf.main.util.BootstrapLogManager;
 import org.apache.karaf.main.util.SimpleMavenResolver;
 import org.apache.karaf.main.util.Utils;
+import org.apache.karaf.util.startup.StartupTrace;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
@@ -86,7 +101,9 @@ public class Main {
     private KarafActivatorManager activatorManager;
     private Lock lock;
     private KarafLockCallback lockCallback;
-    private boolean exiting;
+    private final LockStatistics lockStatistics = new LockStatistics();
+    private volatile boolean exiting;
+    private final Object exitLock = new Object();
     
     /**
      * <p>
@@ -224,6 +241,13 @@ public class Main {
         lockCallback = new KarafLockCallback();
         InstanceHelper.updateInstancePid(config.karafHome, config.karafBase);
         LOG.addHandler(BootstrapLogManager.getDefaultHandler());
+        if (config.startupTrace) {
+            try {
+                StartupTrace.start(new File(config.karafData, StartupTrace.TRACE_FILE));
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to record the startup trace", e);
+            }
+        }
 
         for (String provider : config.securityProviders) {
             addSecurityProvider(provider);
@@ -273,9 +297,16 @@ public class Main {
             t.printStackTrace();
         }
 
+        StartupTrace.Span span = StartupTrace.begin("launcher", "Initialize framework");
         framework.init();
+        span.end();
+        if (StartupTrace.isEnabled()) {
+            new StartupProfiler(framework.getBundleContext());
+        }
         framework.getBundleContext().addFrameworkListener(lockCallback);
+        span = StartupTrace.begin("launcher", "Start framework");
         framework.start();
+        span.end();
 
         FrameworkStartLevel sl = framework.adapt(FrameworkStartLevel.class);
         sl.setInitialBundleStartLevel(config.defaultBundleStartlevel);
@@ -286,7 +317,9 @@ public class Main {
             LOG.info("Installing and starting initial bundles");
             File startupPropsFile = new File(config.karafEtc, STARTUP_PROPERTIES_FILE_NAME);
             List<BundleInfo> bundles = readBundlesFromStartupProperties(startupPropsFile);        
+            span = StartupTrace.begin("launcher", "Install startup bundles");
             installAndStartBundles(resolver, framework.getBundleContext(), bundles);
+            span.end();
             LOG.info("All initial bundles installed and set to start");
         }
 
@@ -294,7 +327,9 @@ public class Main {
         framework.getBundleContext().registerService(ServerInfo.class, serverInfo, null);
 
         activatorManager = new KarafActivatorManager(classLoader, framework);
+        span = StartupTrace.begin("launcher", "Start Karaf activators");
         activatorManager.startKarafActivators();
+        span.end();
         
         setStartLevel(config.lockStartLevel);
         // Progress bar
@@ -318,9 +353,39 @@ public class Main {
 
     private void doMonitor() throws Exception {
         lock = createLock();
+        ObjectName statisticsName = registerLockStatistics();
+        try {
+            monitorLock();
+        } finally {
+            if (statisticsName != null) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsName);
+                } catch (Exception e) {
+                    LOG.log(Level.FINE, "Unable to unregister the lock statistics", e);
+                }
+            }
+        }
+    }
+
+    private ObjectName registerLockStatistics() {
+        try {
+            ObjectName name = new ObjectName("org.apache.karaf:type=lock,name=" + System.getProperty("karaf.name", "root"));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(lockStatistics, name);
+            return name;
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Unable to register the lock statistics", e);
+            return null;
+        }
+    }
+
+    private void monitorLock() throws Exception {
         File dataDir = new File(System.getProperty(ConfigProperties.PROP_KARAF_DATA));
+        long waitingSince = System.currentTimeMillis();
         while (!exiting) {
             if (lock.lock()) {
+                long acquired = System.currentTimeMillis();
+                LOG.info("Lock acquired after waiting " + (acquired - waitingSince) + " ms");
+                lockStatistics.lockAcquired(acquired - waitingSince);
                 lockCallback.lockAquired();
                 for (;;) {
                     if (!dataDir.isDirectory()) {
@@ -332,15 +397,41 @@ public class Main {
                     if (!lock.isAlive() || exiting) {
                         break;
                     }
-                    Thread.sleep(config.lockDelay);
+                    awaitExit(config.lockDelay);
                 }
+                waitingSince = System.currentTimeMillis();
+                lockStatistics.lockLost();
                 if (!exiting) {
+                    LOG.info("Lock lost after holding it for " + (waitingSince - acquired) + " ms");
                     lockCallback.lockLost();
                 }
+                awaitExit(config.lockDelay);
             } else {
                 lockCallback.waitingForLock();
+                if (lock instanceof WaitableLock) {
+                    ((WaitableLock) lock).waitForRelease(config.lockDelay);
+                } else {
+                    awaitExit(config.lockDelay);
+                }
+            }
+        }
+    }
+
+    private void setExiting() {
+        synchronized (exitLock) {
+            exiting = true;
+            exitLock.notifyAll();
+        }
+    }
+
+    /**
+     * Wait for the given delay, returning early if Karaf is exiting.
+     */
+    private void awaitExit(long delay) throws InterruptedException {
+        synchronized (exitLock) {
+            if (!exiting) {
+                exitLock.wait(delay);
             }
-            Thread.sleep(config.lockDelay);
         }
     }
 
@@ -415,19 +506,71 @@ public class Main {
         return bundeList; 
     }
 
-    private void installAndStartBundles(ArtifactResolver resolver, BundleContext context, List<BundleInfo> bundles) {
-        for (BundleInfo bundleInfo : bundles) {
-            try {
-                URI resolvedURI = resolver.resolve(bundleInfo.uri);
-                Bundle b = context.installBundle(bundleInfo.uri.toString(), resolvedURI.toURL().openStream());
-                b.adapt(BundleStartLevel.class).setStartLevel(bundleInfo.startLevel);
-                if (isNotFragment(b)) {
-                    b.start();
+    /**
+     * Install the startup bundles.
+     * The bundles are resolved and read concurrently, then installed in start level order
+     * and marked to be started: the framework starts them when the start level is raised.
+     */
+    void installAndStartBundles(final ArtifactResolver resolver, BundleContext context, List<BundleInfo> bundles) {
+        bundles = new ArrayList<BundleInfo>(bundles);
+        Collections.sort(bundles, new Comparator<BundleInfo>() {
+            public int compare(BundleInfo b1, BundleInfo b2) {
+                return b1.startLevel.compareTo(b2.startLevel);
+            }
+        });
+        int threads = Math.max(1, Math.min(bundles.size(), Runtime.getRuntime().availableProcessors() * 2));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<byte[]>> contents = new ArrayList<Future<byte[]>>();
+            for (final BundleInfo bundleInfo : bundles) {
+                contents.add(executor.submit(new Callable<byte[]>() {
+                    public byte[] call() throws Exception {
+                        StartupTrace.Span span = StartupTrace.begin("launcher", "Read " + bundleInfo.uri);
+                        try {
+                            return read();
+                        } finally {
+                            span.end();
+                        }
+                    }
+
+                    private byte[] read() throws Exception {
+                        URI resolvedURI = resolver.resolve(bundleInfo.uri);
+                        InputStream is = resolvedURI.toURL().openStream();
+                        try {
+                            return Utils.readFully(is);
+                        } finally {
+                            is.close();
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < bundles.size(); i++) {
+                BundleInfo bundleInfo = bundles.get(i);
+                try {
+                    byte[] content = getContent(contents.get(i));
+                    StartupTrace.Span span = StartupTrace.begin("launcher", "Install " + bundleInfo.uri);
+                    Bundle b = context.installBundle(bundleInfo.uri.toString(), new ByteArrayInputStream(content));
+                    span.end();
+                    b.adapt(BundleStartLevel.class).setStartLevel(bundleInfo.startLevel);
+                    if (isNotFragment(b)) {
+                        b.start();
+                    }
+                } catch (Exception  e) {
+                    throw new RuntimeException("Error installing bundle listed in " + STARTUP_PROPERTIES_FILE_NAME
+                            + " with url: " + bundleInfo.uri + " and startlevel: " + bundleInfo.startLevel, e);
                 }
-            } catch (Exception  e) {
-                throw new RuntimeException("Error installing bundle listed in " + STARTUP_PROPERTIES_FILE_NAME
-                        + " with url: " + bundleInfo.uri + " and startlevel: " + bundleInfo.startLevel, e);
             }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] getContent(Future<byte[]> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
         }
     }
 
@@ -533,7 +676,7 @@ public class Main {
                 shutdownCallback.waitingForShutdown(step);
             }
 
-            exiting = true;
+            setExiting();
 
             if (framework.getState() == Bundle.ACTIVE || framework.getState() == Bundle.STARTING) {
                 new Thread() {
@@ -565,7 +708,7 @@ public class Main {
             return false;
         } finally {
             if (lock != null) {
-                exiting = true;
+                setExiting();
                 lock.release();
             }
         }
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.main;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.karaf.util.startup.StartupTrace;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.startlevel.FrameworkStartLevel;
+
+/**
+ * Records the startup of the framework in the startup trace: bundles
+ * installation, resolution and start, blueprint containers readiness and
+ * start level changes. The listener will remove itself when the startup trace
+ * is stopped, once the boot features have been installed.
+ *
+ * The blueprint events are not visible from the launcher, so the blueprint
+ * span only covers the time between the end of the bundle start and the
+ * registration of its BlueprintContainer service, which includes the
+ * creation of the container and the wait for its mandatory references.
+ * Declarative services components are not traced.
+ */
+class StartupProfiler implements FrameworkListener, SynchronousBundleListener, ServiceListener {
+    private static final String BLUEPRINT_CONTAINER = "org.osgi.service.blueprint.container.BlueprintContainer";
+
+    private final BundleContext context;
+    private final Map<Long, Long> starting = new ConcurrentHashMap<Long, Long>();
+    private final Map<Long, Long> started = new ConcurrentHashMap<Long, Long>();
+
+    StartupProfiler(BundleContext context) {
+        this.context = context;
+        context.addBundleListener(this);
+        context.addFrameworkListener(this);
+        try {
+            context.addServiceListener(this, "(objectClass=" + BLUEPRINT_CONTAINER + ")");
+        } catch (InvalidSyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void bundleChanged(BundleEvent event) {
+        if (!StartupTrace.isEnabled()) {
+            close();
+            return;
+        }
+        Bundle bundle = event.getBundle();
+        switch (event.getType()) {
+        case BundleEvent.INSTALLED:
+            StartupTrace.instant("bundle", "Installed " + getName(bundle));
+            break;
+        case BundleEvent.RESOLVED:
+            StartupTrace.instant("bundle", "Resolved " + getName(bundle));
+            break;
+        case BundleEvent.STARTING:
+            starting.put(bundle.getBundleId(), System.nanoTime());
+            break;
+        case BundleEvent.STARTED:
+            long now = System.nanoTime();
+            Long start = starting.remove(bundle.getBundleId());
+            if (start != null) {
+                StartupTrace.complete("bundle", "Start " + getName(bundle), start, now);
+            }
+            started.put(bundle.getBundleId(), now);
+            break;
+        default:
+            break;
+        }
+    }
+
+    public void serviceChanged(ServiceEvent event) {
+        if (!StartupTrace.isEnabled()) {
+            close();
+            return;
+        }
+        if (event.getType() == ServiceEvent.REGISTERED) {
+            Bundle bundle = event.getServiceReference().getBundle();
+            Long start = bundle != null ? started.remove(bundle.getBundleId()) : null;
+            if (start != null) {
+                StartupTrace.complete("blueprint", "Blueprint container ready " + getName(bundle), start, System.nanoTime());
+            }
+        }
+    }
+
+    public void frameworkEvent(FrameworkEvent event) {
+        if (!StartupTrace.isEnabled()) {
+            close();
+            return;
+        }
+        if (event.getType() == FrameworkEvent.STARTLEVEL_CHANGED) {
+            int level = context.getBundle(0).adapt(FrameworkStartLevel.class).getStartLevel();
+            StartupTrace.instant("framework", "Start level " + level);
+        }
+    }
+
+    private void close() {
+        try {
+            context.removeBundleListener(this);
+            context.removeFrameworkListener(this);
+            context.removeServiceListener(this);
+        } catch (IllegalStateException e) {
+            // The framework is stopping
+        }
+        starting.clear();
+        started.clear();
+    }
+
+    private static String getName(Bundle bundle) {
+        String name = bundle.getSymbolicName();
+        return (name != null ? name : bundle.getLocation()) + " / " + bundle.getVersion();
+    }
+
+}
@@ -123,10 +123,15 @@ import org.apache.karaf.main.util.BootstrapLogManager;
  * then the other karaf instances will notice that the KARAF_LOCK has not been updated for the current
  * master id and then they can compete for the master lock. </p>
  *
+ * The STATE and LOCK_DELAY of the master act as a lease: a slave knows when the lease of the current
+ * master expires and wakes up at that exact time to steal the lock, instead of discovering it on its
+ * next periodic attempt.  In between, it checks the lock table id with a short backoff, so that it
+ * takes over soon after a master releases the lock on shutdown. </p>
+ *
  * @author Claudio Corsi
  *
  */
-public class GenericJDBCLock implements Lock {
+public class GenericJDBCLock implements WaitableLock {
 
     final Logger LOG = Logger.getLogger(this.getClass().getName());
 
@@ -169,6 +174,14 @@ public class GenericJDBCLock implements Lock {
     // table state
     private int currentLockDelay;
 
+    // Bounds of the interval between two checks of the lock table while waiting for the lock
+    private static final long MIN_POLL_INTERVAL = 100;
+    private static final long MAX_POLL_INTERVAL = 1000;
+
+    // Wakes up an instance waiting for the lock when it is released on shutdown
+    private final Object releaseMonitor = new Object();
+    private boolean released;
+
     public GenericJDBCLock(Properties props) {
         try {
             LOG.addHandler(BootstrapLogManager.getDefaultHandler());
@@ -536,6 +549,60 @@ public class GenericJDBCLock implements Lock {
         return lockAquired;
     }
 
+    /**
+     * This method will wait until the current master releases the lock, which resets the id of the
+     * lock table, or until its lease expires, if it happens before the given timeout.  The lock table
+     * is checked with an interval growing from MIN_POLL_INTERVAL to MAX_POLL_INTERVAL, so that an
+     * instance running in another JVM takes over shortly after the master is stopped.
+     *
+     * @see org.apache.karaf.main.lock.WaitableLock#waitForRelease(long)
+     */
+    public void waitForRelease(long timeout) throws InterruptedException {
+        long now = System.currentTimeMillis();
+        long end = now + timeout;
+        if (this.currentId != 0 && this.currentLockDelay > 0) {
+            long expiry = this.currentStateTime + this.currentLockDelay + this.currentLockDelay + 1;
+            end = Math.min(end, Math.max(expiry, now + 1));
+        }
+        long interval = MIN_POLL_INTERVAL;
+        long remaining;
+        while ((remaining = end - System.currentTimeMillis()) > 0) {
+            synchronized (releaseMonitor) {
+                if (released) {
+                    return;
+                }
+                releaseMonitor.wait(Math.min(interval, remaining));
+                if (released) {
+                    return;
+                }
+            }
+            if (end - System.currentTimeMillis() > 0 && isMasterChanged()) {
+                return;
+            }
+            interval = Math.min(interval * 2, MAX_POLL_INTERVAL);
+        }
+    }
+
+    /**
+     * This method checks if the lock table id differs from the master seen by the last lock attempt,
+     * which is the case when the master has released the lock or when another instance took it.
+     */
+    private boolean isMasterChanged() {
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+        try {
+            statement = getConnection().prepareStatement(statements.getLockSelectStatement());
+            rs = statement.executeQuery();
+            return rs.next() && statements.getIdFromLockSelectStatement(rs) != this.currentId;
+        } catch (Exception e) {
+            LOG.log(Level.FINE, "Unable to check the lock state", e);
+            return false;
+        } finally {
+            closeSafely(statement);
+            closeSafely(rs);
+        }
+    }
+
     /**
      * This method will release the lock that the current master has by setting the karaf_lock table
      * id to 0.  This tells the others that the master has relinquished the lock and someone else can
@@ -565,6 +632,11 @@ public class GenericJDBCLock implements Lock {
         }
         
         lockConnection = null;
+
+        synchronized (releaseMonitor) {
+            released = true;
+            releaseMonitor.notifyAll();
+        }
     }
 
     /**
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.main.lock;
+
+/**
+ * The lock timings, updated by the launcher when the lock is acquired or lost.
+ */
+public class LockStatistics implements LockStatisticsMBean {
+
+    private long acquisitionCount;
+    private long lastWaitTime;
+    private long maxWaitTime;
+    private long lastHoldTime;
+    private long totalHoldTime;
+    // when the lock was acquired, or 0 if it is not held
+    private long acquired;
+
+    public synchronized void lockAcquired(long waitTime) {
+        acquisitionCount++;
+        lastWaitTime = waitTime;
+        maxWaitTime = Math.max(maxWaitTime, waitTime);
+        lastHoldTime = 0;
+        acquired = System.currentTimeMillis();
+    }
+
+    public synchronized void lockLost() {
+        if (acquired != 0) {
+            lastHoldTime = System.currentTimeMillis() - acquired;
+            totalHoldTime += lastHoldTime;
+            acquired = 0;
+        }
+    }
+
+    public synchronized boolean isMaster() {
+        return acquired != 0;
+    }
+
+    public synchronized long getAcquisitionCount() {
+        return acquisitionCount;
+    }
+
+    public synchronized long getLastWaitTime() {
+        return lastWaitTime;
+    }
+
+    public synchronized long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public synchronized long getLastHoldTime() {
+        return acquired != 0 ? System.currentTimeMillis() - acquired : lastHoldTime;
+    }
+
+    public synchronized long getTotalHoldTime() {
+        return acquired != 0 ? totalHoldTime + System.currentTimeMillis() - acquired : totalHoldTime;
+    }
+
+}
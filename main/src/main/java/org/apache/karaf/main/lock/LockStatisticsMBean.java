@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.main.lock;
+
+/**
+ * Timings of the lock acquisitions of this instance, exposed through JMX.
+ */
+public interface LockStatisticsMBean {
+
+    boolean isMaster();
+
+    long getAcquisitionCount();
+
+    /**
+     * The time in milliseconds waited before the last acquisition, i.e. the failover time
+     * when the lock was held by another instance.
+     */
+    long getLastWaitTime();
+
+    long getMaxWaitTime();
+
+    /**
+     * The time in milliseconds the lock has been held, up to now if it is still held.
+     */
+    long getLastHoldTime();
+
+    long getTotalHoldTime();
+
+}
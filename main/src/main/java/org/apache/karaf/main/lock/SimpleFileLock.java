@@ -22,12 +22,28 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileLock;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
 import org.apache.felix.utils.properties.Properties;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.karaf.main.util.BootstrapLogManager;
 
-public class SimpleFileLock implements Lock {
+/**
+ * A lock based on a file lock.
+ *
+ * Waiting instances watch the lock file, which is touched by the
+ * master when it releases the lock, so that they can take over
+ * immediately instead of waiting for the next lock attempt.
+ */
+public class SimpleFileLock implements WaitableLock {
 
     private static final Logger LOG = Logger.getLogger(SimpleFileLock.class.getName());
     private static final String PROPERTY_LOCK_DIR = "karaf.lock.dir";
@@ -35,6 +51,7 @@ public class SimpleFileLock implements Lock {
     private RandomAccessFile lockFile;
     private File lockPath;
     private FileLock lock;
+    private WatchService watcher;
 
     public SimpleFileLock(Properties props) {
         try {
@@ -66,6 +83,8 @@ public class SimpleFileLock implements Lock {
         }
         if (lock != null) {
             LOG.info("Lock acquired");
+            // The lock file only needs to be watched while waiting for it
+            closeWatcher();
         } else {
             LOG.info("Lock failed");
         }
@@ -77,8 +96,74 @@ public class SimpleFileLock implements Lock {
             LOG.info("Releasing lock " + lockPath.getPath());
             lock.release();
             lock.channel().close();
+            // Notify the waiting instances, once they are able to take the lock
+            lockPath.setLastModified(System.currentTimeMillis());
         }
         lock = null;
+        closeWatcher();
+    }
+
+    public void waitForRelease(long timeout) throws InterruptedException {
+        WatchService watcher;
+        try {
+            watcher = getWatcher();
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Unable to watch lock file, falling back to polling", e);
+            watcher = null;
+        }
+        if (watcher == null) {
+            Thread.sleep(timeout);
+            return;
+        }
+        long end = System.currentTimeMillis() + timeout;
+        long remaining = timeout;
+        while (remaining > 0) {
+            WatchKey key;
+            try {
+                key = watcher.poll(remaining, TimeUnit.MILLISECONDS);
+            } catch (ClosedWatchServiceException e) {
+                // The lock has been released
+                return;
+            }
+            if (key == null) {
+                return;
+            }
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                Object context = event.context();
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                        || context instanceof Path && lockPath.getName().equals(context.toString())) {
+                    changed = true;
+                }
+            }
+            key.reset();
+            if (changed) {
+                return;
+            }
+            remaining = end - System.currentTimeMillis();
+        }
+    }
+
+    private synchronized void closeWatcher() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    private synchronized WatchService getWatcher() throws IOException {
+        if (watcher == null) {
+            Path dir = lockPath.getAbsoluteFile().getParentFile().toPath();
+            WatchService service = FileSystems.getDefault().newWatchService();
+            try {
+                dir.register(service, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            } catch (IOException e) {
+                service.close();
+                throw e;
+            }
+            watcher = service;
+        }
+        return watcher;
     }
  
     public boolean isAlive() throws Exception {
@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.main.lock;
+
+/**
+ * A lock able to tell waiting instances when it is worth trying
+ * to acquire it again, so that they do not need to poll it at a fixed rate.
+ */
+public interface WaitableLock extends Lock {
+
+    /**
+     * Wait until the lock may have become available, or until the given timeout elapses.
+     *
+     * @param timeout the maximum time to wait in milliseconds
+     * @throws InterruptedException
+     */
+    void waitForRelease(long timeout) throws InterruptedException;
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.main;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createStrictMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.karaf.main.util.ArtifactResolver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.startlevel.BundleStartLevel;
+
+public class InstallStartupBundlesTest {
+
+    private final ArtifactResolver resolver = new ArtifactResolver() {
+        public URI resolve(URI artifactUri) {
+            return artifactUri;
+        }
+    };
+
+    private File dir;
+    private List<Object> mocks = new ArrayList<Object>();
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("startup", ".tmp");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testBundlesAreInstalledInStartLevelOrder() throws Exception {
+        BundleInfo a = bundle("a", 30);
+        BundleInfo b = bundle("b", 10);
+        BundleInfo c = bundle("c", 20);
+        BundleInfo d = bundle("d", 10);
+
+        // Bundles with the same start level keep the order of startup.properties
+        BundleContext context = createStrictMock(BundleContext.class);
+        expectInstall(context, b);
+        expectInstall(context, d);
+        expectInstall(context, c);
+        expectInstall(context, a);
+        replay(context);
+
+        new Main(new String[0]).installAndStartBundles(resolver, context, Arrays.asList(a, b, c, d));
+
+        verify(context);
+        verify(mocks.toArray());
+    }
+
+    @Test
+    public void testReadErrorStopsTheInstallation() throws Exception {
+        BundleInfo a = bundle("a", 30);
+        BundleInfo b = bundle("b", 10);
+        BundleInfo c = bundle("c", 20);
+        new File(c.uri).delete();
+
+        // Nothing is installed after the bundle which can not be read
+        BundleContext context = createStrictMock(BundleContext.class);
+        expectInstall(context, b);
+        replay(context);
+
+        try {
+            new Main(new String[0]).installAndStartBundles(resolver, context, Arrays.asList(a, b, c));
+            Assert.fail("Expected an exception");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains(c.uri.toString()));
+            Assert.assertTrue(e.getCause() instanceof FileNotFoundException);
+        }
+
+        verify(context);
+        verify(mocks.toArray());
+    }
+
+    private BundleInfo bundle(String name, int startLevel) throws IOException {
+        File file = new File(dir, name + ".jar");
+        FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write(name.getBytes());
+        } finally {
+            os.close();
+        }
+        BundleInfo info = new BundleInfo();
+        info.uri = file.toURI();
+        info.startLevel = startLevel;
+        return info;
+    }
+
+    private void expectInstall(BundleContext context, BundleInfo info) throws Exception {
+        Bundle bundle = createMock(Bundle.class);
+        BundleStartLevel startLevel = createMock(BundleStartLevel.class);
+        expect(context.installBundle(eq(info.uri.toString()), isA(InputStream.class))).andReturn(bundle);
+        expect(bundle.adapt(BundleStartLevel.class)).andReturn(startLevel);
+        startLevel.setStartLevel(info.startLevel);
+        expect(bundle.getHeaders()).andReturn(new Hashtable<String, String>());
+        bundle.start();
+        replay(bundle, startLevel);
+        mocks.add(bundle);
+        mocks.add(startLevel);
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.main.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LockStatisticsTest {
+
+    @Test
+    public void testTimings() throws Exception {
+        LockStatistics statistics = new LockStatistics();
+        assertFalse(statistics.isMaster());
+        statistics.lockAcquired(500);
+        assertTrue(statistics.isMaster());
+        Thread.sleep(20);
+        assertTrue(statistics.getLastHoldTime() >= 20);
+        statistics.lockLost();
+        assertFalse(statistics.isMaster());
+        long held = statistics.getLastHoldTime();
+        assertTrue(held >= 20);
+        assertEquals(held, statistics.getTotalHoldTime());
+
+        statistics.lockAcquired(100);
+        statistics.lockLost();
+        assertEquals(2, statistics.getAcquisitionCount());
+        assertEquals(100, statistics.getLastWaitTime());
+        assertEquals(500, statistics.getMaxWaitTime());
+        assertEquals(held + statistics.getLastHoldTime(), statistics.getTotalHoldTime());
+    }
+
+}
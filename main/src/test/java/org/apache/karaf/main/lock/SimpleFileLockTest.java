@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.main.lock;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.utils.properties.Properties;
+import org.apache.karaf.main.util.BootstrapLogManager;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class SimpleFileLockTest {
+
+    @BeforeClass
+    public static void setUpTestSuite() {
+        Properties properties = new Properties();
+        properties.put("karaf.bootstrap.log", "target/karaf.log");
+        BootstrapLogManager.setProperties(properties);
+    }
+
+    @Test
+    public void testWaitingInstanceIsNotifiedOnRelease() throws Exception {
+        File dir = Files.createTempDirectory("lock").toFile();
+        Properties props = new Properties();
+        props.setProperty("karaf.lock.dir", dir.getPath());
+        SimpleFileLock master = new SimpleFileLock(props);
+        final SimpleFileLock slave = new SimpleFileLock(props);
+
+        assertTrue(master.lock());
+        assertTrue(master.isAlive());
+        // Start watching the lock file
+        slave.waitForRelease(1);
+
+        final CountDownLatch notified = new CountDownLatch(1);
+        Thread thread = new Thread() {
+            public void run() {
+                try {
+                    slave.waitForRelease(TimeUnit.MINUTES.toMillis(1));
+                    notified.countDown();
+                } catch (InterruptedException e) {
+                    // Ignore
+                }
+            }
+        };
+        thread.start();
+        master.release();
+        assertFalse(master.isAlive());
+        assertTrue(notified.await(10, TimeUnit.SECONDS));
+        // The lock is free when the waiting instance is notified
+        assertTrue(slave.lock());
+        assertTrue(slave.isAlive());
+        slave.release();
+    }
+
+}
@@ -17,11 +17,14 @@
 package org.apache.karaf.management;
 
 import org.apache.karaf.management.boot.KarafMBeanServerBuilder;
+import org.apache.karaf.service.guard.tools.ACLConfiguration;
 import org.apache.karaf.service.guard.tools.ACLConfigurationParser;
 import org.apache.karaf.util.jaas.JaasHelper;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.cm.ConfigurationListener;
 
 import javax.management.*;
 import javax.security.auth.Subject;
@@ -36,7 +39,14 @@ import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-public class KarafMBeanServerGuard implements InvocationHandler {
+/**
+ * Check JMX invocations against the roles defined in the {@code jmx.acl*} configurations.
+ *
+ * The configurations are compiled into an index on first use, which also caches the roles
+ * required by each operation.  The index is dropped whenever a {@code jmx.acl*} configuration
+ * changes, so the guard must be registered as a {@link ConfigurationListener}.
+ */
+public class KarafMBeanServerGuard implements InvocationHandler, ConfigurationListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(KarafMBeanServerGuard.class);    
 
@@ -47,20 +57,35 @@ public class KarafMBeanServerGuard implements InvocationHandler {
 
     private static final String JMX_OBJECTNAME_PROPERTY_WILDCARD = "_";
 
+    private static final int MAX_CACHED_DECISIONS = 1024;
+
     private ConfigurationAdmin configAdmin;
 
+    private volatile AclIndex aclIndex;
+
     public ConfigurationAdmin getConfigAdmin() {
         return configAdmin;
     }
 
     public void setConfigAdmin(ConfigurationAdmin configAdmin) {
         this.configAdmin = configAdmin;
+        invalidate();
     }
 
     public void init() {
         KarafMBeanServerBuilder.setGuard(this);
     }
 
+    public void configurationEvent(ConfigurationEvent event) {
+        if (event.getPid() != null && event.getPid().startsWith(JMX_ACL_PID_PREFIX)) {
+            invalidate();
+        }
+    }
+
+    synchronized void invalidate() {
+        aclIndex = null;
+    }
+
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         if (method.getParameterTypes().length == 0)
             return null;
@@ -180,15 +205,7 @@ public class KarafMBeanServerGuard implements InvocationHandler {
     }
 
     private boolean canInvoke(ObjectName objectName, String methodName, String[] signature) throws IOException {
-        if (canBypassRBAC(objectName)) {
-            return true;
-        }
-        for (String role : getRequiredRoles(objectName, methodName, signature)) {
-            if (JaasHelper.currentUserHasRole(role))
-                return true;
-        }
-
-        return false;
+        return getDecision(objectName, methodName, null, signature).isGranted();
     }
 
     private void handleGetAttribute(MBeanServer proxy, ObjectName objectName, String attributeName) throws JMException, IOException {
@@ -234,43 +251,10 @@ public class KarafMBeanServerGuard implements InvocationHandler {
         }
     }
 
-    private boolean canBypassRBAC(ObjectName objectName) {
-        List<String> allBypassObjectName = new ArrayList<String>();
-        try {
-            Configuration[] configs = configAdmin.listConfigurations("(service.pid=" + JMX_ACL_WHITELIST + ")");
-            if (configs != null) {
-                for (Configuration config : configs) {
-                    Enumeration<String> keys = config.getProperties().keys();
-                    while (keys.hasMoreElements()) {
-                        String element = keys.nextElement();
-                        allBypassObjectName.add(element);
-                    }
-                }
-            }
-        } catch (InvalidSyntaxException ise) {
-            throw new RuntimeException(ise);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } 
-
-        for (String pid : iterateDownPids(getNameSegments(objectName))) {
-            if (!pid.equals("jmx.acl") 
-                && allBypassObjectName.contains(pid.substring("jmx.acl.".length()))) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     void handleInvoke(ObjectName objectName, String operationName, Object[] params, String[] signature) throws IOException {
-        if (canBypassRBAC(objectName)) {
-            return;
+        if (!getDecision(objectName, operationName, params, signature).isGranted()) {
+            throw new SecurityException("Insufficient roles/credentials for operation");
         }
-        for (String role : getRequiredRoles(objectName, operationName, params, signature)) {
-            if (JaasHelper.currentUserHasRole(role))
-                return;
-        }
-        throw new SecurityException("Insufficient roles/credentials for operation");
     }
 
     List<String> getRequiredRoles(ObjectName objectName, String methodName, String[] signature) throws IOException {
@@ -278,28 +262,63 @@ public class KarafMBeanServerGuard implements InvocationHandler {
     }
 
     List<String> getRequiredRoles(ObjectName objectName, String methodName, Object[] params, String[] signature) throws IOException {
+        return getDecision(objectName, methodName, params, signature).requiredRoles;
+    }
 
-        List<String> allPids = new ArrayList<String>();
-        try {
-            for (Configuration config : configAdmin.listConfigurations("(service.pid=jmx.acl*)")) {
-                allPids.add(config.getPid());
-            }
-        } catch (InvalidSyntaxException ise) {
-            throw new RuntimeException(ise);
+    private Decision getDecision(ObjectName objectName, String methodName, Object[] params, String[] signature) throws IOException {
+        AclIndex index = getAclIndex();
+        // Decisions computed without the parameters are only valid for such calls
+        String key = objectName.getCanonicalName() + "#" + methodName + Arrays.toString(signature) + (params == null ? "?" : "");
+        Decision decision = index.decisions.get(key);
+        if (decision != null) {
+            return decision;
         }
 
-        for (String pid : iterateDownPids(getNameSegments(objectName))) {
-            String generalPid = getGeneralPid(allPids, pid);
-            if (generalPid.length() > 0) {
-                Configuration config = configAdmin.getConfiguration(generalPid, null);
+        List<String> pids = iterateDownPids(getNameSegments(objectName));
+        boolean dependsOnArguments = false;
+        List<String> requiredRoles = Collections.emptyList();
+        for (String pid : pids) {
+            String generalPid = getGeneralPid(index.pids, pid);
+            ACLConfiguration acl = index.acls.get(generalPid);
+            if (acl != null) {
+                dependsOnArguments |= acl.hasArgumentRules(methodName);
                 List<String> roles = new ArrayList<String>();
-                ACLConfigurationParser.Specificity s = ACLConfigurationParser.getRolesForInvocation(methodName, params, signature, config.getProperties(), roles);
+                ACLConfigurationParser.Specificity s = acl.getRolesForInvocation(methodName, params, signature, roles);
                 if (s != ACLConfigurationParser.Specificity.NO_MATCH) {
-                    return roles;
+                    requiredRoles = roles;
+                    break;
+                }
+            }
+        }
+
+        boolean bypass = false;
+        for (String pid : pids) {
+            if (!pid.equals(JMX_ACL_PID_PREFIX)
+                && index.whitelist.contains(pid.substring(JMX_ACL_PID_PREFIX.length() + 1))) {
+                bypass = true;
+                break;
+            }
+        }
+
+        decision = new Decision(bypass, requiredRoles);
+        if (params == null || !dependsOnArguments) {
+            index.decisions.put(key, decision);
+        }
+        return decision;
+    }
+
+    private AclIndex getAclIndex() throws IOException {
+        AclIndex index = aclIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = aclIndex;
+                if (index == null) {
+                    index = new AclIndex(configAdmin);
+                    aclIndex = index;
                 }
             }
         }
-        return Collections.emptyList();
+        return index;
     }
 
     private String getGeneralPid(List<String> allPids, String pid) {
@@ -377,4 +396,70 @@ public class KarafMBeanServerGuard implements InvocationHandler {
         return res;
     }
 
+    /**
+     * The roles required to invoke an operation.
+     */
+    static class Decision {
+        final boolean bypass;
+        final List<String> requiredRoles;
+
+        Decision(boolean bypass, List<String> requiredRoles) {
+            this.bypass = bypass;
+            this.requiredRoles = requiredRoles;
+        }
+
+        boolean isGranted() {
+            if (bypass) {
+                return true;
+            }
+            for (String role : requiredRoles) {
+                if (JaasHelper.currentUserHasRole(role))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A snapshot of the {@code jmx.acl*} configurations, along with the decisions computed from it.
+     */
+    static class AclIndex {
+        final Set<String> whitelist = new HashSet<String>();
+        final List<String> pids = new ArrayList<String>();
+        final Map<String, ACLConfiguration> acls = new HashMap<String, ACLConfiguration>();
+        final Map<String, Decision> decisions = Collections.synchronizedMap(new LinkedHashMap<String, Decision>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Decision> eldest) {
+                return size() > MAX_CACHED_DECISIONS;
+            }
+        });
+
+        AclIndex(ConfigurationAdmin configAdmin) throws IOException {
+            try {
+                Configuration[] configs = configAdmin.listConfigurations("(service.pid=" + JMX_ACL_WHITELIST + ")");
+                if (configs != null) {
+                    for (Configuration config : configs) {
+                        Enumeration<String> keys = config.getProperties().keys();
+                        while (keys.hasMoreElements()) {
+                            whitelist.add(keys.nextElement());
+                        }
+                    }
+                }
+                configs = configAdmin.listConfigurations("(service.pid=" + JMX_ACL_PID_PREFIX + "*)");
+                if (configs != null) {
+                    for (Configuration config : configs) {
+                        String pid = config.getPid();
+                        Dictionary<String, Object> props = config.getProperties();
+                        pids.add(pid);
+                        if (props != null) {
+                            acls.put(pid, new ACLConfiguration(props));
+                        }
+                    }
+                }
+            } catch (InvalidSyntaxException ise) {
+                throw new RuntimeException(ise);
+            }
+        }
+    }
+
 }
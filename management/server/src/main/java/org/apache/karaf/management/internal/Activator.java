@@ -34,6 +34,7 @@ import org.apache.karaf.util.tracker.ProvideService;
 import org.apache.karaf.util.tracker.RequireService;
 import org.apache.karaf.util.tracker.Services;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationListener;
 import org.osgi.service.cm.ManagedService;
 
 @Services(
@@ -82,6 +83,7 @@ public class Activator extends BaseActivator implements ManagedService {
         KarafMBeanServerGuard guard = new KarafMBeanServerGuard();
         guard.setConfigAdmin(configurationAdmin);
         guard.init();
+        register(ConfigurationListener.class, guard);
 
         rmiRegistryFactory = new RmiRegistryFactory();
         rmiRegistryFactory.setCreate(true);
@@ -22,8 +22,10 @@ import org.apache.karaf.util.jaas.JaasHelper;
 import org.easymock.EasyMock;
 import org.osgi.framework.Constants;
 import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
 
 import javax.management.*;
 import javax.security.auth.Subject;
@@ -354,6 +356,46 @@ public class KarafMBeanServerGuardTest extends TestCase {
                 guard.getRequiredRoles(on, "test", new Object[]{new Long(17)}, new String[]{"java.lang.Long"}));
     }
 
+    public void testRequiredRolesCachedUntilConfigurationEvent() throws Exception {
+        Dictionary<String, Object> configuration = new Hashtable<String, Object>();
+        configuration.put("doit", "master");
+        configuration.put(Constants.SERVICE_PID, "jmx.acl.foo.bar.Test");
+        Configuration conf = EasyMock.createMock(Configuration.class);
+        EasyMock.expect(conf.getPid()).andReturn("jmx.acl.foo.bar.Test").anyTimes();
+        EasyMock.expect(conf.getProperties()).andReturn(configuration).anyTimes();
+        EasyMock.replay(conf);
+
+        // The configurations are only listed again after a jmx.acl configuration changed
+        ConfigurationAdmin ca = EasyMock.createMock(ConfigurationAdmin.class);
+        EasyMock.expect(ca.listConfigurations(EasyMock.eq("(service.pid=jmx.acl*)"))).andReturn(
+                new Configuration[]{conf}).times(2);
+        EasyMock.expect(ca.listConfigurations(EasyMock.eq("(service.pid=jmx.acl.whitelist)"))).andReturn(
+                null).times(2);
+        EasyMock.replay(ca);
+
+        KarafMBeanServerGuard guard = new KarafMBeanServerGuard();
+        guard.setConfigAdmin(ca);
+
+        ObjectName on = ObjectName.getInstance("foo.bar:type=Test");
+        assertEquals(Collections.singletonList("master"),
+                guard.getRequiredRoles(on, "doit", new Object[]{}, new String[]{}));
+        assertEquals(Collections.singletonList("master"),
+                guard.getRequiredRoles(on, "doit", new Object[]{}, new String[]{}));
+
+        configuration.put("doit", "editor");
+        ServiceReference cmRef = EasyMock.createMock(ServiceReference.class);
+        EasyMock.replay(cmRef);
+        guard.configurationEvent(new ConfigurationEvent(cmRef, ConfigurationEvent.CM_UPDATED, null, "org.apache.karaf.foo"));
+        assertEquals(Collections.singletonList("master"),
+                guard.getRequiredRoles(on, "doit", new Object[]{}, new String[]{}));
+        guard.configurationEvent(new ConfigurationEvent(cmRef, ConfigurationEvent.CM_UPDATED, null, "jmx.acl.foo.bar.Test"));
+        assertEquals(Collections.singletonList("editor"),
+                guard.getRequiredRoles(on, "doit", new Object[]{}, new String[]{}));
+        assertEquals(Collections.singletonList("editor"),
+                guard.getRequiredRoles(on, "doit", new Object[]{}, new String[]{}));
+        EasyMock.verify(ca);
+    }
+
     @SuppressWarnings("unchecked")
     private ConfigurationAdmin getMockConfigAdmin(Dictionary<String, Object> configuration) throws IOException, InvalidSyntaxException {
         configuration.put(Constants.SERVICE_PID, "jmx.acl.foo.bar.Test");
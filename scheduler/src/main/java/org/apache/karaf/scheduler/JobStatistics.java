@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.scheduler;
+
+/**
+ * Execution statistics of a scheduled job, since it has been scheduled.
+ * Durations are expressed in milliseconds.
+ */
+public interface JobStatistics {
+
+    /** Number of completed executions. */
+    long getExecutions();
+
+    /** Number of executions which threw an exception. */
+    long getFailures();
+
+    long getLastDuration();
+
+    long getAverageDuration();
+
+    long getMaxDuration();
+
+    /** Number of fire times missed because no thread was available in time. */
+    long getMisfires();
+
+    /**
+     * Number of executions held back because the previous one was still running,
+     * for jobs which cannot run concurrently.
+     */
+    long getOverlaps();
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.scheduler;
+
+/**
+ * Optionally implemented by a {@link Scheduler} which keeps execution statistics of its jobs.
+ */
+public interface JobStatisticsProvider {
+
+    /**
+     * Get the execution statistics of a scheduled job.
+     *
+     * @param jobName The name of the job.
+     * @return the statistics of the job, or <code>null</code> if no such job is scheduled.
+     */
+    JobStatistics getStatistics(String jobName);
+
+}
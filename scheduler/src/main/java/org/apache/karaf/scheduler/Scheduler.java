@@ -62,6 +62,12 @@ public interface Scheduler {
     /** Name of the configuration property to define the job name. */
     String PROPERTY_SCHEDULER_NAME = "scheduler.name";
 
+    /**
+     * Name of the configuration property to define the thread pool running the job.
+     * Jobs scheduled through this service give it in the configuration of their {@link ScheduleOptions}.
+     */
+    String PROPERTY_SCHEDULER_THREAD_POOL = "scheduler.threadPool";
+
 
     /**
      * Schedule a job based on the options.
@@ -18,8 +18,11 @@ package org.apache.karaf.scheduler.command;
 
 import java.util.Map;
 
+import org.apache.karaf.scheduler.JobStatistics;
+import org.apache.karaf.scheduler.JobStatisticsProvider;
 import org.apache.karaf.scheduler.ScheduleOptions;
 import org.apache.karaf.scheduler.Scheduler;
+import org.apache.karaf.scheduler.core.QuartzScheduler;
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Command;
 import org.apache.karaf.shell.api.action.lifecycle.Reference;
@@ -38,9 +41,26 @@ public class List implements Action {
         ShellTable table = new ShellTable();
         table.column("Name");
         table.column("Schedule");
+        table.column("Thread Pool");
+        table.column("Runs").alignRight();
+        table.column("Last (ms)").alignRight();
+        table.column("Avg (ms)").alignRight();
+        table.column("Max (ms)").alignRight();
+        table.column("Misfires").alignRight();
+        table.column("Overlaps").alignRight();
         Map<Object, ScheduleOptions> jobs = scheduler.getJobs();
         for (Map.Entry<Object, ScheduleOptions> entry : jobs.entrySet()) {
-            table.addRow().addContent(entry.getValue().name(), entry.getValue().schedule());
+            ScheduleOptions options = entry.getValue();
+            JobStatistics statistics = scheduler instanceof JobStatisticsProvider
+                    ? ((JobStatisticsProvider) scheduler).getStatistics(options.name()) : null;
+            String threadPool = QuartzScheduler.getThreadPool(options);
+            if (statistics != null) {
+                table.addRow().addContent(options.name(), options.schedule(), threadPool,
+                        statistics.getExecutions(), statistics.getLastDuration(), statistics.getAverageDuration(),
+                        statistics.getMaxDuration(), statistics.getMisfires(), statistics.getOverlaps());
+            } else {
+                table.addRow().addContent(options.name(), options.schedule(), threadPool, "", "", "", "", "", "");
+            }
         }
         table.print(System.out);
         return null;
@@ -16,6 +16,8 @@
  */
 package org.apache.karaf.scheduler.command;
 
+import java.io.Serializable;
+import java.util.Collections;
 import java.util.Date;
 
 import javax.xml.bind.DatatypeConverter;
@@ -42,6 +44,9 @@ public class Schedule implements Action {
     @Option(name = "--concurrent", description = "Should jobs run concurrently or not (defaults to false)")
     boolean concurrent;
 
+    @Option(name = "--thread-pool", description = "Name of the thread pool running this job (defaults to the default pool)")
+    String threadPool;
+
     @Option(name = "--cron", description = "The cron expression")
     String cron;
 
@@ -90,6 +95,9 @@ public class Schedule implements Action {
         if (concurrent) {
             options.canRunConcurrently(concurrent);
         }
+        if (threadPool != null) {
+            options.config(Collections.<String, Serializable>singletonMap(Scheduler.PROPERTY_SCHEDULER_THREAD_POOL, threadPool));
+        }
         scheduler.schedule(new ScriptJob(session, script), options);
         return null;
     }
@@ -16,26 +16,56 @@
  */
 package org.apache.karaf.scheduler.core;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.apache.karaf.scheduler.Scheduler;
 import org.apache.karaf.util.tracker.BaseActivator;
+import org.apache.karaf.util.tracker.Managed;
 import org.apache.karaf.util.tracker.ProvideService;
 import org.apache.karaf.util.tracker.Services;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.cm.ManagedService;
 import org.quartz.simpl.SimpleThreadPool;
 import org.quartz.spi.ThreadPool;
 
 @Services(provides = @ProvideService(Scheduler.class))
-public class Activator extends BaseActivator {
+@Managed("org.apache.karaf.scheduler")
+public class Activator extends BaseActivator implements ManagedService {
 
-    private ThreadPool threadPool;
     private QuartzScheduler scheduler;
     private WhiteboardHandler whiteboardHandler;
 
     @Override
     protected void doStart() throws Exception {
-        threadPool = new SimpleThreadPool(4, Thread.NORM_PRIORITY);
-        scheduler = new QuartzScheduler(threadPool);
+        Map<String, ThreadPool> threadPools = new LinkedHashMap<>();
+        threadPools.put(QuartzScheduler.DEFAULT_THREAD_POOL, new SimpleThreadPool(
+                getInt("threadPool.threadCount", 4),
+                getInt("threadPool.threadPriority", Thread.NORM_PRIORITY)));
+        // additional pools, so that long running jobs do not starve the other ones
+        for (String name : getString("threadPools", "").split(",")) {
+            name = name.trim();
+            if (!name.isEmpty() && !threadPools.containsKey(name)) {
+                threadPools.put(name, new SimpleThreadPool(
+                        getInt("threadPool." + name + ".threadCount", 1),
+                        getInt("threadPool." + name + ".threadPriority", Thread.NORM_PRIORITY)));
+            }
+        }
+        if (scheduler == null) {
+            scheduler = new QuartzScheduler(threadPools);
+        } else {
+            // a configuration change: keep the jobs scheduled through the service
+            try {
+                scheduler.setThreadPools(threadPools);
+            } catch (Exception e) {
+                scheduler.deactivate();
+                scheduler = null;
+                throw e;
+            }
+        }
         whiteboardHandler = new WhiteboardHandler(bundleContext, scheduler);
         register(Scheduler.class, scheduler);
+        registerMBean(new SchedulerMBeanImpl(scheduler), "type=scheduler");
     }
 
     @Override
@@ -44,11 +74,16 @@ public class Activator extends BaseActivator {
             whiteboardHandler.deactivate();
             whiteboardHandler = null;
         }
+        super.doStop();
+    }
+
+    @Override
+    public void stop(BundleContext context) throws Exception {
+        super.stop(context);
         if (scheduler != null) {
             scheduler.deactivate();
             scheduler = null;
         }
-        super.doStop();
     }
 
 }
@@ -41,6 +41,9 @@ public class InternalScheduleOptions implements ScheduleOptions {
 
     public boolean canRunConcurrently = false;
 
+    /** The thread pool running the job, only set on the options of a scheduled job. */
+    private final String threadPool;
+
     public Map<String, Serializable> configuration;
 
     public final String schedule;
@@ -58,6 +61,7 @@ public class InternalScheduleOptions implements ScheduleOptions {
             this.argumentException = null;
         }
         this.schedule = "at(" + formatDate(date) + ")";
+        this.threadPool = null;
     }
 
     public InternalScheduleOptions(Date date, int times, long period) {
@@ -88,6 +92,7 @@ public class InternalScheduleOptions implements ScheduleOptions {
         this.trigger = trigger;
         this.argumentException = argumentException;
         this.schedule = "at(" + formatDate(date) + ", " + times + ", " + period + ")";
+        this.threadPool = null;
     }
 
     public InternalScheduleOptions(String expression) {
@@ -108,6 +113,20 @@ public class InternalScheduleOptions implements ScheduleOptions {
         this.trigger = trigger;
         this.argumentException = argumentException;
         this.schedule = "cron(" + expression + ")";
+        this.threadPool = null;
+    }
+
+    /**
+     * Copy the options of a job when it is scheduled, with the thread pool running it.
+     */
+    InternalScheduleOptions(InternalScheduleOptions options, String threadPool) {
+        this.name = options.name;
+        this.canRunConcurrently = options.canRunConcurrently;
+        this.configuration = options.configuration;
+        this.schedule = options.schedule;
+        this.trigger = options.trigger;
+        this.argumentException = options.argumentException;
+        this.threadPool = threadPool;
     }
 
     /**
@@ -144,6 +163,10 @@ public class InternalScheduleOptions implements ScheduleOptions {
         return this.canRunConcurrently;
     }
 
+    public String threadPool() {
+        return this.threadPool;
+    }
+
     @Override
     public String schedule() {
         return schedule;
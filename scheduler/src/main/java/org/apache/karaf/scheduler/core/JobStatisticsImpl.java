@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.scheduler.core;
+
+import org.apache.karaf.scheduler.JobStatistics;
+
+/**
+ * The statistics of a job, updated by the job executor and the misfire listener.
+ */
+public class JobStatisticsImpl implements JobStatistics {
+
+    private long executions;
+    private long failures;
+    private long lastDuration;
+    private long totalDuration;
+    private long maxDuration;
+    private long misfires;
+    private long overlaps;
+    private long lastEnd;
+
+    /**
+     * Record an execution of the job.
+     *
+     * @param scheduled The time at which the execution was scheduled.
+     * @param start The time at which the execution started.
+     * @param end The time at which the execution ended.
+     * @param concurrent Whether the job can run concurrently.
+     * @param failed Whether the job threw an exception.
+     */
+    public synchronized void executed(long scheduled, long start, long end, boolean concurrent, boolean failed) {
+        if (!concurrent && scheduled < lastEnd) {
+            overlaps++;
+        }
+        executions++;
+        if (failed) {
+            failures++;
+        }
+        lastDuration = end - start;
+        totalDuration += lastDuration;
+        maxDuration = Math.max(maxDuration, lastDuration);
+        lastEnd = Math.max(lastEnd, end);
+    }
+
+    public synchronized void misfired() {
+        misfires++;
+    }
+
+    public synchronized long getExecutions() {
+        return executions;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized long getLastDuration() {
+        return lastDuration;
+    }
+
+    public synchronized long getAverageDuration() {
+        return executions > 0 ? totalDuration / executions : 0;
+    }
+
+    public synchronized long getMaxDuration() {
+        return maxDuration;
+    }
+
+    public synchronized long getMisfires() {
+        return misfires;
+    }
+
+    public synchronized long getOverlaps() {
+        return overlaps;
+    }
+
+}
@@ -17,6 +17,7 @@
 package org.apache.karaf.scheduler.core;
 
 import java.io.Serializable;
+import java.util.Date;
 import java.util.Map;
 
 import org.apache.karaf.scheduler.JobContext;
@@ -41,12 +42,14 @@ public class QuartzJobExecutor implements Job {
         final JobDataMap data = context.getJobDetail().getJobDataMap();
         final Object job = data.get(QuartzScheduler.DATA_MAP_OBJECT);
         final Logger logger = (Logger)data.get(QuartzScheduler.DATA_MAP_LOGGER);
+        final InternalScheduleOptions options = (InternalScheduleOptions) data.get(QuartzScheduler.DATA_MAP_OPTIONS);
+        final JobStatisticsImpl statistics = (JobStatisticsImpl) data.get(QuartzScheduler.DATA_MAP_STATISTICS);
 
+        final long start = System.currentTimeMillis();
+        boolean failed = false;
         try {
             logger.debug("Executing job {} with name {}", job, data.get(QuartzScheduler.DATA_MAP_NAME));
             if (job instanceof org.apache.karaf.scheduler.Job) {
-                @SuppressWarnings("unchecked")
-                final InternalScheduleOptions options = (InternalScheduleOptions) data.get(QuartzScheduler.DATA_MAP_OPTIONS);
                 final String name = (String) data.get(QuartzScheduler.DATA_MAP_NAME);
 
                 final JobContext jobCtx = new JobContextImpl(name, options.configuration);
@@ -57,8 +60,15 @@ public class QuartzJobExecutor implements Job {
                 logger.error("Scheduled job {} is neither a job nor a runnable.", job);
             }
         } catch (final Throwable t) {
+            failed = true;
             // there is nothing we can do here, so we just log
             logger.error("Exception during job execution of " + job + " : " + t.getMessage(), t);
+        } finally {
+            if (statistics != null) {
+                final Date scheduled = context.getScheduledFireTime();
+                statistics.executed(scheduled != null ? scheduled.getTime() : start, start,
+                        System.currentTimeMillis(), options.canRunConcurrently, failed);
+            }
         }
     }
 
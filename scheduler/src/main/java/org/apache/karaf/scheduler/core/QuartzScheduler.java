@@ -16,24 +16,38 @@
  */
 package org.apache.karaf.scheduler.core;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.karaf.scheduler.Job;
+import org.apache.karaf.scheduler.JobStatistics;
+import org.apache.karaf.scheduler.JobStatisticsProvider;
 import org.apache.karaf.scheduler.ScheduleOptions;
 import org.apache.karaf.scheduler.Scheduler;
 import org.quartz.JobBuilder;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
 import org.quartz.JobKey;
 import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.SimpleTrigger;
 import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
 import org.quartz.impl.DirectSchedulerFactory;
 import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.listeners.TriggerListenerSupport;
 import org.quartz.simpl.RAMJobStore;
+import org.quartz.simpl.SimpleThreadPool;
 import org.quartz.spi.ThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,7 +56,7 @@ import org.slf4j.LoggerFactory;
  * The quartz based implementation of the scheduler.
  *
  */
-public class QuartzScheduler implements Scheduler {
+public class QuartzScheduler implements Scheduler, JobStatisticsProvider {
 
     /** Default logger. */
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
@@ -63,54 +77,295 @@ public class QuartzScheduler implements Scheduler {
     /** Map key for the logger. */
     static final String DATA_MAP_LOGGER = "QuartzJobScheduler.Logger";
 
-    /** The quartz scheduler. */
+    /** Map key for the job statistics. */
+    static final String DATA_MAP_STATISTICS = "QuartzJobScheduler.Statistics";
+
+    /** Name of the thread pool used by the jobs which do not select one. */
+    public static final String DEFAULT_THREAD_POOL = "default";
+
+    /** The quartz scheduler of the default thread pool. */
     private volatile org.quartz.Scheduler scheduler;
 
+    /** The quartz schedulers, one for each thread pool. */
+    private volatile Map<String, org.quartz.Scheduler> schedulers;
+
+    /** The thread pools of the quartz schedulers. */
+    private Map<String, ThreadPool> threadPools;
+
+    /** Serializes the changes of the thread pools, which wait for the running jobs without locking the scheduler. */
+    private final Object threadPoolsLock = new Object();
+
+    /** The statistics of the scheduled jobs, by name. */
+    private final ConcurrentMap<String, JobStatisticsImpl> statistics = new ConcurrentHashMap<>();
+
     public QuartzScheduler(ThreadPool threadPool) throws SchedulerException {
+        this(Collections.singletonMap(DEFAULT_THREAD_POOL, threadPool));
+    }
+
+    /**
+     * Create a scheduler running the jobs in the given thread pools, by name.
+     * The pools must contain the {@link #DEFAULT_THREAD_POOL} one.
+     */
+    public QuartzScheduler(Map<String, ThreadPool> threadPools) throws SchedulerException {
+        if (!threadPools.containsKey(DEFAULT_THREAD_POOL)) {
+            throw new IllegalArgumentException("No " + DEFAULT_THREAD_POOL + " thread pool");
+        }
         // SLING-2261 Prevent Quartz from checking for updates
         System.setProperty("org.terracotta.quartz.skipUpdateCheck", Boolean.TRUE.toString());
 
-        final DirectSchedulerFactory factory = DirectSchedulerFactory.getInstance();
         // unique run id
         final String runID = new Date().toString().replace(' ', '_');
-        factory.createScheduler(QUARTZ_SCHEDULER_NAME, runID, threadPool, new RAMJobStore());
+        final Map<String, org.quartz.Scheduler> schedulers = new LinkedHashMap<>();
+        try {
+            // as a quartz scheduler has a single thread pool, each pool gets its own scheduler
+            for (Map.Entry<String, ThreadPool> entry : threadPools.entrySet()) {
+                schedulers.put(entry.getKey(), this.startScheduler(entry.getKey(), runID, entry.getValue()));
+            }
+        } catch (SchedulerException e) {
+            for (org.quartz.Scheduler s : schedulers.values()) {
+                this.dispose(s, false);
+            }
+            throw e;
+        }
+        this.schedulers = schedulers;
+        this.scheduler = schedulers.get(DEFAULT_THREAD_POOL);
+        this.threadPools = new LinkedHashMap<>(threadPools);
+        if ( this.logger.isDebugEnabled() ) {
+            this.logger.debug(PREFIX + "started.");
+        }
+    }
+
+    /**
+     * Apply a new configuration of the thread pools, keeping the scheduled jobs.
+     * As the thread pool of a quartz scheduler can not be changed, the schedulers of the modified or
+     * removed pools are replaced, and their jobs are moved to the new schedulers with their remaining
+     * fire times, once their running executions have completed.  The pools must contain the
+     * {@link #DEFAULT_THREAD_POOL} one.
+     */
+    public void setThreadPools(Map<String, ThreadPool> threadPools) throws SchedulerException {
+        if (!threadPools.containsKey(DEFAULT_THREAD_POOL)) {
+            throw new IllegalArgumentException("No " + DEFAULT_THREAD_POOL + " thread pool");
+        }
+        synchronized (this.threadPoolsLock) {
+            // stop firing the jobs of the schedulers to replace
+            final List<org.quartz.Scheduler> replaced = new ArrayList<>();
+            synchronized (this) {
+                for (Map.Entry<String, org.quartz.Scheduler> entry : this.getSchedulers().entrySet()) {
+                    if (!sameThreadPool(this.threadPools.get(entry.getKey()), threadPools.get(entry.getKey()))) {
+                        entry.getValue().standby();
+                        replaced.add(entry.getValue());
+                    }
+                }
+            }
+            // the running jobs may use this scheduler, so they are waited for without holding its lock
+            for (org.quartz.Scheduler s : replaced) {
+                this.waitForRunningJobs(s);
+            }
+            synchronized (this) {
+                this.replaceSchedulers(threadPools);
+            }
+        }
+    }
+
+    private Map<String, org.quartz.Scheduler> getSchedulers() {
+        final Map<String, org.quartz.Scheduler> all = this.schedulers;
+        if ( all == null ) {
+            throw new IllegalStateException("Scheduler is not available anymore.");
+        }
+        return all;
+    }
+
+    private void waitForRunningJobs(final org.quartz.Scheduler s) throws SchedulerException {
+        try {
+            while (!s.getCurrentlyExecutingJobs().isEmpty()) {
+                Thread.sleep(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SchedulerException("Interrupted while waiting for the running jobs", e);
+        }
+    }
+
+    private void replaceSchedulers(final Map<String, ThreadPool> threadPools) throws SchedulerException {
+        final Map<String, org.quartz.Scheduler> current = this.getSchedulers();
+        // collect the jobs of the schedulers to replace, which must be stopped before starting new ones with the same name
+        final Map<String, org.quartz.Scheduler> schedulers = new LinkedHashMap<>();
+        final Map<JobDetail, List<? extends Trigger>> jobs = new LinkedHashMap<>();
+        for (Map.Entry<String, org.quartz.Scheduler> entry : current.entrySet()) {
+            if (sameThreadPool(this.threadPools.get(entry.getKey()), threadPools.get(entry.getKey()))) {
+                schedulers.put(entry.getKey(), entry.getValue());
+            } else {
+                this.collectJobs(entry.getValue(), jobs);
+                this.dispose(entry.getValue(), true);
+            }
+        }
+        final String runID = new Date().toString().replace(' ', '_');
+        for (Map.Entry<String, ThreadPool> entry : threadPools.entrySet()) {
+            if (!schedulers.containsKey(entry.getKey())) {
+                try {
+                    schedulers.put(entry.getKey(), this.startScheduler(entry.getKey(), runID, entry.getValue()));
+                } catch (SchedulerException e) {
+                    if (DEFAULT_THREAD_POOL.equals(entry.getKey())) {
+                        this.schedulers = null;
+                        this.scheduler = null;
+                        for (org.quartz.Scheduler s : schedulers.values()) {
+                            this.dispose(s, false);
+                        }
+                        this.statistics.clear();
+                        throw e;
+                    }
+                    this.logger.warn("Unable to start the scheduler of thread pool " + entry.getKey(), e);
+                }
+            }
+        }
+        this.schedulers = schedulers;
+        this.scheduler = schedulers.get(DEFAULT_THREAD_POOL);
+        this.threadPools = new LinkedHashMap<>(threadPools);
+        for (Map.Entry<JobDetail, List<? extends Trigger>> entry : jobs.entrySet()) {
+            this.moveJob(schedulers, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private org.quartz.Scheduler startScheduler(final String threadPoolName,
+                                                final String runID,
+                                                final ThreadPool threadPool) throws SchedulerException {
+        final String name = DEFAULT_THREAD_POOL.equals(threadPoolName)
+                ? QUARTZ_SCHEDULER_NAME : QUARTZ_SCHEDULER_NAME + "-" + threadPoolName;
+        final org.quartz.Scheduler s = createScheduler(name, runID, threadPool);
+        s.getListenerManager().addTriggerListener(new StatisticsTriggerListener());
+        s.start();
+        return s;
+    }
+
+    private static boolean sameThreadPool(final ThreadPool p1, final ThreadPool p2) {
+        if (p1 instanceof SimpleThreadPool && p2 instanceof SimpleThreadPool) {
+            return ((SimpleThreadPool) p1).getThreadCount() == ((SimpleThreadPool) p2).getThreadCount()
+                    && ((SimpleThreadPool) p1).getThreadPriority() == ((SimpleThreadPool) p2).getThreadPriority();
+        }
+        return p1 != null && p1 == p2;
+    }
+
+    private void collectJobs(final org.quartz.Scheduler s,
+                             final Map<JobDetail, List<? extends Trigger>> jobs) throws SchedulerException {
+        for (String group : s.getJobGroupNames()) {
+            for (JobKey key : s.getJobKeys(GroupMatcher.jobGroupEquals(group))) {
+                final JobDetail detail = s.getJobDetail(key);
+                if (detail != null) {
+                    jobs.put(detail, s.getTriggersOfJob(key));
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedule a job of a replaced scheduler in the scheduler of its thread pool.
+     */
+    private void moveJob(final Map<String, org.quartz.Scheduler> all,
+                         final JobDetail detail,
+                         final List<? extends Trigger> triggers) {
+        final String name = detail.getKey().getName();
+        final InternalScheduleOptions opts = (InternalScheduleOptions) detail.getJobDataMap().get(DATA_MAP_OPTIONS);
+        // the jobs have a single trigger, named after them
+        final Trigger trigger = triggers.isEmpty() ? null : resume(triggers.get(0));
+        try {
+            if (trigger != null) {
+                final String threadPool = this.selectThreadPool(all, opts);
+                detail.getJobDataMap().put(DATA_MAP_OPTIONS, new InternalScheduleOptions(opts, threadPool));
+                all.get(threadPool).scheduleJob(detail, trigger);
+                return;
+            }
+        } catch (SchedulerException e) {
+            this.logger.warn("Unable to move job " + name + " to its new thread pool", e);
+        }
+        this.statistics.remove(name, detail.getJobDataMap().get(DATA_MAP_STATISTICS));
+    }
+
+    /**
+     * Create a trigger firing the remaining times of the given one, or <code>null</code> if it will not fire anymore.
+     */
+    private static Trigger resume(final Trigger trigger) {
+        final Date next = trigger.getNextFireTime();
+        if (next == null) {
+            return null;
+        }
+        if (trigger instanceof SimpleTrigger
+                && ((SimpleTrigger) trigger).getRepeatCount() != SimpleTrigger.REPEAT_INDEFINITELY) {
+            final SimpleTrigger simple = (SimpleTrigger) trigger;
+            return simple.getTriggerBuilder()
+                    .startAt(next)
+                    .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                            .withIntervalInMilliseconds(simple.getRepeatInterval())
+                            .withRepeatCount(Math.max(0, simple.getRepeatCount() - simple.getTimesTriggered())))
+                    .build();
+        }
+        return trigger.getTriggerBuilder().startAt(next).build();
+    }
+
+    /**
+     * Select the thread pool requested by a job, falling back to the default one.
+     */
+    private String selectThreadPool(final Map<String, org.quartz.Scheduler> all,
+                                    final InternalScheduleOptions opts) {
+        final Object requested = opts.configuration != null ? opts.configuration.get(PROPERTY_SCHEDULER_THREAD_POOL) : null;
+        final String threadPool = requested != null ? requested.toString() : DEFAULT_THREAD_POOL;
+        if ( !all.containsKey(threadPool) ) {
+            this.logger.warn("Unknown thread pool {} for job {}, using the default thread pool", threadPool, opts.name);
+            return DEFAULT_THREAD_POOL;
+        }
+        return threadPool;
+    }
+
+    /**
+     * Get the name of the thread pool running a job, from the options returned by {@link #getJobs()}.
+     */
+    public static String getThreadPool(final ScheduleOptions options) {
+        final String threadPool = options instanceof InternalScheduleOptions
+                ? ((InternalScheduleOptions) options).threadPool() : null;
+        return threadPool != null ? threadPool : DEFAULT_THREAD_POOL;
+    }
+
+    private org.quartz.Scheduler createScheduler(final String name,
+                                                 final String runID,
+                                                 final ThreadPool threadPool) throws SchedulerException {
+        final DirectSchedulerFactory factory = DirectSchedulerFactory.getInstance();
+        factory.createScheduler(name, runID, threadPool, new RAMJobStore());
         // quartz does not provide a way to get the scheduler by name AND runID, so we have to iterate!
         final Iterator<org.quartz.Scheduler> allSchedulersIter = factory.getAllSchedulers().iterator();
-        while ( scheduler == null && allSchedulersIter.hasNext() ) {
+        while ( allSchedulersIter.hasNext() ) {
             final org.quartz.Scheduler current = allSchedulersIter.next();
-            if ( QUARTZ_SCHEDULER_NAME.equals(current.getSchedulerName())
+            if ( name.equals(current.getSchedulerName())
                     && runID.equals(current.getSchedulerInstanceId()) ) {
-                scheduler = current;
+                return current;
             }
         }
-        if ( scheduler == null ) {
-            throw new SchedulerException("Unable to find new scheduler with name " + QUARTZ_SCHEDULER_NAME + " and run ID " + runID);
-        }
-
-        scheduler.start();
-        if ( this.logger.isDebugEnabled() ) {
-            this.logger.debug(PREFIX + "started.");
-        }
+        throw new SchedulerException("Unable to find new scheduler with name " + name + " and run ID " + runID);
     }
 
     /**
      * Deactivate this component.
-     * Stop the scheduler.
+     * Stop the schedulers.
      */
-    public void deactivate() {
-        final org.quartz.Scheduler s = this.scheduler;
+    public synchronized void deactivate() {
+        final Map<String, org.quartz.Scheduler> s = this.schedulers;
         this.scheduler = null;
-        this.dispose(s);
+        this.schedulers = null;
+        if (s != null) {
+            for (org.quartz.Scheduler current : s.values()) {
+                this.dispose(current, false);
+            }
+        }
+        this.statistics.clear();
     }
 
     /**
      * Dispose the quartz scheduler
      * @param s The scheduler.
+     * @param waitForJobsToComplete Whether to wait for the running jobs.
      */
-    private void dispose(final org.quartz.Scheduler s) {
+    private void dispose(final org.quartz.Scheduler s, final boolean waitForJobsToComplete) {
         if ( s != null ) {
             try {
-                s.shutdown();
+                s.shutdown(waitForJobsToComplete);
             } catch (SchedulerException e) {
                 this.logger.debug("Exception during shutdown of scheduler.", e);
             }
@@ -125,7 +380,8 @@ public class QuartzScheduler implements Scheduler {
      */
     private JobDataMap initDataMap(final String  jobName,
                                    final Object  job,
-                                   final InternalScheduleOptions options) {
+                                   final InternalScheduleOptions options,
+                                   final JobStatisticsImpl statistics) {
         final JobDataMap jobDataMap = new JobDataMap();
 
         jobDataMap.put(DATA_MAP_OBJECT, job);
@@ -133,6 +389,7 @@ public class QuartzScheduler implements Scheduler {
         jobDataMap.put(DATA_MAP_NAME, jobName);
         jobDataMap.put(DATA_MAP_LOGGER, this.logger);
         jobDataMap.put(DATA_MAP_OPTIONS, options);
+        jobDataMap.put(DATA_MAP_STATISTICS, statistics);
 
         return jobDataMap;
     }
@@ -164,6 +421,11 @@ public class QuartzScheduler implements Scheduler {
         return this.scheduler;
     }
 
+    org.quartz.Scheduler getScheduler(final String threadPool) {
+        final Map<String, org.quartz.Scheduler> all = this.schedulers;
+        return all != null ? all.get(threadPool) : null;
+    }
+
     /**
      * @see org.apache.karaf.scheduler.Scheduler#NOW()
      */
@@ -205,7 +467,7 @@ public class QuartzScheduler implements Scheduler {
      * @throws SchedulerException if the job can't be scheduled
      * @throws IllegalArgumentException If the preconditions are not met
      */
-    public void schedule(final Object job, final ScheduleOptions options) throws IllegalArgumentException, SchedulerException {
+    public synchronized void schedule(final Object job, final ScheduleOptions options) throws IllegalArgumentException, SchedulerException {
         this.checkJob(job);
 
         if ( !(options instanceof InternalScheduleOptions)) {
@@ -219,53 +481,68 @@ public class QuartzScheduler implements Scheduler {
 
         // as this method might be called from unbind and during
         // unbind a deactivate could happen, we check the scheduler first
-        final org.quartz.Scheduler s = this.scheduler;
-        if ( s == null ) {
+        final Map<String, org.quartz.Scheduler> all = this.schedulers;
+        if ( all == null ) {
             throw new IllegalStateException("Scheduler is not available anymore.");
         }
 
         final String name;
         if ( opts.name != null ) {
             // if there is already a job with the name, remove it first
-            try {
-                final JobKey key = JobKey.jobKey(opts.name);
-                final JobDetail jobdetail = s.getJobDetail(key);
-                if (jobdetail != null) {
-                    s.deleteJob(key);
-                    this.logger.debug("Unscheduling job with name {}", opts.name);
-                }
-            } catch (final SchedulerException ignored) {
-                // ignore
+            if (this.deleteJob(all, opts.name)) {
+                this.logger.debug("Unscheduling job with name {}", opts.name);
             }
             name = opts.name;
         } else {
             name = job.getClass().getName() + ':' + UUID.randomUUID();
             opts.name = name;
         }
+        final String threadPool = this.selectThreadPool(all, opts);
+        final org.quartz.Scheduler s = all.get(threadPool);
 
         final Trigger trigger = opts.trigger.withIdentity(name).build();
 
         // create the data map
-        final JobDataMap jobDataMap = this.initDataMap(name, job, opts);
+        final JobStatisticsImpl jobStatistics = new JobStatisticsImpl();
+        final JobDataMap jobDataMap = this.initDataMap(name, job, new InternalScheduleOptions(opts, threadPool), jobStatistics);
 
         final JobDetail detail = this.createJobDetail(name, jobDataMap, opts.canRunConcurrently);
 
         this.logger.debug("Scheduling job {} with name {} and trigger {}", job, name, trigger);
-        s.scheduleJob(detail, trigger);
+        this.statistics.put(name, jobStatistics);
+        try {
+            s.scheduleJob(detail, trigger);
+        } catch (SchedulerException e) {
+            this.statistics.remove(name, jobStatistics);
+            throw e;
+        }
     }
 
     /**
      * @see org.apache.karaf.scheduler.Scheduler#unschedule(java.lang.String)
      */
-    public boolean unschedule(final String jobName) {
-        final org.quartz.Scheduler s = this.scheduler;
-        if ( jobName != null && s != null ) {
+    public synchronized boolean unschedule(final String jobName) {
+        final Map<String, org.quartz.Scheduler> all = this.schedulers;
+        if ( jobName != null && all != null ) {
+            if (this.deleteJob(all, jobName)) {
+                this.logger.debug("Unscheduling job with name {}", jobName);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove the job with the given name from the scheduler it has been scheduled in.
+     */
+    private boolean deleteJob(final Map<String, org.quartz.Scheduler> all, final String jobName) {
+        final JobKey key = JobKey.jobKey(jobName);
+        for (org.quartz.Scheduler s : all.values()) {
             try {
-                final JobKey key = JobKey.jobKey(jobName);
                 final JobDetail jobdetail = s.getJobDetail(key);
                 if (jobdetail != null) {
                     s.deleteJob(key);
-                    this.logger.debug("Unscheduling job with name {}", jobName);
+                    this.statistics.remove(jobName, jobdetail.getJobDataMap().get(DATA_MAP_STATISTICS));
                     return true;
                 }
             } catch (final SchedulerException ignored) {
@@ -278,18 +555,61 @@ public class QuartzScheduler implements Scheduler {
     @Override
     public Map<Object, ScheduleOptions> getJobs() throws SchedulerException {
         Map<Object, ScheduleOptions> jobs = new HashMap<>();
-        org.quartz.Scheduler s = this.scheduler;
-        if (s != null) {
-            for (String group : s.getJobGroupNames()) {
-                for (JobKey key : s.getJobKeys(GroupMatcher.jobGroupEquals(group))) {
-                    JobDetail detail = s.getJobDetail(key);
-                    ScheduleOptions options = (ScheduleOptions) detail.getJobDataMap().get(DATA_MAP_OPTIONS);
-                    Object job = detail.getJobDataMap().get(DATA_MAP_OBJECT);
-                    jobs.put(job, options);
+        Map<String, org.quartz.Scheduler> all = this.schedulers;
+        if (all != null) {
+            for (org.quartz.Scheduler s : all.values()) {
+                for (String group : s.getJobGroupNames()) {
+                    for (JobKey key : s.getJobKeys(GroupMatcher.jobGroupEquals(group))) {
+                        JobDetail detail = s.getJobDetail(key);
+                        if (detail == null) {
+                            // removed meanwhile
+                            continue;
+                        }
+                        ScheduleOptions options = (ScheduleOptions) detail.getJobDataMap().get(DATA_MAP_OPTIONS);
+                        Object job = detail.getJobDataMap().get(DATA_MAP_OBJECT);
+                        jobs.put(job, options);
+                    }
                 }
             }
         }
         return jobs;
     }
 
+    /**
+     * @see org.apache.karaf.scheduler.JobStatisticsProvider#getStatistics(java.lang.String)
+     */
+    @Override
+    public JobStatistics getStatistics(String jobName) {
+        return jobName != null ? statistics.get(jobName) : null;
+    }
+
+    /**
+     * Count the misfires of the jobs, and discard the statistics of the jobs which will not fire anymore.
+     * The triggers are named after their job.
+     */
+    class StatisticsTriggerListener extends TriggerListenerSupport {
+
+        @Override
+        public String getName() {
+            return StatisticsTriggerListener.class.getName();
+        }
+
+        @Override
+        public void triggerMisfired(Trigger trigger) {
+            JobStatisticsImpl jobStatistics = statistics.get(trigger.getKey().getName());
+            if (jobStatistics != null) {
+                jobStatistics.misfired();
+            }
+        }
+
+        @Override
+        public void triggerComplete(Trigger trigger, JobExecutionContext context,
+                                    CompletedExecutionInstruction triggerInstructionCode) {
+            if (trigger.getNextFireTime() == null) {
+                statistics.remove(trigger.getKey().getName(),
+                        context.getJobDetail().getJobDataMap().get(DATA_MAP_STATISTICS));
+            }
+        }
+    }
+
 }
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.scheduler.core;
+
+import java.util.Map;
+
+import javax.management.MBeanException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.apache.karaf.scheduler.JobStatistics;
+import org.apache.karaf.scheduler.ScheduleOptions;
+import org.apache.karaf.scheduler.SchedulerMBean;
+
+/**
+ * Implementation of the Scheduler MBean.
+ */
+public class SchedulerMBeanImpl extends StandardMBean implements SchedulerMBean {
+
+    private static final String[] JOB_ITEMS = new String[]{"Name", "Schedule", "Thread Pool", "Executions", "Failures",
+            "Last Duration", "Average Duration", "Max Duration", "Misfires", "Overlaps"};
+
+    private final QuartzScheduler scheduler;
+
+    public SchedulerMBeanImpl(QuartzScheduler scheduler) throws NotCompliantMBeanException {
+        super(SchedulerMBean.class);
+        this.scheduler = scheduler;
+    }
+
+    public TabularData getJobs() throws MBeanException {
+        try {
+            CompositeType jobType = new CompositeType("Job", "Scheduled job",
+                    JOB_ITEMS,
+                    new String[]{"Name of the job", "Schedule of the job", "Thread pool running the job",
+                            "Number of completed executions", "Number of executions which threw an exception",
+                            "Duration of the last execution in milliseconds", "Average duration in milliseconds",
+                            "Maximum duration in milliseconds", "Number of missed fire times",
+                            "Number of executions held back by the previous one"},
+                    new OpenType[]{SimpleType.STRING, SimpleType.STRING, SimpleType.STRING, SimpleType.LONG,
+                            SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG,
+                            SimpleType.LONG});
+            TabularType tableType = new TabularType("Jobs", "Table of the scheduled jobs", jobType, new String[]{"Name"});
+            TabularData table = new TabularDataSupport(tableType);
+            for (ScheduleOptions options : scheduler.getJobs().values()) {
+                JobStatistics statistics = scheduler.getStatistics(options.name());
+                String threadPool = QuartzScheduler.getThreadPool(options);
+                Object[] values;
+                if (statistics != null) {
+                    values = new Object[]{options.name(), options.schedule(), threadPool,
+                            statistics.getExecutions(), statistics.getFailures(), statistics.getLastDuration(),
+                            statistics.getAverageDuration(), statistics.getMaxDuration(), statistics.getMisfires(),
+                            statistics.getOverlaps()};
+                } else {
+                    values = new Object[]{options.name(), options.schedule(), threadPool, 0L, 0L, 0L, 0L, 0L, 0L, 0L};
+                }
+                table.put(new CompositeDataSupport(jobType, JOB_ITEMS, values));
+            }
+            return table;
+        } catch (Exception e) {
+            throw new MBeanException(null, e.getMessage());
+        }
+    }
+
+}
@@ -16,7 +16,10 @@
  */
 package org.apache.karaf.scheduler.core;
 
+import java.io.Serializable;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Map;
 
 import org.apache.karaf.scheduler.Job;
 import org.apache.karaf.scheduler.Scheduler;
@@ -101,11 +104,15 @@ public class WhiteboardHandler {
         final String name = getServiceIdentifier(ref);
         final Boolean concurrent = (Boolean) ref.getProperty(Scheduler.PROPERTY_SCHEDULER_CONCURRENT);
         final String expression = (String) ref.getProperty(Scheduler.PROPERTY_SCHEDULER_EXPRESSION);
+        final String threadPool = (String) ref.getProperty(Scheduler.PROPERTY_SCHEDULER_THREAD_POOL);
+        final Map<String, Serializable> config = threadPool != null
+                ? Collections.<String, Serializable>singletonMap(Scheduler.PROPERTY_SCHEDULER_THREAD_POOL, threadPool) : null;
         try {
             if (expression != null) {
                 this.scheduler.schedule(job, this.scheduler.EXPR(expression)
                         .name(name)
-                        .canRunConcurrently((concurrent != null ? concurrent : true)));
+                        .canRunConcurrently((concurrent != null ? concurrent : true))
+                        .config(config));
             } else {
                 final Long period = (Long) ref.getProperty(Scheduler.PROPERTY_SCHEDULER_PERIOD);
                 if (period != null) {
@@ -122,7 +129,8 @@ public class WhiteboardHandler {
                         }
                         this.scheduler.schedule(job, this.scheduler.AT(date, -1, period)
                                 .name(name)
-                                .canRunConcurrently((concurrent != null ? concurrent : true)));
+                                .canRunConcurrently((concurrent != null ? concurrent : true))
+                                .config(config));
                     }
                 } else {
                     this.logger.debug("Ignoring service {} : no scheduling property found.", ref);
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.scheduler.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class JobStatisticsImplTest {
+
+    @Test
+    public void testDurations() {
+        JobStatisticsImpl statistics = new JobStatisticsImpl();
+        assertEquals(0, statistics.getExecutions());
+        assertEquals(0, statistics.getAverageDuration());
+
+        statistics.executed(1000, 1000, 1010, true, false);
+        statistics.executed(2000, 2000, 2030, true, true);
+        statistics.executed(3000, 3000, 3020, true, false);
+
+        assertEquals(3, statistics.getExecutions());
+        assertEquals(1, statistics.getFailures());
+        assertEquals(20, statistics.getLastDuration());
+        assertEquals(20, statistics.getAverageDuration());
+        assertEquals(30, statistics.getMaxDuration());
+        assertEquals(0, statistics.getOverlaps());
+    }
+
+    @Test
+    public void testOverlaps() {
+        JobStatisticsImpl statistics = new JobStatisticsImpl();
+        statistics.executed(1000, 1000, 2500, false, false);
+        // scheduled at 2000 but held back until the previous run ended
+        statistics.executed(2000, 2500, 2600, false, false);
+        statistics.executed(3000, 3000, 3100, false, false);
+        assertEquals(1, statistics.getOverlaps());
+
+        // concurrent jobs are never held back
+        statistics = new JobStatisticsImpl();
+        statistics.executed(1000, 1000, 2500, true, false);
+        statistics.executed(2000, 2000, 2100, true, false);
+        assertEquals(0, statistics.getOverlaps());
+    }
+
+    @Test
+    public void testMisfires() {
+        JobStatisticsImpl statistics = new JobStatisticsImpl();
+        statistics.misfired();
+        statistics.misfired();
+        assertEquals(2, statistics.getMisfires());
+        assertEquals(0, statistics.getExecutions());
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.scheduler.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.karaf.scheduler.JobStatistics;
+import org.apache.karaf.scheduler.ScheduleOptions;
+import org.apache.karaf.scheduler.Scheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.quartz.JobKey;
+import org.quartz.simpl.SimpleThreadPool;
+import org.quartz.spi.ThreadPool;
+
+public class QuartzSchedulerTest {
+
+    private static final String NEVER = "0 0 0 1 1 ? 2099";
+
+    private QuartzScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new QuartzScheduler(threadPools("long", 1, "other", 1));
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.deactivate();
+    }
+
+    @Test
+    public void testThreadPoolSelection() throws Exception {
+        ScheduleOptions inLong = schedule("b", "long");
+        schedule("a", null);
+
+        assertTrue(scheduler.getScheduler(QuartzScheduler.DEFAULT_THREAD_POOL).checkExists(JobKey.jobKey("a")));
+        assertEquals(QuartzScheduler.DEFAULT_THREAD_POOL, getThreadPool("a"));
+        assertTrue(scheduler.getScheduler("long").checkExists(JobKey.jobKey("b")));
+        assertFalse(scheduler.getScheduler(QuartzScheduler.DEFAULT_THREAD_POOL).checkExists(JobKey.jobKey("b")));
+        assertEquals("long", getThreadPool("b"));
+        // the options given to the scheduler are left unchanged
+        assertEquals(QuartzScheduler.DEFAULT_THREAD_POOL, QuartzScheduler.getThreadPool(inLong));
+
+        // scheduling a job again with the same name replaces it, whatever its pool
+        schedule("b", "other");
+        assertFalse(scheduler.getScheduler("long").checkExists(JobKey.jobKey("b")));
+        assertTrue(scheduler.getScheduler("other").checkExists(JobKey.jobKey("b")));
+
+        assertTrue(scheduler.unschedule("b"));
+        assertFalse(scheduler.getScheduler("other").checkExists(JobKey.jobKey("b")));
+        assertNull(scheduler.getStatistics("b"));
+        assertEquals(1, scheduler.getJobs().size());
+    }
+
+    @Test
+    public void testUnknownThreadPool() throws Exception {
+        schedule("a", "unknown");
+        assertTrue(scheduler.getScheduler(QuartzScheduler.DEFAULT_THREAD_POOL).checkExists(JobKey.jobKey("a")));
+        assertEquals(QuartzScheduler.DEFAULT_THREAD_POOL, getThreadPool("a"));
+    }
+
+    @Test
+    public void testThreadPoolChangesKeepTheJobs() throws Exception {
+        schedule("a", null);
+        schedule("b", "long");
+        schedule("c", "other");
+        JobStatistics statistics = scheduler.getStatistics("b");
+        assertNotNull(statistics);
+        org.quartz.Scheduler defaultScheduler = scheduler.getScheduler(QuartzScheduler.DEFAULT_THREAD_POOL);
+        org.quartz.Scheduler longScheduler = scheduler.getScheduler("long");
+
+        // resize the long pool and remove the other one
+        scheduler.setThreadPools(threadPools("long", 2, null, 0));
+
+        assertSame(defaultScheduler, scheduler.getScheduler(QuartzScheduler.DEFAULT_THREAD_POOL));
+        assertNotSame(longScheduler, scheduler.getScheduler("long"));
+        assertNull(scheduler.getScheduler("other"));
+        assertTrue(defaultScheduler.checkExists(JobKey.jobKey("a")));
+        assertTrue(scheduler.getScheduler("long").checkExists(JobKey.jobKey("b")));
+        assertTrue(defaultScheduler.checkExists(JobKey.jobKey("c")));
+        assertEquals(QuartzScheduler.DEFAULT_THREAD_POOL, getThreadPool("c"));
+        assertSame(statistics, scheduler.getStatistics("b"));
+        assertEquals(3, scheduler.getJobs().size());
+
+        // the moved jobs stay in the default pool, new jobs can use the pool defined again
+        scheduler.setThreadPools(threadPools("long", 2, "other", 1));
+        assertTrue(defaultScheduler.checkExists(JobKey.jobKey("c")));
+        schedule("d", "other");
+        assertTrue(scheduler.getScheduler("other").checkExists(JobKey.jobKey("d")));
+    }
+
+    @Test
+    public void testThreadPoolChangesWaitForRunningJobs() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ScheduleOptions options = scheduler.NOW().name("a");
+        options.config(Collections.<String, Serializable>singletonMap(Scheduler.PROPERTY_SCHEDULER_THREAD_POOL, "long"));
+        scheduler.schedule(new Runnable() {
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                // the running jobs can still use the scheduler
+                scheduler.unschedule("b");
+            }
+        }, options);
+        schedule("b", "long");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final Exception[] failure = new Exception[1];
+        Thread change = new Thread() {
+            public void run() {
+                try {
+                    scheduler.setThreadPools(threadPools("long", 2, "other", 1));
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        change.start();
+        change.join(500);
+        assertTrue(change.isAlive());
+        release.countDown();
+        change.join(5000);
+        assertFalse(change.isAlive());
+        assertNull(failure[0]);
+        assertFalse(scheduler.getScheduler("long").checkExists(JobKey.jobKey("b")));
+        assertTrue(scheduler.getJobs().isEmpty());
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        final int[] runs = new int[1];
+        ScheduleOptions options = scheduler.NOW(-1, 1).name("a");
+        scheduler.schedule(new Runnable() {
+            public void run() {
+                synchronized (runs) {
+                    runs[0]++;
+                }
+            }
+        }, options);
+        JobStatistics statistics = scheduler.getStatistics("a");
+        assertNotNull(statistics);
+        long end = System.currentTimeMillis() + 5000;
+        while (statistics.getExecutions() == 0) {
+            assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+        assertEquals(0, statistics.getFailures());
+        synchronized (runs) {
+            assertTrue(runs[0] >= 1);
+        }
+    }
+
+    private ScheduleOptions schedule(String name, String threadPool) throws Exception {
+        ScheduleOptions options = scheduler.EXPR(NEVER).name(name);
+        if (threadPool != null) {
+            options.config(Collections.<String, Serializable>singletonMap(Scheduler.PROPERTY_SCHEDULER_THREAD_POOL, threadPool));
+        }
+        scheduler.schedule(new Runnable() {
+            public void run() {
+            }
+        }, options);
+        return options;
+    }
+
+    private String getThreadPool(String name) throws Exception {
+        for (ScheduleOptions options : scheduler.getJobs().values()) {
+            if (name.equals(options.name())) {
+                return QuartzScheduler.getThreadPool(options);
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, ThreadPool> threadPools(String name1, int count1, String name2, int count2) {
+        Map<String, ThreadPool> threadPools = new LinkedHashMap<>();
+        threadPools.put(QuartzScheduler.DEFAULT_THREAD_POOL, new SimpleThreadPool(1, Thread.NORM_PRIORITY));
+        threadPools.put(name1, new SimpleThreadPool(count1, Thread.NORM_PRIORITY));
+        if (name2 != null) {
+            threadPools.put(name2, new SimpleThreadPool(count2, Thread.NORM_PRIORITY));
+        }
+        return threadPools;
+    }
+
+}
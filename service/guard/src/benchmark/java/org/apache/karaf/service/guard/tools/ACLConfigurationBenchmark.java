@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.service.guard.tools;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per call overhead of the role lookup done by the guard for each invocation of a guarded
+ * service, comparing the parsing of the configuration on each call with the compiled
+ * {@link ACLConfiguration}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ACLConfigurationBenchmark {
+
+    /**
+     * The invocation to check: an argument matched by a regex, a signature or a wildcard.
+     */
+    @Param({ "argument", "signature", "wildcard" })
+    public String invocation;
+
+    private Dictionary<String, Object> config;
+    private ACLConfiguration compiled;
+    private String methodName;
+    private Object[] params;
+    private String[] signature;
+
+    @Setup
+    public void setUp() {
+        config = new Hashtable<String, Object>();
+        config.put("service.pid", "org.apache.karaf.service.acl.benchmark");
+        config.put("service.guard", "(objectClass=org.acme.Service)");
+        config.put("doit(java.lang.String)[/[a-z]+/]", "admin");
+        config.put("doit(java.lang.String)[/[0-9]+/]", "viewer");
+        config.put("doit(java.lang.String)[\"special\"]", "manager");
+        config.put("doit(java.lang.String)", "admin, manager");
+        config.put("doit(int)", "viewer");
+        config.put("update", "admin");
+        config.put("get*", "viewer # read only");
+        config.put("*", "admin");
+        compiled = new ACLConfiguration(config);
+
+        if ("argument".equals(invocation)) {
+            methodName = "doit";
+            params = new Object[] { "12345" };
+            signature = new String[] { "java.lang.String" };
+        } else if ("signature".equals(invocation)) {
+            methodName = "doit";
+            params = new Object[] { 12345 };
+            signature = new String[] { "int" };
+        } else {
+            methodName = "getValue";
+            params = new Object[0];
+            signature = new String[0];
+        }
+    }
+
+    @Benchmark
+    public List<String> parsePerCall() {
+        List<String> roles = new ArrayList<String>();
+        ACLConfigurationParser.getRolesForInvocation(methodName, params, signature, config, roles);
+        return roles;
+    }
+
+    @Benchmark
+    public List<String> compiled() {
+        List<String> roles = new ArrayList<String>();
+        compiled.getRolesForInvocation(methodName, params, signature, roles);
+        return roles;
+    }
+
+}
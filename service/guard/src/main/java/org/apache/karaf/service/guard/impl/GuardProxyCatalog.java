@@ -38,6 +38,7 @@ import java.util.regex.Pattern;
 import org.apache.aries.proxy.InvocationListener;
 import org.apache.aries.proxy.ProxyManager;
 import org.apache.aries.proxy.UnableToProxyException;
+import org.apache.karaf.service.guard.tools.ACLConfiguration;
 import org.apache.karaf.service.guard.tools.ACLConfigurationParser;
 import org.apache.karaf.service.guard.tools.ACLConfigurationParser.Specificity;
 import org.apache.karaf.util.jaas.JaasHelper;
@@ -53,12 +54,14 @@ import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.cm.ConfigurationListener;
 import org.osgi.util.tracker.ServiceTracker;
 import org.osgi.util.tracker.ServiceTrackerCustomizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class GuardProxyCatalog implements ServiceListener {
+public class GuardProxyCatalog implements ServiceListener, ConfigurationListener {
     public static final String KARAF_SECURED_SERVICES_SYSPROP = "karaf.secured.services";
     public static final String SERVICE_GUARD_ROLES_PROPERTY = "org.apache.karaf.service.guard.roles";
 
@@ -83,6 +86,10 @@ public class GuardProxyCatalog implements ServiceListener {
     volatile boolean runProxyCreator = true;
     volatile Thread proxyCreatorThread = null;
 
+    // The service guard configurations, compiled when first needed and dropped when one of them changes
+    private final Object guardConfigsLock = new Object();
+    private volatile List<GuardConfig> guardConfigs;
+
     GuardProxyCatalog(BundleContext bc) throws Exception {
         LOG.trace("Starting GuardProxyCatalog");
         myBundleContext = bc;
@@ -155,6 +162,15 @@ public class GuardProxyCatalog implements ServiceListener {
         }
     }
 
+    @Override
+    public void configurationEvent(ConfigurationEvent event) {
+        if (event.getPid() != null && event.getPid().startsWith(SERVICE_ACL_PREFIX)) {
+            synchronized (guardConfigsLock) {
+                guardConfigs = null;
+            }
+        }
+    }
+
     private void handleOriginalServiceUnregistering(Long orgServiceID) {
         // If the service queued up to be proxied, remove it.
         for (Iterator<CreateProxyRunnable> i = createProxyQueue.iterator(); i.hasNext(); ) {
@@ -296,36 +312,30 @@ public class GuardProxyCatalog implements ServiceListener {
         boolean definitionFound = false;
         Set<String> allRoles = new HashSet<String>();
 
-        // This can probably be optimized. Maybe we can cache the config object relevant instead of
-        // walking through all of the ones that have 'service.guard'.
-        for (Configuration config : getServiceGuardConfigs()) {
-            Object guardFilter = config.getProperties().get(SERVICE_GUARD_KEY);
-            if (guardFilter instanceof String) {
-                Filter filter = myBundleContext.createFilter((String) guardFilter);
-                if (filter.match(serviceReference)) {
-                    definitionFound = true;
-                    for (Enumeration<String> e = config.getProperties().keys(); e.hasMoreElements(); ) {
-                        String key = e.nextElement();
-                        String bareKey = key;
-                        int idx = bareKey.indexOf('(');
-                        if (idx >= 0) {
-                            bareKey = bareKey.substring(0, idx);
-                        }
-                        int idx1 = bareKey.indexOf('[');
-                        if (idx1 >= 0) {
-                            bareKey = bareKey.substring(0, idx1);
-                        }
-                        int idx2 = bareKey.indexOf('*');
-                        if (idx2 >= 0) {
-                            bareKey = bareKey.substring(0, idx2);
-                        }
-                        if (!isValidMethodName(bareKey)) {
-                            continue;
-                        }
-                        Object value = config.getProperties().get(key);
-                        if (value instanceof String) {
-                            allRoles.addAll(ACLConfigurationParser.parseRoles((String) value));
-                        }
+        for (GuardConfig config : getGuardConfigs()) {
+            if (config.filter.match(serviceReference)) {
+                definitionFound = true;
+                for (Enumeration<String> e = config.properties.keys(); e.hasMoreElements(); ) {
+                    String key = e.nextElement();
+                    String bareKey = key;
+                    int idx = bareKey.indexOf('(');
+                    if (idx >= 0) {
+                        bareKey = bareKey.substring(0, idx);
+                    }
+                    int idx1 = bareKey.indexOf('[');
+                    if (idx1 >= 0) {
+                        bareKey = bareKey.substring(0, idx1);
+                    }
+                    int idx2 = bareKey.indexOf('*');
+                    if (idx2 >= 0) {
+                        bareKey = bareKey.substring(0, idx2);
+                    }
+                    if (!isValidMethodName(bareKey)) {
+                        continue;
+                    }
+                    Object value = config.properties.get(key);
+                    if (value instanceof String) {
+                        allRoles.addAll(ACLConfigurationParser.parseRoles((String) value));
                     }
                 }
             }
@@ -333,6 +343,26 @@ public class GuardProxyCatalog implements ServiceListener {
         return definitionFound ? allRoles : null;
     }
 
+    private List<GuardConfig> getGuardConfigs() throws IOException, InvalidSyntaxException {
+        List<GuardConfig> configs = guardConfigs;
+        if (configs == null) {
+            synchronized (guardConfigsLock) {
+                configs = guardConfigs;
+                if (configs == null) {
+                    configs = new ArrayList<GuardConfig>();
+                    for (Configuration config : getServiceGuardConfigs()) {
+                        Object guardFilter = config.getProperties().get(SERVICE_GUARD_KEY);
+                        if (guardFilter instanceof String) {
+                            configs.add(new GuardConfig(myBundleContext.createFilter((String) guardFilter), config.getProperties()));
+                        }
+                    }
+                    guardConfigs = configs;
+                }
+            }
+        }
+        return configs;
+    }
+
     // Ensures that it never returns null
     private Configuration[] getServiceGuardConfigs() throws IOException, InvalidSyntaxException {
         ConfigurationAdmin ca = null;
@@ -370,6 +400,18 @@ public class GuardProxyCatalog implements ServiceListener {
         return JaasHelper.currentUserHasRole(reqRole);
     }
 
+    static class GuardConfig {
+        final Filter filter;
+        final Dictionary<String, Object> properties;
+        final ACLConfiguration acl;
+
+        GuardConfig(Filter filter, Dictionary<String, Object> properties) {
+            this.filter = filter;
+            this.properties = properties;
+            this.acl = new ACLConfiguration(properties);
+        }
+    }
+
     static class ServiceRegistrationHolder {
         volatile ServiceRegistration<?> registration;
     }
@@ -447,23 +489,16 @@ public class GuardProxyCatalog implements ServiceListener {
             TreeMap<Specificity, List<String>> roleMappings = new TreeMap<ACLConfigurationParser.Specificity, List<String>>();
             boolean foundMatchingConfig = false;
 
-            // This can probably be optimized. Maybe we can cache the config object relevant instead of
-            // walking through all of the ones that have 'service.guard'.
-            for (Configuration config : getServiceGuardConfigs()) {
-                Object guardFilter = config.getProperties().get(SERVICE_GUARD_KEY);
-                if (guardFilter instanceof String) {
-                    Filter filter = myBundleContext.createFilter((String) guardFilter);
-                    if (filter.match(serviceReference)) {
-                        foundMatchingConfig = true;
-                        List<String> roles = new ArrayList<String>();
-                        Specificity s = ACLConfigurationParser.
-                                getRolesForInvocation(m.getName(), args, sig, config.getProperties(), roles);
-                        if (s != Specificity.NO_MATCH) {
-                            roleMappings.put(s, roles);
-                            if (s == Specificity.ARGUMENT_MATCH) {
-                                // No more specific mapping can be found
-                                break;
-                            }
+            for (GuardConfig config : getGuardConfigs()) {
+                if (config.filter.match(serviceReference)) {
+                    foundMatchingConfig = true;
+                    List<String> roles = new ArrayList<String>();
+                    Specificity s = config.acl.getRolesForInvocation(m.getName(), args, sig, roles);
+                    if (s != Specificity.NO_MATCH) {
+                        roleMappings.put(s, roles);
+                        if (s == Specificity.ARGUMENT_MATCH) {
+                            // No more specific mapping can be found
+                            break;
                         }
                     }
                 }
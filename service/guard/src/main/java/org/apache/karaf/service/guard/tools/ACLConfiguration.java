@@ -0,0 +1,368 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.service.guard.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.karaf.service.guard.tools.ACLConfigurationParser.Specificity;
+
+/**
+ * An ACL configuration compiled for matching invocations.
+ *
+ * The keys are parsed once: roles are indexed by key, argument rules are grouped by
+ * method signature with their regular expressions compiled, and wildcard rules are
+ * kept in a list.  Instances are immutable and can be shared between threads.
+ *
+ * @see ACLConfigurationParser#getRolesForInvocation(String, Object[], String[], Dictionary, List)
+ */
+public final class ACLConfiguration {
+
+    private final Map<String, List<String>> roles = new HashMap<String, List<String>>();
+    private final Map<String, List<ArgumentRule>> argumentRules = new HashMap<String, List<ArgumentRule>>();
+    private final Set<String> argumentMethods = new HashSet<String>();
+    private final List<WildcardRule> wildcardRules = new ArrayList<WildcardRule>();
+
+    public ACLConfiguration(Dictionary<String, Object> config) {
+        Dictionary<String, Object> properties = trimKeys(config);
+        for (Enumeration<String> e = properties.keys(); e.hasMoreElements(); ) {
+            String key = e.nextElement();
+            Object value = properties.get(key);
+            if (value instanceof String) {
+                roles.put(key, ACLConfigurationParser.parseRoles((String) value));
+            }
+            addArgumentRule(properties, key.trim());
+            if (key.endsWith("*")) {
+                wildcardRules.add(new WildcardRule(WildcardRule.PREFIX, key.substring(0, key.length() - 1), value));
+            }
+            if (key.startsWith("*")) {
+                wildcardRules.add(new WildcardRule(WildcardRule.SUFFIX, key.substring(1), value));
+            }
+            if (key.startsWith("*") && key.endsWith("*") && key.length() > 1) {
+                wildcardRules.add(new WildcardRule(WildcardRule.MIDDLE, key.substring(1, key.length() - 1), value));
+            }
+        }
+    }
+
+    /**
+     * Returns the roles that can invoke the given operation.
+     *
+     * @see ACLConfigurationParser#getRolesForInvocation(String, Object[], String[], Dictionary, List)
+     */
+    public Specificity getRolesForInvocation(String methodName, Object[] params, String[] signature, List<String> addToRoles) {
+        Specificity s = getRolesBasedOnSignature(methodName, params, signature, addToRoles);
+        if (s != Specificity.NO_MATCH) {
+            return s;
+        }
+
+        s = getRolesBasedOnSignature(methodName, params, null, addToRoles);
+        if (s != Specificity.NO_MATCH) {
+            return s;
+        }
+
+        List<String> r = getMethodNameWildcardRoles(methodName);
+        if (r != null) {
+            addToRoles.addAll(r);
+            return Specificity.WILDCARD_MATCH;
+        } else {
+            return Specificity.NO_MATCH;
+        }
+    }
+
+    /**
+     * Returns whether the roles of the given method may depend on the values of its arguments.
+     */
+    public boolean hasArgumentRules(String methodName) {
+        return argumentMethods.contains(methodName);
+    }
+
+    private Specificity getRolesBasedOnSignature(String methodName, Object[] params, String[] signature, List<String> addToRoles) {
+        String methodSig = getSignature(methodName, signature);
+        List<ArgumentRule> rules = argumentRules.get(methodSig);
+        if (rules != null) {
+            if (params != null) {
+                boolean foundExactOrRegex = false;
+                List<String> exactArgMatchRoles = roles.get(getExactArgSignature(methodSig, params));
+                if (exactArgMatchRoles != null) {
+                    addToRoles.addAll(exactArgMatchRoles);
+                    foundExactOrRegex = true;
+                }
+                for (ArgumentRule rule : rules) {
+                    if (rule.matches(params)) {
+                        foundExactOrRegex = true;
+                        addToRoles.addAll(rule.roles);
+                    }
+                }
+                if (foundExactOrRegex) {
+                    // since we have the actual parameters we can match them and if they do we won't look for any
+                    // more generic rules...
+                    return Specificity.ARGUMENT_MATCH;
+                }
+            } else {
+                // this is used in the case where parameters aren't known yet and the system wants to find out
+                // what roles in principle can invoke this method
+                for (ArgumentRule rule : rules) {
+                    addToRoles.addAll(rule.roles);
+                }
+            }
+        }
+
+        List<String> signatureRoles = roles.get(methodSig);
+        if (signatureRoles != null) {
+            addToRoles.addAll(signatureRoles);
+            return signature == null ? Specificity.NAME_MATCH : Specificity.SIGNATURE_MATCH;
+        }
+
+        return Specificity.NO_MATCH;
+    }
+
+    private List<String> getMethodNameWildcardRoles(String methodName) {
+        // the longest match wins, the last one if several have the same length
+        WildcardRule match = null;
+        for (WildcardRule rule : wildcardRules) {
+            if (rule.matches(methodName) && (match == null || rule.text.length() >= match.text.length())) {
+                match = rule;
+            }
+        }
+        return match != null ? match.roles : null;
+    }
+
+    private void addArgumentRule(Dictionary<String, Object> properties, String key) {
+        if (!key.endsWith("]")) {
+            return;
+        }
+        // the signature ends with the first closing parenthesis, as types can contain brackets but not parentheses
+        int idx = -1;
+        for (int i = 0; i < key.length() && idx < 0; i++) {
+            char c = key.charAt(i);
+            if (c == '(') {
+                idx = key.indexOf(')', i) + 1;
+                if (idx == 0) {
+                    return;
+                }
+            } else if (c == '[') {
+                idx = i;
+            }
+        }
+        if (idx <= 0 || idx >= key.length() || key.charAt(idx) != '[') {
+            return;
+        }
+        String methodSig = key.substring(0, idx);
+        Object value = properties.get(key);
+        List<String> ruleRoles = value instanceof String
+                ? ACLConfigurationParser.parseRoles((String) value) : Collections.<String>emptyList();
+        List<String> regexArgs = null;
+        if (key.startsWith(methodSig + "[/") && key.endsWith("/]")) {
+            regexArgs = getRegexDecl(key.substring(methodSig.length()));
+        }
+        List<ArgumentRule> rules = argumentRules.get(methodSig);
+        if (rules == null) {
+            rules = new ArrayList<ArgumentRule>();
+            argumentRules.put(methodSig, rules);
+        }
+        rules.add(new ArgumentRule(ruleRoles, regexArgs));
+        int paren = methodSig.indexOf('(');
+        argumentMethods.add(paren >= 0 ? methodSig.substring(0, paren) : methodSig);
+    }
+
+    static String getSignature(String methodName, String[] signature) {
+        StringBuilder sb = new StringBuilder(methodName);
+        if (signature == null)
+            return sb.toString();
+
+        sb.append('(');
+        boolean first = true;
+        for (String s : signature) {
+            if (first)
+                first = false;
+            else
+                sb.append(',');
+            sb.append(s);
+        }
+        sb.append(')');
+        return sb.toString();
+    }
+
+    private static String getExactArgSignature(String methodSig, Object[] params) {
+        StringBuilder sb = new StringBuilder(methodSig);
+        sb.append('[');
+        boolean first = true;
+        for (Object param : params) {
+            if (first)
+                first = false;
+            else
+                sb.append(',');
+            sb.append('"');
+            if (param != null)
+                sb.append(param.toString().trim());
+            sb.append('"');
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    private static Dictionary<String, Object> trimKeys(Dictionary<String, Object> properties) {
+        Dictionary<String, Object> d = new Hashtable<String, Object>();
+        for (Enumeration<String> e = properties.keys(); e.hasMoreElements(); ) {
+            String key = e.nextElement();
+            Object value = properties.get(key);
+            d.put(removeSpaces(key), value);
+        }
+        return d;
+    }
+
+    private static String removeSpaces(String key) {
+        StringBuilder sb = new StringBuilder();
+        char quoteChar = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+
+            if (quoteChar == 0 && c == ' ')
+                continue;
+
+            if (quoteChar == 0 && (c == '\"' || c == '/') && sb.length() > 0 &&
+                    (sb.charAt(sb.length() - 1) == '[' || sb.charAt(sb.length() - 1) == ',')) {
+                // we're in a quoted string
+                quoteChar = c;
+            } else if (quoteChar != 0 && c == quoteChar) {
+                // look ahead to see if the next non-space is the closing bracket or a comma, which ends the quoted string
+                for (int j = i + 1; j < key.length(); j++) {
+                    if (key.charAt(j) == ' ')
+                        continue;
+                    if (key.charAt(j) == ']' || key.charAt(j) == ',')
+                        quoteChar = 0;
+                    break;
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static List<String> getRegexDecl(String key) {
+        List<String> l = new ArrayList<String>();
+
+        boolean inRegex = false;
+        StringBuilder curRegex = new StringBuilder();
+        for (int i = 0; i < key.length(); i++) {
+            if (!inRegex) {
+                if (key.length() > i + 1) {
+                    String s = key.substring(i, i + 2);
+                    if ("[/".equals(s) || ",/".equals(s)) {
+                        inRegex = true;
+                        i++;
+                        continue;
+                    }
+                }
+            } else {
+                String s = key.substring(i, i + 2);
+                if ("/]".equals(s) || "/,".equals(s)) {
+                    l.add(curRegex.toString());
+                    curRegex = new StringBuilder();
+                    inRegex = false;
+                    continue;
+                }
+                curRegex.append(key.charAt(i));
+            }
+        }
+        return l;
+    }
+
+    /**
+     * A rule on the values of the arguments, the exact value ones are looked up by key.
+     */
+    static class ArgumentRule {
+        final List<String> roles;
+        final String[] regexes;
+        final Pattern[] patterns;
+
+        ArgumentRule(List<String> roles, List<String> regexArgs) {
+            this.roles = roles;
+            if (regexArgs != null) {
+                regexes = regexArgs.toArray(new String[regexArgs.size()]);
+                patterns = new Pattern[regexes.length];
+                for (int i = 0; i < regexes.length; i++) {
+                    try {
+                        patterns[i] = Pattern.compile(regexes[i]);
+                    } catch (PatternSyntaxException e) {
+                        // reported when an invocation is matched against it
+                    }
+                }
+            } else {
+                regexes = null;
+                patterns = null;
+            }
+        }
+
+        boolean matches(Object[] params) {
+            if (regexes == null || regexes.length != params.length)
+                return false;
+
+            for (int i = 0; i < regexes.length; i++) {
+                if (params[i] == null)
+                    return false;
+                String param = params[i].toString().trim();
+                if (patterns[i] != null ? !patterns[i].matcher(param).matches() : !param.matches(regexes[i])) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * A rule on the method name, such as {@code get*}, {@code *Name} or {@code *Bundle*}.
+     */
+    static class WildcardRule {
+        static final int PREFIX = 0;
+        static final int SUFFIX = 1;
+        static final int MIDDLE = 2;
+
+        final int type;
+        final String text;
+        final List<String> roles;
+
+        WildcardRule(int type, String text, Object value) {
+            this.type = type;
+            this.text = text;
+            this.roles = ACLConfigurationParser.parseRoles(value.toString());
+        }
+
+        boolean matches(String methodName) {
+            switch (type) {
+                case PREFIX:
+                    return methodName.startsWith(text);
+                case SUFFIX:
+                    return methodName.endsWith(text);
+                default:
+                    return methodName.contains(text);
+            }
+        }
+    }
+
+}
@@ -28,6 +28,7 @@ import org.osgi.framework.Filter;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.hooks.service.EventListenerHook;
 import org.osgi.framework.hooks.service.FindHook;
+import org.osgi.service.cm.ConfigurationListener;
 
 import java.util.Dictionary;
 import java.util.Properties;
@@ -63,6 +64,9 @@ public class ActivatorTest {
             EasyMock.expect(bc.registerService(
                     EasyMock.eq(FindHook.class), EasyMock.isA(FindHook.class), EasyMock.isNull(Dictionary.class)))
                     .andReturn(null);
+            EasyMock.expect(bc.registerService(
+                    EasyMock.eq(ConfigurationListener.class), EasyMock.isA(GuardProxyCatalog.class), EasyMock.isNull(Dictionary.class)))
+                    .andReturn(null);
 
             EasyMock.replay(bc);
 
@@ -26,8 +26,10 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.security.Principal;
 import java.security.PrivilegedAction;
+import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -63,6 +65,7 @@ import org.osgi.framework.ServiceRegistration;
 import org.osgi.framework.wiring.BundleWiring;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
 
 public class GuardProxyCatalogTest {
     // Some assertions fail when run under a code coverage tool, they are skipped when this is set to true
@@ -361,6 +364,57 @@ public class GuardProxyCatalogTest {
         });
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testConfigurationChange() throws Exception {
+        final Dictionary<String, Object> config = new Hashtable<String, Object>();
+        config.put(Constants.SERVICE_PID, GuardProxyCatalog.SERVICE_ACL_PREFIX + "foo");
+        config.put("service.guard", "(objectClass=" + TestServiceAPI.class.getName() + ")");
+        config.put("doit", "b");
+
+        BundleContext bc = mockConfigAdminBundleContext(config);
+        final GuardProxyCatalog gpc = new GuardProxyCatalog(bc);
+
+        Dictionary<String, Object> serviceProps = new Hashtable<String, Object>();
+        serviceProps.put(Constants.OBJECTCLASS, new String [] {TestServiceAPI.class.getName()});
+        serviceProps.put(Constants.SERVICE_ID, 42L);
+        final GuardProxyCatalog.ProxyInvocationListener listener = gpc.new ProxyInvocationListener(mockServiceReference(serviceProps));
+        final Method doit = TestServiceAPI.class.getMethod("doit");
+        final ServiceReference<ConfigurationAdmin> cmRef = EasyMock.createMock(ServiceReference.class);
+        EasyMock.replay(cmRef);
+
+        Subject subject = new Subject();
+        subject.getPrincipals().add(new RolePrincipal("b"));
+        Subject.doAs(subject, new PrivilegedExceptionAction<Object>() {
+            @Override
+            public Object run() throws Exception {
+                assertTrue(canInvoke(listener, doit));
+
+                // The compiled configurations are kept until they are updated
+                config.put("doit", "c");
+                assertTrue(canInvoke(listener, doit));
+                gpc.configurationEvent(new ConfigurationEvent(cmRef, ConfigurationEvent.CM_UPDATED, null, "org.apache.karaf.foo"));
+                assertTrue(canInvoke(listener, doit));
+                gpc.configurationEvent(new ConfigurationEvent(cmRef, ConfigurationEvent.CM_UPDATED, null, GuardProxyCatalog.SERVICE_ACL_PREFIX + "foo"));
+                assertFalse(canInvoke(listener, doit));
+                return null;
+            }
+        });
+    }
+
+    private static boolean canInvoke(GuardProxyCatalog.ProxyInvocationListener listener, Method m) throws Exception {
+        try {
+            listener.preInvoke(null, m, new Object [] {});
+            return true;
+        } catch (SecurityException se) {
+            return false;
+        } catch (Exception e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void testInvocationBlocking2() throws Exception {
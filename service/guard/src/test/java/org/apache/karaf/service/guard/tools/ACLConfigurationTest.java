@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.service.guard.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.apache.karaf.service.guard.tools.ACLConfigurationParser.Specificity;
+import org.junit.Test;
+
+public class ACLConfigurationTest {
+
+    @Test
+    public void testCompiledConfiguration() {
+        Dictionary<String, Object> config = new Hashtable<String, Object>();
+        config.put("install[/.*-s.*/]", "admin");
+        config.put("install[\"foo\"]", "manager");
+        config.put("install", "viewer");
+        config.put("list([Ljava.lang.String;)[/a.*/]", "ra");
+        config.put("list([Ljava.lang.String;)", "rb");
+        config.put("get*", "rc");
+        config.put("getFoo*", "rd");
+        ACLConfiguration acl = new ACLConfiguration(config);
+
+        // The configuration is compiled once and can be matched many times
+        for (int i = 0; i < 2; i++) {
+            assertRoles(acl, Specificity.ARGUMENT_MATCH, Arrays.asList("admin"), "install", new Object[] {"-s x"}, null);
+            assertRoles(acl, Specificity.ARGUMENT_MATCH, Arrays.asList("manager"), "install", new Object[] {" foo "}, null);
+            assertRoles(acl, Specificity.NAME_MATCH, Arrays.asList("viewer"), "install", new Object[] {"bar"}, null);
+            assertRoles(acl, Specificity.ARGUMENT_MATCH, Arrays.asList("ra"), "list", new Object[] {"abc"}, new String[] {"[Ljava.lang.String;"});
+            assertRoles(acl, Specificity.SIGNATURE_MATCH, Arrays.asList("rb"), "list", new Object[] {"xyz"}, new String[] {"[Ljava.lang.String;"});
+            assertRoles(acl, Specificity.WILDCARD_MATCH, Arrays.asList("rd"), "getFooBar", new Object[] {}, new String[] {});
+            assertRoles(acl, Specificity.WILDCARD_MATCH, Arrays.asList("rc"), "getBar", new Object[] {}, new String[] {});
+            assertRoles(acl, Specificity.NO_MATCH, Collections.<String>emptyList(), "doit", new Object[] {}, new String[] {});
+        }
+
+        assertTrue(acl.hasArgumentRules("install"));
+        assertTrue(acl.hasArgumentRules("list"));
+        assertFalse(acl.hasArgumentRules("getFoo"));
+    }
+
+    private static void assertRoles(ACLConfiguration acl, Specificity specificity, List<String> roles,
+                                    String methodName, Object[] params, String[] signature) {
+        List<String> actual = new ArrayList<String>();
+        assertEquals(specificity, acl.getRolesForInvocation(methodName, params, signature, actual));
+        assertEquals(roles, actual);
+    }
+
+}
@@ -21,7 +21,6 @@ package org.apache.karaf.shell.impl.action.command;
 import java.util.List;
 
 import org.apache.karaf.shell.api.action.Action;
-import org.apache.karaf.shell.api.action.Command;
 import org.apache.karaf.shell.api.console.CommandLine;
 import org.apache.karaf.shell.api.console.Completer;
 import org.apache.karaf.shell.api.console.Session;
@@ -30,29 +29,39 @@ public class ActionCommand implements org.apache.karaf.shell.api.console.Command
 
     private final ManagerImpl manager;
     private final Class<? extends Action> actionClass;
+    private final ActionMetadata metadata;
 
     public ActionCommand(ManagerImpl manager, Class<? extends Action> actionClass) {
+        this(manager, new ActionMetadata(actionClass));
+    }
+
+    public ActionCommand(ManagerImpl manager, ActionMetadata metadata) {
         this.manager = manager;
-        this.actionClass = actionClass;
+        this.actionClass = metadata.getActionClass();
+        this.metadata = metadata;
     }
 
     public Class<? extends Action> getActionClass() {
         return actionClass;
     }
 
+    public ActionMetadata getMetadata() {
+        return metadata;
+    }
+
     @Override
     public String getScope() {
-        return actionClass.getAnnotation(Command.class).scope();
+        return metadata.getCommand().scope();
     }
 
     @Override
     public String getName() {
-        return actionClass.getAnnotation(Command.class).name();
+        return metadata.getCommand().name();
     }
 
     @Override
     public String getDescription() {
-        return actionClass.getAnnotation(Command.class).description();
+        return metadata.getCommand().description();
     }
 
     @Override
@@ -68,7 +77,7 @@ public class ActionCommand implements org.apache.karaf.shell.api.console.Command
     public Object execute(Session session, List<Object> arguments) throws Exception {
         Action action = createNewAction(session);
         try {
-            if (new DefaultActionPreparator().prepare(action, session, arguments)) {
+            if (new DefaultActionPreparator().prepare(action, metadata, session, arguments)) {
                 return action.execute();
             }
         } finally {
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.impl.action.command;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Argument;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
+
+/**
+ * The options and arguments of an action class.
+ *
+ * The class hierarchy is only introspected once, when the command is registered,
+ * so that executing the command does not need any reflection but setting the fields.
+ */
+public class ActionMetadata {
+
+    private final Class<? extends Action> actionClass;
+    private final Command command;
+    private final Map<Option, Field> options = new HashMap<Option, Field>();
+    private final Map<String, Option> optionsByName = new HashMap<String, Option>();
+    private final Map<Argument, Field> arguments = new HashMap<Argument, Field>();
+    private final List<Argument> orderedArguments = new ArrayList<Argument>();
+
+    public ActionMetadata(Class<? extends Action> actionClass) {
+        this.actionClass = actionClass;
+        this.command = actionClass.getAnnotation(Command.class);
+        for (Class<?> type = actionClass; type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                Option option = field.getAnnotation(Option.class);
+                if (option != null) {
+                    field.setAccessible(true);
+                    options.put(option, field);
+                    addOptionName(option.name(), option);
+                    for (String alias : option.aliases()) {
+                        addOptionName(alias, option);
+                    }
+                }
+
+                Argument argument = field.getAnnotation(Argument.class);
+                if (argument != null) {
+                    field.setAccessible(true);
+                    argument = replaceDefaultArgument(field, argument);
+                    arguments.put(argument, field);
+                    int index = argument.index();
+                    while (orderedArguments.size() <= index) {
+                        orderedArguments.add(null);
+                    }
+                    if (orderedArguments.get(index) != null) {
+                        throw new IllegalArgumentException("Duplicate argument index: " + index + " on Action " + actionClass.getName());
+                    }
+                    orderedArguments.set(index, argument);
+                }
+            }
+        }
+        for (int i = 0; i < orderedArguments.size(); i++) {
+            if (orderedArguments.get(i) == null) {
+                throw new IllegalArgumentException("Missing argument for index: " + i + " on Action " + actionClass.getName());
+            }
+        }
+    }
+
+    public Class<? extends Action> getActionClass() {
+        return actionClass;
+    }
+
+    public Command getCommand() {
+        return command;
+    }
+
+    public Map<Option, Field> getOptions() {
+        return Collections.unmodifiableMap(options);
+    }
+
+    /**
+     * Return the option with the given name or alias, or <code>null</code> if there is none.
+     */
+    public Option getOption(String name) {
+        return optionsByName.get(name);
+    }
+
+    public Map<Argument, Field> getArguments() {
+        return Collections.unmodifiableMap(arguments);
+    }
+
+    /**
+     * The arguments, indexed by their position.
+     */
+    public List<Argument> getOrderedArguments() {
+        return Collections.unmodifiableList(orderedArguments);
+    }
+
+    private void addOptionName(String name, Option option) {
+        // Fields of subclasses are visited first and take precedence
+        if (!optionsByName.containsKey(name)) {
+            optionsByName.put(name, option);
+        }
+    }
+
+    private static Argument replaceDefaultArgument(Field field, Argument argument) {
+        if (Argument.DEFAULT.equals(argument.name())) {
+            final Argument delegate = argument;
+            final String name = field.getName();
+            argument = new Argument() {
+                public String name() {
+                    return name;
+                }
+
+                public String description() {
+                    return delegate.description();
+                }
+
+                public boolean required() {
+                    return delegate.required();
+                }
+
+                public int index() {
+                    return delegate.index();
+                }
+
+                public boolean multiValued() {
+                    return delegate.multiValued();
+                }
+
+                public String valueToShowInHelp() {
+                    return delegate.valueToShowInHelp();
+                }
+
+                public Class<? extends Annotation> annotationType() {
+                    return delegate.annotationType();
+                }
+            };
+        }
+        return argument;
+    }
+
+}
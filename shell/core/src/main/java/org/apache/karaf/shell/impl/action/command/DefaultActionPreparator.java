@@ -24,11 +24,9 @@ import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.io.Reader;
 import java.io.StringWriter;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -58,35 +56,15 @@ import static org.apache.karaf.shell.support.ansi.SimpleAnsi.INTENSITY_NORMAL;
 public class DefaultActionPreparator {
 
     public boolean prepare(Action action, Session session, List<Object> params) throws Exception {
+        return prepare(action, new ActionMetadata(action.getClass()), session, params);
+    }
 
-        Command command = action.getClass().getAnnotation(Command.class);
-        Map<Option, Field> options = new HashMap<Option, Field>();
-        Map<Argument, Field> arguments = new HashMap<Argument, Field>();
-        List<Argument> orderedArguments = new ArrayList<Argument>();
+    public boolean prepare(Action action, ActionMetadata metadata, Session session, List<Object> params) throws Exception {
 
-        for (Class<?> type = action.getClass(); type != null; type = type.getSuperclass()) {
-            for (Field field : type.getDeclaredFields()) {
-                Option option = field.getAnnotation(Option.class);
-                if (option != null) {
-                    options.put(option, field);
-                }
-
-                Argument argument = field.getAnnotation(Argument.class);
-                if (argument != null) {
-                    argument = replaceDefaultArgument(field, argument);
-                    arguments.put(argument, field);
-                    int index = argument.index();
-                    while (orderedArguments.size() <= index) {
-                        orderedArguments.add(null);
-                    }
-                    if (orderedArguments.get(index) != null) {
-                        throw new IllegalArgumentException("Duplicate argument index: " + index + " on Action " + action.getClass().getName());
-                    }
-                    orderedArguments.set(index, argument);
-                }
-            }
-        }
-        assertIndexesAreCorrect(action.getClass(), orderedArguments);
+        Command command = metadata.getCommand();
+        Map<Option, Field> options = metadata.getOptions();
+        Map<Argument, Field> arguments = metadata.getArguments();
+        List<Argument> orderedArguments = metadata.getOrderedArguments();
 
         String commandErrorSt = COLOR_RED + "Error executing command " + command.scope() + ":" + INTENSITY_BOLD + command.name() + INTENSITY_NORMAL + COLOR_DEFAULT + ": ";
         for (Iterator<Object> it = params.iterator(); it.hasNext(); ) {
@@ -117,13 +95,7 @@ public class DefaultActionPreparator {
                 } else {
                     name = (String) param;
                 }
-                Option option = null;
-                for (Option opt : options.keySet()) {
-                    if (name.equals(opt.name()) || Arrays.asList(opt.aliases()).contains(name)) {
-                        option = opt;
-                        break;
-                    }
-                }
+                Option option = metadata.getOption(name);
                 if (option == null) {
                     throw new CommandException(commandErrorSt
                                 + "undefined option " + INTENSITY_BOLD + param + INTENSITY_NORMAL + "\n"
@@ -212,7 +184,6 @@ public class DefaultActionPreparator {
                             e
                     );
             }
-            field.setAccessible(true);
             field.set(action, value);
         }
         for (Map.Entry<Argument, Object> entry : argumentValues.entrySet()) {
@@ -229,7 +200,6 @@ public class DefaultActionPreparator {
                             e
                     );
             }
-            field.setAccessible(true);
             field.set(action, value);
         }
         return true;
@@ -242,51 +212,6 @@ public class DefaultActionPreparator {
         return new DefaultConverter(action.getClass().getClassLoader()).convert(value, toType);
     }
 
-    private Argument replaceDefaultArgument(Field field, Argument argument) {
-        if (Argument.DEFAULT.equals(argument.name())) {
-            final Argument delegate = argument;
-            final String name = field.getName();
-            argument = new Argument() {
-                public String name() {
-                    return name;
-                }
-
-                public String description() {
-                    return delegate.description();
-                }
-
-                public boolean required() {
-                    return delegate.required();
-                }
-
-                public int index() {
-                    return delegate.index();
-                }
-
-                public boolean multiValued() {
-                    return delegate.multiValued();
-                }
-
-                public String valueToShowInHelp() {
-                    return delegate.valueToShowInHelp();
-                }
-
-                public Class<? extends Annotation> annotationType() {
-                    return delegate.annotationType();
-                }
-            };
-        }
-        return argument;
-    }
-
-    private void assertIndexesAreCorrect(Class<? extends Action> actionClass, List<Argument> orderedArguments) {
-        for (int i = 0; i < orderedArguments.size(); i++) {
-            if (orderedArguments.get(i) == null) {
-                throw new IllegalArgumentException("Missing argument for index: " + i + " on Action " + actionClass.getName());
-            }
-        }
-    }
-
     public void printUsage(Action action, Map<Option, Field> options, Map<Argument, Field> arguments, PrintStream out, boolean globalScope, int termWidth) {
         Command command = action.getClass().getAnnotation(Command.class);
         if (command != null) {
@@ -26,6 +26,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Command;
@@ -43,6 +45,7 @@ public class ManagerImpl implements Manager {
     private final Registry dependencies;
     private final Registry registrations;
     private final Map<Class<?>, Object> instances = new HashMap<Class<?>, Object>();
+    private final ConcurrentMap<Class<?>, Injection> injections = new ConcurrentHashMap<Class<?>, Injection>();
     private final boolean allowCustomServices;
 
     public ManagerImpl(Registry dependencies, Registry registrations) {
@@ -60,67 +63,60 @@ public class ManagerImpl implements Manager {
     }
 
     public <T> T instantiate(Class<? extends T> clazz, Registry registry) throws Exception {
-        if (!allowCustomServices) {
-            Service reg = clazz.getAnnotation(Service.class);
-            if (reg == null) {
-                throw new IllegalArgumentException("Class " + clazz.getName() + " is not annotated with @Service");
-            }
+        Injection injection = getInjection(clazz);
+        if (!allowCustomServices && !injection.service) {
+            throw new IllegalArgumentException("Class " + clazz.getName() + " is not annotated with @Service");
         }
         T instance = clazz.newInstance();
         // Inject services
-        for (Class<?> cl = clazz; cl != Object.class; cl = cl.getSuperclass()) {
-            for (Field field : cl.getDeclaredFields()) {
-                if (field.getAnnotation(Reference.class) != null) {
-                    GenericType type = new GenericType(field.getGenericType());
-                    Object value;
-                    if (type.getRawClass() == List.class) {
-                        Set<Object> set = new HashSet<Object>();
-                        set.addAll(registry.getServices(type.getActualTypeArgument(0).getRawClass()));
-                        if (registry != this.dependencies) {
-                            set.addAll(this.dependencies.getServices(type.getActualTypeArgument(0).getRawClass()));
-                        }
-                        value = new ArrayList<Object>(set);
-                    } else {
-                        value = registry.getService(type.getRawClass());
-                        if (value == null && registry != this.dependencies) {
-                            value = this.dependencies.getService(type.getRawClass());
-                        }
-                    }
-                    if (!allowCustomServices && value == null) {
-                        throw new IllegalStateException("No service matching " + field.getType().getName());
-                    }
-                    field.setAccessible(true);
-                    field.set(instance, value);
+        for (int i = 0; i < injection.references.size(); i++) {
+            Field field = injection.references.get(i);
+            GenericType type = injection.referenceTypes.get(i);
+            Object value;
+            if (type.getRawClass() == List.class) {
+                Set<Object> set = new HashSet<Object>();
+                set.addAll(registry.getServices(type.getActualTypeArgument(0).getRawClass()));
+                if (registry != this.dependencies) {
+                    set.addAll(this.dependencies.getServices(type.getActualTypeArgument(0).getRawClass()));
+                }
+                value = new ArrayList<Object>(set);
+            } else {
+                value = registry.getService(type.getRawClass());
+                if (value == null && registry != this.dependencies) {
+                    value = this.dependencies.getService(type.getRawClass());
                 }
             }
-        }
-        for (Method method : clazz.getDeclaredMethods()) {
-            Init ann = method.getAnnotation(Init.class);
-            if (ann != null && method.getParameterTypes().length == 0 && method.getReturnType() == void.class) {
-                method.setAccessible(true);
-                method.invoke(instance);
+            if (!allowCustomServices && value == null) {
+                throw new IllegalStateException("No service matching " + field.getType().getName());
             }
+            field.set(instance, value);
+        }
+        for (Method method : injection.init) {
+            method.invoke(instance);
         }
         return instance;
     }
 
     public void release(Object instance) throws Exception {
         Class<?> clazz = instance.getClass();
-        if (!allowCustomServices) {
-            Service reg = clazz.getAnnotation(Service.class);
-            if (reg == null) {
-                throw new IllegalArgumentException("Class " + clazz.getName() + " is not annotated with @Service");
-            }
+        Injection injection = getInjection(clazz);
+        if (!allowCustomServices && !injection.service) {
+            throw new IllegalArgumentException("Class " + clazz.getName() + " is not annotated with @Service");
         }
-        for (Method method : clazz.getDeclaredMethods()) {
-            Destroy ann = method.getAnnotation(Destroy.class);
-            if (ann != null && method.getParameterTypes().length == 0 && method.getReturnType() == void.class) {
-                method.setAccessible(true);
-                method.invoke(instance);
-            }
+        for (Method method : injection.destroy) {
+            method.invoke(instance);
         }
     }
 
+    /**
+     * Only the registered classes are cached, so that the classes which have been
+     * unregistered, while some of their instances were still in use, can be collected.
+     */
+    private Injection getInjection(Class<?> clazz) {
+        Injection injection = injections.get(clazz);
+        return injection != null ? injection : new Injection(clazz);
+    }
+
     @Override
     public void register(Class<?> clazz) {
         if (!allowCustomServices) {
@@ -129,12 +125,14 @@ public class ManagerImpl implements Manager {
                 throw new IllegalArgumentException("Class " + clazz.getName() + " is not annotated with @Service");
             }
         }
+        // Introspect the class once, instead of on each execution
+        injections.putIfAbsent(clazz, new Injection(clazz));
         if (Action.class.isAssignableFrom(clazz)) {
             final Command cmd = clazz.getAnnotation(Command.class);
             if (cmd == null) {
                 throw new IllegalArgumentException("Command " + clazz.getName() + " is not annotated with @Command");
             }
-            Object command = new ActionCommand(this, (Class<? extends Action>) clazz);
+            Object command = new ActionCommand(this, new ActionMetadata((Class<? extends Action>) clazz));
             registrations.register(command);
         }
         if (allowCustomServices || Completer.class.isAssignableFrom(clazz)) {
@@ -159,6 +157,7 @@ public class ManagerImpl implements Manager {
         synchronized (instances) {
             object = instances.remove(clazz);
         }
+        injections.remove(clazz);
         if (object != null) {
             registrations.unregister(object);
             if (object instanceof Completer) {
@@ -170,4 +169,40 @@ public class ManagerImpl implements Manager {
             }
         }
     }
+
+    /**
+     * The injection points and lifecycle methods of a class.
+     */
+    static class Injection {
+        final boolean service;
+        final List<Field> references = new ArrayList<Field>();
+        final List<GenericType> referenceTypes = new ArrayList<GenericType>();
+        final List<Method> init = new ArrayList<Method>();
+        final List<Method> destroy = new ArrayList<Method>();
+
+        Injection(Class<?> clazz) {
+            service = clazz.getAnnotation(Service.class) != null;
+            for (Class<?> cl = clazz; cl != Object.class; cl = cl.getSuperclass()) {
+                for (Field field : cl.getDeclaredFields()) {
+                    if (field.getAnnotation(Reference.class) != null) {
+                        field.setAccessible(true);
+                        references.add(field);
+                        referenceTypes.add(new GenericType(field.getGenericType()));
+                    }
+                }
+            }
+            for (Method method : clazz.getDeclaredMethods()) {
+                if (method.getParameterTypes().length == 0 && method.getReturnType() == void.class) {
+                    if (method.getAnnotation(Init.class) != null) {
+                        method.setAccessible(true);
+                        init.add(method);
+                    }
+                    if (method.getAnnotation(Destroy.class) != null) {
+                        method.setAccessible(true);
+                        destroy.add(method);
+                    }
+                }
+            }
+        }
+    }
 }
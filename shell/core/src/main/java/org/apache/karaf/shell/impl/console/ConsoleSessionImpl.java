@@ -21,7 +21,9 @@ package org.apache.karaf.shell.impl.console;
 import java.io.CharArrayWriter;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -29,6 +31,8 @@ import java.io.InterruptedIOException;
 import java.io.PrintStream;
 import java.io.Reader;
 import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -567,6 +571,55 @@ public class ConsoleSessionImpl implements Session {
         }
     }
 
+    /**
+     * Check if the given stream reads from the standard input of the process,
+     * looking through the usual wrappers.
+     */
+    static boolean isStandardInput(InputStream in) {
+        for (int i = 0; in != null && i < 10; i++) {
+            if (in == System.in) {
+                return true;
+            }
+            if (in instanceof FileInputStream) {
+                try {
+                    return ((FileInputStream) in).getFD() == FileDescriptor.in;
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+            in = unwrapInput(in);
+        }
+        return false;
+    }
+
+    private static InputStream unwrapInput(InputStream in) {
+        try {
+            // Streams from the ThreadIO service
+            Method mth = in.getClass().getMethod("getRoot");
+            return (InputStream) mth.invoke(in);
+        } catch (Throwable t) {
+            // Ignore
+        }
+        if (in instanceof FilterInputStream) {
+            try {
+                Field field = FilterInputStream.class.getDeclaredField("in");
+                field.setAccessible(true);
+                return (InputStream) field.get(in);
+            } catch (Throwable t) {
+                // Ignore
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copy the input to the console queue, handling Ctrl-C and Ctrl-D as soon as they are received.
+     *
+     * Reads are blocking, the thread being interrupted when the session is closed.
+     * The standard input of the process is an exception: the local console can be
+     * restarted on the same stream and reads on it can not be interrupted, so it is
+     * polled, as a blocked thread of a closed session would swallow the next keystroke.
+     */
     private class Pipe extends Thread {
         public Pipe() {
             super("Karaf shell pipe thread");
@@ -574,29 +627,37 @@ public class ConsoleSessionImpl implements Session {
         }
 
         public void run() {
-            boolean useAvailable = !System.getProperty("os.name").toLowerCase().contains("windows");
+            boolean poll = isStandardInput(in) && !System.getProperty("os.name").toLowerCase().contains("windows");
+            byte[] buffer = new byte[1024];
             try {
                 while (running) {
                     try {
-                        while (useAvailable && in.available() == 0) {
-                            if (!running) {
-                                return;
+                        int len = buffer.length;
+                        if (poll) {
+                            while ((len = Math.min(in.available(), buffer.length)) == 0) {
+                                if (!running) {
+                                    return;
+                                }
+                                Thread.sleep(50);
                             }
-                            Thread.sleep(50);
                         }
-                        int c = in.read();
-                        if (c == -1) {
-                            return;
-                        } else if (c == 4 && !ShellUtil.getBoolean(ConsoleSessionImpl.this, Session.IGNORE_INTERRUPTS)) {
-                            err.print("^D");
-                            err.flush();
+                        int nb = in.read(buffer, 0, len);
+                        if (nb == -1 || !running) {
                             return;
-                        } else if (c == 3 && !ShellUtil.getBoolean(ConsoleSessionImpl.this, Session.IGNORE_INTERRUPTS)) {
-                            err.println("^C");
-                            reader.getCursorBuffer().clear();
-                            ConsoleSessionImpl.this.interrupt();
                         }
-                        queue.put(c);
+                        for (int i = 0; i < nb; i++) {
+                            int c = buffer[i] & 0xFF;
+                            if (c == 4 && !ShellUtil.getBoolean(ConsoleSessionImpl.this, Session.IGNORE_INTERRUPTS)) {
+                                err.print("^D");
+                                err.flush();
+                                return;
+                            } else if (c == 3 && !ShellUtil.getBoolean(ConsoleSessionImpl.this, Session.IGNORE_INTERRUPTS)) {
+                                err.println("^C");
+                                reader.getCursorBuffer().clear();
+                                ConsoleSessionImpl.this.interrupt();
+                            }
+                            queue.put(c);
+                        }
                     } catch (Throwable t) {
                         return;
                     }
@@ -24,15 +24,27 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.karaf.shell.api.console.Command;
 import org.apache.karaf.shell.api.console.Registry;
 
+/**
+ * Services are looked up through a per class cache of the matching services,
+ * built from a snapshot of the registered services.  Both are discarded when
+ * a service is registered or unregistered, so that lookups do not need to
+ * lock nor to go through all the services once the cache is warm.
+ */
 public class RegistryImpl implements Registry {
 
+    private static final Object[] NO_SERVICES = new Object[0];
+
     protected final Registry parent;
     protected final Map<Object, Object> services = new LinkedHashMap<Object, Object>();
     private final Map<String, List<Command>> commands = new HashMap<String, List<Command>>();
+    private volatile Object[] snapshot;
+    private volatile ConcurrentMap<Class<?>, Object[]> cache = new ConcurrentHashMap<Class<?>, Object[]>();
 
     public RegistryImpl(Registry parent) {
         this.parent = parent;
@@ -64,6 +76,7 @@ public class RegistryImpl implements Registry {
     public <T> void register(Callable<T> factory, Class<T> clazz) {
         synchronized (services) {
             services.put(factory, new Factory<T>(clazz, factory));
+            invalidate();
         }
     }
 
@@ -81,6 +94,7 @@ public class RegistryImpl implements Registry {
                 }
                 cmds.add(cmd);
             }
+            invalidate();
         }
     }
 
@@ -99,28 +113,23 @@ public class RegistryImpl implements Registry {
                     }
                 }
             }
+            invalidate();
         }
     }
 
     @Override
     public <T> T getService(Class<T> clazz) {
-        synchronized (services) {
-            for (Object service : services.values()) {
-                if (service instanceof Factory) {
-                    if (clazz.isAssignableFrom(((Factory) service).clazz)) {
-                        if (isVisible(service)) {
-                            try {
-                                return clazz.cast(((Factory) service).callable.call());
-                            } catch (Exception e) {
-                                // TODO: log exception
-                            }
-                        }
-                    }
-                } else if (clazz.isInstance(service)) {
-                    if (isVisible(service)) {
-                        return clazz.cast(service);
+        for (Object service : lookup(clazz)) {
+            if (service instanceof Factory) {
+                if (isVisible(service)) {
+                    try {
+                        return clazz.cast(((Factory) service).callable.call());
+                    } catch (Exception e) {
+                        // TODO: log exception
                     }
                 }
+            } else if (isVisible(service)) {
+                return clazz.cast(service);
             }
         }
         if (parent != null) {
@@ -132,23 +141,17 @@ public class RegistryImpl implements Registry {
     @Override
     public <T> List<T> getServices(Class<T> clazz) {
         List<T> list = new ArrayList<T>();
-        synchronized (services) {
-            for (Object service : services.values()) {
-                if (service instanceof Factory) {
-                    if (clazz.isAssignableFrom(((Factory) service).clazz)) {
-                        if (isVisible(service)) {
-                            try {
-                                list.add(clazz.cast(((Factory) service).callable.call()));
-                            } catch (Exception e) {
-                                // TODO: log exception
-                            }
-                        }
-                    }
-                } else if (clazz.isInstance(service)) {
-                    if (isVisible(service)) {
-                        list.add(clazz.cast(service));
+        for (Object service : lookup(clazz)) {
+            if (service instanceof Factory) {
+                if (isVisible(service)) {
+                    try {
+                        list.add(clazz.cast(((Factory) service).callable.call()));
+                    } catch (Exception e) {
+                        // TODO: log exception
                     }
                 }
+            } else if (isVisible(service)) {
+                list.add(clazz.cast(service));
             }
         }
         if (parent != null) {
@@ -159,25 +162,56 @@ public class RegistryImpl implements Registry {
 
     @Override
     public boolean hasService(Class<?> clazz) {
-        synchronized (services) {
-            for (Object service : services.values()) {
+        for (Object service : lookup(clazz)) {
+            if (isVisible(service)) {
+                return true;
+            }
+        }
+        if (parent != null) {
+            return parent.hasService(clazz);
+        }
+        return false;
+    }
+
+    /**
+     * Return the services and factories matching the given class, in registration order.
+     */
+    private Object[] lookup(Class<?> clazz) {
+        // The cache must be read before the snapshot, see invalidate()
+        ConcurrentMap<Class<?>, Object[]> cache = this.cache;
+        Object[] matches = cache.get(clazz);
+        if (matches == null) {
+            Object[] snapshot = this.snapshot;
+            if (snapshot == null) {
+                synchronized (services) {
+                    snapshot = services.values().toArray();
+                    this.snapshot = snapshot;
+                }
+            }
+            List<Object> list = new ArrayList<Object>();
+            for (Object service : snapshot) {
                 if (service instanceof Factory) {
                     if (clazz.isAssignableFrom(((Factory) service).clazz)) {
-                        if (isVisible(service)) {
-                            return true;
-                        }
+                        list.add(service);
                     }
                 } else if (clazz.isInstance(service)) {
-                    if (isVisible(service)) {
-                        return true;
-                    }
+                    list.add(service);
                 }
             }
+            matches = list.isEmpty() ? NO_SERVICES : list.toArray();
+            cache.put(clazz, matches);
         }
-        if (parent != null) {
-            return parent.hasService(clazz);
-        }
-        return false;
+        return matches;
+    }
+
+    /**
+     * Called with the services lock held when the services change.
+     * The snapshot is cleared before the cache is replaced, so that a lookup
+     * seeing the new cache can not compute its content from an old snapshot.
+     */
+    private void invalidate() {
+        snapshot = null;
+        cache = new ConcurrentHashMap<Class<?>, Object[]>();
     }
 
     protected boolean isVisible(Object service) {
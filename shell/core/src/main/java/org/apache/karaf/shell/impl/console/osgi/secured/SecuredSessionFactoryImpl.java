@@ -22,7 +22,6 @@ import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.Principal;
 import java.util.ArrayList;
-import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +32,7 @@ import org.apache.felix.gogo.runtime.CommandNotFoundException;
 import org.apache.felix.service.command.Function;
 import org.apache.felix.service.threadio.ThreadIO;
 import org.apache.karaf.jaas.boot.principal.RolePrincipal;
+import org.apache.karaf.service.guard.tools.ACLConfiguration;
 import org.apache.karaf.service.guard.tools.ACLConfigurationParser;
 import org.apache.karaf.shell.api.console.Command;
 import org.apache.karaf.shell.api.console.Session;
@@ -58,7 +58,7 @@ public class SecuredSessionFactoryImpl extends SessionFactoryImpl implements Con
     private static final Logger LOGGER = LoggerFactory.getLogger(SecuredSessionFactoryImpl.class);
 
     private BundleContext bundleContext;
-    private Map<String, Dictionary<String, Object>> scopes = new HashMap<String, Dictionary<String, Object>>();
+    private Map<String, ACLConfiguration> scopes = new HashMap<String, ACLConfiguration>();
     private SingleServiceTracker<ConfigurationAdmin> configAdminTracker;
     private ServiceRegistration registration;
 
@@ -91,10 +91,10 @@ public class SecuredSessionFactoryImpl extends SessionFactoryImpl implements Con
     }
 
     protected boolean isVisible(Command command) {
-        Dictionary<String, Object> config = getScopeConfig(command.getScope());
+        ACLConfiguration config = getScopeConfig(command.getScope());
         if (config != null) {
             List<String> roles = new ArrayList<String>();
-            ACLConfigurationParser.getRolesForInvocation(command.getName(), null, null, config, roles);
+            config.getRolesForInvocation(command.getName(), null, null, roles);
             if (roles.isEmpty()) {
                 return true;
             } else {
@@ -110,13 +110,13 @@ public class SecuredSessionFactoryImpl extends SessionFactoryImpl implements Con
     }
 
     void checkSecurity(SecuredCommand command, Session session, List<Object> arguments) {
-        Dictionary<String, Object> config = getScopeConfig(command.getScope());
+        ACLConfiguration config = getScopeConfig(command.getScope());
         if (config != null) {
             if (!isVisible(command)) {
                 throw new CommandNotFoundException(command.getScope() + ":" + command.getName());
             }
             List<String> roles = new ArrayList<String>();
-            ACLConfigurationParser.Specificity s = ACLConfigurationParser.getRolesForInvocation(command.getName(), new Object[] { arguments.toString() }, null, config, roles);
+            ACLConfigurationParser.Specificity s = config.getRolesForInvocation(command.getName(), new Object[] { arguments.toString() }, null, roles);
             if (s == ACLConfigurationParser.Specificity.NO_MATCH) {
                 return;
             }
@@ -195,8 +195,13 @@ public class SecuredSessionFactoryImpl extends SessionFactoryImpl implements Con
             return;
         }
         scope = scope.trim();
+        if (config.getProperties() == null) {
+            removeScopeConfig(scope);
+            return;
+        }
+        ACLConfiguration acl = new ACLConfiguration(config.getProperties());
         synchronized (scopes) {
-            scopes.put(scope, config.getProperties());
+            scopes.put(scope, acl);
         }
     }
 
@@ -206,7 +211,7 @@ public class SecuredSessionFactoryImpl extends SessionFactoryImpl implements Con
         }
     }
 
-    private Dictionary<String, Object> getScopeConfig(String scope) {
+    private ACLConfiguration getScopeConfig(String scope) {
         synchronized (scopes) {
             return scopes.get(scope);
         }
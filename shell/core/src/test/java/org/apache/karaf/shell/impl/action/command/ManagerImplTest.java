@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.impl.action.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+import org.apache.karaf.shell.api.action.lifecycle.Destroy;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.apache.karaf.shell.api.console.CommandLine;
+import org.apache.karaf.shell.api.console.Completer;
+import org.apache.karaf.shell.api.console.Session;
+import org.apache.karaf.shell.impl.console.RegistryImpl;
+import org.junit.Test;
+
+public class ManagerImplTest {
+
+    @Test
+    public void testUnregisterReleases() throws Exception {
+        RegistryImpl registry = new RegistryImpl(null);
+        ManagerImpl manager = new ManagerImpl(registry, registry);
+        TestCompleter.destroyed = 0;
+
+        manager.register(TestCompleter.class);
+        assertEquals(1, registry.getServices(TestCompleter.class).size());
+
+        manager.unregister(TestCompleter.class);
+        assertEquals(1, TestCompleter.destroyed);
+        assertEquals(0, registry.getServices(TestCompleter.class).size());
+    }
+
+    @Test
+    public void testUnregisteredClassIsNotRetained() throws Exception {
+        RegistryImpl registry = new RegistryImpl(null);
+        ManagerImpl manager = new ManagerImpl(registry, registry);
+        Class<?> clazz = new IsolatingClassLoader(TestCompleter.class).loadClass(TestCompleter.class.getName());
+
+        manager.register(clazz);
+        manager.unregister(clazz);
+        // An instance used after the unregistration, e.g. by a command still running
+        manager.release(manager.instantiate(clazz));
+
+        WeakReference<Class<?>> ref = new WeakReference<Class<?>>(clazz);
+        clazz = null;
+        for (int i = 0; i < 20 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertNull(ref.get());
+    }
+
+    /**
+     * Loads its own copy of the given class, so that it can be collected.
+     */
+    static class IsolatingClassLoader extends ClassLoader {
+        private final String name;
+
+        IsolatingClassLoader(Class<?> clazz) {
+            super(clazz.getClassLoader());
+            this.name = clazz.getName();
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String className, boolean resolve) throws ClassNotFoundException {
+            if (!className.equals(name)) {
+                return super.loadClass(className, resolve);
+            }
+            Class<?> clazz = findLoadedClass(className);
+            if (clazz == null) {
+                try (InputStream is = getParent().getResourceAsStream(className.replace('.', '/') + ".class")) {
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int l;
+                    while ((l = is.read(buffer)) > 0) {
+                        baos.write(buffer, 0, l);
+                    }
+                    clazz = defineClass(className, baos.toByteArray(), 0, baos.size());
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(className, e);
+                }
+            }
+            return clazz;
+        }
+    }
+
+    @Service
+    public static class TestCompleter implements Completer {
+
+        static int destroyed;
+
+        @Override
+        public int complete(Session session, CommandLine commandLine, List<String> candidates) {
+            return -1;
+        }
+
+        @Destroy
+        void destroy() {
+            destroyed++;
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.impl.console;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+
+public class RegistryImplTest {
+
+    @Test
+    public void testLookupsFollowRegistrations() {
+        RegistryImpl parent = new RegistryImpl(null);
+        RegistryImpl registry = new RegistryImpl(parent);
+        assertNull(registry.getService(CharSequence.class));
+        assertFalse(registry.hasService(CharSequence.class));
+
+        String first = "first";
+        StringBuilder second = new StringBuilder("second");
+        Integer other = 3;
+        registry.register(first);
+        registry.register(other);
+        parent.register(second);
+        assertSame(first, registry.getService(CharSequence.class));
+        assertEquals(Arrays.<CharSequence>asList(first, second), registry.getServices(CharSequence.class));
+        assertTrue(registry.hasService(Number.class));
+
+        registry.unregister(first);
+        assertSame(second, registry.getService(CharSequence.class));
+        assertEquals(Collections.<CharSequence>singletonList(second), registry.getServices(CharSequence.class));
+        assertSame(other, registry.getService(Integer.class));
+    }
+
+    @Test
+    public void testFactories() {
+        RegistryImpl registry = new RegistryImpl(null);
+        final int[] calls = new int[1];
+        registry.register(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "value" + calls[0]++;
+            }
+        }, String.class);
+        assertEquals("value0", registry.getService(CharSequence.class));
+        assertEquals("value1", registry.getService(String.class));
+        assertNull(registry.getService(Integer.class));
+    }
+
+}
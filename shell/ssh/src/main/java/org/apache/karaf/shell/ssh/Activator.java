@@ -56,6 +56,7 @@ public class Activator extends BaseActivator implements ManagedService {
     SessionFactory sessionFactory;
     SshClientFactory sshClientFactory;
     SshServer server;
+    ExecStatistics execStatistics;
 
     @Override
     protected void doOpen() throws Exception {
@@ -97,7 +98,10 @@ public class Activator extends BaseActivator implements ManagedService {
         sessionFactory.getRegistry().register(sshClientFactory);
         sessionFactory.getRegistry().getService(Manager.class).register(SshAction.class);
         if (Boolean.parseBoolean(bundleContext.getProperty("karaf.startRemoteShell"))) {
-            server = createSshServer(sessionFactory);
+            InitScriptCache scriptCache = new InitScriptCache();
+            execStatistics = new ExecStatistics(scriptCache);
+            server = createSshServer(sessionFactory, scriptCache, execStatistics);
+            registerMBean(execStatistics, "type=ssh,area=exec");
             try {
                 server.start();
             } catch (IOException e) {
@@ -121,10 +125,11 @@ public class Activator extends BaseActivator implements ManagedService {
             }
             server = null;
         }
+        execStatistics = null;
         super.doStop();
     }
 
-    protected SshServer createSshServer(SessionFactory sessionFactory) {
+    protected SshServer createSshServer(SessionFactory sessionFactory, InitScriptCache scriptCache, ExecStatistics execStatistics) {
         int sshPort           = getInt("sshPort", 8181);
         String sshHost        = getString("sshHost", "0.0.0.0");
         long sshIdleTimeout   = getLong("sshIdleTimeout", 1800000);
@@ -153,7 +158,7 @@ public class Activator extends BaseActivator implements ManagedService {
         server.setMacFactories(SshUtils.buildMacs(macs));
         server.setCipherFactories(SshUtils.buildCiphers(ciphers));
         server.setShellFactory(new ShellFactoryImpl(sessionFactory));
-        server.setCommandFactory(new ScpCommandFactory(new ShellCommandFactory(sessionFactory)));
+        server.setCommandFactory(new ScpCommandFactory(new ShellCommandFactory(sessionFactory, scriptCache, execStatistics)));
         server.setSubsystemFactories(Arrays.<NamedFactory<org.apache.sshd.server.Command>>asList(new SftpSubsystem.Factory()));
         server.setKeyPairProvider(keyPairProvider);
         server.setPasswordAuthenticator(authenticator);
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.ssh;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collect the statistics of the SSH exec commands.
+ */
+public class ExecStatistics implements ExecStatisticsMBean {
+
+    private final InitScriptCache scriptCache;
+
+    private long commands;
+    private long failures;
+    private long totalOverhead;
+    private long maxOverhead;
+    private long totalInitScript;
+    private long totalExecution;
+    private long maxExecution;
+
+    public ExecStatistics(InitScriptCache scriptCache) {
+        this.scriptCache = scriptCache;
+    }
+
+    /**
+     * Record an executed command, times being given in nanoseconds.
+     */
+    public synchronized void record(long overhead, long initScript, long execution, boolean failed) {
+        commands++;
+        if (failed) {
+            failures++;
+        }
+        totalOverhead += overhead;
+        maxOverhead = Math.max(maxOverhead, overhead);
+        totalInitScript += initScript;
+        totalExecution += execution;
+        maxExecution = Math.max(maxExecution, execution);
+    }
+
+    public synchronized long getCommandCount() {
+        return commands;
+    }
+
+    public synchronized long getFailedCommandCount() {
+        return failures;
+    }
+
+    public synchronized long getAverageOverhead() {
+        return average(totalOverhead);
+    }
+
+    public synchronized long getMaxOverhead() {
+        return toMicros(maxOverhead);
+    }
+
+    public synchronized long getAverageInitScriptTime() {
+        return average(totalInitScript);
+    }
+
+    public synchronized long getAverageExecutionTime() {
+        return average(totalExecution);
+    }
+
+    public synchronized long getMaxExecutionTime() {
+        return toMicros(maxExecution);
+    }
+
+    public long getInitScriptLoads() {
+        return scriptCache.getLoads();
+    }
+
+    public synchronized void reset() {
+        commands = 0;
+        failures = 0;
+        totalOverhead = 0;
+        maxOverhead = 0;
+        totalInitScript = 0;
+        totalExecution = 0;
+        maxExecution = 0;
+    }
+
+    private long average(long total) {
+        return commands > 0 ? toMicros(total / commands) : 0;
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.ssh;
+
+/**
+ * Statistics about the commands executed through SSH exec requests.
+ *
+ * The overhead is the time spent preparing the shell session before running
+ * the command: creating the session, copying the environment and running the
+ * initialization script.  Times are in microseconds.
+ */
+public interface ExecStatisticsMBean {
+
+    long getCommandCount();
+
+    long getFailedCommandCount();
+
+    long getAverageOverhead();
+
+    long getMaxOverhead();
+
+    long getAverageInitScriptTime();
+
+    long getAverageExecutionTime();
+
+    long getMaxExecutionTime();
+
+    /**
+     * Number of times the initialization script has been read from disk.
+     */
+    long getInitScriptLoads();
+
+    void reset();
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.ssh;
+
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Keep the content of the shell initialization script in memory, so that
+ * it is not read from disk for each exec command.  The script is read again
+ * when the file name, its size or its last modification time change.
+ */
+public class InitScriptCache {
+
+    private String fileName;
+    private long lastModified;
+    private long length;
+    private String script;
+    private long loads;
+
+    /**
+     * Return the content of the given script, or <code>null</code> if it does not exist.
+     */
+    public synchronized String getScript(String fileName) throws IOException {
+        if (fileName == null) {
+            return null;
+        }
+        File file = new File(fileName);
+        long lastModified = file.lastModified();
+        long length = file.length();
+        if (lastModified == 0) {
+            // The file does not exist
+            this.fileName = null;
+            this.script = null;
+            return null;
+        }
+        if (!fileName.equals(this.fileName) || lastModified != this.lastModified || length != this.length) {
+            this.script = read(file);
+            this.fileName = fileName;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.loads++;
+        }
+        return script;
+    }
+
+    /**
+     * Number of times the script has been read from disk
+     */
+    public synchronized long getLoads() {
+        return loads;
+    }
+
+    private static String read(File file) throws IOException {
+        Reader r = new InputStreamReader(new FileInputStream(file));
+        try {
+            CharArrayWriter w = new CharArrayWriter();
+            int n;
+            char[] buf = new char[8192];
+            while ((n = r.read(buf)) > 0) {
+                w.write(buf, 0, n);
+            }
+            return new String(w.toCharArray());
+        } finally {
+            r.close();
+        }
+    }
+
+}
@@ -18,15 +18,10 @@
  */
 package org.apache.karaf.shell.ssh;
 
-import java.io.CharArrayWriter;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.io.Reader;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.Map;
@@ -65,10 +60,18 @@ public class ShellCommand implements Command, SessionAware {
     private ExitCallback callback;
     private ServerSession session;
     private SessionFactory sessionFactory;
+    private InitScriptCache scriptCache;
+    private ExecStatistics statistics;
 
     public ShellCommand(SessionFactory sessionFactory, String command) {
+        this(sessionFactory, command, new InitScriptCache(), null);
+    }
+
+    public ShellCommand(SessionFactory sessionFactory, String command, InitScriptCache scriptCache, ExecStatistics statistics) {
         this.sessionFactory = sessionFactory;
         this.command = command;
+        this.scriptCache = scriptCache;
+        this.statistics = statistics;
     }
 
     public void setInputStream(InputStream in) {
@@ -93,6 +96,9 @@ public class ShellCommand implements Command, SessionAware {
 
     public void start(final Environment env) throws IOException {
         int exitStatus = 0;
+        long start = System.nanoTime();
+        long scriptTime = 0;
+        long ready = 0;
         try {
             final Session session = sessionFactory.create(in, new PrintStream(out), new PrintStream(err));
             for (Map.Entry<String,String> e : env.getEnv().entrySet()) {
@@ -100,11 +106,13 @@ public class ShellCommand implements Command, SessionAware {
             }
             try {
                 Subject subject = this.session != null ? this.session.getAttribute(KarafJaasAuthenticator.SUBJECT_ATTRIBUTE_KEY) : null;
+                long scriptStart = System.nanoTime();
+                executeScript(session);
+                ready = System.nanoTime();
+                scriptTime = ready - scriptStart;
                 Object result;
                 if (subject != null) {
                     try {
-                        String scriptFileName = System.getProperty(SHELL_INIT_SCRIPT);
-                        executeScript(scriptFileName, session);
                         result = JaasHelper.doAs(subject, new PrivilegedExceptionAction<Object>() {
                             public Object run() throws Exception {
                                 return session.execute(command);
@@ -114,8 +122,6 @@ public class ShellCommand implements Command, SessionAware {
                         throw e.getException();
                     }
                 } else {
-                    String scriptFileName = System.getProperty(SHELL_INIT_SCRIPT);
-                    executeScript(scriptFileName, session);
                     result = session.execute(command);
                 }
                 if (result != null)
@@ -132,6 +138,13 @@ public class ShellCommand implements Command, SessionAware {
             throw (IOException) new IOException("Unable to start shell").initCause(e);
         } finally {
             StreamUtils.close(in, out, err);
+            if (statistics != null) {
+                long end = System.nanoTime();
+                if (ready == 0) {
+                    ready = end;
+                }
+                statistics.record(ready - start, scriptTime, end - ready, exitStatus != 0);
+            }
             callback.onExit(exitStatus);
         }
     }
@@ -139,30 +152,14 @@ public class ShellCommand implements Command, SessionAware {
     public void destroy() {
 	}
 
-    private void executeScript(String scriptFileName, Session session) {
-        if (scriptFileName != null) {
-            Reader r = null;
-            try {
-                File scriptFile = new File(scriptFileName);
-                r = new InputStreamReader(new FileInputStream(scriptFile));
-                CharArrayWriter w = new CharArrayWriter();
-                int n;
-                char[] buf = new char[8192];
-                while ((n = r.read(buf)) > 0) {
-                    w.write(buf, 0, n);
-                }
-                session.execute(new String(w.toCharArray()));
-            } catch (Exception e) {
-                LOGGER.debug("Error in initialization script", e);
-            } finally {
-                if (r != null) {
-                    try {
-                        r.close();
-                    } catch (IOException e) {
-                        // Ignore
-                    }
-                }
+    private void executeScript(Session session) {
+        try {
+            String script = scriptCache.getScript(System.getProperty(SHELL_INIT_SCRIPT));
+            if (script != null) {
+                session.execute(script);
             }
+        } catch (Exception e) {
+            LOGGER.debug("Error in initialization script", e);
         }
     }
 
@@ -25,13 +25,21 @@ import org.apache.sshd.server.CommandFactory;
 public class ShellCommandFactory implements CommandFactory {
 
     private SessionFactory sessionFactory;
+    private InitScriptCache scriptCache;
+    private ExecStatistics statistics;
 
     public ShellCommandFactory(SessionFactory sessionFactory) {
+        this(sessionFactory, new InitScriptCache(), null);
+    }
+
+    public ShellCommandFactory(SessionFactory sessionFactory, InitScriptCache scriptCache, ExecStatistics statistics) {
         this.sessionFactory = sessionFactory;
+        this.scriptCache = scriptCache;
+        this.statistics = statistics;
     }
 
     public Command createCommand(String command) {
-        return new ShellCommand(sessionFactory, command);
+        return new ShellCommand(sessionFactory, command, scriptCache, statistics);
     }
 
 }
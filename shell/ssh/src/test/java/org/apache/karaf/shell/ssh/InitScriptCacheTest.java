@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.shell.ssh;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InitScriptCacheTest {
+
+    @Test
+    public void testReadOnlyWhenModified() throws IOException {
+        File script = File.createTempFile("shell", ".script");
+        script.deleteOnExit();
+        write(script, "ld = { log:display $args } ;");
+        InitScriptCache cache = new InitScriptCache();
+
+        Assert.assertEquals("ld = { log:display $args } ;", cache.getScript(script.getPath()));
+        Assert.assertEquals("ld = { log:display $args } ;", cache.getScript(script.getPath()));
+        Assert.assertEquals(1, cache.getLoads());
+
+        write(script, "la = { bundle:list -t 0 $args } ;");
+        Assert.assertEquals("la = { bundle:list -t 0 $args } ;", cache.getScript(script.getPath()));
+        Assert.assertEquals(2, cache.getLoads());
+    }
+
+    @Test
+    public void testMissingScript() throws IOException {
+        InitScriptCache cache = new InitScriptCache();
+        Assert.assertNull(cache.getScript(null));
+        Assert.assertNull(cache.getScript(new File("target/missing.script").getPath()));
+        Assert.assertEquals(0, cache.getLoads());
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileWriter w = new FileWriter(file);
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+    }
+
+}
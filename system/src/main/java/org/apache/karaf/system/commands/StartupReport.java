@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.karaf.system.commands;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.apache.karaf.shell.support.table.ShellTable;
+import org.apache.karaf.util.startup.StartupTrace;
+
+/**
+ * Display the slowest steps of the last startup, as recorded in the startup trace.
+ */
+@Command(scope = "system", name = "startup-report", description = "Display the slowest steps of the last startup.")
+@Service
+public class StartupReport implements Action {
+
+    @Option(name = "-n", description = "Number of steps to display (defaults to 20)", required = false, multiValued = false)
+    int entries = 20;
+
+    @Option(name = "-c", aliases = { "--category" }, description = "Only display the steps of the given category (launcher, framework, bundle, blueprint, deployer, features)", required = false, multiValued = false)
+    String category;
+
+    @Option(name = "--no-format", description = "Disable table rendered output", required = false, multiValued = false)
+    boolean noFormat;
+
+    @Override
+    public Object execute() throws Exception {
+        File file = new File(System.getProperty("karaf.data"), StartupTrace.TRACE_FILE);
+        if (!file.isFile()) {
+            System.err.println("No startup trace found in " + file + ", set karaf.startup.trace=true in etc/config.properties to record it");
+            return null;
+        }
+        List<StartupTrace.Event> events = StartupTrace.read(file);
+        if (events.isEmpty()) {
+            System.err.println("The startup trace " + file + " is empty");
+            return null;
+        }
+
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        List<StartupTrace.Event> steps = new ArrayList<StartupTrace.Event>();
+        for (StartupTrace.Event event : events) {
+            first = Math.min(first, event.getTimestamp());
+            last = Math.max(last, event.getTimestamp() + event.getDuration());
+            if (event.getPhase() == 'X' && (category == null || category.equals(event.getCategory()))) {
+                steps.add(event);
+            }
+        }
+        Collections.sort(steps, new Comparator<StartupTrace.Event>() {
+            public int compare(StartupTrace.Event e1, StartupTrace.Event e2) {
+                return Long.compare(e2.getDuration(), e1.getDuration());
+            }
+        });
+
+        System.out.println("Startup time: " + toMillis(last - first) + " ms (trace in " + file + ")");
+        ShellTable table = new ShellTable();
+        table.column("Duration (ms)").alignRight();
+        table.column("Offset (ms)").alignRight();
+        table.column("Category");
+        table.column("Thread").alignRight();
+        table.column("Step");
+        for (StartupTrace.Event event : steps.subList(0, Math.min(entries, steps.size()))) {
+            table.addRow().addContent(toMillis(event.getDuration()), toMillis(event.getTimestamp() - first),
+                    event.getCategory(), event.getThread(), event.getName());
+        }
+        table.print(System.out, !noFormat);
+        return null;
+    }
+
+    private static long toMillis(long micros) {
+        return micros / 1000;
+    }
+
+}
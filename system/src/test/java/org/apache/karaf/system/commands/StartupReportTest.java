@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.system.commands;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.apache.karaf.util.startup.StartupTrace;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StartupReportTest {
+
+    private File data;
+    private String oldData;
+
+    @Before
+    public void setUp() throws IOException {
+        data = File.createTempFile("data", ".tmp");
+        data.delete();
+        data.mkdirs();
+        oldData = System.getProperty("karaf.data");
+        System.setProperty("karaf.data", data.getPath());
+
+        StartupTrace.start(new File(data, StartupTrace.TRACE_FILE));
+        StartupTrace.complete("launcher", "Initialize framework", 1000000L, 11000000L);
+        StartupTrace.complete("bundle", "Start org.foo / 1.0.0", 12000000L, 42000000L);
+        StartupTrace.complete("bundle", "Start org.bar / 1.0.0", 13000000L, 18000000L);
+        StartupTrace.complete("deployer", "Resolve", 50000000L, 71000000L);
+        StartupTrace.stop();
+    }
+
+    @After
+    public void tearDown() {
+        new File(data, StartupTrace.TRACE_FILE).delete();
+        data.delete();
+        if (oldData != null) {
+            System.setProperty("karaf.data", oldData);
+        } else {
+            System.clearProperty("karaf.data");
+        }
+    }
+
+    @Test
+    public void testSlowestStepsFirst() throws Exception {
+        StartupReport report = new StartupReport();
+        report.noFormat = true;
+        String[] lines = execute(report);
+
+        Assert.assertTrue(lines[0], lines[0].startsWith("Startup time: 70 ms"));
+        Assert.assertEquals(5, lines.length);
+        String[] columns = lines[1].split("\t");
+        Assert.assertEquals("30", columns[0].trim());
+        Assert.assertEquals("11", columns[1].trim());
+        Assert.assertEquals("bundle", columns[2].trim());
+        Assert.assertEquals(Long.toString(Thread.currentThread().getId()), columns[3].trim());
+        Assert.assertEquals("Start org.foo / 1.0.0", step(lines[1]));
+        Assert.assertEquals("Resolve", step(lines[2]));
+        Assert.assertEquals("Initialize framework", step(lines[3]));
+        Assert.assertEquals("Start org.bar / 1.0.0", step(lines[4]));
+    }
+
+    @Test
+    public void testCategoryAndLimit() throws Exception {
+        StartupReport report = new StartupReport();
+        report.noFormat = true;
+        report.category = "bundle";
+        report.entries = 1;
+        String[] lines = execute(report);
+
+        Assert.assertEquals(2, lines.length);
+        Assert.assertEquals("Start org.foo / 1.0.0", step(lines[1]));
+    }
+
+    private static String step(String line) {
+        return line.substring(line.lastIndexOf('\t') + 1).trim();
+    }
+
+    private static String[] execute(StartupReport report) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(baos, true));
+        try {
+            report.execute();
+        } finally {
+            System.setOut(out);
+        }
+        return baos.toString().split("\\r?\\n");
+    }
+
+}
@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.util.startup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Record a timeline of the startup of Karaf.
+ *
+ * The timeline is written to a file in the trace event format understood
+ * by Chrome's about:tracing, using the json array form where each event is
+ * appended on its own line and the closing bracket is optional.
+ *
+ * The launcher exports this package through the system bundle, so that the
+ * bundles share its buffer.  Copies of this class embedded elsewhere can still
+ * write to the same file, as they only share the {@link #TRACE_FILE_PROPERTY}
+ * system property, which is only set while the startup is being traced.
+ *
+ * Timestamps are taken from {@link System#nanoTime()} so that all the events
+ * recorded by the JVM can be compared.
+ *
+ * Events are buffered in memory and appended to the file by batches of complete
+ * lines, from a background thread, when the buffer is large or when tracing is
+ * stopped.
+ */
+public final class StartupTrace {
+
+    /**
+     * System property holding the path of the trace file while the startup is traced
+     */
+    public static final String TRACE_FILE_PROPERTY = "karaf.startup.trace.file";
+
+    /**
+     * Name of the trace file, in the karaf data directory
+     */
+    public static final String TRACE_FILE = "startup-trace.json";
+
+    private static final Pattern EVENT = Pattern.compile(
+            "\\{\"name\":\"((?:[^\"\\\\]|\\\\.)*)\",\"cat\":\"((?:[^\"\\\\]|\\\\.)*)\",\"ph\":\"(\\w)\",\"ts\":(-?\\d+)(?:,\"dur\":(\\d+))?,\"pid\":\\d+,\"tid\":(\\d+).*");
+
+    private static final int FLUSH_SIZE = 32 * 1024;
+    private static final long FLUSH_DELAY = 500;
+
+    /**
+     * Events recorded through this copy of the class and not yet written
+     */
+    private static final StringBuilder BUFFER = new StringBuilder();
+    private static String bufferFile;
+    private static Thread flusher;
+
+    private StartupTrace() { }
+
+    /**
+     * Start tracing the startup in the given file, overwriting any previous trace.
+     */
+    public static void start(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write("[\n".getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+        System.setProperty(TRACE_FILE_PROPERTY, file.getAbsolutePath());
+    }
+
+    /**
+     * Stop tracing, the events recorded later are discarded.
+     */
+    public static void stop() {
+        System.clearProperty(TRACE_FILE_PROPERTY);
+        flush();
+    }
+
+    public static boolean isEnabled() {
+        return System.getProperty(TRACE_FILE_PROPERTY) != null;
+    }
+
+    /**
+     * Begin a span of time which will be recorded when ended.
+     */
+    public static Span begin(String category, String name) {
+        return new Span(category, name, isEnabled(), System.nanoTime());
+    }
+
+    /**
+     * Record an event which took place between the given times, as returned by {@link System#nanoTime()}.
+     */
+    public static void complete(String category, String name, long start, long end) {
+        if (isEnabled()) {
+            write("{\"name\":\"" + escape(name) + "\",\"cat\":\"" + escape(category)
+                    + "\",\"ph\":\"X\",\"ts\":" + toMicros(start) + ",\"dur\":" + toMicros(end - start)
+                    + ",\"pid\":1,\"tid\":" + Thread.currentThread().getId() + "},\n");
+        }
+    }
+
+    /**
+     * Record an event which occurred now.
+     */
+    public static void instant(String category, String name) {
+        if (isEnabled()) {
+            write("{\"name\":\"" + escape(name) + "\",\"cat\":\"" + escape(category)
+                    + "\",\"ph\":\"i\",\"ts\":" + toMicros(System.nanoTime())
+                    + ",\"pid\":1,\"tid\":" + Thread.currentThread().getId() + ",\"s\":\"g\"},\n");
+        }
+    }
+
+    /**
+     * Read the events from a trace file written by this class.
+     */
+    public static List<Event> read(File file) throws IOException {
+        List<Event> events = new ArrayList<Event>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = EVENT.matcher(line);
+                if (matcher.matches()) {
+                    events.add(new Event(unescape(matcher.group(2)), unescape(matcher.group(1)),
+                            matcher.group(3).charAt(0), Long.parseLong(matcher.group(4)),
+                            matcher.group(5) != null ? Long.parseLong(matcher.group(5)) : 0,
+                            Long.parseLong(matcher.group(6))));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return events;
+    }
+
+    private static void write(String event) {
+        String file = System.getProperty(TRACE_FILE_PROPERTY);
+        if (file == null) {
+            return;
+        }
+        boolean full;
+        synchronized (BUFFER) {
+            if (!file.equals(bufferFile)) {
+                // Tracing has been restarted
+                BUFFER.setLength(0);
+                bufferFile = file;
+            }
+            BUFFER.append(event);
+            full = BUFFER.length() >= FLUSH_SIZE;
+            if (flusher == null) {
+                flusher = new Flusher();
+                flusher.start();
+            }
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Write the buffered events to the trace file.
+     */
+    static void flush() {
+        String file;
+        String events;
+        synchronized (BUFFER) {
+            if (BUFFER.length() == 0) {
+                return;
+            }
+            file = bufferFile;
+            events = BUFFER.toString();
+            BUFFER.setLength(0);
+        }
+        try {
+            // The events are written with a single append, so that concurrent writers do not interleave
+            OutputStream os = new FileOutputStream(file, true);
+            try {
+                os.write(events.getBytes("UTF-8"));
+            } finally {
+                os.close();
+            }
+        } catch (IOException e) {
+            // Tracing is best effort
+        }
+    }
+
+    private static long toMicros(long nanos) {
+        return nanos / 1000;
+    }
+
+    private static String escape(String str) {
+        StringBuilder sb = new StringBuilder(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(String str) {
+        StringBuilder sb = new StringBuilder(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '\\' && i + 1 < str.length()) {
+                c = str.charAt(++i);
+                if (c == 'u' && i + 4 < str.length()) {
+                    sb.append((char) Integer.parseInt(str.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    continue;
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Periodically write the events buffered by this copy of the class,
+     * until tracing is stopped.
+     */
+    private static final class Flusher extends Thread {
+
+        Flusher() {
+            super("Karaf startup trace");
+            setDaemon(true);
+        }
+
+        public void run() {
+            try {
+                for (;;) {
+                    Thread.sleep(FLUSH_DELAY);
+                    flush();
+                    synchronized (BUFFER) {
+                        if (!isEnabled() && BUFFER.length() == 0) {
+                            flusher = null;
+                            return;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                synchronized (BUFFER) {
+                    flusher = null;
+                }
+                flush();
+            }
+        }
+    }
+
+    /**
+     * A span of time being traced.
+     */
+    public static final class Span {
+        private final String category;
+        private final String name;
+        private final boolean enabled;
+        private final long start;
+
+        Span(String category, String name, boolean enabled, long start) {
+            this.category = category;
+            this.name = name;
+            this.enabled = enabled;
+            this.start = start;
+        }
+
+        public void end() {
+            if (enabled) {
+                complete(category, name, start, System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * An event read from a trace file.
+     */
+    public static final class Event {
+        private final String category;
+        private final String name;
+        private final char phase;
+        private final long timestamp;
+        private final long duration;
+        private final long thread;
+
+        Event(String category, String name, char phase, long timestamp, long duration, long thread) {
+            this.category = category;
+            this.name = name;
+            this.phase = phase;
+            this.timestamp = timestamp;
+            this.duration = duration;
+            this.thread = thread;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 'X' for a complete event, 'i' for an instant event
+         */
+        public char getPhase() {
+            return phase;
+        }
+
+        /**
+         * Start of the event in microseconds
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Duration of the event in microseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        public long getThread() {
+            return thread;
+        }
+    }
+
+}
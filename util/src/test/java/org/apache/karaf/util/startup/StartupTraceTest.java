@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.karaf.util.startup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StartupTraceTest {
+
+    private File file;
+
+    @After
+    public void tearDown() {
+        StartupTrace.stop();
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        file = File.createTempFile("startup-trace", ".json");
+        StartupTrace.start(file);
+        Assert.assertTrue(StartupTrace.isEnabled());
+
+        StartupTrace.complete("launcher", "Read \"mvn:foo/bar\"\t\\", 1000000L, 3500000L);
+        StartupTrace.instant("framework", "Start level 100");
+        StartupTrace.Span span = StartupTrace.begin("deployer", "Resolve");
+        span.end();
+        StartupTrace.stop();
+        Assert.assertFalse(StartupTrace.isEnabled());
+
+        // Events recorded after the trace is stopped are discarded
+        StartupTrace.instant("framework", "Start level 101");
+        StartupTrace.begin("deployer", "Install").end();
+
+        List<StartupTrace.Event> events = StartupTrace.read(file);
+        Assert.assertEquals(3, events.size());
+
+        StartupTrace.Event event = events.get(0);
+        Assert.assertEquals("launcher", event.getCategory());
+        Assert.assertEquals("Read \"mvn:foo/bar\"\t\\", event.getName());
+        Assert.assertEquals('X', event.getPhase());
+        Assert.assertEquals(1000L, event.getTimestamp());
+        Assert.assertEquals(2500L, event.getDuration());
+        Assert.assertEquals(Thread.currentThread().getId(), event.getThread());
+
+        event = events.get(1);
+        Assert.assertEquals("framework", event.getCategory());
+        Assert.assertEquals("Start level 100", event.getName());
+        Assert.assertEquals('i', event.getPhase());
+        Assert.assertEquals(0L, event.getDuration());
+
+        event = events.get(2);
+        Assert.assertEquals("deployer", event.getCategory());
+        Assert.assertEquals("Resolve", event.getName());
+        Assert.assertEquals('X', event.getPhase());
+    }
+
+    @Test
+    public void testRestartOverwritesTheTrace() throws IOException {
+        file = File.createTempFile("startup-trace", ".json");
+        StartupTrace.start(file);
+        StartupTrace.instant("framework", "Start level 1");
+        StartupTrace.stop();
+
+        StartupTrace.start(file);
+        StartupTrace.instant("framework", "Start level 2");
+        StartupTrace.stop();
+
+        List<StartupTrace.Event> events = StartupTrace.read(file);
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals("Start level 2", events.get(0).getName());
+    }
+
+}